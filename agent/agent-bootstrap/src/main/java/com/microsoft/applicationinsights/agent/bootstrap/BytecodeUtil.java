@@ -36,6 +36,17 @@ public class BytecodeUtil {
 
     private static BytecodeUtilDelegate delegate;
 
+    // the severity level (0 for verbose up to 4 for critical) below which log records are not captured,
+    // nothing is captured until the agent sets it from instrumentation.logging.level
+    private static volatile int logThreshold = Integer.MAX_VALUE;
+
+    private static final ThreadLocal<LogRecord> logRecordHolder = new ThreadLocal<LogRecord>() {
+        @Override
+        protected LogRecord initialValue() {
+            return new LogRecord();
+        }
+    };
+
     public static void setDelegate(final BytecodeUtilDelegate delegate) {
         if (BytecodeUtil.delegate == null) {
             BytecodeUtil.delegate = delegate;
@@ -101,6 +112,47 @@ public class BytecodeUtil {
         }
     }
 
+    public static void setLogThreshold(int severityLevel) {
+        logThreshold = severityLevel;
+    }
+
+    /**
+     * Logging instrumentation calls this before building anything for a log event,
+     * and only captures the event (see {@link #getLogRecord()}) when it returns true.
+     */
+    public static boolean isLogEnabled(int severityLevel) {
+        return severityLevel >= logThreshold && delegate != null;
+    }
+
+    /**
+     * Returns the log record of the current thread, cleared, to be filled and passed to {@link #trackLog(LogRecord)}.
+     *
+     * The record is busy until {@link #trackLog(LogRecord)} returns, so a log event emitted while it is being filled
+     * or tracked (e.g. by a toString() or by an appender) gets a record of its own instead of overwriting it.
+     * A record which is never passed to {@link #trackLog(LogRecord)} stays busy, and the thread then allocates one
+     * record per log event.
+     */
+    public static LogRecord getLogRecord() {
+        LogRecord record = logRecordHolder.get();
+        if (record.busy) {
+            return new LogRecord();
+        }
+        record.clear();
+        record.busy = true;
+        return record;
+    }
+
+    public static void trackLog(LogRecord record) {
+        try {
+            if (delegate != null) {
+                delegate.trackLog(record);
+            }
+        } finally {
+            // releases the record for the next log event of this thread
+            record.clear();
+        }
+    }
+
     public static void flush() {
         if (delegate != null) {
             delegate.flush();
@@ -193,8 +245,88 @@ public class BytecodeUtil {
         void trackException(Exception exception, Map<String, String> properties, Map<String, String> tags,
                             Map<String, Double> metrics, String instrumentationKey);
 
+        // the record is only valid during the call
+        void trackLog(LogRecord record);
+
         void flush();
 
         void logErrorOnce(Throwable t);
     }
+
+    // a log event captured by logging instrumentation, which is reused by each thread
+    public static class LogRecord {
+
+        private String message;
+        private int severityLevel;
+        // the level as named by the logging library, e.g. "WARN" or "WARNING"
+        private String levelName;
+        private String loggerName;
+        private Throwable throwable;
+        private long epochMillis;
+        private boolean busy;
+
+        public String getMessage() {
+            return message;
+        }
+
+        public LogRecord setMessage(String message) {
+            this.message = message;
+            return this;
+        }
+
+        public int getSeverityLevel() {
+            return severityLevel;
+        }
+
+        public LogRecord setSeverityLevel(int severityLevel) {
+            this.severityLevel = severityLevel;
+            return this;
+        }
+
+        public String getLevelName() {
+            return levelName;
+        }
+
+        public LogRecord setLevelName(String levelName) {
+            this.levelName = levelName;
+            return this;
+        }
+
+        public String getLoggerName() {
+            return loggerName;
+        }
+
+        public LogRecord setLoggerName(String loggerName) {
+            this.loggerName = loggerName;
+            return this;
+        }
+
+        public Throwable getThrowable() {
+            return throwable;
+        }
+
+        public LogRecord setThrowable(Throwable throwable) {
+            this.throwable = throwable;
+            return this;
+        }
+
+        public long getEpochMillis() {
+            return epochMillis;
+        }
+
+        public LogRecord setEpochMillis(long epochMillis) {
+            this.epochMillis = epochMillis;
+            return this;
+        }
+
+        private void clear() {
+            message = null;
+            severityLevel = 0;
+            levelName = null;
+            loggerName = null;
+            throwable = null;
+            epochMillis = 0;
+            busy = false;
+        }
+    }
 }
@@ -24,5 +24,14 @@ public enum AlertMetricType {
     CPU,
     MEMORY,
     PERIODIC,
-    MANUAL
+    MANUAL,
+    // percentage of the time spent in GC pauses
+    GC_PAUSE_RATIO,
+    // duration of the requests, in milliseconds
+    REQUEST_LATENCY,
+    // percentage of the requests which failed
+    REQUEST_FAILURE_RATE,
+    THREAD_COUNT,
+    // MB allocated per second
+    ALLOCATION_RATE
 }
@@ -20,9 +20,13 @@
  */
 package com.microsoft.applicationinsights.alerting.config;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
+import com.microsoft.applicationinsights.alerting.alert.AlertCondition;
 import com.microsoft.applicationinsights.alerting.alert.AlertMetricType;
+import com.microsoft.applicationinsights.alerting.alert.WindowAggregation;
 
 /**
  * Contains the overall configuration of the entire alerting subsystem
@@ -41,12 +45,21 @@ public class AlertingConfiguration {
     // Alert configuration for manual profiling
     private final CollectionPlanConfiguration collectionPlanConfiguration;
 
+    // Alert configurations for the other metric types, at most one per type
+    private final List<AlertConfiguration> metricAlerts;
+
     public AlertingConfiguration(AlertConfiguration cpuAlert, AlertConfiguration memoryAlert, DefaultConfiguration defaultConfiguration,
                                  CollectionPlanConfiguration collectionPlanConfiguration) {
+        this(cpuAlert, memoryAlert, defaultConfiguration, collectionPlanConfiguration, Collections.emptyList());
+    }
+
+    public AlertingConfiguration(AlertConfiguration cpuAlert, AlertConfiguration memoryAlert, DefaultConfiguration defaultConfiguration,
+                                 CollectionPlanConfiguration collectionPlanConfiguration, List<AlertConfiguration> metricAlerts) {
         this.cpuAlert = cpuAlert;
         this.memoryAlert = memoryAlert;
         this.defaultConfiguration = defaultConfiguration;
         this.collectionPlanConfiguration = collectionPlanConfiguration;
+        this.metricAlerts = Collections.unmodifiableList(metricAlerts);
     }
 
     public DefaultConfiguration getDefaultConfiguration() {
@@ -65,16 +78,20 @@ public class AlertingConfiguration {
         return collectionPlanConfiguration;
     }
 
+    public List<AlertConfiguration> getMetricAlerts() {
+        return metricAlerts;
+    }
+
     @Override public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         AlertingConfiguration that = (AlertingConfiguration) o;
         return Objects.equals(cpuAlert, that.cpuAlert) && Objects.equals(memoryAlert, that.memoryAlert) && Objects.equals(defaultConfiguration, that.defaultConfiguration) &&
-                Objects.equals(collectionPlanConfiguration, that.collectionPlanConfiguration);
+                Objects.equals(collectionPlanConfiguration, that.collectionPlanConfiguration) && metricAlerts.equals(that.metricAlerts);
     }
 
     @Override public int hashCode() {
-        return Objects.hash(cpuAlert, memoryAlert, defaultConfiguration, collectionPlanConfiguration);
+        return Objects.hash(cpuAlert, memoryAlert, defaultConfiguration, collectionPlanConfiguration, metricAlerts);
     }
 
     /**
@@ -87,13 +104,25 @@ public class AlertingConfiguration {
         private final float threshold;
         private final long profileDuration;
         private final long cooldown;
+        private final WindowAggregation aggregation;
+        private final AlertCondition condition;
+        // length of the window of samples the value is aggregated over, 0 for the default one
+        private final long windowLength;
 
         public AlertConfiguration(AlertMetricType type, boolean enabled, float threshold, long profileDuration, long cooldown) {
+            this(type, enabled, threshold, profileDuration, cooldown, WindowAggregation.AVERAGE, AlertCondition.ABOVE, 0);
+        }
+
+        public AlertConfiguration(AlertMetricType type, boolean enabled, float threshold, long profileDuration, long cooldown,
+                                  WindowAggregation aggregation, AlertCondition condition, long windowLength) {
             this.type = type;
             this.enabled = enabled;
             this.threshold = threshold;
             this.profileDuration = profileDuration;
             this.cooldown = cooldown;
+            this.aggregation = aggregation;
+            this.condition = condition;
+            this.windowLength = windowLength;
         }
 
         public boolean isEnabled() {
@@ -112,18 +141,34 @@ public class AlertingConfiguration {
             return cooldown;
         }
 
+        public WindowAggregation getAggregation() {
+            return aggregation;
+        }
+
+        public AlertCondition getCondition() {
+            return condition;
+        }
+
+        public long getWindowLength() {
+            return windowLength;
+        }
+
         @Override public boolean equals(Object o) {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             AlertConfiguration that = (AlertConfiguration) o;
-            return enabled == that.enabled &&
+            return type == that.type &&
+                    enabled == that.enabled &&
                     Float.compare(that.threshold, threshold) == 0 &&
                     profileDuration == that.profileDuration &&
-                    cooldown == that.cooldown;
+                    cooldown == that.cooldown &&
+                    aggregation == that.aggregation &&
+                    condition == that.condition &&
+                    windowLength == that.windowLength;
         }
 
         @Override public int hashCode() {
-            return Objects.hash(enabled, threshold, profileDuration, cooldown);
+            return Objects.hash(type, enabled, threshold, profileDuration, cooldown, aggregation, condition, windowLength);
         }
 
         public AlertMetricType getType() {
@@ -137,6 +182,9 @@ public class AlertingConfiguration {
                     ", threshold=" + threshold +
                     ", profileDuration=" + profileDuration +
                     ", cooldown=" + cooldown +
+                    ", aggregation=" + aggregation +
+                    ", condition=" + condition +
+                    ", windowLength=" + windowLength +
                     '}';
         }
     }
@@ -147,6 +195,9 @@ public class AlertingConfiguration {
         private long profileDuration;
         private long cooldown;
         private AlertMetricType type;
+        private WindowAggregation aggregation = WindowAggregation.AVERAGE;
+        private AlertCondition condition = AlertCondition.ABOVE;
+        private long windowLength;
 
         public AlertConfigurationBuilder setEnabled(boolean enabled) {
             this.enabled = enabled;
@@ -173,8 +224,23 @@ public class AlertingConfiguration {
             return this;
         }
 
+        public AlertConfigurationBuilder setAggregation(WindowAggregation aggregation) {
+            this.aggregation = aggregation;
+            return this;
+        }
+
+        public AlertConfigurationBuilder setCondition(AlertCondition condition) {
+            this.condition = condition;
+            return this;
+        }
+
+        public AlertConfigurationBuilder setWindowLength(long windowLength) {
+            this.windowLength = windowLength;
+            return this;
+        }
+
         public AlertConfiguration createAlertConfiguration() {
-            return new AlertConfiguration(type, enabled, threshold, profileDuration, cooldown);
+            return new AlertConfiguration(type, enabled, threshold, profileDuration, cooldown, aggregation, condition, windowLength);
         }
     }
 }
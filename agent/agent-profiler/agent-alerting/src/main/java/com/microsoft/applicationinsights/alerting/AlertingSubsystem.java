@@ -21,11 +21,14 @@
 package com.microsoft.applicationinsights.alerting;
 
 import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.Consumer;
 
 import com.microsoft.applicationinsights.alerting.alert.AlertBreach;
@@ -51,14 +54,27 @@ import org.slf4j.LoggerFactory;
 public class AlertingSubsystem {
     private static final Logger LOGGER = LoggerFactory.getLogger(AlertingSubsystem.class);
 
+    // the oldest samples are dropped beyond this, if the pipelines do not keep up
+    private static final int DEFAULT_WORK_QUEUE_CAPACITY = 1024;
+
     // Downstream observer of alerts produced by the alerting system
     private final Consumer<AlertBreach> alertHandler;
 
     // Execution context of the alerting subsytem
     private final ExecutorService executorService;
 
-    // queue of telemetry data to be processed
-    private final LinkedBlockingQueue<TelemetryDataPoint> workQueue = new LinkedBlockingQueue<>();
+    // ring of the samples to be processed, kept as primitives so that tracking a sample does not allocate
+    private final int workQueueCapacity;
+    private final AlertMetricType[] workQueueTypes;
+    private final long[] workQueueTimes;
+    private final double[] workQueueValues;
+    // guarded by monitor, like the fields below
+    // the sequence numbers of the oldest sample and of the next sample, the samples are at sequence % capacity
+    private long workQueueHead;
+    private long workQueueTail;
+    // the samples in the ring plus the one being processed, for awaitQueueFlush()
+    private int pendingCount;
+    private long droppedCount;
 
     // List of manual triggers that have already been processed
     private final Set<String> manualTriggersExecuted = new HashSet<>();
@@ -72,18 +88,31 @@ public class AlertingSubsystem {
     // Current configuration of the alerting subsystem
     private AlertingConfiguration alertConfig;
 
-    // monitor to guard the notification that the work list has been processed
+    // monitor to guard the work queue, and the notification that it has been processed
     private final Object monitor = new Object();
 
     protected AlertingSubsystem(Consumer<AlertBreach> alertHandler, ExecutorService executorService) {
+        this(alertHandler, executorService, DEFAULT_WORK_QUEUE_CAPACITY);
+    }
+
+    AlertingSubsystem(Consumer<AlertBreach> alertHandler, ExecutorService executorService, int workQueueCapacity) {
         this.alertHandler = alertHandler;
         alertPipelines = new AlertPipelines(alertHandler);
         this.executorService = executorService;
         timeSource = TimeSource.DEFAULT;
+        this.workQueueCapacity = workQueueCapacity;
+        workQueueTypes = new AlertMetricType[workQueueCapacity];
+        workQueueTimes = new long[workQueueCapacity];
+        workQueueValues = new double[workQueueCapacity];
     }
 
     public static AlertingSubsystem create(Consumer<AlertBreach> alertHandler, ExecutorService executorService) {
-        AlertingSubsystem alertingSubsystem = new AlertingSubsystem(alertHandler, executorService);
+        return create(alertHandler, executorService, DEFAULT_WORK_QUEUE_CAPACITY);
+    }
+
+    // visible for testing
+    static AlertingSubsystem create(Consumer<AlertBreach> alertHandler, ExecutorService executorService, int workQueueCapacity) {
+        AlertingSubsystem alertingSubsystem = new AlertingSubsystem(alertHandler, executorService, workQueueCapacity);
         //init with disabled config
         alertingSubsystem.initialize(new AlertingConfiguration(
                 new AlertConfigurationBuilder().setType(AlertMetricType.CPU).setEnabled(false).setThreshold(0).setProfileDuration(0).setCooldown(0).createAlertConfiguration(),
@@ -103,20 +132,30 @@ public class AlertingSubsystem {
         future = executorService
                 .submit(() -> {
                     while (true) {
+                        AlertMetricType type;
+                        long timeEpochMillis;
+                        double value;
+                        synchronized (monitor) {
+                            while (workQueueHead == workQueueTail) {
+                                monitor.wait();
+                            }
+                            int index = (int) (workQueueHead++ % workQueueCapacity);
+                            type = workQueueTypes[index];
+                            timeEpochMillis = workQueueTimes[index];
+                            value = workQueueValues[index];
+                        }
                         try {
-                            process(workQueue.take());
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            throw e;
+                            process(type, timeEpochMillis, value);
                         } catch (Exception e) {
                             LOGGER.error("Exception while evaluating alert", e);
                         } catch (Error e) {
                             LOGGER.error("Exception while evaluating alert", e);
                             throw e;
-                        }
-
-                        synchronized (monitor) {
-                            monitor.notifyAll();
+                        } finally {
+                            synchronized (monitor) {
+                                pendingCount--;
+                                monitor.notifyAll();
+                            }
                         }
                     }
                 });
@@ -126,8 +165,33 @@ public class AlertingSubsystem {
      * Add telemetry to alert processing pipeline
      */
     public void track(AlertMetricType type, Number value) {
-        if (type != null && value != null) {
-            workQueue.add(new TelemetryDataPoint(type, timeSource.getNow(), value.doubleValue()));
+        if (value != null) {
+            track(type, value.doubleValue());
+        }
+    }
+
+    /**
+     * Add telemetry to alert processing pipeline
+     */
+    public void track(AlertMetricType type, double value) {
+        if (type == null) {
+            return;
+        }
+        long timeEpochMillis = timeSource.getNowEpochMillis();
+        synchronized (monitor) {
+            if (workQueueTail - workQueueHead == workQueueCapacity) {
+                workQueueHead++;
+                pendingCount--;
+                if (droppedCount++ == 0) {
+                    LOGGER.warn("The alerting pipelines do not keep up, the oldest samples are being dropped");
+                }
+            }
+            int index = (int) (workQueueTail++ % workQueueCapacity);
+            workQueueTypes[index] = type;
+            workQueueTimes[index] = timeEpochMillis;
+            workQueueValues[index] = value;
+            pendingCount++;
+            monitor.notifyAll();
         }
     }
 
@@ -135,19 +199,24 @@ public class AlertingSubsystem {
      * Block until work queue is empty
      */
     public void awaitQueueFlush() {
-        while (workQueue.size() > 0) {
-            synchronized (monitor) {
-                try {
-                    if (workQueue.size() > 0) {
-                        monitor.wait();
-                    }
-                } catch (InterruptedException e) {
-                    return;
+        synchronized (monitor) {
+            try {
+                while (pendingCount > 0) {
+                    monitor.wait();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
     }
 
+    // visible for testing
+    long getDroppedCount() {
+        synchronized (monitor) {
+            return droppedCount;
+        }
+    }
+
     /**
      * Deliver data to pipelines
      */
@@ -155,8 +224,14 @@ public class AlertingSubsystem {
         if (telemetryDataPoint == null) {
             return;
         }
-        LOGGER.trace("Tracking " + telemetryDataPoint.getType().name() + " " + telemetryDataPoint.getValue());
-        alertPipelines.process(telemetryDataPoint);
+        process(telemetryDataPoint.getType(), telemetryDataPoint.getTimeEpochMillis(), telemetryDataPoint.getValue());
+    }
+
+    private void process(AlertMetricType type, long timeEpochMillis, double value) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Tracking " + type.name() + " " + value);
+        }
+        alertPipelines.process(type, timeEpochMillis, value);
     }
 
     /**
@@ -170,6 +245,9 @@ public class AlertingSubsystem {
             AlertConfiguration oldMemoryConfig = this.alertConfig == null ? null : this.alertConfig.getMemoryAlert();
             updatePipelineConfig(alertingConfig.getMemoryAlert(), oldMemoryConfig);
 
+            List<AlertConfiguration> oldMetricAlerts = this.alertConfig == null ? Collections.emptyList() : this.alertConfig.getMetricAlerts();
+            updateMetricAlerts(alertingConfig.getMetricAlerts(), oldMetricAlerts);
+
             evaluateManualTrigger(alertingConfig);
             this.alertConfig = alertingConfig;
         }
@@ -184,6 +262,27 @@ public class AlertingSubsystem {
         }
     }
 
+    /**
+     * Update the pipelines of the other metric types, and disable those which are no longer configured
+     */
+    private void updateMetricAlerts(List<AlertConfiguration> newAlertConfigs, List<AlertConfiguration> oldAlertConfigs) {
+        Map<AlertMetricType, AlertConfiguration> removed = new EnumMap<>(AlertMetricType.class);
+        for (AlertConfiguration oldAlertConfig : oldAlertConfigs) {
+            removed.put(oldAlertConfig.getType(), oldAlertConfig);
+        }
+
+        for (AlertConfiguration newAlertConfig : newAlertConfigs) {
+            updatePipelineConfig(newAlertConfig, removed.remove(newAlertConfig.getType()));
+        }
+
+        for (AlertMetricType type : removed.keySet()) {
+            alertPipelines.updateAlertConfig(new AlertConfigurationBuilder()
+                    .setType(type)
+                    .setEnabled(false)
+                    .createAlertConfiguration());
+        }
+    }
+
     /**
      * Determine if a manual alert has been requested
      */
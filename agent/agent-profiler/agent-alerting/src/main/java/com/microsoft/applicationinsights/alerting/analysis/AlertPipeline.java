@@ -13,18 +13,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Contains a pipeline that receives telemetry, feeds it into the analysis pipeline (starting at the rolling average)
+ * Contains a pipeline that receives telemetry, feeds it into the analysis pipeline (starting at the rolling average),
+ * aggregates the window as configured and checks the result against the alert trigger
  */
 public class AlertPipeline implements AlertPipelineMXBean {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AlertPipeline.class);
     private static final String JMX_KEY = "com.microsoft:type=AI-alert,name=";
 
-    private final RollingAverage rollingAverage;
     private final Consumer<AlertBreach> alertObserver;
 
-    private AlertConfiguration alertConfiguration;
-    private AlertPipelineTrigger alertTrigger;
+    private volatile RollingAverage rollingAverage;
+    private volatile AlertConfiguration alertConfiguration;
+    private volatile AlertPipelineTrigger alertTrigger;
 
     public AlertPipeline(RollingAverage rollingAverage, Consumer<AlertBreach> alertObserver,
                          AlertConfiguration alertConfiguration) {
@@ -37,10 +38,21 @@ public class AlertPipeline implements AlertPipelineMXBean {
         AlertPipeline trigger = new AlertPipeline(rollingAverage, alertObserver, alertConfiguration);
         trigger.registerMBean();
 
-        trigger.setAlertTrigger(rollingAverage, alertConfiguration, alertObserver);
+        trigger.setAlertTrigger(alertConfiguration, alertObserver);
         return trigger;
     }
 
+    public static AlertPipeline create(AlertConfiguration alertConfiguration, Consumer<AlertBreach> alertObserver) {
+        return create(createRollingAverage(alertConfiguration), alertConfiguration, alertObserver);
+    }
+
+    private static RollingAverage createRollingAverage(AlertConfiguration alertConfiguration) {
+        if (alertConfiguration.getWindowLength() > 0) {
+            return new RollingAverage(alertConfiguration.getWindowLength(), TimeSource.DEFAULT);
+        }
+        return new RollingAverage();
+    }
+
     private void registerMBean() {
         try {
             ObjectName objectName = new ObjectName(JMX_KEY + alertConfiguration.getType().name());
@@ -61,9 +73,8 @@ public class AlertPipeline implements AlertPipelineMXBean {
         }
     }
 
-    private void setAlertTrigger(RollingAverage rollingAverage, AlertConfiguration newAlertConfig, Consumer<AlertBreach> alertObserver) {
+    private void setAlertTrigger(AlertConfiguration newAlertConfig, Consumer<AlertBreach> alertObserver) {
         this.alertTrigger = new AlertPipelineTrigger(newAlertConfig, alertObserver);
-        rollingAverage.setConsumer(alertTrigger);
     }
 
     public OptionalDouble calculateAverage() {
@@ -71,12 +82,21 @@ public class AlertPipeline implements AlertPipelineMXBean {
     }
 
     public void updateConfig(AlertConfiguration newAlertConfig) {
+        if (newAlertConfig.getWindowLength() != alertConfiguration.getWindowLength()) {
+            rollingAverage = createRollingAverage(newAlertConfig);
+        }
         this.alertConfiguration = newAlertConfig;
-        setAlertTrigger(rollingAverage, newAlertConfig, alertObserver);
+        setAlertTrigger(newAlertConfig, alertObserver);
     }
 
     public void track(TelemetryDataPoint telemetryDataPoint) {
-        rollingAverage.track(telemetryDataPoint);
+        track(telemetryDataPoint.getTimeEpochMillis(), telemetryDataPoint.getValue());
+    }
+
+    public void track(long timeEpochMillis, double value) {
+        RollingAverage rollingAverage = this.rollingAverage;
+        rollingAverage.add(timeEpochMillis, value);
+        alertTrigger.accept(rollingAverage.aggregate(alertConfiguration.getAggregation()));
     }
 
     @Override public long getCoolDown() {
@@ -99,6 +119,27 @@ public class AlertPipeline implements AlertPipelineMXBean {
         return calculateAverage().orElse(0.0d);
     }
 
+    @Override public double getCurrentMin() {
+        return rollingAverage.getMin().orElse(0.0d);
+    }
+
+    @Override public double getCurrentMax() {
+        return rollingAverage.getMax().orElse(0.0d);
+    }
+
+    @Override public String getAggregation() {
+        return alertConfiguration.getAggregation().name();
+    }
+
+    @Override public String getCondition() {
+        return alertConfiguration.getCondition().name();
+    }
+
+    @Override public double getCurrentValue() {
+        double value = rollingAverage.aggregate(alertConfiguration.getAggregation());
+        return Double.isNaN(value) ? 0.0d : value;
+    }
+
     @Override public boolean getEnabled() {
         return alertConfiguration.isEnabled();
     }
@@ -13,6 +13,16 @@ public interface AlertPipelineMXBean {
 
     double getCurrentAverage();
 
+    double getCurrentMin();
+
+    double getCurrentMax();
+
+    String getAggregation();
+
+    String getCondition();
+
+    double getCurrentValue();
+
     boolean getEnabled();
 
     boolean isOffCooldown();
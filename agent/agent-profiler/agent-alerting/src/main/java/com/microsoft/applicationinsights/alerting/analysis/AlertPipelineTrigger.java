@@ -20,23 +20,28 @@
  */
 package com.microsoft.applicationinsights.alerting.analysis;
 
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 import com.microsoft.applicationinsights.alerting.alert.AlertBreach;
+import com.microsoft.applicationinsights.alerting.alert.AlertCondition;
 import com.microsoft.applicationinsights.alerting.config.AlertingConfiguration.AlertConfiguration;
 
 /**
  * Observes a stream of data, and calls a downstream alert action if
  * the following conditions are met:
- * - data moves above given threshold
+ * - data moves above (or below, depending on the condition of the alert) given threshold
  * - alert is not in a cooldown period
  * - alert is enabled
  */
-public class AlertPipelineTrigger implements Consumer<Double> {
+public class AlertPipelineTrigger implements DoubleConsumer {
     private final AlertConfiguration alertConfig;
     private final Consumer<AlertBreach> action;
-    private ZonedDateTime lastAlertTime;
+    // 0 until the first alert
+    private long lastAlertTimeMillis;
 
     public AlertPipelineTrigger(AlertConfiguration alertConfiguration, Consumer<AlertBreach> action) {
         this.alertConfig = alertConfiguration;
@@ -44,21 +49,32 @@ public class AlertPipelineTrigger implements Consumer<Double> {
     }
 
     @Override
-    public void accept(Double telemetry) {
-        if (alertConfig.isEnabled() && telemetry > alertConfig.getThreshold()) {
+    public void accept(double telemetry) {
+        if (alertConfig.isEnabled() && isBreach(telemetry)) {
             if (isOffCooldown()) {
-                lastAlertTime = ZonedDateTime.now();
+                lastAlertTimeMillis = System.currentTimeMillis();
                 action.accept(new AlertBreach(alertConfig.getType(), telemetry, alertConfig));
             }
         }
     }
 
+    // NaN, i.e. no data, never breaches
+    private boolean isBreach(double telemetry) {
+        if (alertConfig.getCondition() == AlertCondition.BELOW) {
+            return telemetry < alertConfig.getThreshold();
+        }
+        return telemetry > alertConfig.getThreshold();
+    }
+
     public boolean isOffCooldown() {
-        ZonedDateTime coolDownCutOff = ZonedDateTime.now().minusSeconds(alertConfig.getCooldown());
-        return lastAlertTime == null || lastAlertTime.isBefore(coolDownCutOff);
+        return lastAlertTimeMillis == 0
+                || lastAlertTimeMillis < System.currentTimeMillis() - alertConfig.getCooldown() * 1000;
     }
 
     public ZonedDateTime getLastAlertTime() {
-        return lastAlertTime;
+        if (lastAlertTimeMillis == 0) {
+            return null;
+        }
+        return Instant.ofEpochMilli(lastAlertTimeMillis).atZone(ZoneId.systemDefault());
     }
 }
@@ -20,7 +20,7 @@
  */
 package com.microsoft.applicationinsights.alerting.analysis;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.OptionalDouble;
 import java.util.function.Consumer;
@@ -39,7 +39,7 @@ public class AlertPipelines {
 
     // List of alert analysis pipelines for each metric type, entrypoint
     // for the pipeline is a rolling average
-    private final Map<AlertMetricType, AlertPipeline> alertPipelines = new HashMap<>();
+    private final Map<AlertMetricType, AlertPipeline> alertPipelines = new EnumMap<>(AlertMetricType.class);
 
     //Handler to notify when a breach happens
     private final Consumer<AlertBreach> alertHandler;
@@ -60,7 +60,7 @@ public class AlertPipelines {
     public void updateAlertConfig(AlertConfiguration newAlertConfig) {
         AlertPipeline pipeline = alertPipelines.get(newAlertConfig.getType());
         if (pipeline == null) {
-            pipeline = AlertPipeline.create(new RollingAverage(), newAlertConfig, this::dispatchAlert);
+            pipeline = AlertPipeline.create(newAlertConfig, this::dispatchAlert);
             alertPipelines.put(newAlertConfig.getType(), pipeline);
         } else {
             pipeline.updateConfig(newAlertConfig);
@@ -98,9 +98,16 @@ public class AlertPipelines {
      * Route telemetry to the appropriate pipeline
      */
     public void process(TelemetryDataPoint telemetryDataPoint) {
-        AlertPipeline pipeline = alertPipelines.get(telemetryDataPoint.getType());
+        process(telemetryDataPoint.getType(), telemetryDataPoint.getTimeEpochMillis(), telemetryDataPoint.getValue());
+    }
+
+    /**
+     * Route a sample to the appropriate pipeline
+     */
+    public void process(AlertMetricType type, long timeEpochMillis, double value) {
+        AlertPipeline pipeline = alertPipelines.get(type);
         if (pipeline != null) {
-            pipeline.track(telemetryDataPoint);
+            pipeline.track(timeEpochMillis, value);
         }
     }
 }
@@ -20,12 +20,11 @@
  */
 package com.microsoft.applicationinsights.alerting.analysis;
 
-import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.OptionalDouble;
 import java.util.function.Consumer;
 
+import com.microsoft.applicationinsights.alerting.alert.WindowAggregation;
+
 /**
  * Applies a time window to data and calculates a mean of the data during that window
  */
@@ -33,18 +32,24 @@ public class RollingAverage {
 
     private final long windowLengthInSec;
     private final TimeSource timeSource;
-    private final List<TelemetryDataPoint> telemetryDataPoints = new ArrayList<>();
+    private final RollingWindow window;
     private Consumer<Double> consumer;
     private static final int DEFAULT_ROLLING_AVERAGE_WINDOW_IN_SEC = Integer.parseInt(System.getProperty("applicationinsights.preview.profiler.rolling-average-window-in-sec", "120"));
+    // the oldest samples are dropped beyond this, even if they are still in the time window
+    private static final int DEFAULT_MAX_SAMPLES = Integer.parseInt(System.getProperty("applicationinsights.preview.profiler.rolling-average-max-samples", "1024"));
 
     public RollingAverage() {
-        windowLengthInSec = DEFAULT_ROLLING_AVERAGE_WINDOW_IN_SEC;
-        timeSource = TimeSource.DEFAULT;
+        this(DEFAULT_ROLLING_AVERAGE_WINDOW_IN_SEC, TimeSource.DEFAULT);
     }
 
     public RollingAverage(long windowLengthInSec, TimeSource timeSource) {
+        this(windowLengthInSec, timeSource, DEFAULT_MAX_SAMPLES);
+    }
+
+    public RollingAverage(long windowLengthInSec, TimeSource timeSource, int maxSamples) {
         this.windowLengthInSec = windowLengthInSec;
         this.timeSource = timeSource;
+        this.window = new RollingWindow(maxSamples);
     }
 
     public long getWindowLengthInSec() {
@@ -57,32 +62,89 @@ public class RollingAverage {
     }
 
     public double track(TelemetryDataPoint telemetryDataPoint) {
-        ZonedDateTime now = timeSource.getNow();
-        telemetryDataPoints.add(telemetryDataPoint);
+        double average;
+        synchronized (window) {
+            addToWindow(telemetryDataPoint.getTimeEpochMillis(), telemetryDataPoint.getValue());
+            average = window.getAverage();
+        }
+        consumer.accept(average);
+        return average;
+    }
+
+    /**
+     * Adds the data point to the window, without notifying the consumer
+     */
+    public void add(TelemetryDataPoint telemetryDataPoint) {
+        add(telemetryDataPoint.getTimeEpochMillis(), telemetryDataPoint.getValue());
+    }
+
+    /**
+     * Adds the sample to the window, without notifying the consumer
+     */
+    public void add(long timeEpochMillis, double value) {
+        synchronized (window) {
+            addToWindow(timeEpochMillis, value);
+        }
+    }
 
-        removeOldValues(now);
+    private void addToWindow(long timeEpochMillis, double value) {
+        long now = timeSource.getNowEpochMillis();
+        window.add(timeEpochMillis, value);
 
-        OptionalDouble average = calculateAverage();
-        if (average.isPresent()) {
-            consumer.accept(average.getAsDouble());
-            return average.getAsDouble();
-        } else {
-            return 0.0d;
+        //Ensure that we keep at least 2 values in our buffer so that we are not reacting to a single value
+        window.removeOlderThan(now - windowLengthInSec * 1000, 2);
+    }
+
+    /**
+     * @return the aggregation of the data in the window, or NaN if the window is empty
+     */
+    public double aggregate(WindowAggregation aggregation) {
+        synchronized (window) {
+            if (window.size() == 0) {
+                return Double.NaN;
+            }
+            switch (aggregation) {
+                case MIN:
+                    return window.getMin();
+                case MAX:
+                    return window.getMax();
+                case P50:
+                    return window.getPercentile(50);
+                case P95:
+                    return window.getPercentile(95);
+                case P99:
+                    return window.getPercentile(99);
+                case AVERAGE:
+                default:
+                    return window.getAverage();
+            }
         }
     }
 
     public OptionalDouble calculateAverage() {
-        return telemetryDataPoints.stream()
-                .mapToDouble(TelemetryDataPoint::getValue)
-                .average();
+        synchronized (window) {
+            return window.size() == 0 ? OptionalDouble.empty() : OptionalDouble.of(window.getAverage());
+        }
+    }
+
+    public OptionalDouble getMin() {
+        synchronized (window) {
+            return window.size() == 0 ? OptionalDouble.empty() : OptionalDouble.of(window.getMin());
+        }
     }
 
-    private void removeOldValues(ZonedDateTime now) {
-        ZonedDateTime cutOff = now.minusSeconds(windowLengthInSec);
+    public OptionalDouble getMax() {
+        synchronized (window) {
+            return window.size() == 0 ? OptionalDouble.empty() : OptionalDouble.of(window.getMax());
+        }
+    }
 
-        //Ensure that we keep at least 2 values in our buffer so that we are not reacting to a single value
-        while (telemetryDataPoints.size() > 2 && telemetryDataPoints.get(0).getTime().isBefore(cutOff)) {
-            telemetryDataPoints.remove(0);
+    /**
+     * @param percentile between 0 and 100
+     */
+    public OptionalDouble getPercentile(double percentile) {
+        synchronized (window) {
+            return window.size() == 0 ? OptionalDouble.empty() : OptionalDouble.of(window.getPercentile(percentile));
         }
     }
 }
@@ -0,0 +1,152 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package com.microsoft.applicationinsights.alerting.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Fixed capacity ring buffer of (time, value) samples, which maintains the sum, the min and the max of the samples
+ * it holds as they are added and removed, so that all of them are read in constant time.
+ *
+ * Once full, adding a sample removes the oldest one. Not thread safe.
+ */
+class RollingWindow {
+
+    private final int capacity;
+    private final long[] times;
+    private final double[] values;
+    /// Reused to sort the samples when calculating a percentile
+    private final double[] sorted;
+
+    // the sequence numbers of the oldest sample and of the next sample, the samples are at sequence % capacity
+    private long head;
+    private long tail;
+
+    private double sum;
+    /// Counts the removals, to recalculate the sum from time to time so that rounding errors don't add up
+    private int removalsSinceSum;
+
+    // the sequence numbers of the samples which can still become the min (resp. max) of the window,
+    // their values are increasing (resp. decreasing) from the oldest one
+    private final long[] minCandidates;
+    private long minHead;
+    private long minTail;
+    private final long[] maxCandidates;
+    private long maxHead;
+    private long maxTail;
+
+    RollingWindow(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be a positive number");
+        }
+        this.capacity = capacity;
+        times = new long[capacity];
+        values = new double[capacity];
+        sorted = new double[capacity];
+        minCandidates = new long[capacity];
+        maxCandidates = new long[capacity];
+    }
+
+    void add(long epochMillis, double value) {
+        if (size() == capacity) {
+            removeOldest();
+        }
+        int index = index(tail);
+        times[index] = epochMillis;
+        values[index] = value;
+        sum += value;
+
+        while (minTail > minHead && values[index(minCandidates[index(minTail - 1)])] >= value) {
+            minTail--;
+        }
+        minCandidates[index(minTail++)] = tail;
+        while (maxTail > maxHead && values[index(maxCandidates[index(maxTail - 1)])] <= value) {
+            maxTail--;
+        }
+        maxCandidates[index(maxTail++)] = tail;
+
+        tail++;
+    }
+
+    /**
+     * Removes the samples older than the cut off, but keeps at least {@code minSize} samples.
+     */
+    void removeOlderThan(long cutOffEpochMillis, int minSize) {
+        while (size() > minSize && times[index(head)] < cutOffEpochMillis) {
+            removeOldest();
+        }
+    }
+
+    int size() {
+        return (int) (tail - head);
+    }
+
+    double getAverage() {
+        return sum / size();
+    }
+
+    double getMin() {
+        return values[index(minCandidates[index(minHead)])];
+    }
+
+    double getMax() {
+        return values[index(maxCandidates[index(maxHead)])];
+    }
+
+    /**
+     * Unlike the other readings this sorts a copy of the samples, so it is linear in the size of the window
+     * (but does not allocate).
+     *
+     * @param percentile between 0 and 100
+     */
+    double getPercentile(double percentile) {
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            sorted[i] = values[index(head + i)];
+        }
+        Arrays.sort(sorted, 0, size);
+        int rank = (int) Math.ceil(percentile / 100 * size) - 1;
+        return sorted[Math.max(0, Math.min(rank, size - 1))];
+    }
+
+    private void removeOldest() {
+        sum -= values[index(head)];
+        if (minCandidates[index(minHead)] == head) {
+            minHead++;
+        }
+        if (maxCandidates[index(maxHead)] == head) {
+            maxHead++;
+        }
+        head++;
+
+        if (++removalsSinceSum >= capacity) {
+            removalsSinceSum = 0;
+            sum = 0;
+            for (long i = head; i < tail; i++) {
+                sum += values[index(i)];
+            }
+        }
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+}
@@ -20,7 +20,6 @@
  */
 package com.microsoft.applicationinsights.alerting.analysis;
 
-import java.time.ZonedDateTime;
 import java.util.Objects;
 
 import com.microsoft.applicationinsights.alerting.alert.AlertMetricType;
@@ -30,12 +29,12 @@ import com.microsoft.applicationinsights.alerting.alert.AlertMetricType;
  */
 public class TelemetryDataPoint implements Comparable<TelemetryDataPoint> {
     private final AlertMetricType type;
-    private final ZonedDateTime time;
+    private final long timeEpochMillis;
     private final double value;
 
-    public TelemetryDataPoint(AlertMetricType type, ZonedDateTime time, double value) {
+    public TelemetryDataPoint(AlertMetricType type, long timeEpochMillis, double value) {
         this.type = type;
-        this.time = time;
+        this.timeEpochMillis = timeEpochMillis;
         this.value = value;
     }
 
@@ -43,8 +42,8 @@ public class TelemetryDataPoint implements Comparable<TelemetryDataPoint> {
         return value;
     }
 
-    public ZonedDateTime getTime() {
-        return time;
+    public long getTimeEpochMillis() {
+        return timeEpochMillis;
     }
 
     /**
@@ -52,8 +51,8 @@ public class TelemetryDataPoint implements Comparable<TelemetryDataPoint> {
      */
     @Override
     public int compareTo(TelemetryDataPoint telemetryDataPoint) {
-        if (!time.equals(telemetryDataPoint.time)) {
-            return time.compareTo(telemetryDataPoint.time);
+        if (timeEpochMillis != telemetryDataPoint.timeEpochMillis) {
+            return Long.compare(timeEpochMillis, telemetryDataPoint.timeEpochMillis);
         } else if (value != telemetryDataPoint.getValue()) {
             return Double.compare(value, telemetryDataPoint.value);
         } else {
@@ -69,10 +68,10 @@ public class TelemetryDataPoint implements Comparable<TelemetryDataPoint> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         TelemetryDataPoint telemetryDataPoint = (TelemetryDataPoint) o;
-        return Double.compare(telemetryDataPoint.value, value) == 0 && type == telemetryDataPoint.type && Objects.equals(time, telemetryDataPoint.time);
+        return Double.compare(telemetryDataPoint.value, value) == 0 && type == telemetryDataPoint.type && timeEpochMillis == telemetryDataPoint.timeEpochMillis;
     }
 
     @Override public int hashCode() {
-        return Objects.hash(type, time, value);
+        return Objects.hash(type, timeEpochMillis, value);
     }
 }
\ No newline at end of file
@@ -28,9 +28,17 @@ import java.time.ZonedDateTime;
 public abstract class TimeSource {
     public abstract ZonedDateTime getNow();
 
+    public long getNowEpochMillis() {
+        return getNow().toInstant().toEpochMilli();
+    }
+
     public static final TimeSource DEFAULT = new TimeSource() {
         @Override public ZonedDateTime getNow() {
             return ZonedDateTime.now();
         }
+
+        @Override public long getNowEpochMillis() {
+            return System.currentTimeMillis();
+        }
     };
 }
@@ -22,12 +22,20 @@ package com.microsoft.applicationinsights.alerting;
 
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import com.microsoft.applicationinsights.alerting.alert.AlertBreach;
+import com.microsoft.applicationinsights.alerting.alert.AlertCondition;
 import com.microsoft.applicationinsights.alerting.alert.AlertMetricType;
+import com.microsoft.applicationinsights.alerting.alert.WindowAggregation;
 import com.microsoft.applicationinsights.alerting.config.AlertingConfiguration;
 import com.microsoft.applicationinsights.alerting.config.AlertingConfiguration.AlertConfiguration;
 import com.microsoft.applicationinsights.alerting.config.CollectionPlanConfiguration;
@@ -69,6 +77,113 @@ public class AlertingSubsystemTest {
         Assert.assertEquals(90.0, called.get().getAlertValue(), 0.01);
     }
 
+    @Test
+    public void metricAlertUsesConfiguredAggregation() {
+        AtomicReference<AlertBreach> called = new AtomicReference<>();
+        AlertingSubsystem service = getMetricAlertMonitor(called::set, Collections.singletonList(
+                new AlertConfiguration(AlertMetricType.REQUEST_LATENCY, true, 200, 60, 14400, WindowAggregation.MAX, AlertCondition.ABOVE, 0)));
+
+        service.track(AlertMetricType.REQUEST_LATENCY, 10.0);
+        service.track(AlertMetricType.REQUEST_LATENCY, 10.0);
+        service.awaitQueueFlush();
+        Assert.assertNull(called.get());
+
+        // the average of the window is still below the threshold
+        service.track(AlertMetricType.REQUEST_LATENCY, 500.0);
+        service.awaitQueueFlush();
+
+        Assert.assertEquals(AlertMetricType.REQUEST_LATENCY, called.get().getType());
+        Assert.assertEquals(500.0, called.get().getAlertValue(), 0.01);
+        Assert.assertEquals(60, called.get().getAlertConfiguration().getProfileDuration());
+    }
+
+    @Test
+    public void metricAlertCanTriggerBelowThreshold() {
+        AtomicReference<AlertBreach> called = new AtomicReference<>();
+        AlertingSubsystem service = getMetricAlertMonitor(called::set, Collections.singletonList(
+                new AlertConfiguration(AlertMetricType.THREAD_COUNT, true, 5, 60, 14400, WindowAggregation.AVERAGE, AlertCondition.BELOW, 0)));
+
+        service.track(AlertMetricType.THREAD_COUNT, 20);
+        service.track(AlertMetricType.THREAD_COUNT, 20);
+        service.awaitQueueFlush();
+        Assert.assertNull(called.get());
+
+        for (int i = 0; i < 8; i++) {
+            service.track(AlertMetricType.THREAD_COUNT, 1);
+        }
+        service.awaitQueueFlush();
+
+        Assert.assertEquals(AlertMetricType.THREAD_COUNT, called.get().getType());
+        Assert.assertEquals(4.8, called.get().getAlertValue(), 0.01);
+    }
+
+    @Test
+    public void removedMetricAlertIsDisabled() {
+        AtomicReference<AlertBreach> called = new AtomicReference<>();
+        AlertingSubsystem service = getMetricAlertMonitor(called::set, Arrays.asList(
+                new AlertConfiguration(AlertMetricType.REQUEST_FAILURE_RATE, true, 10, 60, 14400),
+                new AlertConfiguration(AlertMetricType.GC_PAUSE_RATIO, true, 10, 60, 14400)));
+
+        service.updateConfiguration(getConfiguration(Collections.singletonList(
+                new AlertConfiguration(AlertMetricType.GC_PAUSE_RATIO, true, 10, 60, 14400))));
+
+        service.track(AlertMetricType.REQUEST_FAILURE_RATE, 50.0);
+        service.track(AlertMetricType.REQUEST_FAILURE_RATE, 50.0);
+        service.awaitQueueFlush();
+        Assert.assertNull(called.get());
+
+        service.track(AlertMetricType.GC_PAUSE_RATIO, 50.0);
+        service.awaitQueueFlush();
+        Assert.assertEquals(AlertMetricType.GC_PAUSE_RATIO, called.get().getType());
+    }
+
+    @Test
+    public void oldestSamplesAreDroppedWhenPipelinesDoNotKeepUp() throws InterruptedException {
+        AtomicReference<AlertBreach> called = new AtomicReference<>();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // the pipelines only start processing once released
+        executor.submit(() -> {
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        });
+        AlertingSubsystem service = AlertingSubsystem.create(called::set, executor, 4);
+        service.updateConfiguration(getConfiguration(Collections.singletonList(
+                new AlertConfiguration(AlertMetricType.THREAD_COUNT, true, 50, 60, 14400, WindowAggregation.MIN, AlertCondition.ABOVE, 0))));
+
+        for (int i = 0; i < 6; i++) {
+            service.track(AlertMetricType.THREAD_COUNT, 10);
+        }
+        for (int i = 0; i < 4; i++) {
+            service.track(AlertMetricType.THREAD_COUNT, 100);
+        }
+        Assert.assertEquals(6, service.getDroppedCount());
+
+        release.countDown();
+        service.awaitQueueFlush();
+
+        // only the 4 latest samples were processed
+        Assert.assertEquals(AlertMetricType.THREAD_COUNT, called.get().getType());
+        Assert.assertEquals(100.0, called.get().getAlertValue(), 0.01);
+        executor.shutdownNow();
+    }
+
+    private AlertingSubsystem getMetricAlertMonitor(Consumer<AlertBreach> consumer, List<AlertConfiguration> metricAlerts) {
+        AlertingSubsystem monitor = AlertingSubsystem.create(consumer, Executors.newSingleThreadExecutor());
+        monitor.updateConfiguration(getConfiguration(metricAlerts));
+        return monitor;
+    }
+
+    private static AlertingConfiguration getConfiguration(List<AlertConfiguration> metricAlerts) {
+        return new AlertingConfiguration(
+                new AlertConfiguration(AlertMetricType.CPU, false, 80, 30, 14400),
+                new AlertConfiguration(AlertMetricType.MEMORY, false, 20, 120, 14400),
+                new DefaultConfiguration(false, 5, 120),
+                new CollectionPlanConfiguration(false, EngineMode.immediate, ZonedDateTime.now(), 120, "a-settings-moniker"),
+                metricAlerts
+        );
+    }
+
     @Test
     public void manualAlertWorks() {
         AtomicReference<AlertBreach> called = new AtomicReference<>();
@@ -88,7 +88,64 @@ public class RollingAverageTest {
         Assert.assertEquals(0.1d, called.get(), 0.01);
     }
 
+    @Test
+    public void tracksMinAndMaxOfWindow() {
+        AtomicLong offset = new AtomicLong(0);
+        TimeSource timeSource = new TimeSource() {
+            @Override
+            public ZonedDateTime getNow() {
+                return ZonedDateTime.now().plusSeconds(offset.get());
+            }
+        };
+
+        RollingAverage rollingAverage = new RollingAverage(120, timeSource)
+                .setConsumer(value -> {});
+
+        Assert.assertFalse(rollingAverage.getMin().isPresent());
+        rollingAverage.track(createDataPoint(0.9));
+        rollingAverage.track(createDataPoint(0.1));
+        rollingAverage.track(createDataPoint(0.5));
+        Assert.assertEquals(0.1d, rollingAverage.getMin().getAsDouble(), 0);
+        Assert.assertEquals(0.9d, rollingAverage.getMax().getAsDouble(), 0);
+
+        offset.set(150);
+        rollingAverage.track(createDataPoint(0.3));
+        rollingAverage.track(createDataPoint(0.4));
+
+        Assert.assertEquals(0.3d, rollingAverage.getMin().getAsDouble(), 0);
+        Assert.assertEquals(0.4d, rollingAverage.getMax().getAsDouble(), 0);
+    }
+
+    @Test
+    public void dropsOldestSamplesBeyondMaxSamples() {
+        RollingAverage rollingAverage = new RollingAverage(120, TimeSource.DEFAULT, 4)
+                .setConsumer(value -> {});
+
+        for (int i = 1; i <= 10; i++) {
+            rollingAverage.track(createDataPoint(i));
+        }
+
+        // 7, 8, 9 and 10
+        Assert.assertEquals(8.5d, rollingAverage.calculateAverage().getAsDouble(), 0.0001);
+        Assert.assertEquals(7d, rollingAverage.getMin().getAsDouble(), 0);
+        Assert.assertEquals(10d, rollingAverage.getMax().getAsDouble(), 0);
+    }
+
+    @Test
+    public void givesPercentileOfWindow() {
+        RollingAverage rollingAverage = new RollingAverage()
+                .setConsumer(value -> {});
+
+        for (int i = 100; i >= 1; i--) {
+            rollingAverage.track(createDataPoint(i));
+        }
+
+        Assert.assertEquals(50d, rollingAverage.getPercentile(50).getAsDouble(), 0);
+        Assert.assertEquals(95d, rollingAverage.getPercentile(95).getAsDouble(), 0);
+        Assert.assertEquals(100d, rollingAverage.getPercentile(100).getAsDouble(), 0);
+    }
+
     private TelemetryDataPoint createDataPoint(double v) {
-        return new TelemetryDataPoint(CPU, TimeSource.DEFAULT.getNow(), v);
+        return new TelemetryDataPoint(CPU, TimeSource.DEFAULT.getNowEpochMillis(), v);
     }
 }
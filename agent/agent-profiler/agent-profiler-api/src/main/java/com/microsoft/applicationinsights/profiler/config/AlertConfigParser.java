@@ -22,7 +22,9 @@ package com.microsoft.applicationinsights.profiler.config;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.microsoft.applicationinsights.alerting.alert.AlertMetricType;
@@ -42,11 +44,17 @@ import com.microsoft.applicationinsights.profiler.ProfilerConfiguration;
 public class AlertConfigParser {
 
     public static AlertingConfiguration parse(String cpuConfig, String memoryConfig, String defaultConfig, String collectionPlan) {
+        return parse(cpuConfig, memoryConfig, defaultConfig, collectionPlan, Collections.emptyList());
+    }
+
+    public static AlertingConfiguration parse(String cpuConfig, String memoryConfig, String defaultConfig, String collectionPlan,
+                                              List<AlertConfiguration> metricAlerts) {
         return new AlertingConfiguration(
                 parseFromCpu(cpuConfig),
                 parseFromMemory(memoryConfig),
                 parseDefaultConfiguration(defaultConfig),
-                parseCollectionPlan(collectionPlan)
+                parseCollectionPlan(collectionPlan),
+                metricAlerts
         );
     }
 
@@ -152,11 +160,19 @@ public class AlertConfigParser {
     }
 
     public static AlertingConfiguration toAlertingConfig(ProfilerConfiguration profilerConfiguration) {
+        return toAlertingConfig(profilerConfiguration, Collections.emptyList());
+    }
+
+    /**
+     * @param metricAlerts the alerts configured locally, on the metrics the service profiler endpoint does not configure
+     */
+    public static AlertingConfiguration toAlertingConfig(ProfilerConfiguration profilerConfiguration, List<AlertConfiguration> metricAlerts) {
         return AlertConfigParser.parse(
                 profilerConfiguration.getCpuTriggerConfiguration(),
                 profilerConfiguration.getMemoryTriggerConfiguration(),
                 profilerConfiguration.getDefaultConfiguration(),
-                profilerConfiguration.getCollectionPlan()
+                profilerConfiguration.getCollectionPlan(),
+                metricAlerts
         );
     }
 }
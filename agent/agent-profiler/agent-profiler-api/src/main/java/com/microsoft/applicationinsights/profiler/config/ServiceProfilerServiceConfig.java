@@ -21,10 +21,13 @@
 package com.microsoft.applicationinsights.profiler.config;
 
 
+import com.microsoft.applicationinsights.alerting.config.AlertingConfiguration.AlertConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Configuration of the service profiler subsystem
@@ -56,6 +59,19 @@ public class ServiceProfilerServiceConfig {
     // Either an inbuilt profile as defined in ProfileTypes, or a path to a custom JFC file to use for cpu profiling
     private String cpuTriggeredSettings;
 
+    // Alerts on the metrics which are not configured by the service profiler endpoint (e.g. request latency)
+    private final List<AlertConfiguration> metricAlerts;
+
+    // Keep an always-on recording, so that the profile of an alert breach also covers the time before it
+    private final boolean continuousRecordingEnabled;
+
+    // duration of the profile of an alert breach before (resp. after) the breach, when the recording is continuous
+    private final int continuousRecordingSecondsBeforeBreach;
+    private final int continuousRecordingSecondsAfterBreach;
+
+    // bound of the size of the continuous recording
+    private final int continuousRecordingMaxSizeMb;
+
     public ServiceProfilerServiceConfig(
             int configPollPeriod,
             int periodicRecordingDuration,
@@ -64,6 +80,24 @@ public class ServiceProfilerServiceConfig {
             boolean enabled,
             String memoryTriggeredSettings,
             String cpuTriggeredSettings
+    ) {
+        this(configPollPeriod, periodicRecordingDuration, periodicRecordingInterval, serviceProfilerFrontEndPoint, enabled,
+                memoryTriggeredSettings, cpuTriggeredSettings, Collections.emptyList(), false, 0, 0, 0);
+    }
+
+    public ServiceProfilerServiceConfig(
+            int configPollPeriod,
+            int periodicRecordingDuration,
+            int periodicRecordingInterval,
+            URI serviceProfilerFrontEndPoint,
+            boolean enabled,
+            String memoryTriggeredSettings,
+            String cpuTriggeredSettings,
+            List<AlertConfiguration> metricAlerts,
+            boolean continuousRecordingEnabled,
+            int continuousRecordingSecondsBeforeBreach,
+            int continuousRecordingSecondsAfterBreach,
+            int continuousRecordingMaxSizeMb
     ) {
         this.configPollPeriod = configPollPeriod;
         this.periodicRecordingDuration = periodicRecordingDuration;
@@ -72,6 +106,11 @@ public class ServiceProfilerServiceConfig {
         this.enabled = enabled;
         this.memoryTriggeredSettings = memoryTriggeredSettings;
         this.cpuTriggeredSettings = cpuTriggeredSettings;
+        this.metricAlerts = metricAlerts;
+        this.continuousRecordingEnabled = continuousRecordingEnabled;
+        this.continuousRecordingSecondsBeforeBreach = continuousRecordingSecondsBeforeBreach;
+        this.continuousRecordingSecondsAfterBreach = continuousRecordingSecondsAfterBreach;
+        this.continuousRecordingMaxSizeMb = continuousRecordingMaxSizeMb;
     }
 
     public int getConfigPollPeriod() {
@@ -101,4 +140,24 @@ public class ServiceProfilerServiceConfig {
     public String cpuTriggeredSettings() {
         return cpuTriggeredSettings;
     }
+
+    public List<AlertConfiguration> metricAlerts() {
+        return metricAlerts;
+    }
+
+    public boolean continuousRecordingEnabled() {
+        return continuousRecordingEnabled;
+    }
+
+    public int getContinuousRecordingSecondsBeforeBreach() {
+        return continuousRecordingSecondsBeforeBreach;
+    }
+
+    public int getContinuousRecordingSecondsAfterBreach() {
+        return continuousRecordingSecondsAfterBreach;
+    }
+
+    public int getContinuousRecordingMaxSizeMb() {
+        return continuousRecordingMaxSizeMb;
+    }
 }
@@ -0,0 +1,222 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package com.microsoft.applicationinsights.serviceprofilerapi.profiler;
+
+import com.microsoft.jfr.FlightRecorderConnection;
+import com.microsoft.jfr.JfrStreamingException;
+import com.microsoft.jfr.Recording;
+import com.microsoft.jfr.RecordingConfiguration;
+import com.microsoft.jfr.RecordingOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Always-on JFR recording, with the low overhead settings of JFR and bounded in age and size, from which the data
+ * around an alert breach is extracted. The profile of a breach therefore shows what led to it, and not only what
+ * followed it.
+ */
+public class ContinuousRecording implements ContinuousRecordingMXBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContinuousRecording.class);
+
+    private static final String JMX_KEY = "com.microsoft:type=AI-alert,name=CONTINUOUS_RECORDING";
+
+    private static final long OVERHEAD_MEASUREMENT_PERIOD_IN_SEC = 60;
+
+    // JFR drops whole chunks of the recording, this leaves some room for the chunk which contains the start of a snapshot
+    private static final long MAX_AGE_MARGIN_IN_SEC = 60;
+
+    private final Recording recording;
+    private final Duration beforeBreach;
+    private final Duration afterBreach;
+
+    private final ThreadMXBean threadMXBean;
+    private final RuntimeMXBean runtimeMXBean;
+    private final int numberOfCpus;
+
+    private long prevUpTime;
+    private long prevJfrCpuTime;
+    private volatile double cpuOverhead;
+
+    private final AtomicLong snapshotCount = new AtomicLong();
+
+    ContinuousRecording(Recording recording, Duration beforeBreach, Duration afterBreach) {
+        this.recording = recording;
+        this.beforeBreach = beforeBreach;
+        this.afterBreach = afterBreach;
+        threadMXBean = ManagementFactory.getThreadMXBean();
+        runtimeMXBean = ManagementFactory.getRuntimeMXBean();
+        numberOfCpus = ManagementFactory.getOperatingSystemMXBean().getAvailableProcessors();
+    }
+
+    /**
+     * Start the recording, and the measurement of its overhead
+     */
+    public static ContinuousRecording start(
+            FlightRecorderConnection flightRecorderConnection,
+            Duration beforeBreach,
+            Duration afterBreach,
+            long maxSizeInBytes,
+            ScheduledExecutorService scheduledExecutorService) throws IOException, JfrStreamingException {
+
+        RecordingOptions recordingOptions = new RecordingOptions.Builder()
+                .name("ApplicationInsightsContinuousRecording")
+                .disk("true")
+                .maxAge(beforeBreach.plus(afterBreach).getSeconds() + MAX_AGE_MARGIN_IN_SEC + " s")
+                .maxSize(String.valueOf(maxSizeInBytes))
+                .build();
+
+        Recording recording = flightRecorderConnection.newRecording(recordingOptions, RecordingConfiguration.DEFAULT_CONFIGURATION);
+        recording.start();
+
+        ContinuousRecording continuousRecording = new ContinuousRecording(recording, beforeBreach, afterBreach);
+        continuousRecording.registerMBean();
+
+        scheduledExecutorService.scheduleAtFixedRate(continuousRecording::measureOverhead,
+                0, OVERHEAD_MEASUREMENT_PERIOD_IN_SEC, TimeUnit.SECONDS);
+        return continuousRecording;
+    }
+
+    private void registerMBean() {
+        try {
+            ObjectName objectName = new ObjectName(JMX_KEY);
+
+            try {
+                MBeanInfo existing = ManagementFactory.getPlatformMBeanServer().getMBeanInfo(objectName);
+                if (existing != null) {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+                }
+            } catch (Exception e) {
+                //Expected if mbean does not exist
+            }
+
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+
+        } catch (Exception e) {
+            LOGGER.error("Failed to register MBEAN", e);
+        }
+    }
+
+    public Duration getBeforeBreach() {
+        return beforeBreach;
+    }
+
+    public Duration getAfterBreach() {
+        return afterBreach;
+    }
+
+    /**
+     * Write the recorded data between the given times to a new file
+     */
+    public File snapshot(Instant start, Instant end) throws IOException {
+        File file = new File("recording_" + start.toEpochMilli() + "-" + end.toEpochMilli() + ".jfr");
+        try {
+            copy(start, end, file);
+        } catch (IOException | JfrStreamingException | UnsupportedOperationException e) {
+            // e.g. the diagnostic command used on older JVMs can't stream a recording, the whole recording is
+            // dumped instead, it is bounded by the max age anyway
+            LOGGER.debug("Failed to stream the recording, dumping all of it", e);
+            try {
+                recording.dump(file.getAbsolutePath());
+            } catch (JfrStreamingException internalError) {
+                throw new IOException(internalError);
+            }
+        }
+        snapshotCount.incrementAndGet();
+        return file;
+    }
+
+    private void copy(Instant start, Instant end, File file) throws IOException, JfrStreamingException {
+        try (InputStream stream = recording.getStream(start, end)) {
+            Files.copy(stream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Measure the CPU used by the JFR threads since the previous measurement. The sampling of the application
+     * threads is done by a native thread of the JVM which can't be measured this way, so this is a lower bound.
+     */
+    void measureOverhead() {
+        try {
+            long upTime = runtimeMXBean.getUptime();
+            long jfrCpuTime = getJfrCpuTime();
+
+            if (prevUpTime > 0L && upTime > prevUpTime) {
+                long elapsedCpu = jfrCpuTime - prevJfrCpuTime;
+                long elapsedTime = upTime - prevUpTime;
+                // nanoseconds of CPU over milliseconds of elapsed time, as a percentage of all the CPUs
+                cpuOverhead = Math.max(0, elapsedCpu / (elapsedTime * 10_000.0 * numberOfCpus));
+            }
+            prevUpTime = upTime;
+            prevJfrCpuTime = jfrCpuTime;
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            // an exception would cancel the following measurements
+            LOGGER.error("Failed to measure the overhead of the continuous recording", t);
+        }
+    }
+
+    private long getJfrCpuTime() {
+        long cpuTime = 0;
+        for (ThreadInfo threadInfo : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds())) {
+            if (threadInfo != null && threadInfo.getThreadName().startsWith("JFR ")) {
+                long threadCpuTime = threadMXBean.getThreadCpuTime(threadInfo.getThreadId());
+                if (threadCpuTime > 0) {
+                    cpuTime += threadCpuTime;
+                }
+            }
+        }
+        return cpuTime;
+    }
+
+    @Override public long getSecondsBeforeBreach() {
+        return beforeBreach.getSeconds();
+    }
+
+    @Override public long getSecondsAfterBreach() {
+        return afterBreach.getSeconds();
+    }
+
+    @Override public double getCpuOverhead() {
+        return cpuOverhead;
+    }
+
+    @Override public long getSnapshotCount() {
+        return snapshotCount.get();
+    }
+}
@@ -55,6 +55,7 @@ import java.util.function.Consumer;
  * Manages connecting JFR interaction:
  * - Instantiates FlightRecorder subsystem
  * - Creates profiles on demand
+ * - Optionally keeps a continuous recording, from which the profiles of alert breaches are extracted
  */
 public class JfrProfiler implements ProfilerConfigurationHandler, Profiler {
     private static final Logger LOGGER = LoggerFactory.getLogger(JfrProfiler.class);
@@ -78,7 +79,16 @@ public class JfrProfiler implements ProfilerConfigurationHandler, Profiler {
     private final RecordingConfiguration memoryRecordingConfiguration;
     private final RecordingConfiguration cpuRecordingConfiguration;
 
+    private final ServiceProfilerServiceConfig configuration;
+
+    // null unless the recording is continuous
+    private ContinuousRecording continuousRecording;
+    // guarded by activeRecordingLock
+    private boolean snapshotInProgress = false;
+
     public JfrProfiler(ServiceProfilerServiceConfig configuration) {
+        this.configuration = configuration;
+
         periodicConfig = new AlertConfiguration(
                 AlertMetricType.PERIODIC,
                 false,
@@ -151,9 +161,27 @@ public class JfrProfiler implements ProfilerConfigurationHandler, Profiler {
             return false;
         }
 
+        if (configuration.continuousRecordingEnabled()) {
+            startContinuousRecording();
+        }
+
         return true;
     }
 
+    private void startContinuousRecording() {
+        try {
+            continuousRecording = ContinuousRecording.start(
+                    flightRecorderConnection,
+                    Duration.ofSeconds(configuration.getContinuousRecordingSecondsBeforeBreach()),
+                    Duration.ofSeconds(configuration.getContinuousRecordingSecondsAfterBreach()),
+                    configuration.getContinuousRecordingMaxSizeMb() * 1024L * 1024L,
+                    scheduledExecutorService);
+            LOGGER.info("Started continuous JFR recording");
+        } catch (Exception e) {
+            LOGGER.error("Failed to start continuous JFR recording, alerts will start a new recording instead", e);
+        }
+    }
+
     /**
      * Apply new configuration settings obtained from Service Profiler
      */
@@ -165,10 +193,62 @@ public class JfrProfiler implements ProfilerConfigurationHandler, Profiler {
     }
 
     protected void profileAndUpload(AlertBreach alertBreach, Duration duration) {
+        // periodic and manual profiles are not about something which already happened
+        if (continuousRecording != null
+                && alertBreach.getType() != AlertMetricType.PERIODIC
+                && alertBreach.getType() != AlertMetricType.MANUAL) {
+            snapshotAndUpload(alertBreach);
+            return;
+        }
         Instant recordingStart = Instant.now();
         executeProfile(alertBreach.getType(), duration, uploadNewRecording(alertBreach, recordingStart));
     }
 
+    /**
+     * Wait for the configured time after the breach, then upload the part of the continuous recording around it
+     */
+    protected void snapshotAndUpload(AlertBreach alertBreach) {
+        synchronized (activeRecordingLock) {
+            if (snapshotInProgress) {
+                LOGGER.warn("Alert received, however a profile is already in progress, ignoring request.");
+                return;
+            }
+            snapshotInProgress = true;
+        }
+
+        Instant snapshotStart = Instant.now().minus(continuousRecording.getBeforeBreach());
+        scheduledExecutorService.schedule(() -> uploadSnapshot(alertBreach, snapshotStart),
+                continuousRecording.getAfterBreach().getSeconds(),
+                TimeUnit.SECONDS);
+    }
+
+    private void uploadSnapshot(AlertBreach alertBreach, Instant snapshotStart) {
+        LOGGER.info("Extracting and uploading recording");
+        File file = null;
+        try {
+            file = continuousRecording.snapshot(snapshotStart, Instant.now());
+
+            // notify handler of a new profile
+            profileHandler.receive(alertBreach, snapshotStart.toEpochMilli(), file);
+
+        } catch (Exception e) {
+            LOGGER.error("Failed to upload recording", e);
+        } catch (Error e) {
+            //rethrow errors
+            LOGGER.error("Failed to upload recording", e);
+            throw e;
+        } finally {
+            // delete uploaded profile
+            if (file != null && file.exists() && !file.delete()) {
+                LOGGER.error("Failed to remove file " + file.getAbsolutePath());
+            }
+
+            synchronized (activeRecordingLock) {
+                snapshotInProgress = false;
+            }
+        }
+    }
+
     private Recording startRecording(AlertMetricType alertType) {
         synchronized (activeRecordingLock) {
             if (activeRecording != null) {
@@ -323,6 +403,16 @@ public class JfrProfiler implements ProfilerConfigurationHandler, Profiler {
         );
     }
 
+    /**
+     * Action to be performed on a breach of any other metric alert, e.g. request latency
+     */
+    public void performMetricProfile(AlertBreach alertBreach) {
+        LOGGER.info("Received {} alert, profiling", alertBreach.getType());
+        profileAndUpload(alertBreach,
+                Duration.ofSeconds(alertBreach.getAlertConfiguration().getProfileDuration())
+        );
+    }
+
     /**
      * Action to be performed on a periodic profile request
      */
@@ -354,6 +444,10 @@ public class JfrProfiler implements ProfilerConfigurationHandler, Profiler {
             case PERIODIC:
                 performPeriodicProfile();
                 break;
+
+            default:
+                performMetricProfile(alertBreach);
+                break;
         }
     }
 }
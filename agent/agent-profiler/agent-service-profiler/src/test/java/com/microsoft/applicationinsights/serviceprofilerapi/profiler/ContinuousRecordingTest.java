@@ -0,0 +1,68 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package com.microsoft.applicationinsights.serviceprofilerapi.profiler;
+
+import com.microsoft.jfr.Recording;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+
+public class ContinuousRecordingTest {
+
+    @Test
+    public void snapshotContainsTheRecordingBetweenTheGivenTimes() throws Exception {
+        Recording recording = Mockito.mock(Recording.class);
+        Instant start = Instant.ofEpochMilli(1000);
+        Instant end = Instant.ofEpochMilli(91000);
+        Mockito.when(recording.getStream(start, end)).thenReturn(new ByteArrayInputStream("jfr".getBytes(StandardCharsets.UTF_8)));
+
+        ContinuousRecording continuousRecording = new ContinuousRecording(recording, Duration.ofSeconds(60), Duration.ofSeconds(30));
+        File file = continuousRecording.snapshot(start, end);
+        try {
+            Assert.assertEquals("jfr", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            Assert.assertEquals(1, continuousRecording.getSnapshotCount());
+            Mockito.verify(recording, Mockito.never()).dump(Mockito.anyString());
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void wholeRecordingIsDumpedWhenItCannotBeStreamed() throws Exception {
+        Recording recording = Mockito.mock(Recording.class);
+        Instant start = Instant.ofEpochMilli(1000);
+        Instant end = Instant.ofEpochMilli(91000);
+        Mockito.when(recording.getStream(start, end)).thenThrow(new UnsupportedOperationException());
+
+        ContinuousRecording continuousRecording = new ContinuousRecording(recording, Duration.ofSeconds(60), Duration.ofSeconds(30));
+        File file = continuousRecording.snapshot(start, end);
+
+        Mockito.verify(recording).dump(file.getAbsolutePath());
+        Assert.assertEquals(1, continuousRecording.getSnapshotCount());
+    }
+}
@@ -0,0 +1,102 @@
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.applicationinsights.agent.internal.sampling.SamplingOverrides.MatcherGroup;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.SamplingOverride;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.SamplingOverrideAttribute;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Looks up the sampling override of a server span, with half of the overrides matching the url exactly
+ * (e.g. health checks) and the other half matching the target with a regexp (e.g. static assets).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SamplingOverridesBenchmark {
+
+    private static final AttributeKey<String> HTTP_URL = AttributeKey.stringKey("http.url");
+    private static final AttributeKey<String> HTTP_TARGET = AttributeKey.stringKey("http.target");
+
+    @Param({"1", "10", "100"})
+    public int overrides;
+
+    private SamplingOverrides samplingOverrides;
+
+    // the common case, none of the overrides match
+    private Attributes notMatching;
+
+    // matches the last strict override and the last regexp override
+    private Attributes matchingLast;
+
+    @Setup
+    public void setUp() {
+        List<SamplingOverride> list = new ArrayList<>();
+        for (int i = 0; i < overrides; ++i) {
+            if (i % 2 == 0) {
+                list.add(newOverride(newAttribute(HTTP_URL.getKey(),
+                        "https://example.com/health/" + i, MatchType.strict)));
+            } else {
+                list.add(newOverride(newAttribute(HTTP_TARGET.getKey(),
+                        "/static/" + i + "/.*\\.(js|css)", MatchType.regexp)));
+            }
+        }
+        samplingOverrides = new SamplingOverrides(list);
+
+        notMatching = newAttributes("https://example.com/api/orders/1234", "/api/orders/1234");
+        int lastStrict = (overrides - 1) / 2 * 2;
+        int lastRegexp = overrides > 1 ? (overrides - 2) / 2 * 2 + 1 : -1;
+        matchingLast = newAttributes("https://example.com/health/" + lastStrict, "/static/" + lastRegexp + "/app.js");
+    }
+
+    @Benchmark
+    public MatcherGroup notMatching() {
+        return samplingOverrides.getOverride(notMatching);
+    }
+
+    @Benchmark
+    public MatcherGroup matchingLast() {
+        return samplingOverrides.getOverride(matchingLast);
+    }
+
+    private static Attributes newAttributes(String url, String target) {
+        return Attributes.builder()
+                .put("http.method", "GET")
+                .put(HTTP_URL, url)
+                .put(HTTP_TARGET, target)
+                .put("http.host", "example.com")
+                .put("http.scheme", "https")
+                .put("http.user_agent", "Mozilla/5.0 (X11; Linux x86_64)")
+                .put("net.peer.ip", "10.0.0.12")
+                .build();
+    }
+
+    private static SamplingOverride newOverride(SamplingOverrideAttribute attribute) {
+        SamplingOverride override = new SamplingOverride();
+        override.attributes = Collections.singletonList(attribute);
+        override.percentage = 0.0;
+        return override;
+    }
+
+    private static SamplingOverrideAttribute newAttribute(String key, String value, MatchType matchType) {
+        SamplingOverrideAttribute attribute = new SamplingOverrideAttribute();
+        attribute.key = key;
+        attribute.value = value;
+        attribute.matchType = matchType;
+        return attribute;
+    }
+}
@@ -24,6 +24,7 @@ package com.microsoft.applicationinsights.agent.internal;
 import com.google.common.base.Strings;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.agent.LogDeduplicator;
 import com.microsoft.applicationinsights.agent.bootstrap.BytecodeUtil;
 import com.microsoft.applicationinsights.agent.bootstrap.diagnostics.DiagnosticsHelper;
 import com.microsoft.applicationinsights.agent.bootstrap.diagnostics.SdkVersionFinder;
@@ -39,14 +40,24 @@ import com.microsoft.applicationinsights.agent.internal.instrumentation.sdk.WebR
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.MainEntryPoint;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.JmxMetric;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.LogDeduplication;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorConfig;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProfilerConfiguration;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProfilerTrigger;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProfilerTriggerMetric;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.QueueFullPolicy;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.RpConfiguration;
+import com.microsoft.applicationinsights.alerting.alert.AlertCondition;
+import com.microsoft.applicationinsights.alerting.alert.AlertMetricType;
+import com.microsoft.applicationinsights.alerting.alert.WindowAggregation;
+import com.microsoft.applicationinsights.alerting.config.AlertingConfiguration.AlertConfiguration;
+import com.microsoft.applicationinsights.alerting.config.AlertingConfiguration.AlertConfigurationBuilder;
 import com.microsoft.applicationinsights.common.CommonUtils;
 import com.microsoft.applicationinsights.customExceptions.FriendlyException;
 import com.microsoft.applicationinsights.extensibility.initializer.ResourceAttributesContextInitializer;
 import com.microsoft.applicationinsights.extensibility.initializer.SdkVersionContextInitializer;
 import com.microsoft.applicationinsights.internal.channel.common.LazyHttpClient;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionPipelineStage;
 import com.microsoft.applicationinsights.internal.config.AddTypeXmlElement;
 import com.microsoft.applicationinsights.internal.config.ApplicationInsightsXmlConfiguration;
 import com.microsoft.applicationinsights.internal.config.JmxXmlElement;
@@ -57,6 +68,7 @@ import com.microsoft.applicationinsights.internal.config.connection.ConnectionSt
 import com.microsoft.applicationinsights.internal.config.connection.InvalidConnectionStringException;
 import com.microsoft.applicationinsights.internal.profiler.GcEventMonitor;
 import com.microsoft.applicationinsights.internal.profiler.ProfilerServiceInitializer;
+import com.microsoft.applicationinsights.internal.quickpulse.QuickPulseDataCollector;
 import com.microsoft.applicationinsights.internal.statsbeat.StatsbeatModule;
 import com.microsoft.applicationinsights.internal.system.SystemInformation;
 import com.microsoft.applicationinsights.internal.util.PropertyHelper;
@@ -72,6 +84,8 @@ import java.io.File;
 import java.lang.instrument.Instrumentation;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CountDownLatch;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
@@ -134,6 +148,11 @@ public class AiComponentInstaller implements ComponentInstaller {
         }
         // Function to validate user provided processor configuration
         validateProcessorConfiguration(config);
+        validateProfilerConfiguration(config);
+        validateSamplingConfiguration(config);
+        validateLogDeduplicationConfiguration(config);
+        validateAsyncSpanExportConfiguration(config);
+        validateSerializationConfiguration(config);
 
         // FIXME do something with config
 
@@ -188,13 +207,43 @@ public class AiComponentInstaller implements ComponentInstaller {
             AiLazyConfiguration.setAccessor(new LazyConfigurationAccessor());
         }
 
+        MetricAggregator metricAggregator = null;
+        if (config.preview.metricAggregation.enabled) {
+            metricAggregator = new MetricAggregator(telemetryClient::track, config.preview.metricAggregation.maxSeries);
+            metricAggregator.start(config.preview.metricIntervalSeconds);
+        }
+        final MetricAggregator finalMetricAggregator = metricAggregator;
+
+        LogDeduplicator logDeduplicator = null;
+        if (config.preview.logDeduplication.enabled) {
+            LogDeduplication logDeduplication = config.preview.logDeduplication;
+            logDeduplicator = new LogDeduplicator(telemetryClient::track, logDeduplication.maxPerWindow,
+                    logDeduplication.windowSeconds, logDeduplication.maxKeys);
+            logDeduplicator.start();
+            // the exporter is created later on, see OpenTelemetryConfigurer
+            Global.setLogDeduplicator(logDeduplicator);
+        }
+        final LogDeduplicator finalLogDeduplicator = logDeduplicator;
+
         // this is currently used by Micrometer instrumentation in addition to 2.x SDK
-        BytecodeUtil.setDelegate(new BytecodeUtilImpl());
+        BytecodeUtil.setDelegate(new BytecodeUtilImpl(metricAggregator, logDeduplicator));
+        BytecodeUtil.setLogThreshold(BytecodeUtilImpl.getLogThreshold(config.instrumentation.logging.level));
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
             public void run() {
                 startupLogger.debug("running shutdown hook");
                 try {
+                    // the spans that are still queued need to reach the telemetry client before it is flushed
+                    AsyncSpanExportProcessor spanExportProcessor = Global.getSpanExportProcessor();
+                    if (spanExportProcessor != null) {
+                        spanExportProcessor.forceFlush().join(5, SECONDS);
+                    }
+                    if (finalMetricAggregator != null) {
+                        finalMetricAggregator.flushNow();
+                    }
+                    if (finalLogDeduplicator != null) {
+                        finalLogDeduplicator.flush();
+                    }
                     telemetryClient.flush();
                     telemetryClient.shutdown(5, SECONDS);
                     startupLogger.debug("completed shutdown hook");
@@ -237,10 +286,49 @@ public class AiComponentInstaller implements ComponentInstaller {
                 serviceProfilerFrontEndPoint,
                 configuration.enabled,
                 configuration.memoryTriggeredSettings,
-                configuration.cpuTriggeredSettings
+                configuration.cpuTriggeredSettings,
+                formMetricAlerts(configuration.triggers),
+                configuration.continuousRecordingEnabled,
+                configuration.continuousRecordingSecondsBeforeBreach,
+                configuration.continuousRecordingSecondsAfterBreach,
+                configuration.continuousRecordingMaxSizeMb
         );
     }
 
+    private static List<AlertConfiguration> formMetricAlerts(List<ProfilerTrigger> triggers) {
+        List<AlertConfiguration> metricAlerts = new ArrayList<>();
+        for (ProfilerTrigger trigger : triggers) {
+            metricAlerts.add(new AlertConfigurationBuilder()
+                    .setType(toAlertMetricType(trigger.metric))
+                    .setEnabled(trigger.enabled)
+                    .setThreshold(trigger.threshold)
+                    .setProfileDuration(trigger.profileDurationSeconds)
+                    .setCooldown(trigger.cooldownSeconds)
+                    .setAggregation(WindowAggregation.valueOf(trigger.aggregation.name().toUpperCase(Locale.ROOT)))
+                    .setCondition(AlertCondition.valueOf(trigger.condition.name().toUpperCase(Locale.ROOT)))
+                    .setWindowLength(trigger.windowSeconds)
+                    .createAlertConfiguration());
+        }
+        return metricAlerts;
+    }
+
+    private static AlertMetricType toAlertMetricType(ProfilerTriggerMetric metric) {
+        switch (metric) {
+            case gcPauseRatio:
+                return AlertMetricType.GC_PAUSE_RATIO;
+            case requestLatency:
+                return AlertMetricType.REQUEST_LATENCY;
+            case requestFailureRate:
+                return AlertMetricType.REQUEST_FAILURE_RATE;
+            case threadCount:
+                return AlertMetricType.THREAD_COUNT;
+            case allocationRate:
+                return AlertMetricType.ALLOCATION_RATE;
+            default:
+                throw new AssertionError("Unexpected profiler trigger metric: " + metric);
+        }
+    }
+
     private static void validateProcessorConfiguration(Configuration config) throws FriendlyException {
         if (config.preview == null || config.preview.processors == null) return;
         for (ProcessorConfig processorConfig : config.preview.processors) {
@@ -248,6 +336,44 @@ public class AiComponentInstaller implements ComponentInstaller {
         }
     }
 
+    private static void validateProfilerConfiguration(Configuration config) throws FriendlyException {
+        if (config.preview == null || config.preview.profiler == null) return;
+        config.preview.profiler.validate();
+    }
+
+    private static void validateSamplingConfiguration(Configuration config) throws FriendlyException {
+        if (config.preview == null || config.preview.sampling == null) return;
+        config.preview.sampling.validate();
+        if (config.preview.tailSampling == null) return;
+        config.preview.tailSampling.validate();
+        if (config.preview.tailSampling.enabled && !config.preview.asyncSpanExport.enabled) {
+            throw new FriendlyException("Tail sampling is enabled, but the asynchronous span export is disabled.",
+                    "Please enable the asynchronous span export (\"asyncSpanExport\"), which tail sampling relies on.");
+        }
+    }
+
+    private static void validateLogDeduplicationConfiguration(Configuration config) throws FriendlyException {
+        if (config.preview == null || config.preview.logDeduplication == null) return;
+        config.preview.logDeduplication.validate();
+    }
+
+    private static void validateAsyncSpanExportConfiguration(Configuration config) throws FriendlyException {
+        if (config.preview == null || config.preview.asyncSpanExport == null) return;
+        config.preview.asyncSpanExport.validate();
+    }
+
+    private static void validateSerializationConfiguration(Configuration config) throws FriendlyException {
+        if (config.preview == null) return;
+        if (config.preview.serializationThreads < 0 || config.preview.serializationQueueCapacity < 0) {
+            throw new FriendlyException("The \"serializationThreads\" or \"serializationQueueCapacity\" is negative.",
+                    "Please provide a positive \"serializationThreads\" and \"serializationQueueCapacity\", or leave them out to keep the defaults.");
+        }
+        if (config.preview.serializationQueueFullPolicy == null) {
+            throw new FriendlyException("The \"serializationQueueFullPolicy\" is invalid.",
+                    "Please provide a \"serializationQueueFullPolicy\" of \"dropNew\" or \"dropOldest\".");
+        }
+    }
+
     @Nullable
     private static String getCodelessSdkNamePrefix() {
         if (!DiagnosticsHelper.isRpIntegration()) {
@@ -314,10 +440,23 @@ public class AiComponentInstaller implements ComponentInstaller {
         xmlConfiguration.getPerformance().setCollectionFrequencyInSec(config.preview.metricIntervalSeconds);
 
         xmlConfiguration.getQuickPulse().setEnabled(config.preview.liveMetrics.enabled);
+        QuickPulseDataCollector.INSTANCE.setMaxOperations(config.preview.liveMetrics.maxOperations);
 
         if (config.preview.developerMode) {
             xmlConfiguration.getChannel().setDeveloperMode(true);
         }
+        if (config.preview.segmentedOfflineStorage) {
+            xmlConfiguration.getChannel().setSegmentedTransmissionStorage(true);
+        }
+        if (config.preview.serializationThreads > 0) {
+            xmlConfiguration.getChannel().setSerializationThreads(Integer.toString(config.preview.serializationThreads));
+        }
+        if (config.preview.serializationQueueCapacity > 0) {
+            xmlConfiguration.getChannel().setSerializationQueueCapacity(Integer.toString(config.preview.serializationQueueCapacity));
+        }
+        if (config.preview.serializationQueueFullPolicy == QueueFullPolicy.dropOldest) {
+            xmlConfiguration.getChannel().setSerializationDropPolicy(TransmissionPipelineStage.DropPolicy.DROP_OLDEST.name());
+        }
         return xmlConfiguration;
     }
 
@@ -0,0 +1,248 @@
+package com.microsoft.applicationinsights.agent.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.base.Preconditions;
+import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands the ended spans to a single agent thread, which converts them to {@link SpanData} and exports
+ * them in batches, so the thread that ends a span only pays for queueing it.
+ *
+ * The queue is a lock-free linked queue bounded by {@code maxQueueSize}, when it is full the
+ * {@link QueueFullPolicy} decides which span is dropped.
+ */
+public final class AsyncSpanExportProcessor implements SpanProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncSpanExportProcessor.class);
+
+    // how long the export thread waits for a full batch before exporting what it has
+    private static final long EXPORT_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    public enum QueueFullPolicy {
+        /// The span that is ending is dropped
+        DROP_NEW,
+        /// The oldest queued span is dropped to make room for the span that is ending
+        DROP_OLDEST
+    }
+
+    private final SpanExporter spanExporter;
+    private final int maxQueueSize;
+    private final int maxExportBatchSize;
+    private final QueueFullPolicy queueFullPolicy;
+    // the spans which are recorded but not sampled are exported too, for the exporter to decide (tail sampling)
+    private final boolean exportUnsampled;
+
+    private final Queue<ReadableSpan> queue = new ConcurrentLinkedQueue<>();
+    /// The number of spans in the queue, which is not tracked by the queue itself in constant time
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final Queue<CompletableResultCode> pendingFlushes = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicBoolean alreadyLoggedDrop = new AtomicBoolean();
+
+    private final Thread exportThread;
+    private volatile boolean shutdown;
+
+    public AsyncSpanExportProcessor(SpanExporter spanExporter, int maxQueueSize, int maxExportBatchSize, QueueFullPolicy queueFullPolicy) {
+        this(spanExporter, maxQueueSize, maxExportBatchSize, queueFullPolicy, false);
+    }
+
+    public AsyncSpanExportProcessor(SpanExporter spanExporter, int maxQueueSize, int maxExportBatchSize, QueueFullPolicy queueFullPolicy,
+                                    boolean exportUnsampled) {
+        Preconditions.checkNotNull(spanExporter, "spanExporter must be non-null value");
+        Preconditions.checkNotNull(queueFullPolicy, "queueFullPolicy must be non-null value");
+        Preconditions.checkArgument(maxQueueSize > 0, "maxQueueSize must be a positive number");
+        Preconditions.checkArgument(maxExportBatchSize > 0, "maxExportBatchSize must be a positive number");
+
+        this.spanExporter = spanExporter;
+        this.maxQueueSize = maxQueueSize;
+        this.maxExportBatchSize = Math.min(maxExportBatchSize, maxQueueSize);
+        this.queueFullPolicy = queueFullPolicy;
+        this.exportUnsampled = exportUnsampled;
+
+        exportThread = ThreadPoolUtils.createDaemonThreadFactory(AsyncSpanExportProcessor.class).newThread(new Runnable() {
+            @Override
+            public void run() {
+                exportLoop();
+            }
+        });
+        exportThread.start();
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (shutdown || (!exportUnsampled && !span.getSpanContext().isSampled())) {
+            return;
+        }
+        int size = queueSize.incrementAndGet();
+        if (size > maxQueueSize) {
+            if (queueFullPolicy == QueueFullPolicy.DROP_NEW || queue.poll() == null) {
+                queueSize.decrementAndGet();
+                recordDrop();
+                return;
+            }
+            queueSize.decrementAndGet();
+            recordDrop();
+        }
+        queue.offer(span);
+        if (size == maxExportBatchSize) {
+            LockSupport.unpark(exportThread);
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    /**
+     * Exports the spans that ended before this call, and then flushes the exporter.
+     */
+    @Override
+    public CompletableResultCode forceFlush() {
+        CompletableResultCode result = new CompletableResultCode();
+        if (!exportThread.isAlive()) {
+            return result.succeed();
+        }
+        pendingFlushes.offer(result);
+        LockSupport.unpark(exportThread);
+        return result;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        shutdown = true;
+        LockSupport.unpark(exportThread);
+        try {
+            exportThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return spanExporter.shutdown();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void recordDrop() {
+        droppedCount.incrementAndGet();
+        if (!alreadyLoggedDrop.getAndSet(true)) {
+            logger.warn("span export queue is full (maxQueueSize {}), spans are being dropped", maxQueueSize);
+        }
+    }
+
+    private void exportLoop() {
+        List<SpanData> batch = new ArrayList<>(maxExportBatchSize);
+        while (true) {
+            boolean stopping = shutdown;
+            CompletableResultCode flush = pendingFlushes.poll();
+            if (flush != null || stopping) {
+                exportAll(batch);
+                CompletableResultCode exporterFlush = flushExporter();
+                completeWhenDone(flush, exporterFlush);
+                while ((flush = pendingFlushes.poll()) != null) {
+                    completeWhenDone(flush, exporterFlush);
+                }
+                if (stopping) {
+                    return;
+                }
+            } else if (exportBatch(batch) < maxExportBatchSize) {
+                LockSupport.parkNanos(this, EXPORT_DELAY_NANOS);
+            }
+        }
+    }
+
+    private void exportAll(List<SpanData> batch) {
+        while (exportBatch(batch) != 0) {
+        }
+    }
+
+    /**
+     * @return The number of spans that were taken from the queue
+     */
+    private int exportBatch(List<SpanData> batch) {
+        int taken = 0;
+        ReadableSpan span;
+        while (batch.size() < maxExportBatchSize && (span = queue.poll()) != null) {
+            queueSize.decrementAndGet();
+            taken++;
+            try {
+                batch.add(span.toSpanData());
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                // a span that cannot be converted is dropped, the export thread must keep running
+                logger.debug(t.getMessage(), t);
+            }
+        }
+        if (batch.isEmpty()) {
+            return taken;
+        }
+        try {
+            spanExporter.export(new ArrayList<>(batch));
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            logger.debug(t.getMessage(), t);
+        } finally {
+            batch.clear();
+        }
+        return taken;
+    }
+
+    private CompletableResultCode flushExporter() {
+        try {
+            return spanExporter.flush();
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            logger.debug(t.getMessage(), t);
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    private static void completeWhenDone(CompletableResultCode flush, final CompletableResultCode exporterFlush) {
+        if (flush == null) {
+            return;
+        }
+        final CompletableResultCode result = flush;
+        exporterFlush.whenComplete(new Runnable() {
+            @Override
+            public void run() {
+                if (exporterFlush.isSuccess()) {
+                    result.succeed();
+                } else {
+                    result.fail();
+                }
+            }
+        });
+    }
+}
@@ -1,6 +1,9 @@
 package com.microsoft.applicationinsights.agent.internal;
 
+import java.util.function.DoubleSupplier;
+
 import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.agent.LogDeduplicator;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 public class Global {
@@ -8,7 +11,17 @@ public class Global {
     @Nullable
     private static volatile TelemetryClient telemetryClient;
 
-    private static volatile double samplingPercentage = 100;
+    // the percentage the telemetry tracked through the 2.x SDK outside of a span is sampled with, which follows
+    // the rate limited percentage of the spans when there is one (that telemetry does not count towards the limit)
+    private static volatile DoubleSupplier samplingPercentage = () -> 100;
+
+    // null when spans are exported on the thread that ends them
+    @Nullable
+    private static volatile AsyncSpanExportProcessor spanExportProcessor;
+
+    // null when the logs are not de-duplicated
+    @Nullable
+    private static volatile LogDeduplicator logDeduplicator;
 
     // this can be null if agent failed during startup
     @Nullable
@@ -16,15 +29,37 @@ public class Global {
         return telemetryClient;
     }
 
+    @Nullable
+    public static AsyncSpanExportProcessor getSpanExportProcessor() {
+        return spanExportProcessor;
+    }
+
+    @Nullable
+    public static LogDeduplicator getLogDeduplicator() {
+        return logDeduplicator;
+    }
+
     public static double getSamplingPercentage() {
-        return samplingPercentage;
+        return samplingPercentage.getAsDouble();
     }
 
     public static void setTelemetryClient(TelemetryClient telemetryClient) {
         Global.telemetryClient = telemetryClient;
     }
 
+    public static void setSpanExportProcessor(AsyncSpanExportProcessor spanExportProcessor) {
+        Global.spanExportProcessor = spanExportProcessor;
+    }
+
+    public static void setLogDeduplicator(LogDeduplicator logDeduplicator) {
+        Global.logDeduplicator = logDeduplicator;
+    }
+
     public static void setSamplingPercentage(double samplingPercentage) {
+        Global.samplingPercentage = () -> samplingPercentage;
+    }
+
+    public static void setSamplingPercentage(DoubleSupplier samplingPercentage) {
         Global.samplingPercentage = samplingPercentage;
     }
 }
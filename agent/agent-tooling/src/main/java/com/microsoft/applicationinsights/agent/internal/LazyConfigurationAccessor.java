@@ -25,6 +25,8 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
 import com.google.common.base.Strings;
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.agent.bootstrap.BytecodeUtil;
+import com.microsoft.applicationinsights.agent.internal.instrumentation.sdk.BytecodeUtilImpl;
 import com.microsoft.applicationinsights.agent.internal.propagator.DelegatingPropagator;
 import com.microsoft.applicationinsights.agent.internal.sampling.DelegatingSampler;
 import io.opentelemetry.instrumentation.api.aisdk.AiLazyConfiguration;
@@ -126,6 +128,7 @@ public class LazyConfigurationAccessor implements AiLazyConfiguration.Accessor {
     static void setInstrumentationLoggingLevel(String loggingLevel) {
         if (loggingLevel != null && !loggingLevel.isEmpty()) {
             Config.get().updateProperty("otel.experimental.log.capture.threshold", loggingLevel.toUpperCase());
+            BytecodeUtil.setLogThreshold(BytecodeUtilImpl.getLogThreshold(loggingLevel));
         }
     }
 }
@@ -0,0 +1,327 @@
+package com.microsoft.applicationinsights.agent.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.google.common.base.Preconditions;
+import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Aggregates the metrics tracked through the 2.x SDK and the Micrometer instrumentation, so that a single
+ * {@link MetricTelemetry} (with the count, sum, min, max and standard deviation) is sent per series and per interval,
+ * instead of one per recorded value.
+ *
+ * A series is a metric name plus its properties, tags and instrumentation key. The values are recorded into
+ * striped cells, without taking any lock. Once {@code maxSeries} series exist, the values of new series are recorded
+ * into an overflow series of the same metric name, without any of their dimensions.
+ */
+public final class MetricAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricAggregator.class);
+
+    // set on the series which collects the values of the series that couldn't be created
+    static final String OVERFLOW_PROPERTY = "_MS.AggregationOverflow";
+
+    private final Consumer<MetricTelemetry> emitter;
+    private final int maxSeries;
+
+    private final ConcurrentMap<SeriesKey, Series> series = new ConcurrentHashMap<>();
+
+    /// The series removed by the last flush, whose late values are emitted by the next flush
+    private List<Series> retired = Collections.emptyList();
+
+    private final AtomicBoolean alreadyLoggedOverflow = new AtomicBoolean();
+
+    private final ScheduledExecutorService scheduledExecutor =
+            Executors.newSingleThreadScheduledExecutor(ThreadPoolUtils.createDaemonThreadFactory(MetricAggregator.class));
+
+    public MetricAggregator(Consumer<MetricTelemetry> emitter, int maxSeries) {
+        Preconditions.checkNotNull(emitter, "emitter must be non-null value");
+        Preconditions.checkArgument(maxSeries > 0, "maxSeries must be a positive number");
+
+        this.emitter = emitter;
+        this.maxSeries = maxSeries;
+    }
+
+    public void start(long intervalSeconds) {
+        scheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t) {
+                    logger.error("Error occurred while sending the aggregated metrics", t);
+                }
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends what has been aggregated so far, this is used when shutting down, before the telemetry client is flushed.
+     */
+    public void flushNow() {
+        try {
+            scheduledExecutor.submit(this::flush).get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.debug(e.getMessage(), e);
+        }
+    }
+
+    // count, min, max and stdDev are only passed when the value is itself an aggregate of count values,
+    // in which case value is their sum
+    public void record(String name, double value, @Nullable Integer count, @Nullable Double min, @Nullable Double max,
+                       @Nullable Double stdDev, Map<String, String> properties, Map<String, String> tags,
+                       @Nullable String instrumentationKey) {
+
+        if (count != null && count <= 0) {
+            return;
+        }
+        Cells cells = getSeries(name, properties, tags, instrumentationKey).cells;
+        if (count == null || count <= 1 && min == null && max == null && stdDev == null) {
+            cells.add(value);
+        } else {
+            cells.add(value, count, min, max, stdDev);
+        }
+    }
+
+    private Series getSeries(String name, Map<String, String> properties, Map<String, String> tags,
+                             @Nullable String instrumentationKey) {
+        // the caller's maps are only copied when a series is created
+        SeriesKey key = new SeriesKey(name, properties, tags, instrumentationKey);
+        Series existing = series.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (series.size() >= maxSeries) {
+            if (!alreadyLoggedOverflow.getAndSet(true)) {
+                logger.warn("The number of metric series reached {}, the values of new series are aggregated without"
+                        + " their dimensions (this message will only be logged once)", maxSeries);
+            }
+            key = new SeriesKey(name, Collections.singletonMap(OVERFLOW_PROPERTY, "true"),
+                    Collections.<String, String>emptyMap(), instrumentationKey);
+            existing = series.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            // not counted against maxSeries, there is at most one of these per metric name
+        } else {
+            key = new SeriesKey(name, new HashMap<>(properties), new HashMap<>(tags), instrumentationKey);
+        }
+        Series created = new Series(key);
+        existing = series.putIfAbsent(key, created);
+        return existing != null ? existing : created;
+    }
+
+    // visible for testing
+    void flush() {
+        for (Series retiredSeries : retired) {
+            emit(retiredSeries.key, retiredSeries.collect());
+        }
+        List<Series> nowRetired = new ArrayList<>();
+        for (Iterator<Series> i = series.values().iterator(); i.hasNext(); ) {
+            Series current = i.next();
+            Snapshot snapshot = current.collect();
+            if (snapshot.count == 0) {
+                // the series is only removed once it has been idle for a whole interval,
+                // and values which are still recorded into it are emitted by the next flush
+                i.remove();
+                nowRetired.add(current);
+            } else {
+                emit(current.key, snapshot);
+            }
+        }
+        retired = nowRetired;
+    }
+
+    private void emit(SeriesKey key, Snapshot snapshot) {
+        if (snapshot.count == 0) {
+            return;
+        }
+        MetricTelemetry telemetry = new MetricTelemetry();
+        telemetry.setName(key.name);
+        telemetry.setValue(snapshot.sum);
+        telemetry.setCount((int) Math.min(snapshot.count, Integer.MAX_VALUE));
+        telemetry.setMin(snapshot.min);
+        telemetry.setMax(snapshot.max);
+        if (snapshot.hasStandardDeviation) {
+            double mean = snapshot.sum / snapshot.count;
+            telemetry.setStandardDeviation(Math.sqrt(Math.max(0, snapshot.sumOfSquares / snapshot.count - mean * mean)));
+        }
+        telemetry.getProperties().putAll(key.properties);
+        telemetry.getContext().getTags().putAll(key.tags);
+        telemetry.getContext().setInstrumentationKey(key.instrumentationKey);
+        emitter.accept(telemetry);
+    }
+
+    private static final class SeriesKey {
+
+        private final String name;
+        private final Map<String, String> properties;
+        private final Map<String, String> tags;
+        private final @Nullable String instrumentationKey;
+        private final int hashCode;
+
+        private SeriesKey(String name, Map<String, String> properties, Map<String, String> tags,
+                          @Nullable String instrumentationKey) {
+            this.name = name;
+            this.properties = properties;
+            this.tags = tags;
+            this.instrumentationKey = instrumentationKey;
+            int h = name.hashCode();
+            h = 31 * h + properties.hashCode();
+            h = 31 * h + tags.hashCode();
+            h = 31 * h + (instrumentationKey == null ? 0 : instrumentationKey.hashCode());
+            hashCode = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SeriesKey)) {
+                return false;
+            }
+            SeriesKey other = (SeriesKey) o;
+            return hashCode == other.hashCode
+                    && name.equals(other.name)
+                    && properties.equals(other.properties)
+                    && tags.equals(other.tags)
+                    && (instrumentationKey == null ? other.instrumentationKey == null : instrumentationKey.equals(other.instrumentationKey));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Series {
+
+        private final SeriesKey key;
+
+        /// Swapped for new cells on each flush
+        private volatile Cells cells = new Cells();
+
+        // only accessed by the flush
+        private @Nullable Cells previous;
+        private @Nullable Snapshot previousSnapshot;
+
+        private Series(SeriesKey key) {
+            this.key = key;
+        }
+
+        // returns the values recorded since the last flush
+        private Snapshot collect() {
+            Snapshot lateValues = collectLateValues();
+            Cells local = cells;
+            cells = new Cells();
+            Snapshot snapshot = local.snapshot();
+            previous = local;
+            previousSnapshot = snapshot;
+            return lateValues == null ? snapshot : snapshot.plus(lateValues);
+        }
+
+        // the values recorded into the previous cells after they were swapped out by the last flush,
+        // by the threads which got them right before the swap
+        private @Nullable Snapshot collectLateValues() {
+            if (previous == null) {
+                return null;
+            }
+            Snapshot again = previous.snapshot();
+            Snapshot lateValues = again.count == previousSnapshot.count ? null : again.minus(previousSnapshot);
+            previousSnapshot = again;
+            return lateValues;
+        }
+    }
+
+    private static final class Cells {
+
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+        private final DoubleAdder sumOfSquares = new DoubleAdder();
+        private final DoubleAccumulator min = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+        private final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+        /// Set when an aggregate without a standard deviation was recorded
+        private volatile boolean noStandardDeviation;
+
+        private void add(double value) {
+            count.increment();
+            sum.add(value);
+            sumOfSquares.add(value * value);
+            min.accumulate(value);
+            max.accumulate(value);
+        }
+
+        private void add(double sumOfValues, int countOfValues, @Nullable Double minOfValues,
+                         @Nullable Double maxOfValues, @Nullable Double stdDevOfValues) {
+            double mean = sumOfValues / countOfValues;
+            count.add(countOfValues);
+            sum.add(sumOfValues);
+            if (stdDevOfValues != null) {
+                sumOfSquares.add(countOfValues * (stdDevOfValues * stdDevOfValues + mean * mean));
+            } else if (!noStandardDeviation) {
+                noStandardDeviation = true;
+            }
+            min.accumulate(minOfValues != null ? minOfValues : mean);
+            max.accumulate(maxOfValues != null ? maxOfValues : mean);
+        }
+
+        private Snapshot snapshot() {
+            return new Snapshot(count.sum(), sum.sum(), sumOfSquares.sum(), min.get(), max.get(), !noStandardDeviation);
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final long count;
+        private final double sum;
+        private final double sumOfSquares;
+        private final double min;
+        private final double max;
+        private final boolean hasStandardDeviation;
+
+        private Snapshot(long count, double sum, double sumOfSquares, double min, double max, boolean hasStandardDeviation) {
+            this.count = count;
+            this.sum = sum;
+            this.sumOfSquares = sumOfSquares;
+            this.min = min;
+            this.max = max;
+            this.hasStandardDeviation = hasStandardDeviation;
+        }
+
+        private Snapshot plus(Snapshot other) {
+            return new Snapshot(count + other.count, sum + other.sum, sumOfSquares + other.sumOfSquares,
+                    Math.min(min, other.min), Math.max(max, other.max),
+                    hasStandardDeviation && other.hasStandardDeviation);
+        }
+
+        // min and max cannot be subtracted, the late values are assumed to be within the min and max of all the values
+        private Snapshot minus(Snapshot other) {
+            return new Snapshot(count - other.count, sum - other.sum, sumOfSquares - other.sumOfSquares,
+                    min, max, hasStandardDeviation);
+        }
+    }
+}
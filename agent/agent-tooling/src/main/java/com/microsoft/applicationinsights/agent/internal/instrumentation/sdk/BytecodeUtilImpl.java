@@ -23,13 +23,17 @@ package com.microsoft.applicationinsights.agent.internal.instrumentation.sdk;
 import java.net.URI;
 import java.net.URL;
 import java.util.Date;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.base.Strings;
 import com.microsoft.applicationinsights.agent.Exporter;
+import com.microsoft.applicationinsights.agent.LogDeduplicator;
 import com.microsoft.applicationinsights.agent.bootstrap.BytecodeUtil.BytecodeUtilDelegate;
+import com.microsoft.applicationinsights.agent.bootstrap.BytecodeUtil.LogRecord;
 import com.microsoft.applicationinsights.agent.internal.Global;
+import com.microsoft.applicationinsights.agent.internal.MetricAggregator;
 import com.microsoft.applicationinsights.agent.internal.sampling.SamplingScoreGeneratorV2;
 import com.microsoft.applicationinsights.telemetry.Duration;
 import com.microsoft.applicationinsights.telemetry.EventTelemetry;
@@ -57,6 +61,20 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
 
     private static final AtomicBoolean alreadyLoggedError = new AtomicBoolean();
 
+    private final @Nullable MetricAggregator metricAggregator;
+    private final @Nullable LogDeduplicator logDeduplicator;
+
+    public BytecodeUtilImpl() {
+        this(null, null);
+    }
+
+    // when metricAggregator is non-null, the metrics are aggregated instead of being tracked one by one
+    // when logDeduplicator is non-null, the repeated log records are only counted
+    public BytecodeUtilImpl(@Nullable MetricAggregator metricAggregator, @Nullable LogDeduplicator logDeduplicator) {
+        this.metricAggregator = metricAggregator;
+        this.logDeduplicator = logDeduplicator;
+    }
+
     @Override
     public void trackEvent(String name, Map<String, String> properties, Map<String, String> tags,
                            Map<String, Double> metrics, String instrumentationKey) {
@@ -81,6 +99,12 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
         if (Strings.isNullOrEmpty(name)) {
             return;
         }
+        if (metricAggregator != null) {
+            if (isSampledIn()) {
+                metricAggregator.record(name, value, count, min, max, stdDev, properties, tags, instrumentationKey);
+            }
+            return;
+        }
         MetricTelemetry telemetry = new MetricTelemetry();
         telemetry.setName(name);
         telemetry.setValue(value);
@@ -208,6 +232,74 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
         track(telemetry);
     }
 
+    // the log records of logging instrumentation, which are converted to telemetry without going through a span
+    @Override
+    public void trackLog(LogRecord record) {
+        String message = record.getMessage();
+        Throwable throwable = record.getThrowable();
+        if (logDeduplicator != null) {
+            int stackHash = throwable == null ? 0 : LogDeduplicator.stackHash(throwable);
+            if (!logDeduplicator.shouldTrack(record.getLoggerName(), record.getLevelName(), message, stackHash)) {
+                return;
+            }
+        }
+        Telemetry telemetry;
+        if (throwable == null) {
+            if (Strings.isNullOrEmpty(message)) {
+                return;
+            }
+            TraceTelemetry traceTelemetry = new TraceTelemetry(message, getSeverityLevel(record.getSeverityLevel()));
+            setLoggerProperties(traceTelemetry.getProperties(), record);
+            telemetry = traceTelemetry;
+        } else {
+            ExceptionTelemetry exceptionTelemetry = new ExceptionTelemetry(throwable);
+            exceptionTelemetry.setSeverityLevel(getSeverityLevel(record.getSeverityLevel()));
+            if (message != null) {
+                exceptionTelemetry.getProperties().put("Logger Message", message);
+            }
+            setLoggerProperties(exceptionTelemetry.getProperties(), record);
+            telemetry = exceptionTelemetry;
+        }
+        if (record.getEpochMillis() != 0) {
+            telemetry.setTimestamp(new Date(record.getEpochMillis()));
+        }
+        track(telemetry);
+    }
+
+    // same properties as the log spans, see Exporter
+    private static void setLoggerProperties(Map<String, String> properties, LogRecord record) {
+        if (record.getLevelName() != null) {
+            properties.put("SourceType", "Logger");
+            properties.put("LoggingLevel", record.getLevelName());
+        }
+        if (record.getLoggerName() != null) {
+            properties.put("LoggerName", record.getLoggerName());
+        }
+    }
+
+    /**
+     * @return the severity level of the instrumentation.logging.level (e.g. "WARN"),
+     * below which log records are not captured
+     */
+    public static int getLogThreshold(String level) {
+        switch (level.toUpperCase(Locale.ROOT)) {
+            case "OFF":
+                return Integer.MAX_VALUE;
+            case "FATAL":
+                return SeverityLevel.Critical.getValue();
+            case "ERROR":
+            case "SEVERE":
+                return SeverityLevel.Error.getValue();
+            case "WARN":
+            case "WARNING":
+                return SeverityLevel.Warning.getValue();
+            case "INFO":
+                return SeverityLevel.Information.getValue();
+            default:
+                return SeverityLevel.Verbose.getValue();
+        }
+    }
+
     private SeverityLevel getSeverityLevel(int value) {
         for (SeverityLevel sl : SeverityLevel.values()) {
             if (value == sl.getValue()) {
@@ -235,7 +327,7 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
         double samplingPercentage;
         if (context.isValid()) {
             if (!context.isSampled()) {
-                // sampled out
+                // sampled out, even if tail sampling keeps the trace later on, since only its spans are buffered
                 return;
             }
             telemetry.getContext().getOperation().setId(context.getTraceId());
@@ -243,7 +335,7 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
             samplingPercentage =
                     Exporter.getSamplingPercentage(context.getTraceState(), Global.getSamplingPercentage(), false);
         } else {
-            // sampling is done using the configured sampling percentage
+            // sampling is done using the current sampling percentage, see Global
             samplingPercentage = Global.getSamplingPercentage();
             if (!sample(telemetry, samplingPercentage)) {
                 // sampled out
@@ -259,6 +351,20 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
         checkNotNull(Global.getTelemetryClient()).track(telemetry);
     }
 
+    // same sampling decision as track(), for the metrics that are aggregated instead of being tracked
+    private static boolean isSampledIn() {
+        SpanContext context = Span.current().getSpanContext();
+        if (context.isValid()) {
+            return context.isSampled();
+        }
+        double samplingPercentage = Global.getSamplingPercentage();
+        if (samplingPercentage == 100) {
+            return true;
+        }
+        // there is no operation id to hash in this case
+        return SamplingScoreGeneratorV2.getSamplingScore(null) < samplingPercentage;
+    }
+
     private static boolean sample(Telemetry telemetry, double samplingPercentage) {
         if (samplingPercentage == 100) {
             return true;
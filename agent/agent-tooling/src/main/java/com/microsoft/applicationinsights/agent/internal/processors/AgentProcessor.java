@@ -36,20 +36,40 @@ public abstract class AgentProcessor {
         return exclude;
     }
 
+    // applies this processor to a span it is applicable to
+    public abstract void process(MutableSpan span);
+
+    // whether the span is included and not excluded, i.e. whether this processor applies to it
+    public boolean isApplicable(MutableSpan span) {
+        if (include != null && !include.isMatch(span)) {
+            return false;
+        }
+        return exclude == null || !exclude.isMatch(span);
+    }
+
     public static abstract class IncludeExclude {
         // Function to compare span with user provided span names or span patterns
-        public abstract boolean isMatch(SpanData span);
+        public abstract boolean isMatch(MutableSpan span);
 
+        public boolean isMatch(SpanData span) {
+            return isMatch(new MutableSpan(span));
+        }
     }
 
     // ok to have this class cover both spanNames and logNames
     public static class StrictIncludeExclude extends IncludeExclude {
         private final List<ProcessorAttribute> attributes;
+        // resolved once, in the same order as the attributes
+        private final List<AttributeKey<String>> attributeKeys;
         private final List<String> spanNames;
 
         public StrictIncludeExclude(List<ProcessorAttribute> attributes, List<String> spanNames) {
             this.attributes = attributes;
             this.spanNames = spanNames;
+            attributeKeys = new ArrayList<>(attributes.size());
+            for (ProcessorAttribute attribute : attributes) {
+                attributeKeys.add(AttributeKey.stringKey(attribute.key));
+            }
         }
 
         public static StrictIncludeExclude create(ProcessorIncludeExclude includeExclude) {
@@ -65,7 +85,8 @@ public abstract class AgentProcessor {
         }
 
         // Function to compare span with user provided span names
-        public boolean isMatch(SpanData span) {
+        @Override
+        public boolean isMatch(MutableSpan span) {
             if (!spanNames.isEmpty() && !spanNames.contains(span.getName())) {
                 // span name doesn't match
                 return false;
@@ -74,14 +95,12 @@ public abstract class AgentProcessor {
         }
 
         // Function to compare span with user provided attributes list
-        private boolean checkAttributes(SpanData span) {
-            for (ProcessorAttribute attribute : attributes) {
+        private boolean checkAttributes(MutableSpan span) {
+            for (int i = 0; i < attributes.size(); i++) {
+                ProcessorAttribute attribute = attributes.get(i);
                 //All of these attributes must match exactly for a match to occur.
-                Object existingAttributeValue = span.getAttributes().get(AttributeKey.stringKey(attribute.key));
-                // to get the string value
-                //existingAttributeValue.toString()
-                //String.valueOf(existingAttributeValue);
-                if (!(existingAttributeValue instanceof String)) {
+                String existingAttributeValue = span.getString(attributeKeys.get(i));
+                if (existingAttributeValue == null) {
                     // user specified key not found
                     return false;
                 }
@@ -98,16 +117,16 @@ public abstract class AgentProcessor {
     public static class RegexpIncludeExclude extends IncludeExclude {
 
         private final List<Pattern> spanPatterns;
-        private final Map<AttributeKey<?>, Pattern> attributeValuePatterns;
+        private final Map<AttributeKey<String>, Pattern> attributeValuePatterns;
 
-        public RegexpIncludeExclude(List<Pattern> spanPatterns, Map<AttributeKey<?>, Pattern> attributeValuePatterns) {
+        public RegexpIncludeExclude(List<Pattern> spanPatterns, Map<AttributeKey<String>, Pattern> attributeValuePatterns) {
             this.spanPatterns = spanPatterns;
             this.attributeValuePatterns = attributeValuePatterns;
         }
 
         public static RegexpIncludeExclude create(ProcessorIncludeExclude includeExclude) {
             List<ProcessorAttribute> attributes = includeExclude.attributes;
-            Map<AttributeKey<?>, Pattern> attributeKeyValuePatterns = new HashMap<>();
+            Map<AttributeKey<String>, Pattern> attributeKeyValuePatterns = new HashMap<>();
             if (attributes != null) {
                 for (ProcessorAttribute attribute : attributes) {
                     if (attribute.value != null) {
@@ -130,7 +149,7 @@ public abstract class AgentProcessor {
             return valuePattern.matcher(attributeValue).find();
         }
 
-        private boolean isPatternFound(SpanData span) {
+        private boolean isPatternFound(MutableSpan span) {
             for (Pattern pattern : spanPatterns) {
                 if (pattern.matcher(span.getName()).find()) {
                     // pattern matches the span!!!
@@ -142,7 +161,8 @@ public abstract class AgentProcessor {
         }
 
         // Function to compare span with user provided span patterns
-        public boolean isMatch(SpanData span) {
+        @Override
+        public boolean isMatch(MutableSpan span) {
             if (!spanPatterns.isEmpty() && !isPatternFound(span)) {
                 return false;
             }
@@ -150,15 +170,15 @@ public abstract class AgentProcessor {
         }
 
         // Function to compare span with user provided attributes list
-        private boolean checkAttributes(SpanData span) {
-            for (Entry<AttributeKey<?>, Pattern> attributeEntry : attributeValuePatterns.entrySet()) {
+        private boolean checkAttributes(MutableSpan span) {
+            for (Entry<AttributeKey<String>, Pattern> attributeEntry : attributeValuePatterns.entrySet()) {
                 //All of these attributes must match exactly for a match to occur.
-                Object existingAttributeValue = span.getAttributes().get(attributeEntry.getKey());
-                if (!(existingAttributeValue instanceof String)) {
+                String existingAttributeValue = span.getString(attributeEntry.getKey());
+                if (existingAttributeValue == null) {
                     // user specified key not found
                     return false;
                 }
-                if (attributeEntry.getValue() != null && !isAttributeValueMatch((String) existingAttributeValue, attributeEntry.getValue())) {
+                if (attributeEntry.getValue() != null && !isAttributeValueMatch(existingAttributeValue, attributeEntry.getValue())) {
                     // user specified value doesn't match
                     return false;
                 }
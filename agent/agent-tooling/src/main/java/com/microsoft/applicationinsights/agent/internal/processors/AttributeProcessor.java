@@ -1,5 +1,6 @@
 package com.microsoft.applicationinsights.agent.internal.processors;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 
@@ -7,7 +8,6 @@ import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configurati
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorConfig;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -16,10 +16,10 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 // normalization has to occur before construction
 public class AttributeProcessor extends AgentProcessor {
 
-    private final List<ProcessorAction> actions;
+    private final List<CompiledAction> actions;
 
     private AttributeProcessor(
-            List<ProcessorAction> actions,
+            List<CompiledAction> actions,
             @Nullable IncludeExclude include,
             @Nullable IncludeExclude exclude) {
         super(include, exclude);
@@ -30,123 +30,108 @@ public class AttributeProcessor extends AgentProcessor {
     public static AttributeProcessor create(ProcessorConfig config) {
         IncludeExclude normalizedInclude = config.include != null ? getNormalizedIncludeExclude(config.include) : null;
         IncludeExclude normalizedExclude = config.exclude != null ? getNormalizedIncludeExclude(config.exclude) : null;
-        return new AttributeProcessor(config.actions, normalizedInclude, normalizedExclude);
+        List<CompiledAction> actions = new ArrayList<>();
+        for (ProcessorAction action : config.actions) {
+            actions.add(new CompiledAction(action));
+        }
+        return new AttributeProcessor(actions, normalizedInclude, normalizedExclude);
     }
 
     // Function to process actions
     public SpanData processActions(SpanData span) {
-        SpanData updatedSpan = span;
-        for (ProcessorAction actionObj : actions) {
-            updatedSpan = processAction(updatedSpan, actionObj);
+        MutableSpan mutableSpan = new MutableSpan(span);
+        processActions(mutableSpan);
+        return mutableSpan.toSpanData();
+    }
+
+    public void processActions(MutableSpan span) {
+        for (CompiledAction action : actions) {
+            processAction(span, action);
         }
-        return updatedSpan;
     }
 
-    private SpanData processAction(SpanData span, ProcessorAction actionObj) {
-        switch (actionObj.action) {
+    @Override
+    public void process(MutableSpan span) {
+        processActions(span);
+    }
+
+    private static void processAction(MutableSpan span, CompiledAction action) {
+        switch (action.config.action) {
             case insert:
-                return processInsertAction(span, actionObj);
+                processInsertAction(span, action);
+                break;
             case update:
-                return processUpdateAction(span, actionObj);
+                processUpdateAction(span, action);
+                break;
             case delete:
-                return processDeleteAction(span, actionObj);
+                processDeleteAction(span, action);
+                break;
             case hash:
-                return procesHashAction(span, actionObj);
+                procesHashAction(span, action);
+                break;
             case extract:
-                return processExtractAction(span, actionObj);
+                processExtractAction(span, action);
+                break;
             default:
-                return span;
+                break;
         }
     }
 
-    private SpanData processInsertAction(SpanData span, ProcessorAction actionObj) {
-        Attributes existingSpanAttributes = span.getAttributes();
-        //Update from existing attribute
-        if (actionObj.value != null) {
-            //update to new value
-            final AttributesBuilder builder = Attributes.builder();
-            builder.put(actionObj.key, actionObj.value);
-            builder.putAll(existingSpanAttributes);
-            return new MySpanData(span, builder.build());
+    private static void processInsertAction(MutableSpan span, CompiledAction action) {
+        if (span.getString(action.key) != null) {
+            // the existing attribute wins
+            return;
         }
-        String fromAttributeValue = getAttribute(existingSpanAttributes, AttributeKey.stringKey(actionObj.fromAttribute));
-        if (fromAttributeValue != null) {
-            final AttributesBuilder builder = Attributes.builder();
-            builder.put(actionObj.key, fromAttributeValue);
-            builder.putAll(existingSpanAttributes);
-            return new MySpanData(span, builder.build());
+        String newValue = getNewValue(span, action);
+        if (newValue != null) {
+            span.put(action.key, newValue);
         }
-        return span;
     }
 
-    private SpanData processUpdateAction(SpanData span, ProcessorAction actionObj) {
-        // Currently we only support String
-        // TODO don't instantiate new AttributeKey every time
-        String existingValue = getAttribute(span.getAttributes(), AttributeKey.stringKey(actionObj.key));
-        if (existingValue == null) {
-            return span;
+    private static void processUpdateAction(MutableSpan span, CompiledAction action) {
+        if (span.getString(action.key) == null) {
+            return;
         }
-        //Update from existing attribute
-        if (actionObj.value != null) {
-            //update to new value
-            AttributesBuilder builder = span.getAttributes().toBuilder();
-            builder.put(actionObj.key, actionObj.value);
-            return new MySpanData(span, builder.build());
+        String newValue = getNewValue(span, action);
+        if (newValue != null) {
+            span.put(action.key, newValue);
         }
-        String fromAttributeValue = getAttribute(span.getAttributes(), AttributeKey.stringKey(actionObj.fromAttribute));
-        if (fromAttributeValue != null) {
-            AttributesBuilder builder = span.getAttributes().toBuilder();
-            builder.put(actionObj.key, fromAttributeValue);
-            return new MySpanData(span, builder.build());
+    }
+
+    // either the configured value or the value of the configured fromAttribute
+    private static @Nullable String getNewValue(MutableSpan span, CompiledAction action) {
+        if (action.config.value != null) {
+            return action.config.value;
         }
-        return span;
+        return action.fromAttributeKey != null ? span.getString(action.fromAttributeKey) : null;
     }
 
-    private SpanData processDeleteAction(SpanData span, ProcessorAction actionObj) {
-        // Currently we only support String
-        // TODO don't instantiate new AttributeKey every time
-        String existingValue = getAttribute(span.getAttributes(), AttributeKey.stringKey(actionObj.key));
-        if (existingValue == null) {
-            return span;
+    private static void processDeleteAction(MutableSpan span, CompiledAction action) {
+        if (span.getString(action.key) != null) {
+            span.remove(action.config.key);
         }
-        AttributesBuilder builder = Attributes.builder();
-        span.getAttributes().forEach((key, value) -> {
-            if (!key.getKey().equals(actionObj.key)) {
-                putIntoBuilder(builder, key, value);
-            }
-        });
-        return new MySpanData(span, builder.build());
     }
 
-    private SpanData procesHashAction(SpanData span, ProcessorAction actionObj) {
-        // Currently we only support String
-        // TODO don't instantiate new AttributeKey every time
-        String existingValue = getAttribute(span.getAttributes(), AttributeKey.stringKey(actionObj.key));
-        AttributesBuilder builderCopy;
-        if (existingValue == null) {
-            return span;
+    private static void procesHashAction(MutableSpan span, CompiledAction action) {
+        String existingValue = span.getString(action.key);
+        if (existingValue != null) {
+            span.put(action.key, DigestUtils.sha1Hex(existingValue));
         }
-        builderCopy = span.getAttributes().toBuilder();
-        builderCopy.put(actionObj.key, DigestUtils.sha1Hex(existingValue));
-        return new MySpanData(span, builderCopy.build());
     }
 
-    private SpanData processExtractAction(SpanData span, ProcessorAction actionObj) {
-        // Currently we only support String
-        // TODO don't instantiate new AttributeKey every time
-        String existingValue = getAttribute(span.getAttributes(), AttributeKey.stringKey(actionObj.key));
+    private static void processExtractAction(MutableSpan span, CompiledAction action) {
+        String existingValue = span.getString(action.key);
         if (existingValue == null) {
-            return span;
+            return;
         }
-        Matcher matcher = actionObj.extractAttribute.pattern.matcher(existingValue);
+        Matcher matcher = action.config.extractAttribute.pattern.matcher(existingValue);
         if (!matcher.matches()) {
-            return span;
+            return;
         }
-        AttributesBuilder builder = span.getAttributes().toBuilder();
-        for (String groupName : actionObj.extractAttribute.groupNames) {
-            builder.put(groupName, matcher.group(groupName));
+        List<String> groupNames = action.config.extractAttribute.groupNames;
+        for (int i = 0; i < groupNames.size(); i++) {
+            span.put(action.groupKeys.get(i), matcher.group(groupNames.get(i)));
         }
-        return new MySpanData(span, builder.build());
     }
 
     // this won't be needed once we update to 0.13.0
@@ -162,30 +147,24 @@ public class AttributeProcessor extends AgentProcessor {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void putIntoBuilder(AttributesBuilder builder, AttributeKey<?> key, Object value) {
-        switch (key.getType()) {
-            case STRING:
-                builder.put((AttributeKey<String>) key, (String) value);
-                break;
-            case LONG:
-                builder.put((AttributeKey<Long>) key, (Long) value);
-                break;
-            case BOOLEAN:
-                builder.put((AttributeKey<Boolean>) key, (Boolean) value);
-                break;
-            case DOUBLE:
-                builder.put((AttributeKey<Double>) key, (Double) value);
-                break;
-            case STRING_ARRAY:
-            case LONG_ARRAY:
-            case BOOLEAN_ARRAY:
-            case DOUBLE_ARRAY:
-                builder.put((AttributeKey<List<?>>) key, (List<?>) value);
-                break;
-            default:
-                // TODO log at least a debug level message
-                break;
+    // the attribute keys of an action are resolved once instead of for every span
+    private static class CompiledAction {
+
+        private final ProcessorAction config;
+        private final AttributeKey<String> key;
+        private final @Nullable AttributeKey<String> fromAttributeKey;
+        private final List<AttributeKey<String>> groupKeys;
+
+        private CompiledAction(ProcessorAction config) {
+            this.config = config;
+            key = AttributeKey.stringKey(config.key);
+            fromAttributeKey = config.fromAttribute != null ? AttributeKey.stringKey(config.fromAttribute) : null;
+            groupKeys = new ArrayList<>();
+            if (config.extractAttribute != null) {
+                for (String groupName : config.extractAttribute.groupNames) {
+                    groupKeys.add(AttributeKey.stringKey(groupName));
+                }
+            }
         }
     }
 }
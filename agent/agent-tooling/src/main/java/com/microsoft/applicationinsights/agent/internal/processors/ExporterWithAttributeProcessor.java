@@ -6,7 +6,6 @@ import java.util.List;
 
 
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorConfig;
-import com.microsoft.applicationinsights.agent.internal.processors.AgentProcessor.IncludeExclude;
 import com.microsoft.applicationinsights.customExceptions.FriendlyException;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.trace.data.SpanData;
@@ -35,16 +34,11 @@ public class ExporterWithAttributeProcessor implements SpanExporter {
     }
 
     private SpanData process(SpanData span) {
-        IncludeExclude include = attributeProcessor.getInclude();
-        if (include != null && !include.isMatch(span)) {
-            //If Not included we can skip further processing
-            return span;
+        MutableSpan mutableSpan = new MutableSpan(span);
+        if (attributeProcessor.isApplicable(mutableSpan)) {
+            attributeProcessor.process(mutableSpan);
         }
-        IncludeExclude exclude = attributeProcessor.getExclude();
-        if (exclude != null && exclude.isMatch(span)) {
-            return span;
-        }
-        return attributeProcessor.processActions(span);
+        return mutableSpan.toSpanData();
     }
 
     @Override
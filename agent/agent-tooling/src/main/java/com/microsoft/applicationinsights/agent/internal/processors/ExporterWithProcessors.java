@@ -0,0 +1,63 @@
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorConfig;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorType;
+import com.microsoft.applicationinsights.customExceptions.FriendlyException;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+// applies all the configured processors, in order, in a single pass over each span
+//
+// as opposed to chaining an ExporterWithAttributeProcessor or ExporterWithSpanProcessor per processor,
+// the span is not copied into a new list and a new SpanData by each of the processors
+public class ExporterWithProcessors implements SpanExporter {
+
+    private final SpanExporter delegate;
+    private final List<AgentProcessor> processors;
+
+    // caller should check config.isValid before creating
+    public ExporterWithProcessors(List<ProcessorConfig> configs, SpanExporter delegate) throws FriendlyException {
+        List<AgentProcessor> processors = new ArrayList<>(configs.size());
+        for (ProcessorConfig config : configs) {
+            config.validate();
+            processors.add(config.type == ProcessorType.attribute ? AttributeProcessor.create(config) : SpanProcessor.create(config));
+        }
+        this.processors = processors;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        List<SpanData> copy = new ArrayList<>(spans.size());
+        for (SpanData span : spans) {
+            copy.add(process(span));
+        }
+        return delegate.export(copy);
+    }
+
+    private SpanData process(SpanData span) {
+        MutableSpan mutableSpan = new MutableSpan(span);
+        for (AgentProcessor processor : processors) {
+            // include and exclude see the changes made by the preceding processors
+            if (processor.isApplicable(mutableSpan)) {
+                processor.process(mutableSpan);
+            }
+        }
+        return mutableSpan.toSpanData();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return delegate.shutdown();
+    }
+}
@@ -6,7 +6,6 @@ import java.util.List;
 
 
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorConfig;
-import com.microsoft.applicationinsights.agent.internal.processors.AgentProcessor.IncludeExclude;
 import com.microsoft.applicationinsights.customExceptions.FriendlyException;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.trace.data.SpanData;
@@ -37,18 +36,11 @@ public class ExporterWithSpanProcessor implements SpanExporter {
     }
 
     private SpanData process(SpanData span) {
-        IncludeExclude include = spanProcessor.getInclude();
-        if (include != null && !include.isMatch(span)) {
-            //If Not included we can skip further processing
-            return span;
+        MutableSpan mutableSpan = new MutableSpan(span);
+        if (spanProcessor.isApplicable(mutableSpan)) {
+            spanProcessor.process(mutableSpan);
         }
-        IncludeExclude exclude = spanProcessor.getExclude();
-        if (exclude != null && exclude.isMatch(span)) {
-            return span;
-        }
-
-        SpanData updatedSpan = spanProcessor.processFromAttributes(span);
-        return spanProcessor.processToAttributes(updatedSpan);
+        return mutableSpan.toSpanData();
     }
 
     @Override
@@ -0,0 +1,105 @@
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+// the state of a span while it is going through the processors
+//
+// the attributes are only copied out of the span once a processor changes them,
+// and a single SpanData is built at the end, no matter how many processors changed the span
+public class MutableSpan {
+
+    private final SpanData span;
+
+    private String name;
+
+    // null until the first change to the attributes
+    private @Nullable Map<AttributeKey<?>, Object> attributes;
+
+    public MutableSpan(SpanData span) {
+        this.span = span;
+        this.name = span.getName();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    // Currently we only support String
+    public @Nullable String getString(AttributeKey<String> key) {
+        Object value = attributes != null ? attributes.get(key) : span.getAttributes().get(key);
+        // checking the return type won't be needed once we update to 0.13.0
+        // see https://github.com/open-telemetry/opentelemetry-java/pull/2284
+        return value instanceof String ? (String) value : null;
+    }
+
+    // null values are ignored, same as AttributesBuilder does
+    public void put(AttributeKey<String> key, @Nullable String value) {
+        if (value != null) {
+            getAttributesForUpdate().put(key, value);
+        }
+    }
+
+    // removes the attributes with the given name, whatever their type
+    public void remove(String name) {
+        getAttributesForUpdate().keySet().removeIf(key -> key.getKey().equals(name));
+    }
+
+    public SpanData toSpanData() {
+        if (attributes == null) {
+            return name.equals(span.getName()) ? span : new MySpanData(span, span.getAttributes(), name);
+        }
+        AttributesBuilder builder = Attributes.builder();
+        for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
+            putIntoBuilder(builder, entry.getKey(), entry.getValue());
+        }
+        return new MySpanData(span, builder.build(), name);
+    }
+
+    private Map<AttributeKey<?>, Object> getAttributesForUpdate() {
+        if (attributes == null) {
+            Map<AttributeKey<?>, Object> copy = new LinkedHashMap<>();
+            span.getAttributes().forEach(copy::put);
+            attributes = copy;
+        }
+        return attributes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putIntoBuilder(AttributesBuilder builder, AttributeKey<?> key, Object value) {
+        switch (key.getType()) {
+            case STRING:
+                builder.put((AttributeKey<String>) key, (String) value);
+                break;
+            case LONG:
+                builder.put((AttributeKey<Long>) key, (Long) value);
+                break;
+            case BOOLEAN:
+                builder.put((AttributeKey<Boolean>) key, (Boolean) value);
+                break;
+            case DOUBLE:
+                builder.put((AttributeKey<Double>) key, (Double) value);
+                break;
+            case STRING_ARRAY:
+            case LONG_ARRAY:
+            case BOOLEAN_ARRAY:
+            case DOUBLE_ARRAY:
+                builder.put((AttributeKey<List<?>>) key, (List<?>) value);
+                break;
+            default:
+                // TODO log at least a debug level message
+                break;
+        }
+    }
+}
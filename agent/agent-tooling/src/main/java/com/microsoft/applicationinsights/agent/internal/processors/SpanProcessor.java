@@ -8,35 +8,34 @@ import java.util.regex.Pattern;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorConfig;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.ProcessorActionAdaptor;
 import io.opentelemetry.api.common.AttributeKey;
-import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 
 public class SpanProcessor extends AgentProcessor {
-    private final List<AttributeKey<?>> fromAttributes;
+    private final List<AttributeKey<String>> fromAttributes;
     private final List<Pattern> toAttributeRulePatterns;
-    private final List<List<String>> groupNames;
+    // the attribute keys of the named groups of each toAttributes rule
+    private final List<List<AttributeKey<String>>> groupKeys;
     private final String separator;
 
     public SpanProcessor(@Nullable IncludeExclude include,
                          @Nullable IncludeExclude exclude,
-                         List<AttributeKey<?>> fromAttributes,
+                         List<AttributeKey<String>> fromAttributes,
                          List<Pattern> toAttributeRulePatterns,
-                         List<List<String>> groupNames,
+                         List<List<AttributeKey<String>>> groupKeys,
                          String separator) {
         super(include, exclude);
         this.fromAttributes = fromAttributes;
         this.toAttributeRulePatterns = toAttributeRulePatterns;
-        this.groupNames = groupNames;
+        this.groupKeys = groupKeys;
         this.separator = separator;
     }
 
     public static SpanProcessor create(ProcessorConfig config) {
         IncludeExclude normalizedInclude = config.include != null ? getNormalizedIncludeExclude(config.include) : null;
         IncludeExclude normalizedExclude = config.exclude != null ? getNormalizedIncludeExclude(config.exclude) : null;
-        List<AttributeKey<?>> fromAttributes = new ArrayList<>();
+        List<AttributeKey<String>> fromAttributes = new ArrayList<>();
         if (config.name.fromAttributes != null) {
             for (String attribute : config.name.fromAttributes) {
                 fromAttributes.add(AttributeKey.stringKey(attribute));
@@ -52,91 +51,99 @@ public class SpanProcessor extends AgentProcessor {
                 toAttributeRulePatterns.add(Pattern.compile(rule));
             }
         }
-        List<List<String>> groupNames = getGroupNamesList(toAttributeRules);
+        List<List<AttributeKey<String>>> groupKeys = getGroupKeysList(toAttributeRules);
         String separator = config.name.separator != null ? config.name.separator : "";
         return new SpanProcessor(normalizedInclude, normalizedExclude,
-                fromAttributes, toAttributeRulePatterns, groupNames, separator);
+                fromAttributes, toAttributeRulePatterns, groupKeys, separator);
     }
 
-    private static List<List<String>> getGroupNamesList(List<String> toAttributeRules) {
-        List<List<String>> groupNamesList = new ArrayList<>();
+    private static List<List<AttributeKey<String>>> getGroupKeysList(List<String> toAttributeRules) {
+        List<List<AttributeKey<String>>> groupKeysList = new ArrayList<>();
         for (String rule : toAttributeRules) {
-            groupNamesList.add(ProcessorActionAdaptor.getGroupNames(rule));
+            List<AttributeKey<String>> groupKeys = new ArrayList<>();
+            for (String groupName : ProcessorActionAdaptor.getGroupNames(rule)) {
+                groupKeys.add(AttributeKey.stringKey(groupName));
+            }
+            groupKeysList.add(groupKeys);
         }
-        return groupNamesList;
+        return groupKeysList;
+    }
+
+    @Override
+    public void process(MutableSpan span) {
+        processFromAttributes(span);
+        processToAttributes(span);
     }
 
     //fromAttributes represents the attribute keys to pull the values from to generate the new span name.
     public SpanData processFromAttributes(SpanData span) {
-        if (spanHasAllFromAttributeKeys(span)) {
-            StringBuffer updatedSpanBuffer = new StringBuffer();
-            Attributes existingSpanAttributes = span.getAttributes();
-            for (AttributeKey<?> attributeKey : fromAttributes) {
-                updatedSpanBuffer.append(existingSpanAttributes.get(attributeKey));
-                updatedSpanBuffer.append(separator);
-            }
-            // Removing the last appended separator
-            if (separator.length() > 0) {
-                updatedSpanBuffer.setLength(updatedSpanBuffer.length() - separator.length());
-            }
-            return new MySpanData(span, span.getAttributes(), new String(updatedSpanBuffer));
-        }
-        return span;
+        MutableSpan mutableSpan = new MutableSpan(span);
+        processFromAttributes(mutableSpan);
+        return mutableSpan.toSpanData();
     }
 
-    private boolean spanHasAllFromAttributeKeys(SpanData span) {
-        if (fromAttributes.isEmpty()) return false;
-        Attributes existingSpanAttributes = span.getAttributes();
-        for (AttributeKey<?> attributeKey : fromAttributes) {
-            if (existingSpanAttributes.get(attributeKey) == null) return false;
+    public void processFromAttributes(MutableSpan span) {
+        if (fromAttributes.isEmpty()) {
+            return;
+        }
+        StringBuilder updatedSpanBuffer = new StringBuilder();
+        for (AttributeKey<String> attributeKey : fromAttributes) {
+            String value = span.getString(attributeKey);
+            if (value == null) {
+                // the span doesn't have all the fromAttributes
+                return;
+            }
+            updatedSpanBuffer.append(value);
+            updatedSpanBuffer.append(separator);
         }
-        return true;
+        // Removing the last appended separator
+        if (separator.length() > 0) {
+            updatedSpanBuffer.setLength(updatedSpanBuffer.length() - separator.length());
+        }
+        span.setName(updatedSpanBuffer.toString());
     }
 
     //The following function extracts attributes from span name and replaces extracted parts with attribute names
     public SpanData processToAttributes(SpanData span) {
-        if (toAttributeRulePatterns.isEmpty()) {
-            return span;
-        }
+        MutableSpan mutableSpan = new MutableSpan(span);
+        processToAttributes(mutableSpan);
+        return mutableSpan.toSpanData();
+    }
 
-        String spanName = span.getName();
-        // copy existing attributes.
+    public void processToAttributes(MutableSpan span) {
         // According to Collector docs, The matched portion
         // in the span name is replaced by extracted attribute name. If the attributes exist
-        // they will be overwritten. Need a way to optimize this.
-        AttributesBuilder builder = span.getAttributes().toBuilder();
-        for (int i = 0; i < groupNames.size(); i++) {
-            spanName = applyRule(groupNames.get(i), toAttributeRulePatterns.get(i), spanName, builder);
+        // they will be overwritten.
+        String spanName = span.getName();
+        for (int i = 0; i < groupKeys.size(); i++) {
+            spanName = applyRule(groupKeys.get(i), toAttributeRulePatterns.get(i), spanName, span);
         }
-        return new MySpanData(span, builder.build(), spanName);
-
+        span.setName(spanName);
     }
 
-    private String applyRule(List<String> groupNamesList, Pattern pattern,
-                             String spanName, AttributesBuilder builder) {
-        if (groupNamesList.isEmpty()) return spanName;
+    private static String applyRule(List<AttributeKey<String>> groupKeysList, Pattern pattern,
+                                    String spanName, MutableSpan span) {
+        if (groupKeysList.isEmpty()) return spanName;
         Matcher matcher = pattern.matcher(spanName);
-        StringBuilder sb = new StringBuilder();
-        int lastEnd = 0;
         // As of now we are considering only first match.
-        if (matcher.find()) {
-            sb.append(spanName, lastEnd, matcher.start());
-            int innerLastEnd = matcher.start();
-            for (int i = 1; i <= groupNamesList.size(); i++) {
-                sb.append(spanName, innerLastEnd, matcher.start(i));
-                sb.append("{");
-                sb.append(groupNamesList.get(i - 1));
-                // add attribute key=groupNames.get(i-1), value=matcher.group(i)
-                builder.put(groupNamesList.get(i - 1), matcher.group(i));
-                sb.append("}");
-                innerLastEnd = matcher.end(i);
-            }
-            sb.append(spanName, innerLastEnd, matcher.end());
-            lastEnd = matcher.end();
+        if (!matcher.find()) {
+            return spanName;
         }
-        sb.append(spanName, lastEnd, spanName.length());
-
+        StringBuilder sb = new StringBuilder();
+        sb.append(spanName, 0, matcher.start());
+        int innerLastEnd = matcher.start();
+        for (int i = 1; i <= groupKeysList.size(); i++) {
+            AttributeKey<String> groupKey = groupKeysList.get(i - 1);
+            sb.append(spanName, innerLastEnd, matcher.start(i));
+            sb.append("{");
+            sb.append(groupKey.getKey());
+            // add attribute key=groupNames.get(i-1), value=matcher.group(i)
+            span.put(groupKey, matcher.group(i));
+            sb.append("}");
+            innerLastEnd = matcher.end(i);
+        }
+        sb.append(spanName, innerLastEnd, matcher.end());
+        sb.append(spanName, matcher.end(), spanName.length());
         return sb.toString();
     }
 }
-
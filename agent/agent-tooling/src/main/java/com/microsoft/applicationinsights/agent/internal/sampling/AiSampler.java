@@ -25,12 +25,15 @@ class AiSampler implements Sampler {
     // e.g. 50 for 1/2 or 33.33 for 1/3
     //
     // failure to follow this pattern can result in unexpected / incorrect computation of values in the portal
-    private final double defaultSamplingPercentage;
-    private final SamplingResult recordAndSampleAndAddTraceStateIfMissing;
+    private final SamplingPercentage defaultSamplingPercentage;
+    // the result for the last default sampling percentage, which only changes when it is rate limited
+    private volatile PercentageResult recordAndSampleAndAddTraceStateIfMissing;
 
     private final SamplingOverrides samplingOverrides;
 
     private final SamplingResult dropDecision;
+    // the decision when the trace id is sampled out, which is only recording the span when tail sampling is enabled
+    private final SamplingResult sampledOutDecision;
 
     private final BehaviorIfNoMatchingOverrides behaviorIfNoMatchingOverrides;
 
@@ -41,15 +44,19 @@ class AiSampler implements Sampler {
     // carried down by trace state to set the accurate value
     AiSampler(double samplingPercentage, SamplingOverrides samplingOverrides,
               BehaviorIfNoMatchingOverrides behaviorIfNoMatchingOverrides) {
+        this(SamplingPercentage.fixed(samplingPercentage), samplingOverrides, behaviorIfNoMatchingOverrides, false);
+    }
+
+    AiSampler(SamplingPercentage samplingPercentage, SamplingOverrides samplingOverrides,
+              BehaviorIfNoMatchingOverrides behaviorIfNoMatchingOverrides, boolean recordSampledOut) {
         this.defaultSamplingPercentage = samplingPercentage;
-        recordAndSampleAndAddTraceStateIfMissing =
-                SamplingOverrides.getRecordAndSampleAndAddTraceStateIfMissing(samplingPercentage);
 
         this.samplingOverrides = samplingOverrides;
 
         this.behaviorIfNoMatchingOverrides = behaviorIfNoMatchingOverrides;
 
         dropDecision = SamplingResult.create(SamplingDecision.DROP, Attributes.empty());
+        sampledOutDecision = recordSampledOut ? SamplingResult.create(SamplingDecision.RECORD_ONLY, Attributes.empty()) : dropDecision;
     }
 
     @Override
@@ -71,10 +78,11 @@ class AiSampler implements Sampler {
                 // this is used for localParentSampled and remoteParentSampled
                 // (note: currently sampling percentage portion of trace state is not propagated,
                 //        so it will always be missing in the remoteParentSampled case)
-                return recordAndSampleAndAddTraceStateIfMissing;
+                return getRecordAndSampleAndAddTraceStateIfMissing(defaultSamplingPercentage.getCurrent());
             case USE_DEFAULT_SAMPLING_PERCENTAGE:
                 // this is used for root sampler
-                return getSamplingResult(defaultSamplingPercentage, recordAndSampleAndAddTraceStateIfMissing, traceId, name);
+                double percentage = defaultSamplingPercentage.get();
+                return getSamplingResult(percentage, getRecordAndSampleAndAddTraceStateIfMissing(percentage), traceId, name);
             default:
                 throw new IllegalStateException("Unexpected BehaviorIfNoMatchingOverrides: " + behaviorIfNoMatchingOverrides);
         }
@@ -91,14 +99,34 @@ class AiSampler implements Sampler {
         }
         if (SamplingScoreGeneratorV2.getSamplingScore(traceId) >= percentage) {
             logger.debug("Item {} sampled out", name);
-            return dropDecision;
+            return sampledOutDecision;
         }
         return sampledSamplingResult;
     }
 
+    private SamplingResult getRecordAndSampleAndAddTraceStateIfMissing(double percentage) {
+        PercentageResult result = recordAndSampleAndAddTraceStateIfMissing;
+        if (result == null || result.percentage != percentage) {
+            result = new PercentageResult(percentage);
+            recordAndSampleAndAddTraceStateIfMissing = result;
+        }
+        return result.samplingResult;
+    }
+
     @Override
     public String getDescription() {
-        return "ApplicationInsights-specific trace id based sampler, with default sampling percentage: " + defaultSamplingPercentage;
+        return "ApplicationInsights-specific trace id based sampler, with default sampling percentage: " + defaultSamplingPercentage.getCurrent();
+    }
+
+    private static class PercentageResult {
+
+        private final double percentage;
+        private final SamplingResult samplingResult;
+
+        private PercentageResult(double percentage) {
+            this.percentage = percentage;
+            samplingResult = SamplingOverrides.getRecordAndSampleAndAddTraceStateIfMissing(percentage);
+        }
     }
 
     enum BehaviorIfNoMatchingOverrides {
@@ -0,0 +1,96 @@
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// adjusts the sampling percentage so that the number of sampled traces per second stays close to a target,
+// based on a moving average of the number of traces per second that are seen
+//
+// the percentage is only updated once per interval, by the thread which sees the end of the interval,
+// so that the hot path is an increment and a volatile read
+class RateLimitedSamplingPercentage implements SamplingPercentage {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitedSamplingPercentage.class);
+
+    private static final long UPDATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // weight of the last interval in the moving average of the rate,
+    // so that a burst is followed within a few seconds, but a single busy second does not cut sampling drastically
+    private static final double SMOOTHING_FACTOR = 0.3;
+
+    private final double targetPerSecond;
+    private final double maxPercentage;
+    private final LongSupplier nanoTime;
+
+    private final LongAdder itemCount = new LongAdder();
+    private final AtomicLong intervalStartNanos;
+
+    // only written by the thread which updates the percentage
+    private double averagePerSecond = Double.NaN;
+
+    private volatile double currentPercentage;
+
+    RateLimitedSamplingPercentage(double targetPerSecond, double maxPercentage) {
+        this(targetPerSecond, maxPercentage, System::nanoTime);
+    }
+
+    // visible for testing
+    RateLimitedSamplingPercentage(double targetPerSecond, double maxPercentage, LongSupplier nanoTime) {
+        this.targetPerSecond = targetPerSecond;
+        this.maxPercentage = maxPercentage;
+        this.nanoTime = nanoTime;
+        intervalStartNanos = new AtomicLong(nanoTime.getAsLong());
+        currentPercentage = maxPercentage;
+    }
+
+    @Override
+    public double get() {
+        long start = intervalStartNanos.get();
+        long now = nanoTime.getAsLong();
+        if (now - start >= UPDATE_INTERVAL_NANOS && intervalStartNanos.compareAndSet(start, now)) {
+            update(now - start);
+        }
+        // counted in the interval which starts with it
+        itemCount.increment();
+        return currentPercentage;
+    }
+
+    @Override
+    public double getCurrent() {
+        return currentPercentage;
+    }
+
+    private void update(long elapsedNanos) {
+        double perSecond = itemCount.sumThenReset() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        if (Double.isNaN(averagePerSecond)) {
+            averagePerSecond = perSecond;
+        } else {
+            averagePerSecond = SMOOTHING_FACTOR * perSecond + (1 - SMOOTHING_FACTOR) * averagePerSecond;
+        }
+        double percentage = toPercentage(averagePerSecond);
+        if (percentage != currentPercentage) {
+            logger.debug("Updating sampling percentage from {} to {} ({} items per second)",
+                    currentPercentage, percentage, averagePerSecond);
+            currentPercentage = percentage;
+        }
+    }
+
+    // visible for testing
+    double toPercentage(double perSecond) {
+        if (perSecond <= targetPerSecond) {
+            return maxPercentage;
+        }
+        double percentage = 100 * targetPerSecond / perSecond;
+        if (percentage >= maxPercentage) {
+            // already in a ratio of 100/N
+            return maxPercentage;
+        }
+        // rounding up the item count, so that the target is not exceeded
+        return 100.0 / Math.ceil(100 / percentage);
+    }
+}
@@ -1,16 +1,37 @@
 package com.microsoft.applicationinsights.agent.internal.sampling;
 
+import java.util.List;
+
+import com.microsoft.applicationinsights.agent.internal.Global;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
 
 public class Samplers {
 
+    // also publishes the percentage which is currently applied through Global, for the 2.x SDK telemetry
     public static Sampler getSampler(double samplingPercentage, Configuration config) {
         SamplingOverrides samplingOverrides = new SamplingOverrides(config.preview.sampling.overrides);
-        AiSampler rootSampler = new AiSampler(samplingPercentage, samplingOverrides,
-                AiSampler.BehaviorIfNoMatchingOverrides.USE_DEFAULT_SAMPLING_PERCENTAGE);
-        AiSampler parentSampledSampler = new AiSampler(samplingPercentage, samplingOverrides,
-                AiSampler.BehaviorIfNoMatchingOverrides.RECORD_AND_SAMPLE);
+        SamplingPercentage defaultSamplingPercentage;
+        if (config.preview.sampling.limitPerSecond != null) {
+            // shared by both samplers, so that the child spans carry the percentage which is currently applied
+            defaultSamplingPercentage = new RateLimitedSamplingPercentage(config.preview.sampling.limitPerSecond, samplingPercentage);
+        } else {
+            defaultSamplingPercentage = SamplingPercentage.fixed(samplingPercentage);
+        }
+        Global.setSamplingPercentage(defaultSamplingPercentage::getCurrent);
+        // with tail sampling, the spans that are sampled out are still recorded, for TailSamplingExporter to decide
+        boolean tailSampling = config.preview.tailSampling.enabled;
+        AiSampler rootSampler = new AiSampler(defaultSamplingPercentage, samplingOverrides,
+                AiSampler.BehaviorIfNoMatchingOverrides.USE_DEFAULT_SAMPLING_PERCENTAGE, tailSampling);
+        AiSampler parentSampledSampler = new AiSampler(defaultSamplingPercentage, samplingOverrides,
+                AiSampler.BehaviorIfNoMatchingOverrides.RECORD_AND_SAMPLE, tailSampling);
         // ignoreRemoteParentNotSampled is currently needed
         // because .NET SDK always propagates trace flags "00" (not sampled)
         // NOTE: once we start propagating sampling percentage over the wire, we can use that to know that we can
@@ -22,11 +43,36 @@ public class Samplers {
                 // intentionally not allowing to capture a downstream span when upstream span has not been sampled
                 // because this will lead to broken traces in A (sampled) -> B (not sampled) -> C (sampled)
                 // C will point to parent B, but B will not be exported
-                .setLocalParentNotSampled(Sampler.alwaysOff())
+                .setLocalParentNotSampled(tailSampling ? RecordingParentSampler.INSTANCE : Sampler.alwaysOff())
                 // can filter out subtree of sampled trace, by applying sampling override
                 .setRemoteParentSampled(parentSampledSampler)
                 // can filter out subtree of sampled trace, by applying sampling override
                 .setLocalParentSampled(parentSampledSampler)
                 .build();
     }
+
+    // records the spans whose local parent is recorded (but not sampled), so that tail sampling can keep
+    // the whole trace, and drops the others (e.g. the subtree of a span dropped by a sampling override)
+    private static class RecordingParentSampler implements Sampler {
+
+        private static final RecordingParentSampler INSTANCE = new RecordingParentSampler();
+
+        private static final SamplingResult RECORD_ONLY = SamplingResult.create(SamplingDecision.RECORD_ONLY);
+        private static final SamplingResult DROP = SamplingResult.create(SamplingDecision.DROP);
+
+        @Override
+        public SamplingResult shouldSample(Context parentContext,
+                                           String traceId,
+                                           String name,
+                                           SpanKind spanKind,
+                                           Attributes attributes,
+                                           List<LinkData> parentLinks) {
+            return Span.fromContext(parentContext).isRecording() ? RECORD_ONLY : DROP;
+        }
+
+        @Override
+        public String getDescription() {
+            return "RecordingParentSampler";
+        }
+    }
 }
@@ -3,9 +3,13 @@ package com.microsoft.applicationinsights.agent.internal.sampling;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import com.microsoft.applicationinsights.agent.Exporter;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.MatchType;
@@ -16,28 +20,168 @@ import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.TraceState;
 import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
 import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 // TODO find a better name for this class (and MatcherGroup too)
+//
+// the overrides are indexed so that a span is only matched against the overrides which can possibly match it:
+// * an override with at least one strict attribute is only tried when the span has that attribute key and value
+//   (a single hash lookup per distinct key, instead of one string comparison per override)
+// * an override with only regexp attributes is only tried when the span value of its first regexp attribute
+//   matches the regexps of all such overrides on that key merged into a single pattern
+//   (a single regexp evaluation per distinct key when none of them match, which is the common case)
+// the first matching override (in configuration order) still wins
 class SamplingOverrides {
 
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+
     private final List<MatcherGroup> matcherGroups;
 
+    private final List<StrictIndex> strictIndexes;
+    private final List<RegexpIndex> regexpIndexes;
+
     SamplingOverrides(List<SamplingOverride> overrides) {
         matcherGroups = new ArrayList<>();
+        Map<String, Map<String, List<Integer>>> strictCandidates = new LinkedHashMap<>();
+        Map<String, List<Integer>> regexpCandidates = new LinkedHashMap<>();
+        Map<String, List<String>> regexps = new HashMap<>();
         for (SamplingOverride override : overrides) {
+            int index = matcherGroups.size();
             matcherGroups.add(new MatcherGroup(override));
+            SamplingOverrideAttribute strictAttribute = getFirstAttribute(override, MatchType.strict);
+            if (strictAttribute != null) {
+                strictCandidates.computeIfAbsent(strictAttribute.key, k -> new HashMap<>())
+                        .computeIfAbsent(strictAttribute.value, k -> new ArrayList<>())
+                        .add(index);
+                continue;
+            }
+            SamplingOverrideAttribute regexpAttribute = getFirstAttribute(override, MatchType.regexp);
+            if (regexpAttribute == null) {
+                // configuration validation doesn't allow overrides without attributes
+                throw new IllegalStateException("Sampling override has no attributes");
+            }
+            regexpCandidates.computeIfAbsent(regexpAttribute.key, k -> new ArrayList<>()).add(index);
+            regexps.computeIfAbsent(regexpAttribute.key, k -> new ArrayList<>()).add(regexpAttribute.value);
+        }
+        strictIndexes = new ArrayList<>();
+        for (Map.Entry<String, Map<String, List<Integer>>> entry : strictCandidates.entrySet()) {
+            Map<String, int[]> candidatesByValue = new HashMap<>();
+            for (Map.Entry<String, List<Integer>> valueEntry : entry.getValue().entrySet()) {
+                candidatesByValue.put(valueEntry.getKey(), toArray(valueEntry.getValue()));
+            }
+            strictIndexes.add(new StrictIndex(entry.getKey(), candidatesByValue));
+        }
+        regexpIndexes = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> entry : regexpCandidates.entrySet()) {
+            regexpIndexes.add(new RegexpIndex(entry.getKey(), mergeRegexps(regexps.get(entry.getKey())),
+                    toArray(entry.getValue())));
         }
     }
 
     MatcherGroup getOverride(Attributes attributes) {
-        for (MatcherGroup matcherGroups : matcherGroups) {
-            if (matcherGroups.matches(attributes)) {
-                return matcherGroups;
+        // the index of the first matching override found so far
+        int first = Integer.MAX_VALUE;
+        for (StrictIndex strictIndex : strictIndexes) {
+            String value = attributes.get(strictIndex.key);
+            if (value != null) {
+                first = getFirstMatch(strictIndex.candidatesByValue.get(value), attributes, first);
+            }
+        }
+        for (RegexpIndex regexpIndex : regexpIndexes) {
+            if (regexpIndex.candidates[0] >= first) {
+                // none of these can come before the override already found
+                continue;
+            }
+            String value = attributes.get(regexpIndex.key);
+            if (value != null && (regexpIndex.merged == null || regexpIndex.merged.matcher(value).matches())) {
+                first = getFirstMatch(regexpIndex.candidates, attributes, first);
+            }
+        }
+        return first == Integer.MAX_VALUE ? null : matcherGroups.get(first);
+    }
+
+    // candidates are in configuration order
+    private int getFirstMatch(int[] candidates, Attributes attributes, int first) {
+        if (candidates == null) {
+            return first;
+        }
+        for (int candidate : candidates) {
+            if (candidate >= first) {
+                break;
+            }
+            if (matcherGroups.get(candidate).matches(attributes)) {
+                return candidate;
+            }
+        }
+        return first;
+    }
+
+    private static SamplingOverrideAttribute getFirstAttribute(SamplingOverride override, MatchType matchType) {
+        for (SamplingOverrideAttribute attribute : override.attributes) {
+            if (attribute.matchType == matchType) {
+                return attribute;
             }
         }
         return null;
     }
 
+    // returns a pattern which matches a value if (and only if) one of the regexps matches it,
+    // or null if there is a single regexp or the regexps cannot be safely merged
+    // (in which case each of them is evaluated)
+    // visible for testing
+    static @Nullable Pattern mergeRegexps(List<String> regexps) {
+        if (regexps.size() == 1) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String regexp : regexps) {
+            if (BACK_REFERENCE.matcher(regexp).find()) {
+                // group numbers are shifted by the groups of the preceding regexps
+                return null;
+            }
+            if (sb.length() > 0) {
+                sb.append('|');
+            }
+            sb.append("(?:").append(regexp).append(')');
+        }
+        try {
+            return Pattern.compile(sb.toString());
+        } catch (PatternSyntaxException e) {
+            // e.g. the same named group in two of the regexps
+            return null;
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static class StrictIndex {
+        private final AttributeKey<String> key;
+        private final Map<String, int[]> candidatesByValue;
+
+        private StrictIndex(String key, Map<String, int[]> candidatesByValue) {
+            this.key = AttributeKey.stringKey(key);
+            this.candidatesByValue = candidatesByValue;
+        }
+    }
+
+    private static class RegexpIndex {
+        private final AttributeKey<String> key;
+        private final @Nullable Pattern merged;
+        private final int[] candidates;
+
+        private RegexpIndex(String key, @Nullable Pattern merged, int[] candidates) {
+            this.key = AttributeKey.stringKey(key);
+            this.merged = merged;
+            this.candidates = candidates;
+        }
+    }
+
     static SamplingResult getRecordAndSampleAndOverwriteTraceState(double samplingPercentage) {
         return new TraceStateUpdatingSamplingResult(SamplingDecision.RECORD_AND_SAMPLE, toRoundedString(samplingPercentage), true);
     }
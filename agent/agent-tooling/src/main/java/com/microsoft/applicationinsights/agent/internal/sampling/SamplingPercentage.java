@@ -0,0 +1,19 @@
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+// the sampling percentage that the AiSampler applies when no sampling override matches,
+// which is either fixed, or adjusted over time by RateLimitedSamplingPercentage
+interface SamplingPercentage {
+
+    // called for each span that is sampled with this percentage,
+    // so it must be cheap and it must return a percentage in a ratio of 100/N
+    double get();
+
+    // the percentage that is currently applied, for the spans that are not sampled with it (e.g. child spans)
+    default double getCurrent() {
+        return get();
+    }
+
+    static SamplingPercentage fixed(double percentage) {
+        return () -> percentage;
+    }
+}
@@ -0,0 +1,222 @@
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import com.microsoft.applicationinsights.agent.Exporter;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.SamplingOverride;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.TailSampling;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.TailSamplingRule;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.extension.incubator.trace.data.DelegatingSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers the spans of each trace until its local root span ends, and then exports the whole trace when one of its
+ * spans failed, when the local root took longer than the latency threshold, or when one of its spans matches a rule.
+ * Otherwise only the spans that the head sampler sampled are exported.
+ *
+ * The traces which are kept this way are sampled at 100% (whatever the head sampler decided), so their spans are
+ * exported with a sampling percentage of 100, while the other traces keep the percentage of the head sampler,
+ * which keeps the item counts accurate.
+ *
+ * The buffer is bounded by {@code maxBufferedSpans}, and the traces whose local root does not end within
+ * {@code maxTraceDurationSeconds} are decided with the spans buffered so far (the oldest traces first in both cases).
+ * Spans which end after their local root are exported per the head sampling decision.
+ *
+ * Only spans go through this exporter: the telemetry tracked through the 2.x SDK while a span is current is sampled
+ * per the head sampling decision, and is not kept along with the traces that only the tail decision keeps.
+ *
+ * Not thread safe, this relies on the spans being exported from the single {@code AsyncSpanExportProcessor} thread.
+ */
+public class TailSamplingExporter implements SpanExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TailSamplingExporter.class);
+
+    private static final String KEPT_SAMPLING_PERCENTAGE = "100";
+
+    private final SpanExporter delegate;
+    private final boolean keepErrors;
+    // 0 when disabled
+    private final long latencyThresholdNanos;
+    @Nullable
+    private final SamplingOverrides rules;
+    private final int maxBufferedSpans;
+    private final long maxTraceDurationNanos;
+    private final LongSupplier nanoTime;
+
+    // in the order the traces were first seen, so that the oldest ones are decided first
+    private final Map<String, BufferedTrace> traces = new LinkedHashMap<>();
+    private int bufferedSpans;
+
+    public TailSamplingExporter(SpanExporter delegate, TailSampling config) {
+        this(delegate, config, System::nanoTime);
+    }
+
+    // visible for testing
+    TailSamplingExporter(SpanExporter delegate, TailSampling config, LongSupplier nanoTime) {
+        this.delegate = delegate;
+        keepErrors = config.keepErrors;
+        latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.latencyThresholdMillis);
+        rules = config.rules.isEmpty() ? null : new SamplingOverrides(toSamplingOverrides(config.rules));
+        maxBufferedSpans = config.maxBufferedSpans;
+        maxTraceDurationNanos = TimeUnit.SECONDS.toNanos(config.maxTraceDurationSeconds);
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        List<SpanData> decided = new ArrayList<>();
+        long now = nanoTime.getAsLong();
+        for (SpanData span : spans) {
+            SpanContext parent = span.getParentSpanContext();
+            boolean localRoot = !parent.isValid() || parent.isRemote();
+            BufferedTrace trace = traces.get(span.getTraceId());
+            if (localRoot) {
+                if (trace != null) {
+                    traces.remove(span.getTraceId());
+                    bufferedSpans -= trace.spans.size();
+                } else {
+                    trace = new BufferedTrace(now);
+                }
+                trace.add(span);
+                decide(trace, span, decided);
+                continue;
+            }
+            if (trace == null) {
+                trace = new BufferedTrace(now);
+                traces.put(span.getTraceId(), trace);
+            }
+            trace.add(span);
+            bufferedSpans++;
+        }
+        evict(now, decided);
+        return decided.isEmpty() ? CompletableResultCode.ofSuccess() : delegate.export(decided);
+    }
+
+    /**
+     * Decides the buffered traces (since their local root has not ended yet, the latency threshold does not apply),
+     * and then flushes the delegate.
+     */
+    @Override
+    public CompletableResultCode flush() {
+        List<SpanData> decided = new ArrayList<>();
+        for (BufferedTrace trace : traces.values()) {
+            decide(trace, null, decided);
+        }
+        traces.clear();
+        bufferedSpans = 0;
+        if (!decided.isEmpty()) {
+            delegate.export(decided);
+        }
+        return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return delegate.shutdown();
+    }
+
+    // visible for testing
+    int getBufferedSpans() {
+        return bufferedSpans;
+    }
+
+    private void evict(long now, List<SpanData> decided) {
+        Iterator<BufferedTrace> i = traces.values().iterator();
+        while (i.hasNext()) {
+            BufferedTrace trace = i.next();
+            if (bufferedSpans <= maxBufferedSpans && now - trace.firstSeenNanos < maxTraceDurationNanos) {
+                break;
+            }
+            i.remove();
+            bufferedSpans -= trace.spans.size();
+            decide(trace, null, decided);
+        }
+    }
+
+    private void decide(BufferedTrace trace, @Nullable SpanData localRoot, List<SpanData> decided) {
+        boolean keep = trace.matched
+                || (localRoot != null && latencyThresholdNanos > 0
+                && localRoot.getEndEpochNanos() - localRoot.getStartEpochNanos() >= latencyThresholdNanos);
+        if (keep) {
+            logger.debug("Trace {} kept by tail sampling", trace.spans.get(0).getTraceId());
+        }
+        for (SpanData span : trace.spans) {
+            if (keep) {
+                decided.add(new TailSampledSpanData(span));
+            } else if (span.getSpanContext().isSampled()) {
+                decided.add(span);
+            }
+        }
+    }
+
+    private boolean matches(SpanData span) {
+        if (keepErrors && span.getStatus().getStatusCode() == StatusCode.ERROR) {
+            return true;
+        }
+        return rules != null && rules.getOverride(span.getAttributes()) != null;
+    }
+
+    private static List<SamplingOverride> toSamplingOverrides(List<TailSamplingRule> rules) {
+        List<SamplingOverride> overrides = new ArrayList<>();
+        for (TailSamplingRule rule : rules) {
+            SamplingOverride override = new SamplingOverride();
+            override.attributes = rule.attributes;
+            override.percentage = 100.0;
+            override.id = rule.id;
+            overrides.add(override);
+        }
+        return overrides;
+    }
+
+    private class BufferedTrace {
+
+        private final long firstSeenNanos;
+        private final List<SpanData> spans = new ArrayList<>();
+        private boolean matched;
+
+        private BufferedTrace(long firstSeenNanos) {
+            this.firstSeenNanos = firstSeenNanos;
+        }
+
+        private void add(SpanData span) {
+            spans.add(span);
+            if (!matched && matches(span)) {
+                matched = true;
+            }
+        }
+    }
+
+    private static class TailSampledSpanData extends DelegatingSpanData {
+
+        private final SpanContext spanContext;
+
+        private TailSampledSpanData(SpanData delegate) {
+            super(delegate);
+            SpanContext original = delegate.getSpanContext();
+            spanContext = SpanContext.create(original.getTraceId(), original.getSpanId(), TraceFlags.getSampled(),
+                    original.getTraceState().toBuilder()
+                            .put(Exporter.SAMPLING_PERCENTAGE_TRACE_STATE, KEPT_SAMPLING_PERCENTAGE)
+                            .build());
+        }
+
+        @Override
+        public SpanContext getSpanContext() {
+            return spanContext;
+        }
+    }
+}
@@ -1,20 +1,21 @@
 package com.microsoft.applicationinsights.agent.internal.wasbootstrap;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.agent.Exporter;
+import com.microsoft.applicationinsights.agent.internal.AsyncSpanExportProcessor;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.AsyncSpanExport;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorConfig;
-import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorType;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.QueueFullPolicy;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.TailSampling;
 import com.microsoft.applicationinsights.agent.internal.Global;
-import com.microsoft.applicationinsights.agent.internal.processors.ExporterWithAttributeProcessor;
-import com.microsoft.applicationinsights.agent.internal.processors.ExporterWithSpanProcessor;
+import com.microsoft.applicationinsights.agent.internal.processors.ExporterWithProcessors;
 import com.microsoft.applicationinsights.agent.internal.propagator.DelegatingPropagator;
 import com.microsoft.applicationinsights.agent.internal.sampling.DelegatingSampler;
 import com.microsoft.applicationinsights.agent.internal.sampling.Samplers;
+import com.microsoft.applicationinsights.agent.internal.sampling.TailSamplingExporter;
 import io.opentelemetry.sdk.autoconfigure.spi.SdkTracerProviderConfigurer;
 import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
 import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
@@ -43,31 +44,33 @@ public class OpenTelemetryConfigurer implements SdkTracerProviderConfigurer {
             // and the default for DelegatingSampler is to not sample anything)
         }
 
-        List<ProcessorConfig> processors = new ArrayList<>(config.preview.processors);
-        // Reversing the order of processors before passing it to SpanProcessor
-        Collections.reverse(processors);
+        Exporter exporter = new Exporter(telemetryClient, config.preview.directSpanExport, Global.getLogDeduplicator());
 
-        // NOTE if changing the span processor to something async, flush it in the shutdown hook before flushing TelemetryClient
-        if (!processors.isEmpty()) {
-            SpanExporter currExporter = null;
-            for (ProcessorConfig processorConfig : processors) {
-
-                if (currExporter == null) {
-                    currExporter = processorConfig.type == ProcessorType.attribute ?
-                            new ExporterWithAttributeProcessor(processorConfig, new Exporter(telemetryClient)) :
-                            new ExporterWithSpanProcessor(processorConfig, new Exporter(telemetryClient));
+        List<ProcessorConfig> processors = config.preview.processors;
 
-                } else {
-                    currExporter = processorConfig.type == ProcessorType.attribute ?
-                            new ExporterWithAttributeProcessor(processorConfig, currExporter) :
-                            new ExporterWithSpanProcessor(processorConfig, currExporter);
-                }
-            }
-
-            tracerProvider.addSpanProcessor(SimpleSpanProcessor.create(currExporter));
+        SpanExporter currExporter = exporter;
+        if (!processors.isEmpty()) {
+            // all the processors are applied in a single pass, in the order they are configured
+            currExporter = new ExporterWithProcessors(processors, exporter);
+        }
+        TailSampling tailSampling = config.preview.tailSampling;
+        if (tailSampling.enabled) {
+            // before the processors, so that the rules match the attributes of the spans as they were recorded
+            currExporter = new TailSamplingExporter(currExporter, tailSampling);
+        }
 
+        AsyncSpanExport asyncSpanExport = config.preview.asyncSpanExport;
+        if (asyncSpanExport.enabled) {
+            // flushed in the shutdown hook before TelemetryClient is flushed, see AiComponentInstaller
+            AsyncSpanExportProcessor spanExportProcessor = new AsyncSpanExportProcessor(currExporter,
+                    asyncSpanExport.maxQueueSize, asyncSpanExport.maxExportBatchSize,
+                    asyncSpanExport.queueFullPolicy == QueueFullPolicy.dropOldest ?
+                            AsyncSpanExportProcessor.QueueFullPolicy.DROP_OLDEST : AsyncSpanExportProcessor.QueueFullPolicy.DROP_NEW,
+                    tailSampling.enabled);
+            Global.setSpanExportProcessor(spanExportProcessor);
+            tracerProvider.addSpanProcessor(spanExportProcessor);
         } else {
-            tracerProvider.addSpanProcessor(SimpleSpanProcessor.create(new Exporter(telemetryClient)));
+            tracerProvider.addSpanProcessor(SimpleSpanProcessor.create(currExporter));
         }
     }
 }
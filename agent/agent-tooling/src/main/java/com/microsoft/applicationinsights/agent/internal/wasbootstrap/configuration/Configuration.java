@@ -67,6 +67,11 @@ public class Configuration {
         insert, update, delete, hash, extract
     }
 
+    public enum QueueFullPolicy {
+        // Moshi JSON builder do not allow case insensitive mapping
+        dropNew, dropOldest
+    }
+
     public enum ProcessorType {
         // Moshi JSON builder do not allow case insensitive mapping
         attribute("an attribute"),
@@ -94,6 +99,16 @@ public class Configuration {
     public static class SamplingPreview {
 
         public List<SamplingOverride> overrides = new ArrayList<>();
+        // when set, the sampling percentage is lowered under load so that about this many traces are sampled per second
+        // (the sampling percentage is then the upper bound, and sampling overrides are still applied as configured)
+        public Double limitPerSecond;
+
+        public void validate() throws FriendlyException {
+            if (limitPerSecond != null && !(limitPerSecond > 0)) {
+                throw new FriendlyException("The sampling \"limitPerSecond\" is not a positive number: " + limitPerSecond,
+                        "Please provide a positive number for the sampling \"limitPerSecond\", or remove it to sample with a fixed percentage.");
+            }
+        }
     }
 
     public static class JmxMetric {
@@ -190,6 +205,27 @@ public class Configuration {
         @Deprecated
         public boolean httpMethodInOperationName;
         public LiveMetrics liveMetrics = new LiveMetrics();
+        public AsyncSpanExport asyncSpanExport = new AsyncSpanExport();
+        public TailSampling tailSampling = new TailSampling();
+        // serializes request and dependency spans straight into the ingestion format, skipping the
+        // 2.x telemetry object model that is otherwise built for each span
+        public boolean directSpanExport;
+        // keeps telemetry that could not be sent in memory-mapped segment files that are appended to,
+        // instead of writing one file per batch
+        public boolean segmentedOfflineStorage;
+        // number of threads serializing and compressing the batches of telemetry before they are sent,
+        // 0 keeps the default
+        public int serializationThreads;
+        // number of telemetries which may wait for the serialization threads before serializationQueueFullPolicy
+        // applies, 0 keeps the default
+        public int serializationQueueCapacity;
+        public QueueFullPolicy serializationQueueFullPolicy = QueueFullPolicy.dropNew;
+        // aggregates the metrics tracked by the 2.x SDK and by Micrometer, and sends a single metric
+        // per series (name and dimensions) every metricIntervalSeconds
+        public MetricAggregation metricAggregation = new MetricAggregation();
+        // only sends the first few occurrences per window of the same log or exception,
+        // and then a summary with the number of occurrences that were not sent
+        public LogDeduplication logDeduplication = new LogDeduplication();
 
         public ProfilerConfiguration profiler = new ProfilerConfiguration();
         public GcEventConfiguration gcEvents = new GcEventConfiguration();
@@ -213,6 +249,97 @@ public class Configuration {
 
     public static class LiveMetrics {
         public boolean enabled = true;
+        // the number of request names which are counted separately per interval, 0 disables the breakdown
+        public int maxOperations;
+    }
+
+    public static class MetricAggregation {
+        public boolean enabled;
+        // the values of the series beyond this number are aggregated without their dimensions
+        public int maxSeries = 1000;
+    }
+
+    public static class LogDeduplication {
+        public boolean enabled;
+        public int maxPerWindow = 10;
+        public int windowSeconds = 60;
+        // the logs beyond this number of distinct logs and exceptions evict the least recently seen ones
+        public int maxKeys = 1000;
+
+        public void validate() throws FriendlyException {
+            if (!enabled) {
+                return;
+            }
+            if (maxPerWindow <= 0 || windowSeconds <= 0 || maxKeys <= 0) {
+                throw new FriendlyException("The log deduplication configuration has a \"maxPerWindow\", \"windowSeconds\" or \"maxKeys\" that is not positive.",
+                        "Please provide a positive \"maxPerWindow\", \"windowSeconds\" and \"maxKeys\" for log deduplication.");
+            }
+        }
+    }
+
+    public static class AsyncSpanExport {
+        // when disabled, spans are converted and handed to the channel on the thread that ends them
+        public boolean enabled = true;
+        public int maxQueueSize = 2048;
+        public int maxExportBatchSize = 512;
+        public QueueFullPolicy queueFullPolicy = QueueFullPolicy.dropNew;
+
+        public void validate() throws FriendlyException {
+            if (!enabled) {
+                return;
+            }
+            if (maxQueueSize <= 0 || maxExportBatchSize <= 0) {
+                throw new FriendlyException("The async span export configuration has a \"maxQueueSize\" or \"maxExportBatchSize\" that is not positive.",
+                        "Please provide a positive \"maxQueueSize\" and \"maxExportBatchSize\" for async span export.");
+            }
+            if (queueFullPolicy == null) {
+                throw new FriendlyException("The async span export configuration has an invalid \"queueFullPolicy\".",
+                        "Please provide a \"queueFullPolicy\" of \"dropNew\" or \"dropOldest\" for async span export.");
+            }
+        }
+    }
+
+    public static class TailSampling {
+        // when enabled, the spans that the head sampler does not sample are still recorded, and the spans of each
+        // trace are buffered until its local root span ends, to keep the traces which match the criteria below.
+        // only the spans are kept this way, the telemetry tracked through the 2.x SDK (events, traces, metrics...)
+        // follows the head sampling decision, so it is missing from the traces which are only kept by tail sampling
+        public boolean enabled;
+        public boolean keepErrors = true;
+        // 0 disables it
+        public long latencyThresholdMillis;
+        // traces with a span that matches all the attributes of one of the rules are kept
+        public List<TailSamplingRule> rules = new ArrayList<>();
+        public int maxBufferedSpans = 10000;
+        public int maxTraceDurationSeconds = 30;
+
+        public void validate() throws FriendlyException {
+            if (!enabled) {
+                return;
+            }
+            if (latencyThresholdMillis < 0 || maxBufferedSpans <= 0 || maxTraceDurationSeconds <= 0) {
+                throw new FriendlyException("The tail sampling configuration has a negative \"latencyThresholdMillis\", or a \"maxBufferedSpans\" or \"maxTraceDurationSeconds\" that is not positive.",
+                        "Please provide a non negative \"latencyThresholdMillis\", and a positive \"maxBufferedSpans\" and \"maxTraceDurationSeconds\" for tail sampling.");
+            }
+            for (TailSamplingRule rule : rules) {
+                rule.validate();
+            }
+        }
+    }
+
+    public static class TailSamplingRule {
+        public List<SamplingOverrideAttribute> attributes = new ArrayList<>();
+        public String id; // optional, used for debugging purposes only
+
+        public void validate() throws FriendlyException {
+            if (attributes.isEmpty()) {
+                throw new FriendlyException("A tail sampling rule has no attributes.",
+                        "Please provide one or more attributes for the tail sampling rule.");
+            }
+            for (SamplingOverrideAttribute attribute : attributes) {
+                attribute.validate();
+            }
+        }
     }
 
     public static class SelfDiagnostics {
@@ -590,6 +717,75 @@ public class Configuration {
         public boolean enabled = false;
         public String memoryTriggeredSettings = "profile";
         public String cpuTriggeredSettings = "profile";
+        // keeps a low overhead JFR recording all the time, so that the profile of a breach covers the time before it
+        public boolean continuousRecordingEnabled = false;
+        public int continuousRecordingSecondsBeforeBreach = 60;
+        public int continuousRecordingSecondsAfterBreach = 30;
+        public int continuousRecordingMaxSizeMb = 100;
+        // triggers on the metrics which are not configured from the portal, at most one per metric
+        public List<ProfilerTrigger> triggers = new ArrayList<>();
+
+        public void validate() throws FriendlyException {
+            if (continuousRecordingEnabled && (continuousRecordingSecondsBeforeBreach < 0 || continuousRecordingSecondsAfterBreach < 0
+                    || continuousRecordingMaxSizeMb <= 0)) {
+                throw new FriendlyException("The continuous profiler recording has a negative \"continuousRecordingSecondsBeforeBreach\" or \"continuousRecordingSecondsAfterBreach\", or a \"continuousRecordingMaxSizeMb\" that is not positive.",
+                        "Please provide non negative durations and a positive max size for the continuous profiler recording.");
+            }
+            List<ProfilerTriggerMetric> metrics = new ArrayList<>();
+            for (ProfilerTrigger trigger : triggers) {
+                trigger.validate();
+                if (metrics.contains(trigger.metric)) {
+                    throw new FriendlyException("More than one profiler trigger is configured for the metric \"" + trigger.metric + "\".",
+                            "Please configure at most one profiler trigger per metric.");
+                }
+                metrics.add(trigger.metric);
+            }
+        }
+    }
+
+    public enum ProfilerTriggerMetric {
+        // Moshi JSON builder do not allow case insensitive mapping
+        gcPauseRatio, requestLatency, requestFailureRate, threadCount, allocationRate
+    }
+
+    public enum ProfilerTriggerAggregation {
+        // Moshi JSON builder do not allow case insensitive mapping
+        average, min, max, p50, p95, p99
+    }
+
+    public enum ProfilerTriggerCondition {
+        // Moshi JSON builder do not allow case insensitive mapping
+        above, below
+    }
+
+    public static class ProfilerTrigger {
+        // gcPauseRatio and requestFailureRate are percentages, requestLatency is the 99th percentile of the request
+        // durations in milliseconds, allocationRate is in MB per second
+        public ProfilerTriggerMetric metric;
+        // how the samples in the window are aggregated before being compared to the threshold
+        public ProfilerTriggerAggregation aggregation = ProfilerTriggerAggregation.average;
+        public ProfilerTriggerCondition condition = ProfilerTriggerCondition.above;
+        public Float threshold;
+        public boolean enabled = true;
+        // 0 for the default window of the profiler alerts
+        public int windowSeconds;
+        public int profileDurationSeconds = 120;
+        public int cooldownSeconds = 4 * 60 * 60;
+
+        public void validate() throws FriendlyException {
+            if (metric == null) {
+                throw new FriendlyException("A profiler trigger is missing a \"metric\".",
+                        "Please provide a \"metric\" for the profiler trigger.");
+            }
+            if (threshold == null) {
+                throw new FriendlyException("A profiler trigger is missing a \"threshold\".",
+                        "Please provide a \"threshold\" for the profiler trigger.");
+            }
+            if (windowSeconds < 0 || profileDurationSeconds <= 0 || cooldownSeconds < 0) {
+                throw new FriendlyException("A profiler trigger has a negative \"windowSeconds\" or \"cooldownSeconds\", or a \"profileDurationSeconds\" that is not positive.",
+                        "Please provide a non negative \"windowSeconds\" and \"cooldownSeconds\", and a positive \"profileDurationSeconds\" for the profiler trigger.");
+            }
+        }
     }
 
     public static class GcEventConfiguration {
@@ -0,0 +1,155 @@
+package com.microsoft.applicationinsights.agent.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.applicationinsights.agent.internal.AsyncSpanExportProcessor.QueueFullPolicy;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class AsyncSpanExportProcessorTest {
+
+    @Test
+    public void testSpansAreExportedOnTheExportThread() {
+        RecordingExporter exporter = new RecordingExporter(null);
+        AsyncSpanExportProcessor processor = new AsyncSpanExportProcessor(exporter, 100, 10, QueueFullPolicy.DROP_NEW);
+        Tracer tracer = SdkTracerProvider.builder().addSpanProcessor(processor).build().get("test");
+
+        for (int i = 0; i < 25; ++i) {
+            tracer.spanBuilder("span " + i).startSpan().end();
+        }
+        assertTrue(processor.forceFlush().join(5, TimeUnit.SECONDS).isSuccess());
+
+        List<String> names = exporter.getSpanNames();
+        assertEquals(25, names.size());
+        assertEquals("span 0", names.get(0));
+        assertEquals("span 24", names.get(24));
+        assertFalse(exporter.getThreadNames().contains(Thread.currentThread().getName()));
+        processor.shutdown();
+    }
+
+    @Test
+    public void testSpansAreStillExportedAfterAConversionFailure() {
+        RecordingExporter exporter = new RecordingExporter(null);
+        AsyncSpanExportProcessor processor = new AsyncSpanExportProcessor(exporter, 100, 10, QueueFullPolicy.DROP_NEW);
+        Tracer tracer = SdkTracerProvider.builder().addSpanProcessor(processor).build().get("test");
+
+        ReadableSpan badSpan = mock(ReadableSpan.class);
+        when(badSpan.getSpanContext()).thenReturn(SpanContext.create("0123456789abcdef0123456789abcdef", "0123456789abcdef",
+                TraceFlags.getSampled(), TraceState.getDefault()));
+        when(badSpan.toSpanData()).thenThrow(new IllegalStateException("test"));
+
+        tracer.spanBuilder("span 0").startSpan().end();
+        processor.onEnd(badSpan);
+        tracer.spanBuilder("span 1").startSpan().end();
+        assertTrue(processor.forceFlush().join(5, TimeUnit.SECONDS).isSuccess());
+
+        tracer.spanBuilder("span 2").startSpan().end();
+        assertTrue(processor.forceFlush().join(5, TimeUnit.SECONDS).isSuccess());
+
+        List<String> names = exporter.getSpanNames();
+        assertEquals(3, names.size());
+        assertEquals("span 0", names.get(0));
+        assertEquals("span 1", names.get(1));
+        assertEquals("span 2", names.get(2));
+        processor.shutdown();
+    }
+
+    @Test
+    public void testNewSpansAreDroppedWhenFull() throws Exception {
+        testQueueFull(QueueFullPolicy.DROP_NEW, "span 1", "span 2");
+    }
+
+    @Test
+    public void testOldestSpansAreDroppedWhenFull() throws Exception {
+        testQueueFull(QueueFullPolicy.DROP_OLDEST, "span 3", "span 4");
+    }
+
+    private static void testQueueFull(QueueFullPolicy policy, String... expectedAfterFirst) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingExporter exporter = new RecordingExporter(release);
+        AsyncSpanExportProcessor processor = new AsyncSpanExportProcessor(exporter, 2, 1, policy);
+        Tracer tracer = SdkTracerProvider.builder().addSpanProcessor(processor).build().get("test");
+
+        tracer.spanBuilder("span 0").startSpan().end();
+        // the export thread is now blocked exporting the first span
+        assertTrue(exporter.exporting.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 4; ++i) {
+            tracer.spanBuilder("span " + i).startSpan().end();
+        }
+        assertEquals(2, processor.getDroppedCount());
+
+        release.countDown();
+        assertTrue(processor.forceFlush().join(5, TimeUnit.SECONDS).isSuccess());
+
+        List<String> names = exporter.getSpanNames();
+        assertEquals(3, names.size());
+        assertEquals("span 0", names.get(0));
+        assertEquals(expectedAfterFirst[0], names.get(1));
+        assertEquals(expectedAfterFirst[1], names.get(2));
+        processor.shutdown();
+    }
+
+    private static class RecordingExporter implements SpanExporter {
+
+        private final CountDownLatch release;
+        private final CountDownLatch exporting = new CountDownLatch(1);
+        private final List<String> spanNames = new ArrayList<>();
+        private final List<String> threadNames = new ArrayList<>();
+
+        private RecordingExporter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            synchronized (this) {
+                for (SpanData span : spans) {
+                    spanNames.add(span.getName());
+                }
+                threadNames.add(Thread.currentThread().getName());
+            }
+            exporting.countDown();
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        synchronized List<String> getSpanNames() {
+            return new ArrayList<>(spanNames);
+        }
+
+        synchronized List<String> getThreadNames() {
+            return new ArrayList<>(threadNames);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.microsoft.applicationinsights.agent.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class MetricAggregatorTest {
+
+    private final List<MetricTelemetry> emitted = new ArrayList<>();
+
+    @Test
+    public void testValuesAreAggregatedPerSeries() {
+        MetricAggregator aggregator = new MetricAggregator(emitted::add, 10);
+
+        aggregator.record("latency", 1, null, null, null, null, properties("route", "/a"), noTags(), "ikey");
+        aggregator.record("latency", 3, null, null, null, null, properties("route", "/a"), noTags(), "ikey");
+        aggregator.record("latency", 10, null, null, null, null, properties("route", "/b"), noTags(), "ikey");
+        aggregator.flush();
+
+        assertEquals(2, emitted.size());
+        MetricTelemetry a = getByProperty("route", "/a");
+        assertEquals("latency", a.getName());
+        assertEquals(4, a.getValue(), 0);
+        assertEquals(Integer.valueOf(2), a.getCount());
+        assertEquals(1, a.getMin(), 0);
+        assertEquals(3, a.getMax(), 0);
+        assertEquals(1, a.getStandardDeviation(), 0.0001);
+        assertEquals("ikey", a.getContext().getInstrumentationKey());
+        MetricTelemetry b = getByProperty("route", "/b");
+        assertEquals(10, b.getValue(), 0);
+        assertEquals(Integer.valueOf(1), b.getCount());
+
+        // nothing is sent for an interval without values
+        emitted.clear();
+        aggregator.flush();
+        assertTrue(emitted.isEmpty());
+    }
+
+    @Test
+    public void testAggregatesAreMerged() {
+        MetricAggregator aggregator = new MetricAggregator(emitted::add, 10);
+
+        // e.g. a Micrometer timer, which has already aggregated its values
+        aggregator.record("timer", 30, 3, 5.0, 15.0, null, noProperties(), noTags(), null);
+        aggregator.record("timer", 2, null, null, null, null, noProperties(), noTags(), null);
+        aggregator.flush();
+
+        assertEquals(1, emitted.size());
+        MetricTelemetry timer = emitted.get(0);
+        assertEquals(32, timer.getValue(), 0);
+        assertEquals(Integer.valueOf(4), timer.getCount());
+        assertEquals(2, timer.getMin(), 0);
+        assertEquals(15, timer.getMax(), 0);
+        // the standard deviation of the first aggregate is unknown
+        assertNull(timer.getStandardDeviation());
+    }
+
+    @Test
+    public void testSeriesBeyondMaxSeriesOverflow() {
+        MetricAggregator aggregator = new MetricAggregator(emitted::add, 2);
+
+        for (int i = 0; i < 5; ++i) {
+            aggregator.record("requests", 1, null, null, null, null, properties("id", "" + i), noTags(), null);
+        }
+        aggregator.flush();
+
+        assertEquals(3, emitted.size());
+        MetricTelemetry overflow = getByProperty(MetricAggregator.OVERFLOW_PROPERTY, "true");
+        assertEquals(3, overflow.getValue(), 0);
+        assertFalse(overflow.getProperties().containsKey("id"));
+    }
+
+    @Test
+    public void testIdleSeriesAreRemoved() {
+        MetricAggregator aggregator = new MetricAggregator(emitted::add, 1);
+
+        aggregator.record("first", 1, null, null, null, null, noProperties(), noTags(), null);
+        aggregator.flush();
+        // the series of "first" is idle during this interval
+        aggregator.flush();
+        emitted.clear();
+
+        aggregator.record("second", 1, null, null, null, null, noProperties(), noTags(), null);
+        aggregator.flush();
+
+        assertEquals(1, emitted.size());
+        assertEquals("second", emitted.get(0).getName());
+        assertFalse(emitted.get(0).getProperties().containsKey(MetricAggregator.OVERFLOW_PROPERTY));
+    }
+
+    private MetricTelemetry getByProperty(String key, String value) {
+        for (MetricTelemetry telemetry : emitted) {
+            if (value.equals(telemetry.getProperties().get(key))) {
+                return telemetry;
+            }
+        }
+        throw new AssertionError("no metric with " + key + "=" + value);
+    }
+
+    private static Map<String, String> properties(String key, String value) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(key, value);
+        return properties;
+    }
+
+    private static Map<String, String> noProperties() {
+        return new HashMap<>();
+    }
+
+    private static Map<String, String> noTags() {
+        return Collections.emptyMap();
+    }
+}
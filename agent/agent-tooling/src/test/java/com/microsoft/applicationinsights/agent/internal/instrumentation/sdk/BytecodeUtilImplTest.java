@@ -0,0 +1,98 @@
+package com.microsoft.applicationinsights.agent.internal.instrumentation.sdk;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.agent.bootstrap.BytecodeUtil;
+import com.microsoft.applicationinsights.agent.bootstrap.BytecodeUtil.LogRecord;
+import com.microsoft.applicationinsights.agent.internal.Global;
+import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.*;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class BytecodeUtilImplTest {
+
+    private TelemetryClient telemetryClient;
+
+    @Before
+    public void setup() {
+        telemetryClient = mock(TelemetryClient.class);
+        Global.setTelemetryClient(telemetryClient);
+        Global.setSamplingPercentage(100);
+    }
+
+    @After
+    public void tearDown() {
+        Global.setTelemetryClient(null);
+    }
+
+    @Test
+    public void testLogRecordIsTrackedAsTrace() {
+        LogRecord record = new LogRecord()
+                .setMessage("hello")
+                .setSeverityLevel(SeverityLevel.Warning.getValue())
+                .setLevelName("WARN")
+                .setLoggerName("com.example.Logger")
+                .setEpochMillis(1000);
+
+        new BytecodeUtilImpl().trackLog(record);
+
+        TraceTelemetry telemetry = (TraceTelemetry) getTracked();
+        assertEquals("hello", telemetry.getMessage());
+        assertEquals(SeverityLevel.Warning, telemetry.getSeverityLevel());
+        assertEquals("WARN", telemetry.getProperties().get("LoggingLevel"));
+        assertEquals("com.example.Logger", telemetry.getProperties().get("LoggerName"));
+        assertEquals(1000, telemetry.getTimestamp().getTime());
+    }
+
+    @Test
+    public void testLogRecordWithThrowableIsTrackedAsException() {
+        LogRecord record = new LogRecord()
+                .setMessage("failed")
+                .setSeverityLevel(SeverityLevel.Error.getValue())
+                .setLevelName("ERROR")
+                .setThrowable(new IllegalStateException("boom"));
+
+        new BytecodeUtilImpl().trackLog(record);
+
+        ExceptionTelemetry telemetry = (ExceptionTelemetry) getTracked();
+        assertEquals("failed", telemetry.getProperties().get("Logger Message"));
+        assertEquals(SeverityLevel.Error, telemetry.getSeverityLevel());
+        assertEquals("java.lang.IllegalStateException", telemetry.getExceptions().get(0).getTypeName());
+    }
+
+    @Test
+    public void testLogThreshold() {
+        assertEquals(SeverityLevel.Information.getValue(), BytecodeUtilImpl.getLogThreshold("INFO"));
+        assertEquals(SeverityLevel.Warning.getValue(), BytecodeUtilImpl.getLogThreshold("warn"));
+        assertEquals(SeverityLevel.Verbose.getValue(), BytecodeUtilImpl.getLogThreshold("TRACE"));
+        assertEquals(Integer.MAX_VALUE, BytecodeUtilImpl.getLogThreshold("OFF"));
+    }
+
+    private Telemetry getTracked() {
+        ArgumentCaptor<Telemetry> captor = ArgumentCaptor.forClass(Telemetry.class);
+        verify(telemetryClient).track(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    public void testLogRecordIsBusyUntilTracked() {
+        LogRecord record = BytecodeUtil.getLogRecord();
+        record.setMessage("outer");
+
+        // e.g. logged by a toString() while the outer record is being filled
+        LogRecord nested = BytecodeUtil.getLogRecord();
+        assertNotSame(record, nested);
+        nested.setMessage("nested");
+        BytecodeUtil.trackLog(nested);
+        assertEquals("outer", record.getMessage());
+
+        BytecodeUtil.trackLog(record);
+        assertSame(record, BytecodeUtil.getLogRecord());
+        BytecodeUtil.trackLog(record);
+    }
+}
@@ -0,0 +1,94 @@
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.NameConfig;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorAction;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorActionType;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorAttribute;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorConfig;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorIncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.ProcessorType;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class ExporterWithProcessorsTest {
+
+    private final Tracer tracer = OpenTelemetrySdk.builder().build().getTracer("test");
+
+    @Test
+    public void processorsAreAppliedInOrderTest() {
+        MockExporter mockExporter = new MockExporter();
+        ProcessorConfig insertConfig = newActionConfig("insert", "operation", "get", ProcessorActionType.insert);
+        ProcessorConfig renameConfig = new ProcessorConfig();
+        renameConfig.type = ProcessorType.span;
+        renameConfig.id = "rename";
+        renameConfig.name = new NameConfig();
+        renameConfig.name.fromAttributes = Arrays.asList("db.svc", "operation");
+        renameConfig.name.separator = "::";
+        // only matches because of the attribute inserted by the preceding processor
+        renameConfig.include = new ProcessorIncludeExclude();
+        renameConfig.include.matchType = MatchType.strict;
+        ProcessorAttribute attribute = new ProcessorAttribute();
+        attribute.key = "operation";
+        attribute.value = "get";
+        renameConfig.include.attributes = Collections.singletonList(attribute);
+        ProcessorConfig deleteConfig = newActionConfig("delete", "db.svc", null, ProcessorActionType.delete);
+        SpanExporter exampleExporter = new ExporterWithProcessors(Arrays.asList(insertConfig, renameConfig, deleteConfig), mockExporter);
+
+        Span span = tracer.spanBuilder("svcA")
+                .setAttribute("db.svc", "location")
+                .setAttribute("two", 2L)
+                .startSpan();
+
+        SpanData spanData = ((ReadableSpan) span).toSpanData();
+
+        exampleExporter.export(Collections.singletonList(spanData));
+
+        // expect a single SpanData which got all the changes
+        SpanData result = mockExporter.getSpans().get(0);
+        assertEquals("location::get", result.getName());
+        assertEquals("get", result.getAttributes().get(AttributeKey.stringKey("operation")));
+        assertNull(result.getAttributes().get(AttributeKey.stringKey("db.svc")));
+        assertEquals(Long.valueOf(2L), result.getAttributes().get(AttributeKey.longKey("two")));
+    }
+
+    @Test
+    public void unchangedSpanIsNotCopiedTest() {
+        MockExporter mockExporter = new MockExporter();
+        ProcessorConfig updateConfig = newActionConfig("update", "missing", "value", ProcessorActionType.update);
+        SpanExporter exampleExporter = new ExporterWithProcessors(Collections.singletonList(updateConfig), mockExporter);
+
+        Span span = tracer.spanBuilder("svcA")
+                .setAttribute("one", "1")
+                .startSpan();
+
+        SpanData spanData = ((ReadableSpan) span).toSpanData();
+
+        exampleExporter.export(Collections.singletonList(spanData));
+
+        assertSame(spanData, mockExporter.getSpans().get(0));
+    }
+
+    private static ProcessorConfig newActionConfig(String id, String key, String value, ProcessorActionType actionType) {
+        ProcessorConfig config = new ProcessorConfig();
+        config.type = ProcessorType.attribute;
+        config.id = id;
+        ProcessorAction action = new ProcessorAction();
+        action.key = key;
+        action.value = value;
+        action.action = actionType;
+        config.actions = Collections.singletonList(action);
+        return config;
+    }
+}
@@ -0,0 +1,107 @@
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.microsoft.applicationinsights.agent.internal.Global;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class RateLimitedSamplingPercentageTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    public void shouldUseMaxPercentageBelowLimit() {
+        RateLimitedSamplingPercentage percentage = new RateLimitedSamplingPercentage(10, 100, nanoTime::get);
+
+        track(percentage, 5, 3);
+
+        assertEquals(100, percentage.getCurrent(), 0);
+    }
+
+    @Test
+    public void shouldLowerPercentageAboveLimit() {
+        RateLimitedSamplingPercentage percentage = new RateLimitedSamplingPercentage(10, 100, nanoTime::get);
+
+        track(percentage, 40, 1);
+
+        // 10 out of 40 per second
+        assertEquals(25, percentage.getCurrent(), 0);
+    }
+
+    @Test
+    public void shouldFollowMovingAverage() {
+        RateLimitedSamplingPercentage percentage = new RateLimitedSamplingPercentage(10, 100, nanoTime::get);
+
+        track(percentage, 10, 1);
+        // a single burst only raises the average to 0.3 * 100 + 0.7 * 10 = 37
+        track(percentage, 100, 1);
+        assertEquals(25, percentage.getCurrent(), 0);
+
+        // and once it lasts, the average reaches it
+        track(percentage, 100, 20);
+        assertEquals(10, percentage.getCurrent(), 0);
+    }
+
+    @Test
+    public void shouldRoundToOneOverN() {
+        RateLimitedSamplingPercentage percentage = new RateLimitedSamplingPercentage(10, 100, nanoTime::get);
+
+        // 10 out of 35 per second is 28.6%, which is rounded down to 1/4
+        assertEquals(25, percentage.toPercentage(35), 0);
+        // 10 out of 15 per second is 66.7%, which is rounded down to 1/2
+        assertEquals(50, percentage.toPercentage(15), 0);
+        assertEquals(100, percentage.toPercentage(10), 0);
+    }
+
+    @Test
+    public void shouldNotExceedConfiguredPercentage() {
+        RateLimitedSamplingPercentage percentage = new RateLimitedSamplingPercentage(10, 100.0 / 3, nanoTime::get);
+
+        assertEquals(100.0 / 3, percentage.toPercentage(1), 0);
+        assertEquals(100.0 / 3, percentage.toPercentage(20), 0);
+        assertEquals(20, percentage.toPercentage(50), 0);
+    }
+
+    @Test
+    public void shouldPublishCurrentPercentageForSdkTelemetry() throws InterruptedException {
+        Configuration config = new Configuration();
+        config.preview.sampling.limitPerSecond = 10.0;
+        Sampler sampler = Samplers.getSampler(100, config);
+        try {
+            assertEquals(100, Global.getSamplingPercentage(), 0);
+
+            for (int i = 0; i < 1000; i++) {
+                sampler.shouldSample(Context.root(), "12341234123412341234123412341234", "my span name",
+                        SpanKind.SERVER, Attributes.empty(), Collections.emptyList());
+            }
+            Thread.sleep(1100);
+            // starts the next interval, which updates the percentage
+            sampler.shouldSample(Context.root(), "12341234123412341234123412341234", "my span name",
+                    SpanKind.SERVER, Attributes.empty(), Collections.emptyList());
+
+            assertTrue(Global.getSamplingPercentage() < 100);
+        } finally {
+            Global.setSamplingPercentage(100);
+        }
+    }
+
+    private void track(RateLimitedSamplingPercentage percentage, int perSecond, int seconds) {
+        for (int i = 0; i < seconds; i++) {
+            for (int j = 0; j < perSecond; j++) {
+                percentage.get();
+            }
+            nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        }
+        // starts the next interval, which updates the percentage
+        percentage.get();
+    }
+}
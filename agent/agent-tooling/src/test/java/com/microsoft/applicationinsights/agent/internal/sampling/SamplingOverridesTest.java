@@ -3,6 +3,7 @@ package com.microsoft.applicationinsights.agent.internal.sampling;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.SamplingOverrideAttribute;
 import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.SamplingOverride;
@@ -148,6 +149,56 @@ public class SamplingOverridesTest {
         assertNull(sampler.getOverride(attributes));
     }
 
+    @Test
+    public void shouldUseFirstMatchingOverrideAcrossKeys() {
+        // given
+        List<SamplingOverride> overrides = Arrays.asList(
+                newOverride(10, newRegexpAttribute("two", "3.*")),
+                newOverride(20, newRegexpAttribute("two", "2.*"), newStrictAttribute("three", "3")),
+                newOverride(30, newRegexpAttribute("two", "2.*")),
+                newOverride(40, newStrictAttribute("one", "1")));
+        SamplingOverrides sampler = new SamplingOverrides(overrides);
+        Attributes attributes = Attributes.of(AttributeKey.stringKey("one"), "1", AttributeKey.stringKey("two"), "22");
+
+        // expect
+        assertEquals(30, sampler.getOverride(attributes).getPercentage(), 0);
+    }
+
+    @Test
+    public void shouldUseFirstMatchingOverrideWithSameStrictAttribute() {
+        // given
+        List<SamplingOverride> overrides = Arrays.asList(
+                newOverride(10, newStrictAttribute("one", "1"), newStrictAttribute("two", "3")),
+                newOverride(20, newStrictAttribute("one", "1")),
+                newOverride(30, newStrictAttribute("one", "1"), newStrictAttribute("two", "2")));
+        SamplingOverrides sampler = new SamplingOverrides(overrides);
+        Attributes attributes = Attributes.of(AttributeKey.stringKey("one"), "1", AttributeKey.stringKey("two"), "2");
+
+        // expect
+        assertEquals(20, sampler.getOverride(attributes).getPercentage(), 0);
+    }
+
+    @Test
+    public void shouldMergeRegexps() {
+        // given
+        Pattern merged = SamplingOverrides.mergeRegexps(Arrays.asList("/health.*", "(?i)/static/.*", "/a(b)c"));
+
+        // expect
+        assertTrue(merged.matcher("/healthz").matches());
+        assertTrue(merged.matcher("/STATIC/app.js").matches());
+        assertTrue(merged.matcher("/abc").matches());
+        assertFalse(merged.matcher("/api/HEALTH").matches());
+        assertFalse(merged.matcher("/x/healthz").matches());
+    }
+
+    @Test
+    public void shouldNotMergeRegexpsWithBackReferences() {
+        // expect
+        assertNull(SamplingOverrides.mergeRegexps(Arrays.asList("(a)b", "(c)\\1")));
+        assertNull(SamplingOverrides.mergeRegexps(Arrays.asList("(?<x>a)", "(?<x>b)")));
+        assertNull(SamplingOverrides.mergeRegexps(singletonList("a.*")));
+    }
+
     private SamplingOverride newOverride(double percentage, SamplingOverrideAttribute... attribute) {
         SamplingOverride override = new SamplingOverride();
         override.attributes = Arrays.asList(attribute);
@@ -0,0 +1,240 @@
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.microsoft.applicationinsights.agent.Exporter;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.SamplingOverrideAttribute;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.TailSampling;
+import com.microsoft.applicationinsights.agent.internal.wasbootstrap.configuration.Configuration.TailSamplingRule;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import org.junit.*;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public class TailSamplingExporterTest {
+
+    private final List<SpanData> ended = new ArrayList<>();
+    private final List<SpanData> exported = new ArrayList<>();
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final TailSampling config = new TailSampling();
+
+    private SamplingDecision decision = SamplingDecision.RECORD_ONLY;
+    private Tracer tracer;
+
+    @Before
+    public void setup() {
+        config.enabled = true;
+        tracer = SdkTracerProvider.builder()
+                .setSampler(new FixedSampler())
+                .addSpanProcessor(new CollectingProcessor())
+                .build()
+                .get("test");
+    }
+
+    @Test
+    public void shouldDropSampledOutTraceWithoutMatch() {
+        TailSamplingExporter exporter = newExporter();
+
+        endTrace(false);
+        exporter.export(ended);
+
+        assertTrue(exported.isEmpty());
+        assertEquals(0, exporter.getBufferedSpans());
+    }
+
+    @Test
+    public void shouldKeepSampledOutTraceWithError() {
+        TailSamplingExporter exporter = newExporter();
+
+        endTrace(true);
+        exporter.export(ended);
+
+        assertEquals(2, exported.size());
+        for (SpanData span : exported) {
+            assertTrue(span.getSpanContext().isSampled());
+            assertEquals("100", span.getSpanContext().getTraceState().get(Exporter.SAMPLING_PERCENTAGE_TRACE_STATE));
+        }
+    }
+
+    @Test
+    public void shouldExportSampledTraceAsIs() {
+        decision = SamplingDecision.RECORD_AND_SAMPLE;
+        TailSamplingExporter exporter = newExporter();
+
+        endTrace(false);
+        exporter.export(ended);
+
+        assertEquals(2, exported.size());
+        assertSame(ended.get(0), exported.get(0));
+        assertSame(ended.get(1), exported.get(1));
+    }
+
+    @Test
+    public void shouldKeepSlowTrace() {
+        config.latencyThresholdMillis = 500;
+        TailSamplingExporter exporter = newExporter();
+
+        Span root = tracer.spanBuilder("root").setStartTimestamp(0, TimeUnit.MILLISECONDS).startSpan();
+        root.end(499, TimeUnit.MILLISECONDS);
+        exporter.export(ended);
+        assertTrue(exported.isEmpty());
+
+        ended.clear();
+        root = tracer.spanBuilder("root").setStartTimestamp(0, TimeUnit.MILLISECONDS).startSpan();
+        root.end(500, TimeUnit.MILLISECONDS);
+        exporter.export(ended);
+        assertEquals(1, exported.size());
+    }
+
+    @Test
+    public void shouldKeepTraceMatchingRule() {
+        SamplingOverrideAttribute attribute = new SamplingOverrideAttribute();
+        attribute.key = "http.url";
+        attribute.value = ".*/checkout";
+        attribute.matchType = MatchType.regexp;
+        TailSamplingRule rule = new TailSamplingRule();
+        rule.attributes = singletonList(attribute);
+        config.rules = singletonList(rule);
+        TailSamplingExporter exporter = newExporter();
+
+        tracer.spanBuilder("root").setAttribute("http.url", "http://host/cart").startSpan().end();
+        exporter.export(ended);
+        assertTrue(exported.isEmpty());
+
+        ended.clear();
+        tracer.spanBuilder("root").setAttribute("http.url", "http://host/checkout").startSpan().end();
+        exporter.export(ended);
+        assertEquals(1, exported.size());
+    }
+
+    @Test
+    public void shouldDecideOldestTracesWhenBufferIsFull() {
+        config.maxBufferedSpans = 2;
+        TailSamplingExporter exporter = newExporter();
+
+        // children whose local root has not ended yet
+        Span root = tracer.spanBuilder("root").startSpan();
+        Span failedRoot = tracer.spanBuilder("failed root").startSpan();
+        endChild(failedRoot, true);
+        endChild(root, false);
+        endChild(root, false);
+        exporter.export(ended);
+
+        // the trace with the failed child was evicted, the other one fits in the buffer
+        assertEquals(1, exported.size());
+        assertEquals(2, exporter.getBufferedSpans());
+    }
+
+    @Test
+    public void shouldDecideTracesAfterMaxDuration() {
+        config.maxTraceDurationSeconds = 30;
+        TailSamplingExporter exporter = newExporter();
+
+        Span root = tracer.spanBuilder("root").startSpan();
+        endChild(root, true);
+        exporter.export(ended);
+        assertTrue(exported.isEmpty());
+        assertEquals(1, exporter.getBufferedSpans());
+
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        ended.clear();
+        exporter.export(ended);
+        assertEquals(1, exported.size());
+        assertEquals(0, exporter.getBufferedSpans());
+    }
+
+    private TailSamplingExporter newExporter() {
+        return new TailSamplingExporter(new CollectingExporter(), config, nanoTime::get);
+    }
+
+    private void endTrace(boolean childFailed) {
+        Span root = tracer.spanBuilder("root").startSpan();
+        endChild(root, childFailed);
+        root.end();
+    }
+
+    private void endChild(Span parent, boolean failed) {
+        Span child = tracer.spanBuilder("child").setParent(Context.root().with(parent)).startSpan();
+        if (failed) {
+            child.setStatus(StatusCode.ERROR);
+        }
+        child.end();
+    }
+
+    private class FixedSampler implements Sampler {
+
+        @Override
+        public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+                                           Attributes attributes, List<LinkData> parentLinks) {
+            return SamplingResult.create(decision);
+        }
+
+        @Override
+        public String getDescription() {
+            return "FixedSampler";
+        }
+    }
+
+    private class CollectingProcessor implements SpanProcessor {
+
+        @Override
+        public void onStart(Context parentContext, ReadWriteSpan span) {
+        }
+
+        @Override
+        public boolean isStartRequired() {
+            return false;
+        }
+
+        @Override
+        public void onEnd(ReadableSpan span) {
+            ended.add(span.toSpanData());
+        }
+
+        @Override
+        public boolean isEndRequired() {
+            return true;
+        }
+    }
+
+    private class CollectingExporter implements SpanExporter {
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            exported.addAll(spans);
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
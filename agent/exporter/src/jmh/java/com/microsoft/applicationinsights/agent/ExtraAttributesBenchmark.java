@@ -0,0 +1,78 @@
+package com.microsoft.applicationinsights.agent;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Maps the attributes of a server span, as produced by the http and db instrumentations plus
+ * a number of custom attributes added by the application.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ExtraAttributesBenchmark {
+
+    private static final AttributeKey<String> AI_SERVICE_NAME = AttributeKey.stringKey("ai.preview.service_name");
+    private static final AttributeKey<Boolean> AI_INTERNAL = AttributeKey.booleanKey("applicationinsights.internal.log");
+
+    @Param({"0", "10", "25"})
+    public int customAttributes;
+
+    private Attributes attributes;
+
+    @Setup
+    public void setUp() {
+        AttributesBuilder builder = Attributes.builder()
+                .put(SemanticAttributes.HTTP_METHOD, "GET")
+                .put(SemanticAttributes.HTTP_URL, "https://example.com/api/orders/1234?expand=items")
+                .put(SemanticAttributes.HTTP_TARGET, "/api/orders/1234?expand=items")
+                .put(SemanticAttributes.HTTP_HOST, "example.com")
+                .put(SemanticAttributes.HTTP_SCHEME, "https")
+                .put(SemanticAttributes.HTTP_STATUS_CODE, 200L)
+                .put(SemanticAttributes.HTTP_FLAVOR, "1.1")
+                .put(SemanticAttributes.HTTP_USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64)")
+                .put(SemanticAttributes.HTTP_CLIENT_IP, "10.0.0.12")
+                .put(SemanticAttributes.NET_PEER_IP, "10.0.0.12")
+                .put(SemanticAttributes.NET_PEER_PORT, 51234L)
+                .put(SemanticAttributes.ENDUSER_ID, "user-42")
+                .put(SemanticAttributes.THREAD_NAME, "http-nio-8080-exec-3")
+                .put(SemanticAttributes.THREAD_ID, 57L)
+                .put(AI_SERVICE_NAME, "orders")
+                .put(AI_INTERNAL, true);
+        for (int i = 0; i < customAttributes; ++i) {
+            switch (i % 3) {
+                case 0:
+                    builder.put(AttributeKey.stringKey("app.custom." + i), "value-" + i);
+                    break;
+                case 1:
+                    builder.put(AttributeKey.longKey("app.counter." + i), i);
+                    break;
+                default:
+                    builder.put(AttributeKey.stringArrayKey("app.tags." + i), Arrays.asList("a", "b", "c"));
+                    break;
+            }
+        }
+        attributes = builder.build();
+    }
+
+    @Benchmark
+    public RequestTelemetry setExtraAttributes() {
+        RequestTelemetry telemetry = new RequestTelemetry();
+        Exporter.setExtraAttributes(telemetry, attributes);
+        return telemetry;
+    }
+}
@@ -18,7 +18,7 @@ public class Exceptions {
 
     public static List<ExceptionDetails> minimalParse(String str) {
         ExceptionDetails details = new ExceptionDetails();
-        String line = lineSplitter.split(str).iterator().next();
+        String line = firstLine(str);
         int index = line.indexOf(": ");
         if (index != -1) {
             details.setTypeName(line.substring(0, index));
@@ -30,6 +30,24 @@ public class Exceptions {
         return Arrays.asList(details);
     }
 
+    // same as the first line from lineSplitter, without going through an iterator, as only the first line is parsed
+    // (the stack is not parsed, and serialized as is)
+    private static String firstLine(String str) {
+        int start = 0;
+        while (start < str.length() && isLineBreak(str.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < str.length() && !isLineBreak(str.charAt(end))) {
+            end++;
+        }
+        return str.substring(start, end);
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\r' || c == '\n';
+    }
+
     // THIS IS UNFINISHED WORK
     // NOT SURE IF IT'S NEEDED
     // TESTING WITH minimalParse() first
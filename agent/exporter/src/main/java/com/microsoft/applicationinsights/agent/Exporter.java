@@ -34,7 +34,16 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.extensibility.context.CloudContext;
+import com.microsoft.applicationinsights.extensibility.context.ComponentContext;
+import com.microsoft.applicationinsights.extensibility.context.LocationContext;
+import com.microsoft.applicationinsights.extensibility.context.OperationContext;
+import com.microsoft.applicationinsights.extensibility.context.UserContext;
+import com.microsoft.applicationinsights.internal.schemav2.ExceptionDetails;
+import com.microsoft.applicationinsights.internal.schemav2.RemoteDependencyData;
+import com.microsoft.applicationinsights.internal.schemav2.RequestData;
 import com.microsoft.applicationinsights.internal.statsbeat.StatsbeatModule;
+import com.microsoft.applicationinsights.telemetry.DirectTelemetry;
 import com.microsoft.applicationinsights.telemetry.Duration;
 import com.microsoft.applicationinsights.telemetry.EventTelemetry;
 import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
@@ -71,8 +80,6 @@ public class Exporter implements SpanExporter {
 
     private static final Set<String> SQL_DB_SYSTEMS;
 
-    private static final Set<String> STANDARD_ATTRIBUTE_PREFIXES;
-
     static {
         Set<String> dbSystems = new HashSet<>();
         dbSystems.add("db2");
@@ -88,23 +95,6 @@ public class Exporter implements SpanExporter {
         dbSystems.add("h2");
 
         SQL_DB_SYSTEMS = Collections.unmodifiableSet(dbSystems);
-
-        // TODO need to keep this list in sync as new semantic conventions are defined
-        // TODO make this opt-in for javaagent
-        Set<String> standardAttributesPrefix = new HashSet<>();
-        standardAttributesPrefix.add("http");
-        standardAttributesPrefix.add("db");
-        standardAttributesPrefix.add("message");
-        standardAttributesPrefix.add("messaging");
-        standardAttributesPrefix.add("rpc");
-        standardAttributesPrefix.add("enduser");
-        standardAttributesPrefix.add("net");
-        standardAttributesPrefix.add("peer");
-        standardAttributesPrefix.add("exception");
-        standardAttributesPrefix.add("thread");
-        standardAttributesPrefix.add("faas");
-
-        STANDARD_ATTRIBUTE_PREFIXES = Collections.unmodifiableSet(standardAttributesPrefix);
     }
 
     private static final Joiner JOINER = Joiner.on(", ");
@@ -132,8 +122,25 @@ public class Exporter implements SpanExporter {
 
     private final TelemetryClient telemetryClient;
 
+    // when set, requests and dependencies are tracked as DirectTelemetry, which is serialized straight from
+    // the span's data, instead of as RequestTelemetry/RemoteDependencyTelemetry wrapping that data with a context
+    private final boolean directExport;
+
+    // when set, the repeated logs and exceptions are only counted, see LogDeduplicator
+    private final LogDeduplicator logDeduplicator;
+
     public Exporter(TelemetryClient telemetryClient) {
+        this(telemetryClient, false);
+    }
+
+    public Exporter(TelemetryClient telemetryClient, boolean directExport) {
+        this(telemetryClient, directExport, null);
+    }
+
+    public Exporter(TelemetryClient telemetryClient, boolean directExport, LogDeduplicator logDeduplicator) {
         this.telemetryClient = telemetryClient;
+        this.directExport = directExport;
+        this.logDeduplicator = logDeduplicator;
     }
 
     /**
@@ -209,9 +216,20 @@ public class Exporter implements SpanExporter {
 
     private void exportRemoteDependency(SpanData span, boolean inProc) {
 
-        RemoteDependencyTelemetry remoteDependencyData = new RemoteDependencyTelemetry();
+        RemoteDependencyData remoteDependencyData = new RemoteDependencyData();
+        Telemetry telemetry;
+        Map<String, String> tags;
+        if (directExport) {
+            DirectTelemetry<RemoteDependencyData> directTelemetry = DirectTelemetry.remoteDependency(remoteDependencyData);
+            tags = directTelemetry.getTags();
+            telemetry = directTelemetry;
+        } else {
+            RemoteDependencyTelemetry remoteDependencyTelemetry = new RemoteDependencyTelemetry(remoteDependencyData);
+            tags = remoteDependencyTelemetry.getContext().getTags();
+            telemetry = remoteDependencyTelemetry;
+        }
 
-        addLinks(remoteDependencyData.getProperties(), span.getLinks());
+        addLinks(telemetry, span.getLinks());
         remoteDependencyData.setName(getTelemetryName(span));
 
         if (inProc) {
@@ -221,22 +239,23 @@ public class Exporter implements SpanExporter {
         }
 
         remoteDependencyData.setId(span.getSpanId());
-        remoteDependencyData.getContext().getOperation().setId(span.getTraceId());
+        OperationContext operation = new OperationContext(tags);
+        operation.setId(span.getTraceId());
         String parentSpanId = span.getParentSpanId();
         if (SpanId.isValid(parentSpanId)) {
-            remoteDependencyData.getContext().getOperation().setParentId(parentSpanId);
+            operation.setParentId(parentSpanId);
         }
 
-        remoteDependencyData.setTimestamp(new Date(NANOSECONDS.toMillis(span.getStartEpochNanos())));
+        telemetry.setTimestamp(new Date(NANOSECONDS.toMillis(span.getStartEpochNanos())));
         remoteDependencyData
                 .setDuration(new Duration(NANOSECONDS.toMillis(span.getEndEpochNanos() - span.getStartEpochNanos())));
 
         remoteDependencyData.setSuccess(span.getStatus().getStatusCode() != StatusCode.ERROR);
 
-        setExtraAttributes(remoteDependencyData, span.getAttributes());
+        setExtraAttributes(telemetry, span.getAttributes());
 
         double samplingPercentage = getSamplingPercentage(span.getSpanContext().getTraceState());
-        track(remoteDependencyData, samplingPercentage);
+        track(telemetry, samplingPercentage);
         exportEvents(span, samplingPercentage);
     }
 
@@ -281,7 +300,7 @@ public class Exporter implements SpanExporter {
         });
     }
 
-    private void applySemanticConventions(SpanData span, RemoteDependencyTelemetry remoteDependencyData) {
+    private void applySemanticConventions(SpanData span, RemoteDependencyData remoteDependencyData) {
         Attributes attributes = span.getAttributes();
         String httpMethod = attributes.get(SemanticAttributes.HTTP_METHOD);
         if (httpMethod != null) {
@@ -315,6 +334,14 @@ public class Exporter implements SpanExporter {
 
     private void exportLogSpan(SpanData span) {
         String errorStack = span.getAttributes().get(AI_LOG_ERROR_STACK_KEY);
+        if (logDeduplicator != null) {
+            Attributes attributes = span.getAttributes();
+            int stackHash = errorStack == null ? 0 : LogDeduplicator.stackHash(errorStack);
+            if (!logDeduplicator.shouldTrack(attributes.get(AI_LOGGER_NAME_KEY), attributes.get(AI_LOG_LEVEL_KEY),
+                    span.getName(), stackHash)) {
+                return;
+            }
+        }
         if (errorStack == null) {
             trackTrace(span);
         } else {
@@ -384,7 +411,7 @@ public class Exporter implements SpanExporter {
         }
     }
 
-    private static void applyHttpClientSpan(Attributes attributes, RemoteDependencyTelemetry telemetry) {
+    private static void applyHttpClientSpan(Attributes attributes, RemoteDependencyData telemetry) {
 
         // from the spec, at least one of the following sets of attributes is required:
         // * http.url
@@ -441,7 +468,7 @@ public class Exporter implements SpanExporter {
             telemetry.setResultCode(Long.toString(httpStatusCode));
         }
 
-        telemetry.setCommandName(url);
+        telemetry.setData(url);
     }
 
     private static String getTargetFromPeerAttributes(Attributes attributes, int defaultPort) {
@@ -465,7 +492,7 @@ public class Exporter implements SpanExporter {
         return target;
     }
 
-    private static void applyRpcClientSpan(Attributes attributes, RemoteDependencyTelemetry telemetry, String rpcSystem) {
+    private static void applyRpcClientSpan(Attributes attributes, RemoteDependencyData telemetry, String rpcSystem) {
         telemetry.setType(rpcSystem);
         String target = getTargetFromPeerAttributes(attributes, 0);
         // not appending /rpc.service for now since that seems too fine-grained
@@ -475,7 +502,7 @@ public class Exporter implements SpanExporter {
         telemetry.setTarget(target);
     }
 
-    private static void applyDatabaseClientSpan(Attributes attributes, RemoteDependencyTelemetry telemetry, String dbSystem) {
+    private static void applyDatabaseClientSpan(Attributes attributes, RemoteDependencyData telemetry, String dbSystem) {
         String dbStatement = attributes.get(SemanticAttributes.DB_STATEMENT);
         String type;
         if (SQL_DB_SYSTEMS.contains(dbSystem)) {
@@ -495,7 +522,7 @@ public class Exporter implements SpanExporter {
             type = dbSystem;
         }
         telemetry.setType(type);
-        telemetry.setCommandName(dbStatement);
+        telemetry.setData(dbStatement);
         String target = nullAwareConcat(getTargetFromPeerAttributes(attributes, getDefaultPortForDbSystem(dbSystem)),
                 attributes.get(SemanticAttributes.DB_NAME), "/");
         if (target == null) {
@@ -504,7 +531,7 @@ public class Exporter implements SpanExporter {
         telemetry.setTarget(target);
     }
 
-    private void applyMessagingClientSpan(Attributes attributes, RemoteDependencyTelemetry telemetry, String messagingSystem, SpanKind spanKind) {
+    private void applyMessagingClientSpan(Attributes attributes, RemoteDependencyData telemetry, String messagingSystem, SpanKind spanKind) {
         if (spanKind == SpanKind.PRODUCER) {
             telemetry.setType("Queue Message | " + messagingSystem);
         } else {
@@ -521,7 +548,7 @@ public class Exporter implements SpanExporter {
 
     // TODO (trask) ideally EventHubs SDK should conform and fit the above path used for other messaging systems
     //  but no rush as messaging semantic conventions may still change
-    private void applyEventHubsSpan(Attributes attributes, RemoteDependencyTelemetry telemetry) {
+    private void applyEventHubsSpan(Attributes attributes, RemoteDependencyData telemetry) {
         telemetry.setType("Microsoft.EventHub");
         String peerAddress = attributes.get(EVENTHUBS_PEER_ADDRESS);
         String destination = attributes.get(EVENTHUBS_MESSAGE_BUS_DESTINATION);
@@ -560,7 +587,18 @@ public class Exporter implements SpanExporter {
 
     private void exportRequest(SpanData span) {
 
-        RequestTelemetry requestData = new RequestTelemetry();
+        RequestData requestData = new RequestData();
+        Telemetry telemetry;
+        Map<String, String> tags;
+        if (directExport) {
+            DirectTelemetry<RequestData> directTelemetry = DirectTelemetry.request(requestData);
+            tags = directTelemetry.getTags();
+            telemetry = directTelemetry;
+        } else {
+            RequestTelemetry requestTelemetry = new RequestTelemetry(requestData);
+            tags = requestTelemetry.getContext().getTags();
+            telemetry = requestTelemetry;
+        }
 
         String source = null;
         Attributes attributes = span.getAttributes();
@@ -589,10 +627,13 @@ public class Exporter implements SpanExporter {
         }
         requestData.setSource(source);
 
-        addLinks(requestData.getProperties(), span.getLinks());
+        addLinks(telemetry, span.getLinks());
         Long httpStatusCode = attributes.get(SemanticAttributes.HTTP_STATUS_CODE);
         if (httpStatusCode != null) {
             requestData.setResponseCode(Long.toString(httpStatusCode));
+        } else {
+            // same default as RequestTelemetry
+            requestData.setResponseCode("200");
         }
 
         String httpUrl = attributes.get(SemanticAttributes.HTTP_URL);
@@ -602,9 +643,10 @@ public class Exporter implements SpanExporter {
 
         String name = getTelemetryName(span);
         requestData.setName(name);
-        requestData.getContext().getOperation().setName(name);
+        OperationContext operation = new OperationContext(tags);
+        operation.setName(name);
         requestData.setId(span.getSpanId());
-        requestData.getContext().getOperation().setId(span.getTraceId());
+        operation.setId(span.getTraceId());
 
         String locationIp = attributes.get(SemanticAttributes.HTTP_CLIENT_IP);
         if (locationIp == null) {
@@ -612,33 +654,33 @@ public class Exporter implements SpanExporter {
             locationIp = attributes.get(SemanticAttributes.NET_PEER_IP);
         }
         if (locationIp != null) {
-            requestData.getContext().getLocation().setIp(locationIp);
+            new LocationContext(tags).setIp(locationIp);
         }
 
         String aiLegacyParentId = span.getSpanContext().getTraceState().get("ai-legacy-parent-id");
         if (aiLegacyParentId != null) {
             // see behavior specified at https://github.com/microsoft/ApplicationInsights-Java/issues/1174
-            requestData.getContext().getOperation().setParentId(aiLegacyParentId);
+            operation.setParentId(aiLegacyParentId);
             String aiLegacyOperationId = span.getSpanContext().getTraceState().get("ai-legacy-operation-id");
             if (aiLegacyOperationId != null) {
-                requestData.getContext().getProperties().putIfAbsent("ai_legacyRootID", aiLegacyOperationId);
+                requestData.getProperties().putIfAbsent("ai_legacyRootID", aiLegacyOperationId);
             }
         } else {
             String parentSpanId = span.getParentSpanId();
             if (SpanId.isValid(parentSpanId)) {
-                requestData.getContext().getOperation().setParentId(parentSpanId);
+                operation.setParentId(parentSpanId);
             }
         }
 
-        requestData.setTimestamp(new Date(NANOSECONDS.toMillis(span.getStartEpochNanos())));
+        telemetry.setTimestamp(new Date(NANOSECONDS.toMillis(span.getStartEpochNanos())));
         requestData.setDuration(new Duration(NANOSECONDS.toMillis(span.getEndEpochNanos() - span.getStartEpochNanos())));
 
         requestData.setSuccess(span.getStatus().getStatusCode() != StatusCode.ERROR);
 
-        setExtraAttributes(requestData, attributes);
+        setExtraAttributes(telemetry, attributes);
 
         double samplingPercentage = getSamplingPercentage(span.getSpanContext().getTraceState());
-        track(requestData, samplingPercentage);
+        track(telemetry, samplingPercentage);
         exportEvents(span, samplingPercentage);
     }
 
@@ -694,15 +736,21 @@ public class Exporter implements SpanExporter {
 
     private void trackException(String errorStack, SpanData span, String operationId,
                                 String id, Double samplingPercentage) {
+        List<ExceptionDetails> exceptions = Exceptions.minimalParse(errorStack);
+        // the exception type is what the summary of the suppressed duplicates shows
+        if (logDeduplicator != null && !logDeduplicator.shouldTrack(null, null, exceptions.get(0).getTypeName(),
+                LogDeduplicator.stackHash(errorStack))) {
+            return;
+        }
         ExceptionTelemetry exceptionTelemetry = new ExceptionTelemetry();
-        exceptionTelemetry.getData().setExceptions(Exceptions.minimalParse(errorStack));
+        exceptionTelemetry.getData().setExceptions(exceptions);
         exceptionTelemetry.getContext().getOperation().setId(operationId);
         exceptionTelemetry.getContext().getOperation().setParentId(id);
         exceptionTelemetry.setTimestamp(new Date(NANOSECONDS.toMillis(span.getEndEpochNanos())));
         track(exceptionTelemetry, samplingPercentage);
     }
 
-    private static void addLinks(Map<String, String> properties, List<LinkData> links) {
+    private static void addLinks(Telemetry telemetry, List<LinkData> links) {
         if (links.isEmpty()) {
             return;
         }
@@ -721,12 +769,13 @@ public class Exporter implements SpanExporter {
             first = false;
         }
         sb.append("]");
-        properties.put("_MS.links", sb.toString());
+        telemetry.getProperties().put("_MS.links", sb.toString());
     }
 
     private static String getStringValue(AttributeKey<?> attributeKey, Object value) {
         switch (attributeKey.getType()) {
             case STRING:
+                return (String) value;
             case BOOLEAN:
             case LONG:
             case DOUBLE:
@@ -742,49 +791,52 @@ public class Exporter implements SpanExporter {
         }
     }
 
-    private static void setExtraAttributes(Telemetry telemetry, Attributes attributes) {
+    // visible for benchmarks
+    static void setExtraAttributes(Telemetry telemetry, Attributes attributes) {
+        // the item's own tags, the base context is only merged in by the TelemetryClient
+        Map<String, String> tags = telemetry instanceof DirectTelemetry ?
+                ((DirectTelemetry<?>) telemetry).getTags() : telemetry.getContext().getTags();
         attributes.forEach((key, value) -> {
-            String stringKey = key.getKey();
-            if (stringKey.startsWith("applicationinsights.internal.")) {
-                return;
-            }
-            // special case mappings
-            if (key.equals(SemanticAttributes.ENDUSER_ID) && value instanceof String) {
-                telemetry.getContext().getUser().setId((String) value);
-                return;
-            }
-            if (key.equals(SemanticAttributes.HTTP_USER_AGENT) && value instanceof String) {
-                telemetry.getContext().getUser().setUserAgent((String) value);
-                return;
-            }
-            if (stringKey.equals("ai.preview.instrumentation_key") && value instanceof String) {
-                telemetry.getContext().setInstrumentationKey((String) value);
-                return;
-            }
-            if (stringKey.equals("ai.preview.service_name") && value instanceof String) {
-                telemetry.getContext().getCloud().setRole((String) value);
-                return;
-            }
-            if (stringKey.equals("ai.preview.service_instance_id") && value instanceof String) {
-                telemetry.getContext().getCloud().setRoleInstance((String) value);
-                return;
-            }
-            if (stringKey.equals("ai.preview.service_version") && value instanceof String) {
-                telemetry.getContext().getComponent().setVersion((String) value);
-                return;
-            }
-            int index = stringKey.indexOf(".");
-            String prefix = index == -1 ? stringKey : stringKey.substring(0, index);
-            if (STANDARD_ATTRIBUTE_PREFIXES.contains(prefix)) {
-                return;
-            }
-            String val = getStringValue(key, value);
-            if (value != null) {
-                telemetry.getProperties().put(key.getKey(), val);
+            switch (ExtraAttributeClassifier.classify(key).getHandling(value)) {
+                case USER_ID:
+                    new UserContext(tags).setId((String) value);
+                    break;
+                case USER_AGENT:
+                    new UserContext(tags).setUserAgent((String) value);
+                    break;
+                case INSTRUMENTATION_KEY:
+                    setInstrumentationKey(telemetry, (String) value);
+                    break;
+                case ROLE_NAME:
+                    new CloudContext(tags).setRole((String) value);
+                    break;
+                case ROLE_INSTANCE:
+                    new CloudContext(tags).setRoleInstance((String) value);
+                    break;
+                case APPLICATION_VERSION:
+                    new ComponentContext(tags).setVersion((String) value);
+                    break;
+                case CUSTOM_DIMENSION:
+                    String val = getStringValue(key, value);
+                    if (val != null) {
+                        telemetry.getProperties().put(key.getKey(), val);
+                    }
+                    break;
+                default:
+                    // standard and internal attributes are not sent as custom dimensions
+                    break;
             }
         });
     }
 
+    private static void setInstrumentationKey(Telemetry telemetry, String instrumentationKey) {
+        if (telemetry instanceof DirectTelemetry) {
+            ((DirectTelemetry<?>) telemetry).setInstrumentationKey(instrumentationKey);
+        } else {
+            telemetry.getContext().setInstrumentationKey(instrumentationKey);
+        }
+    }
+
     private static SeverityLevel toSeverityLevel(String level) {
         if (level == null) {
             return null;
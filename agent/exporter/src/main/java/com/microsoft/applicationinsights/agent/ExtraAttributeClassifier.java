@@ -0,0 +1,117 @@
+package com.microsoft.applicationinsights.agent;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
+
+/**
+ * Decides once per {@link AttributeKey} what the exporter does with the attributes of that key.
+ *
+ * The decision is cached per key instance (the instrumentations use constant keys), so the string
+ * comparisons and the prefix checks only run the first time a key is seen.
+ */
+final class ExtraAttributeClassifier {
+
+    enum Handling {
+        DROP,
+        USER_ID,
+        USER_AGENT,
+        INSTRUMENTATION_KEY,
+        ROLE_NAME,
+        ROLE_INSTANCE,
+        APPLICATION_VERSION,
+        CUSTOM_DIMENSION
+    }
+
+    static final class Classification {
+
+        private final Handling handling;
+        private final Handling fallback;
+
+        private Classification(Handling handling, Handling fallback) {
+            this.handling = handling;
+            this.fallback = fallback;
+        }
+
+        /**
+         * The special mappings only apply to string values, the other values are handled as
+         * if the key had no special mapping.
+         */
+        Handling getHandling(Object value) {
+            return value instanceof String ? handling : fallback;
+        }
+    }
+
+    // TODO need to keep this list in sync as new semantic conventions are defined
+    // TODO make this opt-in for javaagent
+    private static final List<String> STANDARD_ATTRIBUTE_PREFIXES = Arrays.asList(
+            "http", "db", "message", "messaging", "rpc", "enduser", "net", "peer", "exception", "thread", "faas");
+
+    private static final Classification DROPPED = new Classification(Handling.DROP, Handling.DROP);
+    private static final Classification CUSTOM_DIMENSION = new Classification(Handling.CUSTOM_DIMENSION, Handling.CUSTOM_DIMENSION);
+
+    // keys are compared by identity and only weakly referenced, so keys created on the fly do not pile up
+    private static final Cache<AttributeKey<?>, Classification> cache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(10000)
+            .build();
+
+    private ExtraAttributeClassifier() {
+    }
+
+    static Classification classify(AttributeKey<?> key) {
+        Classification classification = cache.getIfPresent(key);
+        if (classification == null) {
+            classification = compute(key);
+            cache.put(key, classification);
+        }
+        return classification;
+    }
+
+    // visible for testing
+    static Classification compute(AttributeKey<?> key) {
+        String stringKey = key.getKey();
+        if (stringKey.startsWith("applicationinsights.internal.")) {
+            return DROPPED;
+        }
+        Classification fallback = hasStandardPrefix(stringKey) ? DROPPED : CUSTOM_DIMENSION;
+        Handling handling = getSpecialHandling(key, stringKey);
+        return handling == null ? fallback : new Classification(handling, fallback.handling);
+    }
+
+    private static Handling getSpecialHandling(AttributeKey<?> key, String stringKey) {
+        if (key.equals(SemanticAttributes.ENDUSER_ID)) {
+            return Handling.USER_ID;
+        }
+        if (key.equals(SemanticAttributes.HTTP_USER_AGENT)) {
+            return Handling.USER_AGENT;
+        }
+        switch (stringKey) {
+            case "ai.preview.instrumentation_key":
+                return Handling.INSTRUMENTATION_KEY;
+            case "ai.preview.service_name":
+                return Handling.ROLE_NAME;
+            case "ai.preview.service_instance_id":
+                return Handling.ROLE_INSTANCE;
+            case "ai.preview.service_version":
+                return Handling.APPLICATION_VERSION;
+            default:
+                return null;
+        }
+    }
+
+    // same as comparing the part before the first '.' to the prefixes, without creating that substring
+    private static boolean hasStandardPrefix(String stringKey) {
+        for (String prefix : STANDARD_ATTRIBUTE_PREFIXES) {
+            if (stringKey.startsWith(prefix)
+                    && (stringKey.length() == prefix.length() || stringKey.charAt(prefix.length()) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
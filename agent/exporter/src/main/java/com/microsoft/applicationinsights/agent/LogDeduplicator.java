@@ -0,0 +1,311 @@
+package com.microsoft.applicationinsights.agent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import com.google.common.base.Preconditions;
+import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits how often the same log or exception is tracked, so that an incident where every request logs the same
+ * error does not flood the channel.
+ *
+ * The key of a log is its logger, its level, and the hash of its stack when it has one, otherwise its message
+ * (the message of a log with an exception often contains ids, while its stack identifies where it is logged).
+ * Each key has a token bucket which lets {@code maxPerWindow} logs through per window, and the logs beyond that are
+ * only counted, the count is then sent once per window as a summary {@link TraceTelemetry}.
+ *
+ * The keys are spread over a few stripes, each an LRU map with its own lock, so that the application threads
+ * logging at the same time seldom wait for each other. Together the stripes hold up to {@code maxKeys} keys,
+ * the summary of an evicted key is sent right away, once the lock of its stripe is released.
+ */
+public final class LogDeduplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogDeduplicator.class);
+
+    // set on the summaries
+    static final String SUPPRESSED_COUNT_PROPERTY = "SuppressedCount";
+
+    // must be a power of 2
+    private static final int MAX_STRIPES = 16;
+
+    private final Consumer<TraceTelemetry> emitter;
+    private final int maxPerWindow;
+    private final long windowNanos;
+    private final LongSupplier nanoTime;
+
+    private final Stripe[] stripes;
+
+    private final ScheduledExecutorService scheduledExecutor =
+            Executors.newSingleThreadScheduledExecutor(ThreadPoolUtils.createDaemonThreadFactory(LogDeduplicator.class));
+
+    public LogDeduplicator(Consumer<TraceTelemetry> emitter, int maxPerWindow, long windowSeconds, int maxKeys) {
+        this(emitter, maxPerWindow, windowSeconds, maxKeys, System::nanoTime);
+    }
+
+    // visible for testing
+    LogDeduplicator(Consumer<TraceTelemetry> emitter, int maxPerWindow, long windowSeconds, int maxKeys,
+                    LongSupplier nanoTime) {
+        Preconditions.checkNotNull(emitter, "emitter must be non-null value");
+        Preconditions.checkArgument(maxPerWindow > 0, "maxPerWindow must be a positive number");
+        Preconditions.checkArgument(windowSeconds > 0, "windowSeconds must be a positive number");
+        Preconditions.checkArgument(maxKeys > 0, "maxKeys must be a positive number");
+
+        this.emitter = emitter;
+        this.maxPerWindow = maxPerWindow;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds);
+        this.nanoTime = nanoTime;
+        // the largest power of 2 not above maxKeys, so that each stripe can hold a key at least
+        int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(maxKeys));
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(maxKeys / stripeCount + (i < maxKeys % stripeCount ? 1 : 0));
+        }
+    }
+
+    public void start() {
+        long windowSeconds = TimeUnit.NANOSECONDS.toSeconds(windowNanos);
+        scheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t) {
+                    logger.error("Error occurred while sending the suppressed log summaries", t);
+                }
+            }
+        }, windowSeconds, windowSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param stackHash see {@link #stackHash(String)} and {@link #stackHash(Throwable)}, 0 when there is no stack
+     * @return false when the log is a duplicate which is only counted
+     */
+    public boolean shouldTrack(String loggerName, String level, String message,
+                               int stackHash) {
+        Key key = new Key(loggerName, level, stackHash == 0 ? message : null, stackHash);
+        Stripe stripe = stripes[(key.hashCode ^ (key.hashCode >>> 16)) & (stripes.length - 1)];
+        long now = nanoTime.getAsLong();
+        boolean track;
+        List<TraceTelemetry> evicted;
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(maxPerWindow, now, message);
+                stripe.put(key, bucket);
+            }
+            track = bucket.tryAcquire(now);
+            evicted = stripe.evicted;
+            stripe.evicted = null;
+        }
+        if (evicted != null) {
+            for (TraceTelemetry summary : evicted) {
+                emitter.accept(summary);
+            }
+        }
+        return track;
+    }
+
+    /**
+     * Sends the summaries of the logs that were suppressed since the last flush.
+     */
+    public void flush() {
+        List<TraceTelemetry> summaries = new ArrayList<>();
+        long now = nanoTime.getAsLong();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Map.Entry<Key, Bucket>> i = stripe.entrySet().iterator();
+                while (i.hasNext()) {
+                    Map.Entry<Key, Bucket> entry = i.next();
+                    Bucket bucket = entry.getValue();
+                    if (bucket.suppressedCount != 0) {
+                        summaries.add(toSummary(entry.getKey(), bucket));
+                        bucket.suppressedCount = 0;
+                    } else if (bucket.isFull(now)) {
+                        // idle for a whole window
+                        i.remove();
+                    }
+                }
+            }
+        }
+        for (TraceTelemetry summary : summaries) {
+            emitter.accept(summary);
+        }
+    }
+
+    private static TraceTelemetry toSummary(Key key, Bucket bucket) {
+        String message = bucket.message == null ? "" : bucket.message;
+        TraceTelemetry telemetry = new TraceTelemetry(
+                "Suppressed " + bucket.suppressedCount + " duplicate(s) of: " + message);
+        telemetry.getProperties().put(SUPPRESSED_COUNT_PROPERTY, Long.toString(bucket.suppressedCount));
+        if (key.level != null) {
+            telemetry.getProperties().put("SourceType", "Logger");
+            telemetry.getProperties().put("LoggingLevel", key.level);
+        }
+        if (key.loggerName != null) {
+            telemetry.getProperties().put("LoggerName", key.loggerName);
+        }
+        return telemetry;
+    }
+
+    /**
+     * Hashes the type and the frames of the exceptions in a stack trace string, but not their messages.
+     */
+    public static int stackHash(String errorStack) {
+        int hash = 1;
+        int length = errorStack.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && errorStack.charAt(lineEnd) != '\n' && errorStack.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            int hashEnd = lineEnd;
+            char first = errorStack.charAt(lineStart);
+            if (first != ' ' && first != '\t' && lineEnd > lineStart) {
+                // "Type: message" or "Caused by: Type: message"
+                int typeStart = errorStack.startsWith("Caused by: ", lineStart) ? lineStart + 11 : lineStart;
+                int messageStart = errorStack.indexOf(": ", typeStart);
+                if (messageStart != -1 && messageStart < lineEnd) {
+                    hashEnd = messageStart;
+                }
+            }
+            for (int i = lineStart; i < hashEnd; i++) {
+                hash = 31 * hash + errorStack.charAt(i);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Hashes the types and the frames of an exception and of its causes, but not their messages.
+     */
+    public static int stackHash(Throwable throwable) {
+        int hash = 1;
+        int depth = 0;
+        for (Throwable t = throwable; t != null && depth < 10; t = t.getCause(), depth++) {
+            hash = 31 * hash + t.getClass().getName().hashCode();
+            hash = 31 * hash + Arrays.hashCode(t.getStackTrace());
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    // access ordered, guarded by itself
+    private static final class Stripe extends LinkedHashMap<Key, Bucket> {
+
+        private final int maxKeys;
+        // the summaries of the keys evicted by the last put, sent by the caller once it released the lock
+        private List<TraceTelemetry> evicted;
+
+        private Stripe(int maxKeys) {
+            super(16, 0.75f, true);
+            this.maxKeys = maxKeys;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Bucket> eldest) {
+            if (size() <= maxKeys) {
+                return false;
+            }
+            if (eldest.getValue().suppressedCount != 0) {
+                if (evicted == null) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(toSummary(eldest.getKey(), eldest.getValue()));
+            }
+            return true;
+        }
+    }
+
+    private final class Bucket {
+
+        // the first message of the key, for the summaries
+        private final String message;
+        private double tokens;
+        private long lastRefillNanos;
+        private long suppressedCount;
+
+        private Bucket(double tokens, long nowNanos, String message) {
+            this.tokens = tokens;
+            this.lastRefillNanos = nowNanos;
+            this.message = message;
+        }
+
+        private boolean tryAcquire(long nowNanos) {
+            refill(nowNanos);
+            if (tokens >= 1) {
+                tokens--;
+                return true;
+            }
+            suppressedCount++;
+            return false;
+        }
+
+        private boolean isFull(long nowNanos) {
+            refill(nowNanos);
+            return tokens >= maxPerWindow;
+        }
+
+        private void refill(long nowNanos) {
+            long elapsed = nowNanos - lastRefillNanos;
+            if (elapsed > 0) {
+                tokens = Math.min(maxPerWindow, tokens + (double) elapsed * maxPerWindow / windowNanos);
+                lastRefillNanos = nowNanos;
+            }
+        }
+    }
+
+    private static final class Key {
+
+        private final String loggerName;
+        private final String level;
+        private final String message;
+        private final int stackHash;
+        private final int hashCode;
+
+        private Key(String loggerName, String level, String message, int stackHash) {
+            this.loggerName = loggerName;
+            this.level = level;
+            this.message = message;
+            this.stackHash = stackHash;
+            hashCode = 31 * (31 * (31 * Objects.hashCode(loggerName) + Objects.hashCode(level))
+                    + Objects.hashCode(message)) + stackHash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return stackHash == other.stackHash
+                    && Objects.equals(loggerName, other.loggerName)
+                    && Objects.equals(level, other.level)
+                    && Objects.equals(message, other.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.microsoft.applicationinsights.agent;
+
+import com.microsoft.applicationinsights.agent.ExtraAttributeClassifier.Handling;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class ExtraAttributeClassifierTest {
+
+    @Test
+    public void testSpecialMappingsOnlyApplyToStrings() {
+        assertEquals(Handling.USER_ID, ExtraAttributeClassifier.compute(SemanticAttributes.ENDUSER_ID).getHandling("user"));
+        assertEquals(Handling.USER_AGENT, ExtraAttributeClassifier.compute(SemanticAttributes.HTTP_USER_AGENT).getHandling("agent"));
+
+        ExtraAttributeClassifier.Classification roleName = ExtraAttributeClassifier.compute(AttributeKey.stringKey("ai.preview.service_name"));
+        assertEquals(Handling.ROLE_NAME, roleName.getHandling("role"));
+        // not a standard prefix, so kept as a custom dimension
+        assertEquals(Handling.CUSTOM_DIMENSION, roleName.getHandling(1L));
+    }
+
+    @Test
+    public void testStandardPrefixesAreDropped() {
+        assertEquals(Handling.DROP, ExtraAttributeClassifier.compute(SemanticAttributes.HTTP_METHOD).getHandling("GET"));
+        assertEquals(Handling.DROP, ExtraAttributeClassifier.compute(AttributeKey.stringKey("db")).getHandling("x"));
+        assertEquals(Handling.DROP, ExtraAttributeClassifier.compute(AttributeKey.stringKey("applicationinsights.internal.x")).getHandling("x"));
+
+        // only the part before the first '.' is compared
+        assertEquals(Handling.CUSTOM_DIMENSION, ExtraAttributeClassifier.compute(AttributeKey.stringKey("httpx.method")).getHandling("x"));
+        assertEquals(Handling.CUSTOM_DIMENSION, ExtraAttributeClassifier.compute(AttributeKey.stringKey("message_bus.destination")).getHandling("x"));
+        assertEquals(Handling.CUSTOM_DIMENSION, ExtraAttributeClassifier.compute(AttributeKey.stringKey("app.db")).getHandling("x"));
+    }
+
+    @Test
+    public void testClassificationIsCachedPerKey() {
+        AttributeKey<String> key = AttributeKey.stringKey("app.cached");
+        assertSame(ExtraAttributeClassifier.classify(key), ExtraAttributeClassifier.classify(key));
+    }
+}
@@ -0,0 +1,130 @@
+package com.microsoft.applicationinsights.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class LogDeduplicatorTest {
+
+    private final List<TraceTelemetry> summaries = new ArrayList<>();
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    public void testFirstOccurrencesAreTracked() {
+        LogDeduplicator deduplicator = new LogDeduplicator(summaries::add, 2, 60, 10, nanoTime::get);
+
+        assertTrue(deduplicator.shouldTrack("logger", "ERROR", "failed", 0));
+        assertTrue(deduplicator.shouldTrack("logger", "ERROR", "failed", 0));
+        assertFalse(deduplicator.shouldTrack("logger", "ERROR", "failed", 0));
+        assertFalse(deduplicator.shouldTrack("logger", "ERROR", "failed", 0));
+        // another key
+        assertTrue(deduplicator.shouldTrack("logger", "WARN", "failed", 0));
+
+        deduplicator.flush();
+
+        assertEquals(1, summaries.size());
+        TraceTelemetry summary = summaries.get(0);
+        assertEquals("2", summary.getProperties().get(LogDeduplicator.SUPPRESSED_COUNT_PROPERTY));
+        assertEquals("logger", summary.getProperties().get("LoggerName"));
+        assertTrue(summary.getMessage().endsWith("failed"));
+
+        // nothing was suppressed since
+        summaries.clear();
+        deduplicator.flush();
+        assertTrue(summaries.isEmpty());
+    }
+
+    @Test
+    public void testTokensAreRefilledOverTheWindow() {
+        LogDeduplicator deduplicator = new LogDeduplicator(summaries::add, 2, 60, 10, nanoTime::get);
+
+        assertTrue(deduplicator.shouldTrack(null, null, "failed", 0));
+        assertTrue(deduplicator.shouldTrack(null, null, "failed", 0));
+        assertFalse(deduplicator.shouldTrack(null, null, "failed", 0));
+
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertTrue(deduplicator.shouldTrack(null, null, "failed", 0));
+        assertFalse(deduplicator.shouldTrack(null, null, "failed", 0));
+    }
+
+    @Test
+    public void testExceptionsAreKeyedByStack() {
+        LogDeduplicator deduplicator = new LogDeduplicator(summaries::add, 1, 60, 10, nanoTime::get);
+
+        int stackHash = LogDeduplicator.stackHash(new IllegalStateException("order 1"));
+        assertTrue(deduplicator.shouldTrack("logger", "ERROR", "failed order 1", stackHash));
+        // same stack, with another message
+        assertFalse(deduplicator.shouldTrack("logger", "ERROR", "failed order 2", stackHash));
+    }
+
+    @Test
+    public void testSummaryOfExceptionsShowsTheirType() {
+        LogDeduplicator deduplicator = new LogDeduplicator(summaries::add, 1, 60, 10, nanoTime::get);
+
+        String stack = "java.lang.IllegalStateException: order 1\n\tat a.B.c(B.java:1)\n";
+        int stackHash = LogDeduplicator.stackHash(stack);
+        assertTrue(deduplicator.shouldTrack(null, null, "java.lang.IllegalStateException", stackHash));
+        assertFalse(deduplicator.shouldTrack(null, null, "java.lang.IllegalStateException", stackHash));
+        deduplicator.flush();
+
+        assertEquals(1, summaries.size());
+        assertEquals("Suppressed 1 duplicate(s) of: java.lang.IllegalStateException", summaries.get(0).getMessage());
+    }
+
+    @Test
+    public void testStackHashIgnoresMessages() {
+        String stack1 = "java.lang.IllegalStateException: order 1\n\tat a.B.c(B.java:1)\n"
+                + "Caused by: java.io.IOException: connection 1\n\tat d.E.f(E.java:2)\n";
+        String stack2 = "java.lang.IllegalStateException: order 2\n\tat a.B.c(B.java:1)\n"
+                + "Caused by: java.io.IOException: connection 2\n\tat d.E.f(E.java:2)\n";
+        String stack3 = "java.lang.IllegalStateException: order 1\n\tat a.B.c(B.java:3)\n"
+                + "Caused by: java.io.IOException: connection 1\n\tat d.E.f(E.java:2)\n";
+
+        assertEquals(LogDeduplicator.stackHash(stack1), LogDeduplicator.stackHash(stack2));
+        assertNotEquals(LogDeduplicator.stackHash(stack1), LogDeduplicator.stackHash(stack3));
+    }
+
+    @Test
+    public void testEvictedKeysAreSummarized() {
+        LogDeduplicator deduplicator = new LogDeduplicator(summaries::add, 1, 60, 1, nanoTime::get);
+
+        assertTrue(deduplicator.shouldTrack(null, null, "first", 0));
+        assertFalse(deduplicator.shouldTrack(null, null, "first", 0));
+        assertTrue(deduplicator.shouldTrack(null, null, "second", 0));
+
+        assertEquals(1, summaries.size());
+        assertTrue(summaries.get(0).getMessage().endsWith("first"));
+        // the key was evicted, so it starts over
+        assertTrue(deduplicator.shouldTrack(null, null, "first", 0));
+    }
+
+    @Test
+    public void testEvictedSummariesAreSentWithoutHoldingTheLock() throws Exception {
+        final AtomicReference<LogDeduplicator> deduplicator = new AtomicReference<>();
+        final AtomicBoolean trackedFromOtherThread = new AtomicBoolean();
+        deduplicator.set(new LogDeduplicator(summary -> {
+            // e.g. the channel logs a warning, which goes through the deduplicator on another thread
+            Thread thread = new Thread(() -> trackedFromOtherThread.set(deduplicator.get().shouldTrack(null, null, "third", 0)));
+            thread.start();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1, 60, 1, nanoTime::get));
+
+        assertTrue(deduplicator.get().shouldTrack(null, null, "first", 0));
+        assertFalse(deduplicator.get().shouldTrack(null, null, "first", 0));
+        assertTrue(deduplicator.get().shouldTrack(null, null, "second", 0));
+
+        assertTrue(trackedFromOtherThread.get());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
+import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Adds telemetries to the {@link StripedTelemetryBuffer} used by the channel and to the previous
+ * {@link TelemetryBuffer}, which takes a single lock for every add, from 1 to 64 producer threads.
+ * The full batches are handed to a transmitter which drops them, so only the buffering is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TelemetryBufferBenchmark {
+
+    // the default of the channel, see TelemetryChannelBase.DEFAULT_MAX_TELEMETRY_BUFFER_CAPACITY
+    private static final int MAX_TELEMETRIES_IN_BATCH = 500;
+    private static final int TRANSMIT_BUFFER_TIMEOUT_IN_SECONDS = 5;
+
+    private static final String TELEMETRY = "telemetry";
+
+    private TelemetryBuffer<String> telemetryBuffer;
+    private StripedTelemetryBuffer<String> stripedTelemetryBuffer;
+
+    @Setup
+    public void setUp() {
+        telemetryBuffer = new TelemetryBuffer<>(new DroppingTransmitter(), createEnforcer(MAX_TELEMETRIES_IN_BATCH),
+                createEnforcer(TRANSMIT_BUFFER_TIMEOUT_IN_SECONDS));
+        stripedTelemetryBuffer = new StripedTelemetryBuffer<>(new DroppingTransmitter(), createEnforcer(MAX_TELEMETRIES_IN_BATCH),
+                createEnforcer(TRANSMIT_BUFFER_TIMEOUT_IN_SECONDS));
+    }
+
+    @TearDown
+    public void tearDown() {
+        telemetryBuffer.flush();
+        stripedTelemetryBuffer.flush();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void telemetryBuffer1Thread() {
+        telemetryBuffer.add(TELEMETRY);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void telemetryBuffer4Threads() {
+        telemetryBuffer.add(TELEMETRY);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void telemetryBuffer16Threads() {
+        telemetryBuffer.add(TELEMETRY);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void telemetryBuffer64Threads() {
+        telemetryBuffer.add(TELEMETRY);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void stripedTelemetryBuffer1Thread() {
+        stripedTelemetryBuffer.add(TELEMETRY);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void stripedTelemetryBuffer4Threads() {
+        stripedTelemetryBuffer.add(TELEMETRY);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void stripedTelemetryBuffer16Threads() {
+        stripedTelemetryBuffer.add(TELEMETRY);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void stripedTelemetryBuffer64Threads() {
+        stripedTelemetryBuffer.add(TELEMETRY);
+    }
+
+    private static LimitsEnforcer createEnforcer(int currentValue) {
+        return LimitsEnforcer.createWithClosestLimitOnError("benchmark", 1, 1000, currentValue, currentValue);
+    }
+
+    private static class DroppingTransmitter implements TelemetriesTransmitter<String> {
+
+        @Override
+        public boolean scheduleSend(TelemetriesFetcher<String> telemetriesFetcher, long value, TimeUnit timeUnit) {
+            // the full batches are sent long before the timeout
+            return true;
+        }
+
+        @Override
+        public boolean sendNow(Collection<String> telemetries) {
+            return true;
+        }
+
+        @Override
+        public void shutdown(long timeout, TimeUnit timeUnit) {
+        }
+    }
+}
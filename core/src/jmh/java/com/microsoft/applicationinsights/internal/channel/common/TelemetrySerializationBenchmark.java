@@ -0,0 +1,123 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+import com.microsoft.applicationinsights.telemetry.Duration;
+import com.microsoft.applicationinsights.telemetry.JsonTelemetryDataSerializer;
+import com.microsoft.applicationinsights.telemetry.RemoteDependencyTelemetry;
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.TelemetryContext;
+import com.squareup.moshi.JsonWriter;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Serializes a batch of telemetries with the {@link GzipTelemetrySerializer}, and a single envelope with
+ * {@code BaseTelemetry.serialize}, run with {@code -prof gc} to see the allocation per batch and per envelope.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class TelemetrySerializationBenchmark {
+
+    // the default of the channel, see TelemetryChannelBase.DEFAULT_MAX_TELEMETRY_BUFFER_CAPACITY
+    private static final int BATCH_SIZE = 500;
+
+    private final GzipTelemetrySerializer serializer = new GzipTelemetrySerializer();
+    private final List<Telemetry> batch = new ArrayList<>(BATCH_SIZE);
+    private final Buffer envelopeBuffer = new Buffer();
+
+    private RequestTelemetry request;
+    private JsonWriter envelopeWriter;
+    private JsonTelemetryDataSerializer envelopeSerializer;
+
+    @Setup
+    public void setUp() throws IOException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (i % 2 == 0) {
+                batch.add(createRequest(i));
+            } else {
+                RemoteDependencyTelemetry dependency = new RemoteDependencyTelemetry("orders", "SELECT * FROM orders WHERE id = ?",
+                        new Duration(3L + i % 7), true);
+                dependency.setType("SQL");
+                dependency.setTarget("orders-db");
+                setUpContext(dependency.getContext());
+                batch.add(dependency);
+            }
+        }
+        request = createRequest(0);
+
+        // like GzipTelemetrySerializer, one lenient writer for all the envelopes
+        envelopeWriter = JsonWriter.of(envelopeBuffer);
+        envelopeWriter.setLenient(true);
+        envelopeSerializer = new JsonTelemetryDataSerializer(envelopeWriter);
+        envelopeSerializer.close();
+        envelopeBuffer.clear();
+    }
+
+    @Benchmark
+    public Optional<Transmission> gzipBatch() {
+        return serializer.serialize(batch);
+    }
+
+    @Benchmark
+    public long envelope() throws IOException {
+        envelopeSerializer.reset(envelopeWriter);
+        request.serialize(envelopeSerializer);
+        envelopeSerializer.close();
+        envelopeWriter.flush();
+        long size = envelopeBuffer.size();
+        envelopeBuffer.clear();
+        return size;
+    }
+
+    private static RequestTelemetry createRequest(int i) {
+        RequestTelemetry request = new RequestTelemetry("GET /api/orders/{id}", new Date(), 20L + i % 50, "200", i % 10 != 0);
+        request.setId("|4bf92f3577b34da6a3ce929d0e0e4736." + i + ".");
+        request.setUrl("https://example.com/api/orders/" + i);
+        request.getProperties().put("tenant", "contoso");
+        setUpContext(request.getContext());
+        return request;
+    }
+
+    private static void setUpContext(TelemetryContext context) {
+        context.setInstrumentationKey("6d7a1c5e-7b4e-4c1f-9b2a-2f0d6c1c1a9e");
+        context.getCloud().setRole("orders");
+        context.getCloud().setRoleInstance("orders-1");
+        context.getOperation().setId("4bf92f3577b34da6a3ce929d0e0e4736");
+        context.getOperation().setName("GET /api/orders/{id}");
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.quickpulse;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.internal.quickpulse.QuickPulseDataCollector.FinalCounters;
+import com.microsoft.applicationinsights.internal.quickpulse.QuickPulsePayloadEncoder.Payload;
+import com.microsoft.applicationinsights.telemetry.Duration;
+import com.microsoft.applicationinsights.telemetry.RemoteDependencyTelemetry;
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+import org.apache.http.entity.ByteArrayEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Encodes the Live Metrics post and ping documents, run with {@code -prof gc} to compare the allocation per post
+ * with the previous String.format based encoding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class QuickPulsePayloadBenchmark {
+
+    private DefaultQuickPulseDataFetcher dataFetcher;
+    private DefaultQuickPulsePingSender pingSender;
+    private FinalCounters counters;
+
+    @Setup
+    public void setUp() {
+        dataFetcher = new DefaultQuickPulseDataFetcher(null, (TelemetryConfiguration) null, "machine1", "instance1",
+                "role1", "6d7a1c5e-7b4e-4c1f-9b2a-2f0d6c1c1a9e");
+        pingSender = new DefaultQuickPulsePingSender(null, null, "machine1", "instance1", "role1",
+                "6d7a1c5e-7b4e-4c1f-9b2a-2f0d6c1c1a9e");
+
+        QuickPulseDataCollector.INSTANCE.enable("ikey");
+        for (int i = 0; i < 1000; i++) {
+            RequestTelemetry request = new RequestTelemetry("GET /api/orders", new Date(), 20L + i % 50, "200", i % 10 != 0);
+            request.getContext().setInstrumentationKey("ikey");
+            QuickPulseDataCollector.INSTANCE.add(request);
+            RemoteDependencyTelemetry dependency = new RemoteDependencyTelemetry("orders", "SELECT", new Duration(3L + i % 7), true);
+            dependency.getContext().setInstrumentationKey("ikey");
+            QuickPulseDataCollector.INSTANCE.add(dependency);
+        }
+        counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+    }
+
+    @TearDown
+    public void tearDown() {
+        QuickPulseDataCollector.INSTANCE.disable();
+    }
+
+    @Benchmark
+    public Payload post() {
+        Payload payload = dataFetcher.buildPostEntity(counters);
+        // as done by the sender once the payload is posted
+        payload.release();
+        return payload;
+    }
+
+    @Benchmark
+    public Payload ping() {
+        Payload payload = pingSender.buildPingEntity(System.currentTimeMillis());
+        payload.release();
+        return payload;
+    }
+
+    @Benchmark
+    public ByteArrayEntity postWithStringFormat() {
+        StringBuilder sb = new StringBuilder("[{\"Documents\": [] ,\"Instance\": \"instance1\",\"InstrumentationKey\": \"null\","
+                + "\"InvariantVersion\": 1,\"MachineName\": \"machine1\",\"RoleName\": \"role1\","
+                + "\"StreamId\": \"6d7a1c5e-7b4e-4c1f-9b2a-2f0d6c1c1a9e\",");
+        sb.append("\"Metrics\":[");
+        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Requests\\/Sec", counters.requests, 1, true);
+        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Request Duration", counters.requestsDuration, (int) counters.requests, true);
+        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Requests Failed\\/Sec", counters.unsuccessfulRequests, 1, true);
+        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Requests Succeeded\\/Sec", counters.requests - counters.unsuccessfulRequests, 1, true);
+        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Dependency Calls\\/Sec", counters.rdds, 1, true);
+        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Dependency Call Duration", counters.rddsDuration, (int) counters.rdds, true);
+        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Dependency Calls Failed\\/Sec", counters.unsuccessfulRdds, 1, true);
+        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Dependency Calls Succeeded\\/Sec", counters.rdds - counters.unsuccessfulRdds, 1, true);
+        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Exceptions\\/Sec", counters.exceptions, 1, true);
+        formatSingleMetric(sb, "\\\\Memory\\\\Committed Bytes", counters.memoryCommitted, 1, true);
+        formatSingleMetric(sb, "\\\\Processor(_Total)\\\\% Processor Time", counters.cpuUsage, 1, false);
+        sb.append("],");
+        sb.append("\"Timestamp\": \"\\/Date(").append(System.currentTimeMillis()).append(")\\/\",");
+        sb.append("\"Version\": \"java:3.0.3\"}]");
+        return new ByteArrayEntity(sb.toString().getBytes());
+    }
+
+    // the encoding which was used before the payload encoder
+    private static void formatSingleMetric(StringBuilder sb, String metricName, Object metricValue, int metricWeight, boolean includeComma) {
+        String comma = includeComma ? "," : "";
+        sb.append(String.format("{\"Name\": \"%s\",\"Value\": %s,\"Weight\": %s}%s", metricName, metricValue, metricWeight, comma));
+    }
+}
@@ -23,6 +23,7 @@ package com.microsoft.applicationinsights;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -34,6 +35,9 @@ import com.microsoft.applicationinsights.extensibility.context.ContextTagKeys;
 import com.microsoft.applicationinsights.extensibility.context.InternalContext;
 import com.microsoft.applicationinsights.extensibility.initializer.TelemetryObservers;
 import com.microsoft.applicationinsights.internal.quickpulse.QuickPulseDataCollector;
+import com.microsoft.applicationinsights.telemetry.BaseTelemetry;
+import com.microsoft.applicationinsights.telemetry.ContextSnapshot;
+import com.microsoft.applicationinsights.telemetry.DirectTelemetry;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
 import com.microsoft.applicationinsights.telemetry.TelemetryContext;
 import org.apache.commons.lang3.StringUtils;
@@ -52,6 +56,10 @@ public class TelemetryClient {
 
     private final TelemetryConfiguration configuration;
     private volatile TelemetryContext context;
+    // the role name and instance the context was created with, so that the context is rebuilt when they are set lazily
+    private volatile String contextRoleName;
+    private volatile String contextRoleInstance;
+    private volatile ContextSnapshot contextSnapshot;
     private TelemetryChannel channel;
 
     private static final Object TELEMETRY_CONTEXT_LOCK = new Object();
@@ -82,10 +90,12 @@ public class TelemetryClient {
      * application session.
      */
     public TelemetryContext getContext() {
-        if (context == null || (context.getInstrumentationKey() != null &&  !context.getInstrumentationKey().equals(configuration.getInstrumentationKey()))) {
+        if (isContextStale()) {
             // lock and recheck there is still no initialized context. If so, create one.
             synchronized (TELEMETRY_CONTEXT_LOCK) {
-                if (context==null || (context.getInstrumentationKey() != null && !context.getInstrumentationKey().equals(configuration.getInstrumentationKey()))) {
+                if (isContextStale()) {
+                    contextRoleName = configuration.getRoleName();
+                    contextRoleInstance = configuration.getRoleInstance();
                     context = createInitializedContext();
                 }
             }
@@ -94,6 +104,30 @@ public class TelemetryClient {
         return context;
     }
 
+    private boolean isContextStale() {
+        TelemetryContext context = this.context;
+        return context == null
+                || (context.getInstrumentationKey() != null && !context.getInstrumentationKey().equals(configuration.getInstrumentationKey()))
+                || !Objects.equals(contextRoleName, configuration.getRoleName())
+                || !Objects.equals(contextRoleInstance, configuration.getRoleInstance());
+    }
+
+    /**
+     * Gets an immutable copy of the current context, that tracked telemetry reference as their base context.
+     * It is taken again only when the context is replaced (e.g. the instrumentation key or role name was set lazily)
+     * or was modified since, which {@link ContextSnapshot#isSnapshotOf(TelemetryContext)} checks without copying.
+     * @return A snapshot of {@link #getContext()}.
+     */
+    public ContextSnapshot getContextSnapshot() {
+        TelemetryContext context = getContext();
+        ContextSnapshot snapshot = contextSnapshot;
+        if (snapshot == null || !snapshot.isSnapshotOf(context)) {
+            snapshot = ContextSnapshot.of(context);
+            contextSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
     /**
      * Checks whether tracking is enabled.
      * @return 'true' if tracking is disabled, 'false' otherwise.
@@ -124,33 +158,17 @@ public class TelemetryClient {
             telemetry.setTimestamp(new Date());
         }
 
-        TelemetryContext context = telemetry.getContext();
-        // do not overwrite if the user has explicitly set the instrumentation key
-        // (either via 2.x SDK or ai.preview.instrumentation_key span attribute)
-        if (Strings.isNullOrEmpty(context.getInstrumentationKey())) {
-            context.setInstrumentationKey(getContext().getInstrumentationKey(), getContext().getNormalizedInstrumentationKey());
-        }
-
-        // the TelemetryClient's base context contains tags:
-        // * cloud role name
-        // * cloud role instance
-        // * sdk version
-        // * component version
-        // do not overwrite if the user has explicitly set the cloud role name, cloud role instance,
-        // or application version (either via 2.x SDK, ai.preview.service_name, ai.preview.service_instance_id,
-        // or ai.preview.service_version span attributes)
-        for (Map.Entry<String, String> entry : getContext().getTags().entrySet()) {
-            String key = entry.getKey();
-            // only overwrite ai.internal.* tags, e.g. sdk version
-            if (key.startsWith("ai.internal.") || !context.getTags().containsKey(key)) {
-                context.getTags().put(key, entry.getValue());
-            }
+        // the telemetry items of this SDK reference the base context instead of having it copied in,
+        // it is merged using the same rules as mergeBaseContext() when they are serialized
+        ContextSnapshot baseContext = getContextSnapshot();
+        if (telemetry instanceof BaseTelemetry) {
+            ((BaseTelemetry<?>) telemetry).setBaseContext(baseContext);
+        } else if (telemetry instanceof DirectTelemetry) {
+            ((DirectTelemetry<?>) telemetry).setBaseContext(baseContext);
+        } else {
+            mergeBaseContext(telemetry, baseContext);
         }
 
-        // the TelemetryClient's base context contains properties:
-        // * "customDimensions" provided by json configuration
-        context.getProperties().putAll(getContext().getProperties());
-
         try {
             QuickPulseDataCollector.INSTANCE.add(telemetry);
         } catch (ThreadDeath td) {
@@ -174,6 +192,34 @@ public class TelemetryClient {
         TelemetryObservers.INSTANCE.getObservers().forEach(consumer -> consumer.consume(telemetry));
     }
 
+    private static void mergeBaseContext(Telemetry telemetry, ContextSnapshot baseContext) {
+        TelemetryContext context = telemetry.getContext();
+        // do not overwrite if the user has explicitly set the instrumentation key
+        // (either via 2.x SDK or ai.preview.instrumentation_key span attribute)
+        if (Strings.isNullOrEmpty(context.getInstrumentationKey())) {
+            context.setInstrumentationKey(baseContext.getInstrumentationKey(), baseContext.getNormalizedInstrumentationKey());
+        }
+
+        // the TelemetryClient's base context contains tags:
+        // * cloud role name
+        // * cloud role instance
+        // * sdk version
+        // * component version
+        // do not overwrite if the user has explicitly set the cloud role name, cloud role instance,
+        // or application version (either via 2.x SDK, ai.preview.service_name, ai.preview.service_instance_id,
+        // or ai.preview.service_version span attributes)
+        for (Map.Entry<String, String> entry : baseContext.getTags().entrySet()) {
+            // only overwrite ai.internal.* tags, e.g. sdk version
+            if (ContextSnapshot.isSharedTagApplied(entry.getKey(), context.getTags())) {
+                context.getTags().put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        // the TelemetryClient's base context contains properties:
+        // * "customDimensions" provided by json configuration
+        context.getProperties().putAll(baseContext.getProperties());
+    }
+
     /**
      * Flushes possible pending Telemetries in the channel. Not required for a continuously-running server application.
      */
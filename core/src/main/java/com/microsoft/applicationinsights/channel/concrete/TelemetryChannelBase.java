@@ -27,7 +27,9 @@ import com.microsoft.applicationinsights.TelemetryConfiguration;
 import com.microsoft.applicationinsights.channel.TelemetryChannel;
 import com.microsoft.applicationinsights.internal.channel.ConfiguredTransmitterFactory;
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
-import com.microsoft.applicationinsights.internal.channel.common.TelemetryBuffer;
+import com.microsoft.applicationinsights.internal.channel.common.StripedTelemetryBuffer;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionPipelineStage;
+import com.microsoft.applicationinsights.internal.channel.common.TransmitterImpl;
 import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
 import com.microsoft.applicationinsights.internal.util.Sanitizer;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
@@ -35,6 +37,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -62,6 +65,10 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
     public static final String DEVELOPER_MODE_NAME = "DeveloperMode";
     public static final String ENDPOINT_ADDRESS_NAME = "EndpointAddress";
     public static final String MAX_TRANSMISSION_STORAGE_CAPACITY_NAME = "MaxTransmissionStorageFilesCapacityInMB";
+    public static final String SEGMENTED_TRANSMISSION_STORAGE_NAME = "SegmentedTransmissionStorage";
+    public static final String SERIALIZATION_THREADS_NAME = "SerializationThreads";
+    public static final String SERIALIZATION_QUEUE_CAPACITY_NAME = "SerializationQueueCapacity";
+    public static final String SERIALIZATION_DROP_POLICY_NAME = "SerializationDropPolicy";
     public static final int LOG_TELEMETRY_ITEMS_MODULUS = 10000;
     public static final String THROTTLING_ENABLED_NAME = "Throttling";
 
@@ -71,16 +78,16 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
     protected boolean isInitailized = false;
 
     protected TelemetriesTransmitter<T> telemetriesTransmitter;
-    protected TelemetryBuffer<T> telemetryBuffer;
+    protected StripedTelemetryBuffer<T> telemetryBuffer;
     protected TelemetriesTransmitter<T> statsbeatTransmitter;
-    protected TelemetryBuffer<T> statsbeatBuffer;
+    protected StripedTelemetryBuffer<T> statsbeatBuffer;
 
 
     private boolean developerMode = false;
 
     public TelemetryChannelBase(TelemetryConfiguration configuration) {
-        initialize(configuration, null, null, Boolean.getBoolean(DEVELOPER_MODE_SYSTEM_PROPRETY_NAME),
-                createDefaultMaxTelemetryBufferCapacityEnforcer(null), createDefaultSendIntervalInSecondsEnforcer(null), true, DEFAULT_MAX_INSTANT_RETRY);
+        initialize(configuration, null, null, false, Boolean.getBoolean(DEVELOPER_MODE_SYSTEM_PROPRETY_NAME),
+                createDefaultMaxTelemetryBufferCapacityEnforcer(null), createDefaultSendIntervalInSecondsEnforcer(null), true, DEFAULT_MAX_INSTANT_RETRY, TransmitterImpl.DEFAULT_SERIALIZATION_SETTINGS);
     }
 
     /**
@@ -91,10 +98,14 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
         boolean developerMode = false;
         String endpointAddress = null;
         int maxInstantRetries = DEFAULT_MAX_INSTANT_RETRY;
+        int serializationThreads = TransmitterImpl.DEFAULT_SERIALIZATION_THREADS;
+        int serializationQueueCapacity = TransmitterImpl.DEFAULT_SERIALIZATION_QUEUE_CAPACITY;
+        TransmissionPipelineStage.DropPolicy serializationDropPolicy = TransmitterImpl.DEFAULT_SERIALIZATION_DROP_POLICY;
         LimitsEnforcer maxTelemetryBufferCapacityEnforcer = createDefaultMaxTelemetryBufferCapacityEnforcer(null);
         LimitsEnforcer sendIntervalInSecondsEnforcer = createDefaultSendIntervalInSecondsEnforcer(null);
         boolean throttling = true;
         String maxTransmissionStorageCapacity = null;
+        boolean segmentedTransmissionStorage = false;
 
         if (namesAndValues != null) {
             throttling = Boolean.parseBoolean(namesAndValues.get(THROTTLING_ENABLED_NAME));
@@ -108,6 +119,30 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
             } catch (NumberFormatException e) {
                 logger.error("Unable to parse configuration setting {} to integer value", INSTANT_RETRY_NAME, e);
             }
+            try {
+                String serializationThreadsValue = namesAndValues.get(SERIALIZATION_THREADS_NAME);
+                if (serializationThreadsValue != null) {
+                    serializationThreads = Math.max(1, Integer.parseInt(serializationThreadsValue));
+                }
+            } catch (NumberFormatException e) {
+                logger.error("Unable to parse configuration setting {} to integer value", SERIALIZATION_THREADS_NAME, e);
+            }
+            try {
+                String serializationQueueCapacityValue = namesAndValues.get(SERIALIZATION_QUEUE_CAPACITY_NAME);
+                if (serializationQueueCapacityValue != null) {
+                    serializationQueueCapacity = Math.max(1, Integer.parseInt(serializationQueueCapacityValue));
+                }
+            } catch (NumberFormatException e) {
+                logger.error("Unable to parse configuration setting {} to integer value", SERIALIZATION_QUEUE_CAPACITY_NAME, e);
+            }
+            try {
+                String serializationDropPolicyValue = namesAndValues.get(SERIALIZATION_DROP_POLICY_NAME);
+                if (serializationDropPolicyValue != null) {
+                    serializationDropPolicy = TransmissionPipelineStage.DropPolicy.valueOf(serializationDropPolicyValue.toUpperCase(Locale.ROOT));
+                }
+            } catch (IllegalArgumentException e) {
+                logger.error("Unable to parse configuration setting {} to a drop policy", SERIALIZATION_DROP_POLICY_NAME, e);
+            }
 
             if (!developerMode) {
                 developerMode = Boolean.parseBoolean(System.getProperty(DEVELOPER_MODE_SYSTEM_PROPRETY_NAME));
@@ -117,31 +152,35 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
             maxTelemetryBufferCapacityEnforcer.normalizeStringValue(namesAndValues.get(MAX_TELEMETRY_BUFFER_CAPACITY_NAME));
             sendIntervalInSecondsEnforcer.normalizeStringValue(namesAndValues.get(FLUSH_BUFFER_TIMEOUT_IN_SECONDS_NAME));
             maxTransmissionStorageCapacity = namesAndValues.get(MAX_TRANSMISSION_STORAGE_CAPACITY_NAME);
+            segmentedTransmissionStorage = Boolean.parseBoolean(namesAndValues.get(SEGMENTED_TRANSMISSION_STORAGE_NAME));
         }
 
         initialize(configuration,
                 endpointAddress,
                 maxTransmissionStorageCapacity,
+                segmentedTransmissionStorage,
                 developerMode,
                 maxTelemetryBufferCapacityEnforcer,
                 sendIntervalInSecondsEnforcer,
                 throttling,
-                maxInstantRetries);
+                maxInstantRetries,
+                new TransmissionPipelineStage.Settings(serializationThreads, serializationQueueCapacity, serializationDropPolicy));
     }
 
     protected synchronized void initialize(TelemetryConfiguration configuration, String endpointAddress, String maxTransmissionStorageCapacity,
-                                           boolean developerMode, LimitsEnforcer maxTelemetryBufferCapacityEnforcer,
-                                           LimitsEnforcer sendIntervalInSeconds, boolean throttling, int maxInstantRetry) {
+                                           boolean segmentedTransmissionStorage, boolean developerMode, LimitsEnforcer maxTelemetryBufferCapacityEnforcer,
+                                           LimitsEnforcer sendIntervalInSeconds, boolean throttling, int maxInstantRetry,
+                                           TransmissionPipelineStage.Settings serializationSettings) {
         if (isInitailized) {
             return;
         }
         makeSureEndpointAddressIsValid(endpointAddress);
 
         final ConfiguredTransmitterFactory<T> transmitterFactory = getTransmitterFactory();
-        telemetriesTransmitter = transmitterFactory.create(configuration, maxTransmissionStorageCapacity, throttling, maxInstantRetry, false);
-        telemetryBuffer = new TelemetryBuffer<>(telemetriesTransmitter, maxTelemetryBufferCapacityEnforcer, sendIntervalInSeconds);
-        statsbeatTransmitter = transmitterFactory.create(configuration, maxTransmissionStorageCapacity, throttling, maxInstantRetry, true);
-        statsbeatBuffer = new TelemetryBuffer<>(statsbeatTransmitter, maxTelemetryBufferCapacityEnforcer, sendIntervalInSeconds);
+        telemetriesTransmitter = transmitterFactory.create(configuration, maxTransmissionStorageCapacity, segmentedTransmissionStorage, throttling, maxInstantRetry, serializationSettings, false);
+        telemetryBuffer = new StripedTelemetryBuffer<>(telemetriesTransmitter, maxTelemetryBufferCapacityEnforcer, sendIntervalInSeconds);
+        statsbeatTransmitter = transmitterFactory.create(configuration, maxTransmissionStorageCapacity, segmentedTransmissionStorage, throttling, maxInstantRetry, serializationSettings, true);
+        statsbeatBuffer = new StripedTelemetryBuffer<>(statsbeatTransmitter, maxTelemetryBufferCapacityEnforcer, sendIntervalInSeconds);
 
         setDeveloperMode(developerMode);
         isInitailized = true;
@@ -164,7 +203,7 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
     /**
      * Sets value indicating whether this channel is in developer mode.
      *
-     * If true, this also forces maxTelemetriesInBatch to be 1 (affects TelemetryBuffer).
+     * If true, this also forces maxTelemetriesInBatch to be 1 (affects StripedTelemetryBuffer).
      *
      * @param developerMode true or false
      */
@@ -224,7 +263,7 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
         Preconditions.checkNotNull(telemetry, "Telemetry item must be non null");
 
         if (isDeveloperMode()) {
-            telemetry.getContext().getProperties().put("DeveloperMode", "true");
+            telemetry.getProperties().put("DeveloperMode", "true");
         }
 
         if (!doSend(telemetry)) {
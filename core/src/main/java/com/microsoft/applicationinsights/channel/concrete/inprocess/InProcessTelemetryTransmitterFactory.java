@@ -23,13 +23,14 @@ package com.microsoft.applicationinsights.channel.concrete.inprocess;
 
 import com.microsoft.applicationinsights.TelemetryConfiguration;
 import com.microsoft.applicationinsights.internal.channel.ConfiguredTransmitterFactory;
+import com.microsoft.applicationinsights.internal.channel.PacedTransmissionOutputAsync;
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutputAsync;
 import com.microsoft.applicationinsights.internal.channel.TransmissionsLoader;
 import com.microsoft.applicationinsights.internal.channel.common.ActiveTransmissionFileSystemOutput;
 import com.microsoft.applicationinsights.internal.channel.common.ActiveTransmissionLoader;
-import com.microsoft.applicationinsights.internal.channel.common.ActiveTransmissionNetworkOutput;
+import com.microsoft.applicationinsights.internal.channel.common.AsyncTransmissionNetworkOutput;
 import com.microsoft.applicationinsights.internal.channel.common.ErrorHandler;
 import com.microsoft.applicationinsights.internal.channel.common.GzipTelemetrySerializer;
 import com.microsoft.applicationinsights.internal.channel.common.NonBlockingDispatcher;
@@ -37,6 +38,7 @@ import com.microsoft.applicationinsights.internal.channel.common.PartialSuccessH
 import com.microsoft.applicationinsights.internal.channel.common.ThrottlingHandler;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionFileSystemOutput;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionNetworkOutput;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionPipelineStage;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionPolicyManager;
 import com.microsoft.applicationinsights.internal.channel.common.TransmissionPolicyStateFetcher;
 import com.microsoft.applicationinsights.internal.channel.common.TransmitterImpl;
@@ -47,7 +49,7 @@ import com.microsoft.applicationinsights.internal.channel.common.TransmitterImpl
 final class InProcessTelemetryTransmitterFactory implements ConfiguredTransmitterFactory {
 
     @Override
-    public TelemetriesTransmitter create(TelemetryConfiguration configuration, String maxTransmissionStorageCapacity, boolean throttlingIsEnabled, int maxInstantRetries, boolean isStatsbeat) {
+    public TelemetriesTransmitter create(TelemetryConfiguration configuration, String maxTransmissionStorageCapacity, boolean segmentedTransmissionStorage, boolean throttlingIsEnabled, int maxInstantRetries, TransmissionPipelineStage.Settings serializationSettings, boolean isStatsbeat) {
         final TransmissionPolicyManager transmissionPolicyManager = new TransmissionPolicyManager(throttlingIsEnabled);
         transmissionPolicyManager.addTransmissionHandler(new ErrorHandler(transmissionPolicyManager));
         transmissionPolicyManager.addTransmissionHandler(new PartialSuccessHandler());
@@ -56,16 +58,22 @@ final class InProcessTelemetryTransmitterFactory implements ConfiguredTransmitte
         // An active object with the network sender
         TransmissionNetworkOutput actualNetworkSender = TransmissionNetworkOutput.create(configuration, transmissionPolicyManager, isStatsbeat);
 
-        return finishTransmitterConstruction(maxTransmissionStorageCapacity, transmissionPolicyManager, actualNetworkSender);
+        String name = isStatsbeat ? "statsbeat" : "telemetry";
+        // the telemetry and statsbeat transmitters share the folder, but each needs a segment store of its own
+        String segmentStoreName = segmentedTransmissionStorage ? name : null;
+        return finishTransmitterConstruction(maxTransmissionStorageCapacity, segmentStoreName, transmissionPolicyManager, actualNetworkSender,
+                name, serializationSettings);
     }
 
-    private TelemetriesTransmitter finishTransmitterConstruction(String maxTransmissionStorageCapacity, TransmissionPolicyManager transmissionPolicyManager, TransmissionNetworkOutput actualNetworkSender) {
+    private TelemetriesTransmitter finishTransmitterConstruction(String maxTransmissionStorageCapacity, String segmentStoreName, TransmissionPolicyManager transmissionPolicyManager, TransmissionNetworkOutput actualNetworkSender,
+                                                                 String pipelineName, TransmissionPipelineStage.Settings serializationSettings) {
         TransmissionPolicyStateFetcher stateFetcher = transmissionPolicyManager.getTransmissionPolicyState();
 
 
-        TransmissionOutputAsync networkSender = new ActiveTransmissionNetworkOutput(actualNetworkSender, stateFetcher);
+        // Non-blocking, many requests in flight without a thread each
+        PacedTransmissionOutputAsync networkSender = new AsyncTransmissionNetworkOutput(actualNetworkSender, stateFetcher);
         // An active object with the file system sender
-        TransmissionFileSystemOutput fileSystemSender = new TransmissionFileSystemOutput(null, maxTransmissionStorageCapacity);
+        TransmissionFileSystemOutput fileSystemSender = new TransmissionFileSystemOutput(null, maxTransmissionStorageCapacity, segmentStoreName);
         TransmissionOutputAsync activeFileSystemOutput = new ActiveTransmissionFileSystemOutput(fileSystemSender, stateFetcher);
 
         // The dispatcher works with the two active senders
@@ -74,10 +82,11 @@ final class InProcessTelemetryTransmitterFactory implements ConfiguredTransmitte
 
 
         // The loader works with the file system loader as the active one does
-        TransmissionsLoader transmissionsLoader = new ActiveTransmissionLoader(fileSystemSender, stateFetcher, dispatcher);
+        TransmissionsLoader transmissionsLoader = new ActiveTransmissionLoader(fileSystemSender, dispatcher, stateFetcher, networkSender,
+                ActiveTransmissionLoader.DEFAULT_NUMBER_OF_READ_AHEAD_THREADS);
 
         // The Transmitter manage all
 
-        return new TransmitterImpl(dispatcher, new GzipTelemetrySerializer(), transmissionsLoader);
+        return new TransmitterImpl(dispatcher, new GzipTelemetrySerializer(), transmissionsLoader, pipelineName, serializationSettings);
     }
 }
@@ -2,12 +2,12 @@ package com.microsoft.applicationinsights.extensibility.context;
 
 import com.microsoft.applicationinsights.internal.util.MapUtil;
 
-import java.util.concurrent.ConcurrentMap;
+import java.util.Map;
 
 public class CloudContext {
-    private final ConcurrentMap<String, String> tags;
+    private final Map<String, String> tags;
 
-    public CloudContext(ConcurrentMap<String, String> tags) {
+    public CloudContext(Map<String, String> tags) {
         this.tags = tags;
     }
 
@@ -21,14 +21,14 @@
 
 package com.microsoft.applicationinsights.extensibility.context;
 
-import java.util.concurrent.ConcurrentMap;
+import java.util.Map;
 
 import com.microsoft.applicationinsights.internal.util.MapUtil;
 
 public final class ComponentContext {
-    private final ConcurrentMap<String, String> tags;
+    private final Map<String, String> tags;
 
-    public ComponentContext(ConcurrentMap<String, String> tags) {
+    public ComponentContext(Map<String, String> tags) {
         this.tags = tags;
     }
 
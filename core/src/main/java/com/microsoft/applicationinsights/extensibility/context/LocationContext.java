@@ -21,7 +21,7 @@
 
 package com.microsoft.applicationinsights.extensibility.context;
 
-import java.util.concurrent.ConcurrentMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -33,9 +33,9 @@ public final class LocationContext {
     private static final String PATTERN =
             "^(([01]?\\d\\d?|2[0-4]\\d|25[0-5])\\.){3}([01]?\\d\\d?|2[0-4]\\d|25[0-5])$";
 
-    private final ConcurrentMap<String, String> tags;
+    private final Map<String, String> tags;
 
-    public LocationContext(ConcurrentMap<String, String> tags) {
+    public LocationContext(Map<String, String> tags) {
         this.tags = tags;
     }
 
@@ -22,14 +22,14 @@
 package com.microsoft.applicationinsights.extensibility.context;
 
 import java.util.Date;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Map;
 
 import com.microsoft.applicationinsights.internal.util.MapUtil;
 
 public final class UserContext {
-    private final ConcurrentMap<String,String> tags;
+    private final Map<String, String> tags;
 
-    public UserContext(ConcurrentMap<String, String> tags)
+    public UserContext(Map<String, String> tags)
     {
         this.tags = tags;
     }
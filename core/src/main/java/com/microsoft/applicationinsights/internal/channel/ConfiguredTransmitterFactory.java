@@ -1,6 +1,7 @@
 package com.microsoft.applicationinsights.internal.channel;
 
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionPipelineStage;
 
 import javax.annotation.Nullable;
 
@@ -9,9 +10,12 @@ public interface ConfiguredTransmitterFactory<T> {
      * Either {@code configuration} or {@code endpoint} could be null, but one must be non-null.
      * @param configuration The configuration for the current TelemetryClient
      * @param maxTransmissionStorageCapacity
+     * @param segmentedTransmissionStorage Whether transmissions are persisted to segment files instead of a file each
      * @param throttlingIsEnabled
      * @param maxInstantRetries
+     * @param serializationSettings The threads serializing and compressing the batches of telemetry, and how many
+     *                              telemetries may wait for them
      * @return
      */
-    TelemetriesTransmitter<T> create(@Nullable TelemetryConfiguration configuration, String maxTransmissionStorageCapacity, boolean throttlingIsEnabled, int maxInstantRetries, boolean isStatsbeat);
+    TelemetriesTransmitter<T> create(@Nullable TelemetryConfiguration configuration, String maxTransmissionStorageCapacity, boolean segmentedTransmissionStorage, boolean throttlingIsEnabled, int maxInstantRetries, TransmissionPipelineStage.Settings serializationSettings, boolean isStatsbeat);
 }
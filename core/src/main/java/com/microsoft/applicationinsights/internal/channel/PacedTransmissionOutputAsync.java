@@ -0,0 +1,44 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel;
+
+/**
+ * A {@link TransmissionOutputAsync} that tells how many more transmissions it can take right away,
+ * so that senders which are not in a hurry, like the loader of persisted transmissions, can pace themselves.
+ */
+public interface PacedTransmissionOutputAsync extends TransmissionOutputAsync {
+
+    /**
+     * @return How many more transmissions could be sent right away, without waiting
+     */
+    int getAvailableCapacity();
+
+    /**
+     * @return How many transmissions can be sent at the same time
+     */
+    int getMaxConcurrency();
+
+    /**
+     * @return The moving average of how long the completed sends took, 0 if none was measured yet
+     */
+    long getAverageSuccessLatencyInMillis();
+}
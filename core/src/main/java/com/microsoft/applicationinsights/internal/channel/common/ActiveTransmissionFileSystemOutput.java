@@ -64,18 +64,26 @@ public final class ActiveTransmissionFileSystemOutput implements TransmissionOut
                 return false;
             }
 
-            threadPool.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        actualOutput.sendSync(transmission);
-                    } catch (ThreadDeath td) {
-                        throw td;
-                    } catch (Throwable throwable) {
-                        // Avoid un-expected exit of thread
+            transmission.startProcessing();
+            try {
+                threadPool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            actualOutput.sendSync(transmission);
+                        } catch (ThreadDeath td) {
+                            throw td;
+                        } catch (Throwable throwable) {
+                            // Avoid un-expected exit of thread
+                        } finally {
+                            transmission.finishProcessing();
+                        }
                     }
-                }
-            });
+                });
+            } catch (RuntimeException e) {
+                transmission.finishProcessing();
+                throw e;
+            }
             return true;
 
         } catch (RejectedExecutionException e) {
@@ -93,5 +101,9 @@ public final class ActiveTransmissionFileSystemOutput implements TransmissionOut
     public void shutdown(long timeout, TimeUnit timeUnit) throws InterruptedException {
         threadPool.shutdown();
         threadPool.awaitTermination(timeout, timeUnit);
+        // the last output the dispatcher shuts down, nothing is persisted or loaded anymore
+        if (actualOutput instanceof TransmissionFileSystemOutput) {
+            ((TransmissionFileSystemOutput) actualOutput).close();
+        }
     }
 }
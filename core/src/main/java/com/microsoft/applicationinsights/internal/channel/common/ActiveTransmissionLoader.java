@@ -25,6 +25,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.base.Preconditions;
+import com.microsoft.applicationinsights.internal.channel.PacedTransmissionOutputAsync;
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
 import com.microsoft.applicationinsights.internal.channel.TransmissionsLoader;
 import org.slf4j.Logger;
@@ -35,6 +36,10 @@ import org.slf4j.LoggerFactory;
  *
  * The class will ask for the oldest transmission file and will hand it to the dispatcher
  *
+ * When it knows the network output, the threads read ahead in parallel as long as
+ * the network output has room for more sends, instead of pausing after every dispatch. The threads that are not
+ * needed wait for about as long as a send takes, so the backlog drains as fast as the network output sends it.
+ *
  * Created by gupele on 12/22/2014.
  */
 public final class ActiveTransmissionLoader implements TransmissionsLoader {
@@ -47,6 +52,9 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
 
     private static final long DEFAULT_SLEEP_INTERVAL_WHEN_NO_TRANSMISSIONS_FOUND_IN_MILLS = 2000;
     private static final long DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS = 100;
+    private static final long MIN_SLEEP_INTERVAL_WHEN_NETWORK_IS_BUSY_IN_MILLS = 10;
+
+    public static final int DEFAULT_NUMBER_OF_READ_AHEAD_THREADS = 4;
 
     // The helper class that encapsulates the file system access
     private final TransmissionFileSystemOutput fileSystem;
@@ -61,6 +69,9 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
 
     private final TransmissionPolicyStateFetcher transmissionPolicyFetcher;
 
+    // When present, its free capacity decides how many threads dispatch at a time, null for the fixed pace
+    private final PacedTransmissionOutputAsync networkOutput;
+
     // The threads that do the work
     private final Thread[] threads;
 
@@ -74,6 +85,17 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
                                     final TransmissionDispatcher dispatcher,
                                     final TransmissionPolicyStateFetcher transmissionPolicy,
                                     int numberOfThreads) {
+        this(fileSystem, dispatcher, transmissionPolicy, null, numberOfThreads);
+    }
+
+    /**
+     * @param networkOutput The output the loaded transmissions are (first) dispatched to, the loader adapts its pace to it
+     */
+    public ActiveTransmissionLoader(final TransmissionFileSystemOutput fileSystem,
+                                    final TransmissionDispatcher dispatcher,
+                                    final TransmissionPolicyStateFetcher transmissionPolicy,
+                                    final PacedTransmissionOutputAsync networkOutput,
+                                    int numberOfThreads) {
         Preconditions.checkNotNull(fileSystem, "fileSystem must be a non-null value");
         Preconditions.checkNotNull(dispatcher, "dispatcher must be a non-null value");
         Preconditions.checkNotNull(transmissionPolicy, "transmissionPolicy must be a non-null value");
@@ -87,10 +109,12 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
 
         this.fileSystem = fileSystem;
         this.dispatcher = dispatcher;
+        this.networkOutput = networkOutput;
         threads = new Thread[numberOfThreads];
         latch = new CountDownLatch(numberOfThreads);
         final String threadNameFmt = String.format("%s-worker-%%d", ActiveTransmissionLoader.class.getSimpleName());
         for (int i = 0; i < numberOfThreads; ++i) {
+            final int threadIndex = i;
             threads[i] = new Thread(new Runnable() {
                 @Override
                 public void run() {
@@ -102,7 +126,13 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
                             TransmissionPolicy currentTransmissionState = transmissionPolicyFetcher.getCurrentState();
                             switch (currentTransmissionState) {
                                 case UNBLOCKED:
-                                    fetchNext(true);
+                                    if (networkOutput == null) {
+                                        fetchNext(true);
+                                    } else if (threadIndex < networkOutput.getAvailableCapacity()) {
+                                        fetchNextWithoutPause();
+                                    } else {
+                                        Thread.sleep(getSleepIntervalWhenNetworkIsBusy());
+                                    }
                                     break;
                                 case BACKOFF:
                                 case BLOCKED_BUT_CAN_BE_PERSISTED:
@@ -173,10 +203,48 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
             Thread.sleep(sleepIntervalWhenNoTransmissionsFoundInMills);
         } else {
             if (shouldDispatch) {
-                dispatcher.dispatch(transmission);
+                dispatch(transmission);
+            } else {
+                // dropped, as if it was dispatched to no output
+                transmission.startProcessing();
+                transmission.finishProcessing();
             }
 
             Thread.sleep(DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS);
         }
     }
+
+    private void fetchNextWithoutPause() throws InterruptedException {
+        Transmission transmission = fileSystem.fetchOldestFile();
+        if (transmission == null) {
+            Thread.sleep(sleepIntervalWhenNoTransmissionsFoundInMills);
+        } else {
+            dispatch(transmission);
+        }
+    }
+
+    /**
+     * Keeps the transmission marked as being processed until an output took it over, so that one which no
+     * output accepts counts as processed too.
+     */
+    private void dispatch(Transmission transmission) {
+        transmission.startProcessing();
+        try {
+            dispatcher.dispatch(transmission);
+        } finally {
+            transmission.finishProcessing();
+        }
+    }
+
+    /**
+     * The time it takes on average until one of the network output's sends completes.
+     */
+    private long getSleepIntervalWhenNetworkIsBusy() {
+        long latency = networkOutput.getAverageSuccessLatencyInMillis();
+        if (latency == 0) {
+            return DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS;
+        }
+        long interval = latency / networkOutput.getMaxConcurrency();
+        return Math.max(MIN_SLEEP_INTERVAL_WHEN_NETWORK_IS_BUSY_IN_MILLS, Math.min(DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS, interval));
+    }
 }
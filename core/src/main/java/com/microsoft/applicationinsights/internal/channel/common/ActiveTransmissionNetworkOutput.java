@@ -25,27 +25,33 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Preconditions;
-import com.microsoft.applicationinsights.internal.channel.TransmissionOutputAsync;
+import com.microsoft.applicationinsights.internal.channel.PacedTransmissionOutputAsync;
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutputSync;
 import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 
 /**
  * Created by gupele on 12/18/2014.
  */
-public final class ActiveTransmissionNetworkOutput implements TransmissionOutputAsync {
+public final class ActiveTransmissionNetworkOutput implements PacedTransmissionOutputAsync {
     private final static int DEFAULT_MAX_MESSAGES_IN_BUFFER = 128;
     private final static int DEFAULT_MIN_NUMBER_OF_THREADS = 7;
     private final static int DEFAULT_MAX_NUMBER_OF_THREADS = 7;
     private final static long DEFAULT_REMOVE_IDLE_THREAD_TIMEOUT_IN_SECONDS = 60L;
     private final static AtomicInteger INSTANCE_ID_POOL = new AtomicInteger(1);
+    // the weight of the latest sample in the moving average of the send latency, as a power of 2
+    private final static int LATENCY_AVERAGE_SHIFT = 3;
 
     private final int maxThreads;
     private final ThreadPoolExecutor outputThreads;
     private final TransmissionOutputSync actualOutput;
     private final TransmissionPolicyStateFetcher transmissionPolicy;
 
+    /// Moving average of how long the successful sends took, 0 until the first one
+    private final AtomicLong averageSuccessLatencyInNanos = new AtomicLong();
+
     public ActiveTransmissionNetworkOutput(TransmissionOutputSync actualOutput, TransmissionPolicyStateFetcher transmissionPolicy) {
         this(actualOutput, transmissionPolicy, DEFAULT_MAX_MESSAGES_IN_BUFFER);
     }
@@ -73,18 +79,29 @@ public final class ActiveTransmissionNetworkOutput implements TransmissionOutput
                 return false;
             }
 
-            outputThreads.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        actualOutput.sendSync(transmission);
-                    } catch (ThreadDeath td) {
-                        throw td;
-                    } catch (Throwable throwable) {
-                        // Avoid un-expected exit of thread
+            transmission.startProcessing();
+            try {
+                outputThreads.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            long start = System.nanoTime();
+                            if (actualOutput.sendSync(transmission)) {
+                                recordSuccessLatency(System.nanoTime() - start);
+                            }
+                        } catch (ThreadDeath td) {
+                            throw td;
+                        } catch (Throwable throwable) {
+                            // Avoid un-expected exit of thread
+                        } finally {
+                            transmission.finishProcessing();
+                        }
                     }
-                }
-            });
+                });
+            } catch (RuntimeException e) {
+                transmission.finishProcessing();
+                throw e;
+            }
             return true;
 
         } catch (RejectedExecutionException e) {
@@ -104,5 +121,26 @@ public final class ActiveTransmissionNetworkOutput implements TransmissionOutput
     public int getNumberOfMaxThreads() {
         return this.maxThreads;
     }
+
+    @Override
+    public int getAvailableCapacity() {
+        return Math.max(0, maxThreads - outputThreads.getActiveCount() - outputThreads.getQueue().size());
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxThreads;
+    }
+
+    @Override
+    public long getAverageSuccessLatencyInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(averageSuccessLatencyInNanos.get());
+    }
+
+    private void recordSuccessLatency(long latencyInNanos) {
+        averageSuccessLatencyInNanos.updateAndGet(average -> average == 0
+                ? latencyInNanos
+                : average + ((latencyInNanos - average) >> LATENCY_AVERAGE_SHIFT));
+    }
 }
 
@@ -0,0 +1,156 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.microsoft.applicationinsights.internal.channel.PacedTransmissionOutputAsync;
+import org.apache.http.concurrent.FutureCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the transmissions over the non-blocking {@link LazyHttpAsyncClient}, so the number of
+ * requests in flight is not bound to a number of sender threads.
+ *
+ * Up to {@link #DEFAULT_MAX_IN_FLIGHT} requests are in flight at once, one per pooled connection of the client
+ * to the ingestion endpoint, so a permit never waits for a connection and the pacing matches the real concurrency.
+ * When all of them are taken {@link #sendAsync(Transmission)} returns false, like a full
+ * {@link ActiveTransmissionNetworkOutput}, and the transmission goes to the next output.
+ * Throttling and partial success are still handled by the {@link TransmissionPolicyManager}
+ * through {@link TransmissionNetworkOutput#sendAsync(Transmission, FutureCallback)}.
+ */
+public final class AsyncTransmissionNetworkOutput implements PacedTransmissionOutputAsync {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncTransmissionNetworkOutput.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = LazyHttpAsyncClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    // the weight of the latest sample in the moving average of the send latency, as a power of 2
+    private static final int LATENCY_AVERAGE_SHIFT = 3;
+
+    private final TransmissionNetworkOutput actualOutput;
+    private final TransmissionPolicyStateFetcher transmissionPolicy;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    /// Moving average of how long the successful sends took, 0 until the first one
+    private final AtomicLong averageSuccessLatencyInNanos = new AtomicLong();
+
+    private volatile boolean stopped;
+
+    public AsyncTransmissionNetworkOutput(TransmissionNetworkOutput actualOutput, TransmissionPolicyStateFetcher transmissionPolicy) {
+        this(actualOutput, transmissionPolicy, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public AsyncTransmissionNetworkOutput(TransmissionNetworkOutput actualOutput, TransmissionPolicyStateFetcher transmissionPolicy, int maxInFlight) {
+        Preconditions.checkNotNull(actualOutput, "actualOutput must be a valid non-null value");
+        Preconditions.checkNotNull(transmissionPolicy, "transmissionPolicy must be a valid non-null value");
+        Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be a positive number");
+
+        this.actualOutput = actualOutput;
+        this.transmissionPolicy = transmissionPolicy;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    public boolean sendAsync(final Transmission transmission) {
+        if (stopped || transmissionPolicy.getCurrentState() != TransmissionPolicy.UNBLOCKED) {
+            return false;
+        }
+        if (!inFlight.tryAcquire()) {
+            return false;
+        }
+
+        final long start = System.nanoTime();
+        // the callbacks run after the response was handled, i.e. after a retry was dispatched
+        transmission.startProcessing();
+        try {
+            actualOutput.sendAsync(transmission, new FutureCallback<Boolean>() {
+                @Override
+                public void completed(Boolean sent) {
+                    inFlight.release();
+                    if (sent) {
+                        recordSuccessLatency(System.nanoTime() - start);
+                    }
+                    transmission.finishProcessing();
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    inFlight.release();
+                    transmission.finishProcessing();
+                }
+
+                @Override
+                public void cancelled() {
+                    inFlight.release();
+                    transmission.finishProcessing();
+                }
+            });
+            return true;
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            inFlight.release();
+            transmission.finishProcessing();
+            logger.debug("Failed to send transmission asynchronously", t);
+            return false;
+        }
+    }
+
+    /**
+     * Waits for the requests in flight, the shared {@link LazyHttpAsyncClient} is left running.
+     */
+    @Override
+    public void shutdown(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        stopped = true;
+        if (inFlight.tryAcquire(maxInFlight, timeout, timeUnit)) {
+            inFlight.release(maxInFlight);
+        }
+    }
+
+    @Override
+    public int getAvailableCapacity() {
+        return stopped ? 0 : inFlight.availablePermits();
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxInFlight;
+    }
+
+    @Override
+    public long getAverageSuccessLatencyInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(averageSuccessLatencyInNanos.get());
+    }
+
+    private void recordSuccessLatency(long latencyInNanos) {
+        averageSuccessLatencyInNanos.updateAndGet(average -> average == 0
+                ? latencyInNanos
+                : average + ((latencyInNanos - average) >> LATENCY_AVERAGE_SHIFT));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.google.common.base.Preconditions;
+import okio.Buffer;
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * An {@link org.apache.http.HttpEntity} that writes the content of an okio {@link Buffer} straight to the
+ * connection, without first copying it into a byte array.
+ *
+ * The buffer is not consumed, so the entity is repeatable and the same transmission can be retried.
+ */
+final class BufferEntity extends AbstractHttpEntity {
+
+    private final Buffer buffer;
+
+    BufferEntity(Buffer buffer) {
+        Preconditions.checkNotNull(buffer, "buffer must be non-null value");
+        this.buffer = buffer;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return buffer.size();
+    }
+
+    @Override
+    public InputStream getContent() {
+        // the clone shares the segments with the original buffer, it does not copy the content
+        return buffer.clone().inputStream();
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        Preconditions.checkNotNull(outStream, "outStream must be non-null value");
+        buffer.copyTo(outStream);
+        outStream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
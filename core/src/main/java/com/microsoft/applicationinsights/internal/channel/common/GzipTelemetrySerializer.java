@@ -89,10 +89,12 @@ public final class GzipTelemetrySerializer implements TelemetrySerializer {
             } finally {
                 // The creation of the result must be done after the 'zipStream' is closed
                 if (succeeded) {
-                    // TODO further optimize by passing buffer and using okio http
-                    result = new Transmission(buffer.readByteArray(), GZIP_WEB_CONTENT_TYPE, GZIP_WEB_ENCODING_TYPE);
+                    // the transmission takes ownership of the buffer, its segments are only copied
+                    // into a byte array if the transmission needs to be persisted to disk
+                    result = Transmission.fromBuffer(buffer, GZIP_WEB_CONTENT_TYPE, GZIP_WEB_ENCODING_TYPE);
+                } else {
+                    buffer.clear();
                 }
-                buffer.clear();
             }
         } catch(Exception e) {
             logger.error("Failed to serialize , exception: {}", e.toString());
@@ -133,10 +135,12 @@ public final class GzipTelemetrySerializer implements TelemetrySerializer {
             } finally {
                 // The creation of the result must be done after the 'zipStream' is closed
                 if (succeeded) {
-                    // TODO further optimize by passing buffer and using okio http
-                    result = new Transmission(buffer.readByteArray(), GZIP_WEB_CONTENT_TYPE, GZIP_WEB_ENCODING_TYPE);
+                    // the transmission takes ownership of the buffer, its segments are only copied
+                    // into a byte array if the transmission needs to be persisted to disk
+                    result = Transmission.fromBuffer(buffer, GZIP_WEB_CONTENT_TYPE, GZIP_WEB_ENCODING_TYPE);
+                } else {
+                    buffer.clear();
                 }
-                buffer.clear();
             }
         } catch(Exception e) {
             logger.error("Failed to serialize , exception: {}", e.toString());
@@ -148,6 +152,9 @@ public final class GzipTelemetrySerializer implements TelemetrySerializer {
     private boolean compress(BufferedSink sink, Collection<Telemetry> telemetries) throws IOException {
         int counter = 0;
 
+        // one writer for the whole batch, lenient so that it accepts a top-level value per telemetry
+        JsonWriter jsonWriter = newBatchJsonWriter(sink);
+        JsonTelemetryDataSerializer serializer = null;
 
         // The format is:
         // 1. Separate each Telemetry by newline
@@ -159,20 +166,33 @@ public final class GzipTelemetrySerializer implements TelemetrySerializer {
             }
 
             try {
-                JsonTelemetryDataSerializer jsonWriter = new JsonTelemetryDataSerializer(JsonWriter.of(sink));
-                telemetry.serialize(jsonWriter);
-                jsonWriter.close();
+                if (serializer == null) {
+                    serializer = new JsonTelemetryDataSerializer(jsonWriter);
+                } else {
+                    serializer.reset(jsonWriter);
+                }
+                telemetry.serialize(serializer);
+                serializer.close();
                 telemetry.markUsed();
                 ++counter;
             } catch (IOException e) {
                 logger.error("Failed to serialize Telemetry");
                 logger.trace("Failed to serialize Telemetry", e);
+                // the writer may be left in the middle of an object, don't reuse it
+                jsonWriter = newBatchJsonWriter(sink);
+                serializer = null;
             }
         }
 
         return counter > 0;
     }
 
+    private static JsonWriter newBatchJsonWriter(BufferedSink sink) {
+        JsonWriter jsonWriter = JsonWriter.of(sink);
+        jsonWriter.setLenient(true);
+        return jsonWriter;
+    }
+
     private boolean compressFromStrings(BufferedSink sink, Collection<String> telemetries) throws IOException {
         int counter = 0;
 
@@ -0,0 +1,142 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
+
+import com.microsoft.applicationinsights.internal.util.SSLOptionsUtil;
+import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.ssl.SSLContexts;
+
+/**
+ * The non-blocking counterpart of {@link LazyHttpClient}, shared by all the {@link AsyncTransmissionNetworkOutput}s.
+ *
+ * A couple of I/O threads drive all the connections, a request waiting for a connection does not hold a thread.
+ * It is configured like {@link LazyHttpClient} (allowed TLS protocols, proxy, timeouts, empty User-Agent)
+ * and is also only created once {@link LazyHttpClient#safeToInitLatch} allows SSL initialization.
+ */
+public final class LazyHttpAsyncClient {
+
+    private static final int IO_THREAD_COUNT = 2;
+    private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 64;
+    // all the transmissions go to the same ingestion endpoint, see AsyncTransmissionNetworkOutput.DEFAULT_MAX_IN_FLIGHT
+    static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 16;
+    private static final int REQUEST_TIMEOUT_IN_MILLIS = 60000;
+
+    private static final Object lock = new Object();
+
+    @GuardedBy("lock")
+    private static RuntimeException initException;
+    @GuardedBy("lock")
+    private static CloseableHttpAsyncClient instance;
+
+    private LazyHttpAsyncClient() {
+    }
+
+    /**
+     * @return The started client, created on first use
+     */
+    public static CloseableHttpAsyncClient getInstance() {
+        synchronized (lock) {
+            if (instance != null) {
+                return instance;
+            }
+            if (initException != null) {
+                throw initException;
+            }
+            try {
+                instance = init();
+            } catch (RuntimeException e) {
+                initException = e;
+                throw e;
+            }
+            return instance;
+        }
+    }
+
+    private static CloseableHttpAsyncClient init() {
+        CountDownLatch safeToInitLatch = LazyHttpClient.safeToInitLatch;
+        if (safeToInitLatch != null) {
+            try {
+                // see LazyHttpClient.init()
+                safeToInitLatch.await(2, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        String[] allowedProtocols = SSLOptionsUtil.getAllowedProtocols();
+        PoolingNHttpClientConnectionManager cm;
+        try {
+            cm = new PoolingNHttpClientConnectionManager(
+                    new DefaultConnectingIOReactor(IOReactorConfig.custom()
+                            .setIoThreadCount(IO_THREAD_COUNT)
+                            .setConnectTimeout(REQUEST_TIMEOUT_IN_MILLIS)
+                            .setSoTimeout(REQUEST_TIMEOUT_IN_MILLIS)
+                            .build(),
+                            ThreadPoolUtils.createDaemonThreadFactory(LazyHttpAsyncClient.class, "io")),
+                    RegistryBuilder.<SchemeIOSessionStrategy>create()
+                            .register("https",
+                                    new SSLIOSessionStrategy(SSLContexts.createDefault(), allowedProtocols, null,
+                                            SSLIOSessionStrategy.getDefaultHostnameVerifier()))
+                            .register("http", NoopIOSessionStrategy.INSTANCE)
+                            .build());
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("Unable to create the I/O reactor", e);
+        }
+        cm.setMaxTotal(DEFAULT_MAX_TOTAL_CONNECTIONS);
+        cm.setDefaultMaxPerRoute(DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+        HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+                // see LazyHttpClient.init() for why the User-Agent is empty
+                .setUserAgent("")
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(REQUEST_TIMEOUT_IN_MILLIS)
+                        .setSocketTimeout(REQUEST_TIMEOUT_IN_MILLIS)
+                        .setConnectTimeout(REQUEST_TIMEOUT_IN_MILLIS)
+                        .build())
+                .setConnectionManager(cm)
+                .setThreadFactory(ThreadPoolUtils.createDaemonThreadFactory(LazyHttpAsyncClient.class, "reactor"))
+                .useSystemProperties();
+        HttpHost proxy = LazyHttpClient.proxy;
+        if (proxy != null) {
+            builder.setProxy(proxy);
+        }
+        CloseableHttpAsyncClient client = builder.build();
+        client.start();
+        return client;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
+import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A multi-producer replacement for {@link TelemetryBuffer} that never takes a lock on the {@link #add(Object)} path.
+ *
+ * Incoming telemetries are appended to one of several lock-free stripes (selected by the calling thread),
+ * and a single shared counter tracks how many are pending. The thread whose add brings the counter to
+ * the batch size drains one batch and hands it to the sender, the first add into an empty buffer
+ * schedules a timed pick-up, exactly like {@link TelemetryBuffer} does for 'MaxTelemetryBufferCapacity'
+ * and 'FlushIntervalInSeconds'.
+ *
+ * Ordering is preserved per producing thread, but not across threads within a batch.
+ */
+public class StripedTelemetryBuffer<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripedTelemetryBuffer.class);
+
+    private static final int MAX_STRIPES = 64;
+
+    /**
+     * The timed pick-up, it drains the buffer only if no batch was sent since it was scheduled,
+     * otherwise the telemetries it was scheduled for already left the buffer.
+     */
+    private final class StripedTelemetryBufferTelemetriesFetcher implements TelemetriesTransmitter.TelemetriesFetcher<T> {
+
+        private final long expectedGeneration;
+
+        private StripedTelemetryBufferTelemetriesFetcher(long expectedGeneration) {
+            this.expectedGeneration = expectedGeneration;
+        }
+
+        @Override
+        public Collection<T> fetch() {
+            if (!generation.compareAndSet(expectedGeneration, expectedGeneration + 1)) {
+                return Collections.emptyList();
+            }
+            List<T> batch = drainBatch();
+            if (size.get() > 0) {
+                scheduleTimedSend();
+            }
+            return batch;
+        }
+    }
+
+    private final TelemetriesTransmitter<T> sender;
+
+    private final ConcurrentLinkedQueue<T>[] stripes;
+
+    private final int stripeMask;
+
+    /// Number of telemetries added and not yet drained, may be briefly off by the adds that are in flight
+    private final AtomicInteger size = new AtomicInteger();
+
+    /// Incremented whenever a batch leaves the buffer, so that stale timed pick-ups become no-ops
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile int maxTelemetriesInBatch;
+    private final LimitsEnforcer maxTelemetriesInBatchEnforcer;
+
+    private volatile int transmitBufferTimeoutInSeconds;
+    private final LimitsEnforcer transmitBufferTimeoutInSecondsEnforcer;
+
+    /**
+     * @param sender The sender object for transmitting the telemetries
+     * @param maxTelemetriesInBatchEnforcer For getting the number of maximum number of telemetries in a batch within limits
+     * @param transmitBufferTimeoutInSecondsEnforcer For getting the number of transmit buffer timeout in seconds within limits
+     */
+    public StripedTelemetryBuffer(TelemetriesTransmitter<T> sender, LimitsEnforcer maxTelemetriesInBatchEnforcer, LimitsEnforcer transmitBufferTimeoutInSecondsEnforcer) {
+        this(sender, maxTelemetriesInBatchEnforcer, transmitBufferTimeoutInSecondsEnforcer, Runtime.getRuntime().availableProcessors());
+    }
+
+    // visible for testing
+    @SuppressWarnings("unchecked")
+    StripedTelemetryBuffer(TelemetriesTransmitter<T> sender, LimitsEnforcer maxTelemetriesInBatchEnforcer, LimitsEnforcer transmitBufferTimeoutInSecondsEnforcer, int concurrency) {
+        Preconditions.checkNotNull(sender, "sender must be non-null value");
+        Preconditions.checkNotNull(maxTelemetriesInBatchEnforcer, "maxTelemetriesInBatchEnforcer must be non-null value");
+        Preconditions.checkNotNull(transmitBufferTimeoutInSecondsEnforcer, "transmitBufferTimeoutInSecondsEnforcer must be non-null value");
+        Preconditions.checkArgument(maxTelemetriesInBatchEnforcer.getCurrentValue() > 0, "maxTelemetriesInBatch must be a positive number");
+        Preconditions.checkArgument(transmitBufferTimeoutInSecondsEnforcer.getCurrentValue() > 0, "transmitBufferTimeoutInSeconds must be a positive number");
+        Preconditions.checkArgument(concurrency > 0, "concurrency must be a positive number");
+
+        this.sender = sender;
+        this.maxTelemetriesInBatchEnforcer = maxTelemetriesInBatchEnforcer;
+        this.maxTelemetriesInBatch = maxTelemetriesInBatchEnforcer.getCurrentValue();
+        this.transmitBufferTimeoutInSecondsEnforcer = transmitBufferTimeoutInSecondsEnforcer;
+        this.transmitBufferTimeoutInSeconds = transmitBufferTimeoutInSecondsEnforcer.getCurrentValue();
+
+        int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(concurrency - 1) << 1);
+        stripes = new ConcurrentLinkedQueue[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ConcurrentLinkedQueue<>();
+        }
+        stripeMask = stripes.length - 1;
+    }
+
+    /**
+     * Sets the maximum number of telemetries in a batch
+     * @param value The max amount of Telemetries that are allowed in a batch.
+     */
+    public void setMaxTelemetriesInBatch(int value) {
+        maxTelemetriesInBatch = maxTelemetriesInBatchEnforcer.normalizeValue(value);
+        if (maxTelemetriesInBatch < size.get()) {
+            // Request for smaller buffers, we flush if our buffer contains more elements
+            flush();
+        }
+    }
+
+    /**
+     * Sets the transmit buffer timeout in seconds
+     * @param value The amount of time to wait before sending the buffer.
+     */
+    public void setTransmitBufferTimeoutInSeconds(int value) {
+        int oldValue = transmitBufferTimeoutInSeconds;
+        transmitBufferTimeoutInSeconds = transmitBufferTimeoutInSecondsEnforcer.normalizeValue(value);
+        // Request for quicker flushes, we flush if the previous timeout is bigger
+        if (transmitBufferTimeoutInSeconds < oldValue) {
+            flush();
+        }
+    }
+
+    /**
+     * Adds the telemetry to the calling thread's stripe.
+     *
+     * If that is the first instance in the buffer, we schedule a 'pick-up' in a configurable amount of time.
+     * If by adding that item we reached the maximum number of instances, this thread drains a batch and
+     * triggers a send request now.
+     *
+     * @param telemetry The telemetry to add to the buffer.
+     */
+    public void add(T telemetry) {
+        Preconditions.checkNotNull(telemetry, "Telemetry must be non null value");
+
+        stripes[(int) Thread.currentThread().getId() & stripeMask].offer(telemetry);
+
+        int currentSize = size.incrementAndGet();
+        if (currentSize == maxTelemetriesInBatch) {
+            sendFullBatches();
+        } else if (currentSize == 1) {
+            scheduleTimedSend();
+        }
+    }
+
+    /**
+     * The method will flush the telemetries currently in the buffer to the {@link TelemetriesTransmitter}
+     */
+    public void flush() {
+        while (size.get() > 0) {
+            generation.incrementAndGet();
+            List<T> batch = drainBatch();
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (!sender.sendNow(batch)) {
+                logger.error("Failed to flush buffer data to network");
+            }
+        }
+    }
+
+    private void sendFullBatches() {
+        do {
+            generation.incrementAndGet();
+            List<T> batch = drainBatch();
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (!sender.sendNow(batch)) {
+                // the batch already left the buffer, so basically we have nothing to do, it is lost
+                logger.error("Failed to send buffer data to network");
+            }
+        } while (size.get() >= maxTelemetriesInBatch);
+
+        if (size.get() > 0) {
+            // the telemetries that arrived while we were draining were not covered by any pick-up
+            scheduleTimedSend();
+        }
+    }
+
+    private void scheduleTimedSend() {
+        StripedTelemetryBufferTelemetriesFetcher fetcher = new StripedTelemetryBufferTelemetriesFetcher(generation.get());
+        if (!sender.scheduleSend(fetcher, transmitBufferTimeoutInSeconds, TimeUnit.SECONDS)) {
+            // We cannot schedule send so we give up the Telemetry, see TelemetryBuffer.add()
+            logger.error("Failed to schedule send of the buffer to network");
+            generation.incrementAndGet();
+            drainBatch();
+        }
+    }
+
+    /**
+     * Removes up to one batch worth of telemetries from the stripes, starting at a different stripe each time
+     * so that no producer is starved when the buffer holds more than a batch.
+     */
+    private List<T> drainBatch() {
+        int max = maxTelemetriesInBatch;
+        List<T> batch = new ArrayList<>(Math.min(max, Math.max(size.get(), 1)));
+        int start = (int) generation.get() & stripeMask;
+        for (int i = 0; i < stripes.length && batch.size() < max; i++) {
+            ConcurrentLinkedQueue<T> stripe = stripes[(start + i) & stripeMask];
+            T telemetry;
+            while (batch.size() < max && (telemetry = stripe.poll()) != null) {
+                batch.add(telemetry);
+            }
+        }
+        size.addAndGet(-batch.size());
+        return batch;
+    }
+}
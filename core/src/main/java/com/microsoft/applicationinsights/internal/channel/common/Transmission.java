@@ -21,10 +21,13 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import okio.Buffer;
 
 /**
  * Holds the stuff that defines a transmission of data to the server.
@@ -33,38 +36,119 @@ import com.google.common.base.Strings;
  * Created by gupele on 12/17/2014.
  */
 public final class Transmission implements Serializable {
+    // pinned to the value computed before the buffer backed content was added, so that .trn files
+    // persisted by earlier versions can still be loaded
+    private static final long serialVersionUID = 5876772890530314223L;
+
     private final int version;
 
     private int numberOfSends;
 
     private int numberOfPersistence;
 
-    private final byte[] content;
+    private byte[] content;
+
+    // when present, the content is held in (pooled) okio segments and only copied into 'content' on demand
+    private transient Buffer contentBuffer;
 
     private final String webContentType;
 
     private final String webContentEncodingType;
 
+    // the outputs (and the loader) still working on the transmission, see startProcessing()
+    private transient int processingCount;
+
+    // run once nothing works on the transmission anymore, e.g. to commit it in the segment store it was loaded from
+    private transient Runnable onProcessed;
+
     public Transmission(byte[] content, String webContentType, String webContentEncodingType, int version) {
-        Preconditions.checkNotNull(content, "Content must be non-null value");
+        this(Preconditions.checkNotNull(content, "Content must be non-null value"), null, webContentType, webContentEncodingType, version);
+    }
+
+    public Transmission(byte[] content, String webContentType, String webContentEncodingType) {
+        this(content, webContentType, webContentEncodingType, 1);
+    }
+
+    private Transmission(byte[] content, Buffer contentBuffer, String webContentType, String webContentEncodingType, int version) {
         Preconditions.checkArgument(!Strings.isNullOrEmpty(webContentType), "webContentType must be a non empty string");
         Preconditions.checkArgument(!Strings.isNullOrEmpty(webContentEncodingType), "webContentEncodingType must be a non empty string");
 
         numberOfSends = numberOfPersistence = 0;
         this.version = version;
         this.content = content;
+        this.contentBuffer = contentBuffer;
         this.webContentType = webContentType;
         this.webContentEncodingType = webContentEncodingType;
     }
 
-    public Transmission(byte[] content, String webContentType, String webContentEncodingType) {
-        this(content, webContentType, webContentEncodingType, 1);
+    /**
+     * Creates a transmission that takes ownership of the given buffer, the content is streamed from it
+     * when sent and is only copied into a byte array if it is needed as such, e.g. when persisted to disk.
+     */
+    public static Transmission fromBuffer(Buffer contentBuffer, String webContentType, String webContentEncodingType) {
+        Preconditions.checkNotNull(contentBuffer, "Content must be non-null value");
+        return new Transmission(null, contentBuffer, webContentType, webContentEncodingType, 1);
     }
 
     public byte[] getContent() {
+        if (content == null && contentBuffer != null) {
+            // reading consumes the buffer, which hands its segments back to the pool
+            content = contentBuffer.readByteArray();
+            contentBuffer = null;
+        }
         return content;
     }
 
+    /**
+     * @return the buffer holding the content, or null if the content is only available through {@link #getContent()}
+     */
+    Buffer getContentBuffer() {
+        return contentBuffer;
+    }
+
+    /**
+     * Returns the segments of the content buffer (if any) to the pool, should only be called once the
+     * transmission will not be sent or persisted anymore.
+     */
+    void release() {
+        if (contentBuffer != null) {
+            contentBuffer.clear();
+            contentBuffer = null;
+        }
+    }
+
+    /**
+     * Sets what to run once the transmission was processed, i.e. sent, persisted again or dropped.
+     */
+    synchronized void setOnProcessed(Runnable onProcessed) {
+        this.onProcessed = onProcessed;
+    }
+
+    /**
+     * Called by whoever takes the transmission over, before handing it to anyone else, so that a retry which
+     * dispatches it again is started before the failed send is finished.
+     */
+    synchronized void startProcessing() {
+        ++processingCount;
+    }
+
+    /**
+     * Called once done with the transmission, the last call runs the {@link #setOnProcessed(Runnable) onProcessed} action.
+     */
+    void finishProcessing() {
+        Runnable processed;
+        synchronized (this) {
+            if (processingCount == 0 || --processingCount > 0) {
+                return;
+            }
+            processed = onProcessed;
+            onProcessed = null;
+        }
+        if (processed != null) {
+            processed.run();
+        }
+    }
+
     public String getWebContentType() {
         return webContentType;
     }
@@ -100,4 +184,9 @@ public final class Transmission implements Serializable {
     public int getVersion() {
         return version;
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getContent();
+        out.defaultWriteObject();
+    }
 }
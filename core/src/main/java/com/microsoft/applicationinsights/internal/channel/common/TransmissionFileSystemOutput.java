@@ -65,6 +65,9 @@ import org.slf4j.LoggerFactory;
  * With that data it knows how to store incoming Transmissions and store them into files that can be later
  * be read back into Transmissions.
  *
+ * By default every Transmission is saved to a file of its own, when created with a segment store name
+ * they are appended to the segments of a {@link TransmissionSegmentStore} in a sub folder instead.
+ *
  * Created by gupele on 12/18/2014.
  */
 public final class TransmissionFileSystemOutput implements TransmissionOutputSync {
@@ -76,6 +79,7 @@ public final class TransmissionFileSystemOutput implements TransmissionOutputSyn
     private final static String TEMP_FILE_EXTENSION = ".tmp";
     private final static String TRANSMISSION_FILE_EXTENSION = ".trn";
     private final static String TRANSMISSION_FILE_EXTENSION_FOR_SEARCH = "trn";
+    private final static String SEGMENT_STORE_FOLDER_PREFIX = "segments-";
     private final static int NUMBER_OF_FILES_TO_CACHE = 128;
 
     private final static int MAX_RETRY_FOR_DELETE = 2;
@@ -104,7 +108,18 @@ public final class TransmissionFileSystemOutput implements TransmissionOutputSyn
     private final ArrayList<File> cacheOfOldestFiles = new ArrayList<>();
     private final HashSet<String> filesThatAreBeingLoaded = new HashSet<>();
 
+    /// Where transmissions are kept when not saved to files of their own, null otherwise
+    private final TransmissionSegmentStore segmentStore;
+
     public TransmissionFileSystemOutput(String folderPath, String maxTransmissionStorageCapacity) {
+        this(folderPath, maxTransmissionStorageCapacity, null);
+    }
+
+    /**
+     * @param segmentStoreName When not null, transmissions are kept in the segment store of that name, which has
+     *                         to be unique among the outputs that share the folder (e.g. telemetry and statsbeat)
+     */
+    public TransmissionFileSystemOutput(String folderPath, String maxTransmissionStorageCapacity, String segmentStoreName) {
         if (folderPath == null) {
             folderPath = new File(LocalFileSystemUtils.getTempDir(), TRANSMISSION_DEFAULT_FOLDER).getPath();
         }
@@ -128,6 +143,11 @@ public final class TransmissionFileSystemOutput implements TransmissionOutputSyn
 
         long currentSize = getTotalSizeOfTransmissionFiles();
         size = new AtomicLong(currentSize);
+
+        segmentStore = segmentStoreName == null ? null : openSegmentStore(new File(folder, SEGMENT_STORE_FOLDER_PREFIX + segmentStoreName));
+        if (segmentStore != null) {
+            moveTransmissionFilesToSegmentStore();
+        }
     }
 
     public TransmissionFileSystemOutput() {
@@ -140,7 +160,13 @@ public final class TransmissionFileSystemOutput implements TransmissionOutputSyn
 
     @Override
     public boolean sendSync(Transmission transmission) {
+        if (segmentStore != null) {
+            return appendToSegmentStore(transmission);
+        }
+        return saveTransmissionFile(transmission);
+    }
 
+    private boolean saveTransmissionFile(Transmission transmission) {
         long currentSizeInBytes = size.get();
         if (currentSizeInBytes >= capacityInBytes) {
             diskExceptionStats.recordFailure("local storage capacity (" + capacityInBytes / (1024 * 1024) + "MB) has been exceeded");
@@ -166,6 +192,32 @@ public final class TransmissionFileSystemOutput implements TransmissionOutputSyn
     }
 
     public Transmission fetchOldestFile() {
+        if (segmentStore != null) {
+            try {
+                return segmentStore.poll();
+            } catch (Exception e) {
+                logger.error("Error fetching oldest transmission from segment store", e);
+                return null;
+            }
+        }
+
+        return fetchOldestTransmissionFile();
+    }
+
+    /**
+     * Releases the segment store (if any), the transmissions which are not committed yet are loaded again by the next run.
+     */
+    public void close() {
+        if (segmentStore != null) {
+            try {
+                segmentStore.close();
+            } catch (Exception e) {
+                logger.warn("Unable to close segment store: {}", e.toString());
+            }
+        }
+    }
+
+    private Transmission fetchOldestTransmissionFile() {
         try {
             Optional<File> oldestFile = fetchOldestFromCache();
             if (!oldestFile.isPresent()) {
@@ -210,6 +262,52 @@ public final class TransmissionFileSystemOutput implements TransmissionOutputSyn
         return null;
     }
 
+    private boolean appendToSegmentStore(Transmission transmission) {
+        try {
+            if (!segmentStore.append(transmission, capacityInBytes)) {
+                diskExceptionStats.recordFailure("local storage capacity (" + capacityInBytes / (1024 * 1024) + "MB) has been exceeded");
+                return false;
+            }
+        } catch (Exception e) {
+            diskExceptionStats.recordFailure("unable to append to segment: " + e, e);
+            return false;
+        }
+
+        logger.debug("Data persisted to segment. To be sent when the network is available.");
+        diskExceptionStats.recordSuccess();
+        return true;
+    }
+
+    private static TransmissionSegmentStore openSegmentStore(File segmentStoreFolder) {
+        try {
+            return TransmissionSegmentStore.open(segmentStoreFolder);
+        } catch (Exception e) {
+            logger.warn("Unable to open segment store in {}, saving transmissions to files instead: {}", segmentStoreFolder, e.toString());
+            logger.debug(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Moves the transmission files left over from a run without the segment store into it, once, so that there
+     * is no need to look for them anymore afterwards.
+     */
+    private void moveTransmissionFilesToSegmentStore() {
+        int moved = 0;
+        Transmission transmission;
+        while ((transmission = fetchOldestTransmissionFile()) != null) {
+            if (!appendToSegmentStore(transmission)) {
+                // keep it (and the ones after it) as files, they are sent by the next run without the segment store
+                saveTransmissionFile(transmission);
+                break;
+            }
+            ++moved;
+        }
+        if (moved > 0) {
+            logger.debug("Moved {} transmission files to the segment store", moved);
+        }
+    }
+
     public void setCapacity(int suggestedCapacity) {
         this.capacityInBytes = capacityEnforcer.normalizeValue(suggestedCapacity) * 1024L * 1024L;
     }
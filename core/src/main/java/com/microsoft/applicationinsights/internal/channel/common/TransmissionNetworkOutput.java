@@ -27,6 +27,7 @@ import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
+import javax.net.ssl.SSLHandshakeException;
 
 import com.google.common.base.Preconditions;
 import com.microsoft.applicationinsights.TelemetryConfiguration;
@@ -36,6 +37,8 @@ import com.microsoft.applicationinsights.internal.channel.TransmissionHandlerArg
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutputSync;
 import com.microsoft.applicationinsights.internal.statsbeat.StatsbeatModule;
 import com.microsoft.applicationinsights.internal.util.ExceptionStats;
+import com.microsoft.applicationinsights.internal.util.SSLUtil;
+import okio.Buffer;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -43,6 +46,7 @@ import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.util.EntityUtils;
@@ -88,6 +92,11 @@ public final class TransmissionNetworkOutput implements TransmissionOutputSync {
         return new TransmissionNetworkOutput(null, configuration, transmissionPolicyManager, isStatsbeat);
     }
 
+    // visible for testing
+    static TransmissionNetworkOutput create(String serverUri, TransmissionPolicyManager transmissionPolicyManager) {
+        return new TransmissionNetworkOutput(serverUri, null, transmissionPolicyManager, false);
+    }
+
     private TransmissionNetworkOutput(@Nullable String serverUri, @Nullable TelemetryConfiguration configuration, TransmissionPolicyManager transmissionPolicyManager, boolean isStatsbeat) {
         Preconditions.checkNotNull(transmissionPolicyManager, "transmissionPolicyManager should be a valid non-null value");
         this.serverUri = serverUri;
@@ -132,20 +141,96 @@ public final class TransmissionNetworkOutput implements TransmissionOutputSync {
 
         HttpResponse response = null;
         HttpPost request = null;
-        int code = 0;
-        String reason = null;
-        String respString = null;
-        Throwable ex = null;
-        Header retryAfterHeader = null;
         try {
             // POST the transmission data to the endpoint
             request = createTransmissionPostRequest(transmission);
             long startTime = System.currentTimeMillis();
-            response = httpClient.execute(request);
-            long duration = System.currentTimeMillis() - startTime;
+            try {
+                response = httpClient.execute(request);
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                onTransmissionSent(transmission, 0, null, null, recordFailure(t), null);
+                return true;
+            }
+            return onResponse(transmission, response, System.currentTimeMillis() - startTime);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            recordFailure(t);
+        } finally {
+            if (request != null) {
+                request.releaseConnection();
+            }
+            LazyHttpClient.dispose(response);
+        }
+        // If we end up here we've hit an error code we do not expect (403, 401, 400,
+        // etc.)
+        // This also means that unless there is a TransmissionHandler for this code we
+        // will not retry.
+        return true;
+    }
+
+    /**
+     * Sends the transmission without waiting for the response, which is then handled exactly like
+     * the response of {@link #sendSync(Transmission)} on one of the threads of {@link LazyHttpAsyncClient}.
+     *
+     * @param callback Completed with the result that {@link #sendSync(Transmission)} would have returned,
+     *                 or failed if no response was received
+     */
+    public void sendAsync(final Transmission transmission, final FutureCallback<Boolean> callback) {
+        if (transmissionPolicyManager.getTransmissionPolicyState().getCurrentState() != TransmissionPolicy.UNBLOCKED) {
+            callback.completed(false);
+            return;
+        }
+
+        final HttpPost request = createTransmissionPostRequest(transmission);
+        final long startTime = System.currentTimeMillis();
+        LazyHttpAsyncClient.getInstance().execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                boolean result = true;
+                try {
+                    result = onResponse(transmission, response, System.currentTimeMillis() - startTime);
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t) {
+                    recordFailure(t);
+                } finally {
+                    callback.completed(result);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                try {
+                    Throwable failure = e;
+                    if (e instanceof SSLHandshakeException) {
+                        failure = SSLUtil.newSSLFriendlyException("https://" + request.getURI().getHost());
+                    }
+                    onTransmissionSent(transmission, 0, null, null, recordFailure(failure), null);
+                } finally {
+                    callback.failed(e);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                failed(new IOException("Request was cancelled"));
+            }
+        });
+    }
+
+    /**
+     * @return The value to return from {@link #sendSync(Transmission)}
+     */
+    private boolean onResponse(Transmission transmission, HttpResponse response, long duration) throws IOException {
+        int code = response.getStatusLine().getStatusCode();
+        String reason = response.getStatusLine().getReasonPhrase();
+        String respString = null;
+        Header retryAfterHeader = null;
+        try {
             HttpEntity respEntity = response.getEntity();
-            code = response.getStatusLine().getStatusCode();
-            reason = response.getStatusLine().getReasonPhrase();
             respString = EntityUtils.toString(respEntity);
             retryAfterHeader = response.getFirstHeader(RESPONSE_THROTTLING_HEADER);
 
@@ -159,73 +244,71 @@ public final class TransmissionNetworkOutput implements TransmissionOutputSync {
                 // Increment Success Counter
                 networkExceptionStats.recordSuccess();
                 StatsbeatModule.get().getNetworkStatsbeat().incrementRequestSuccessCount(duration);
+                // the transmission is done, hand its buffer segments back to the pool
+                transmission.release();
             }
             return true;
-        } catch (ConnectionPoolTimeoutException e) {
-            networkExceptionStats.recordFailure("connection pool timeout exception: " + e, e);
-            StatsbeatModule.get().getNetworkStatsbeat().incrementRequestFailureCount();
-        } catch (SocketException e) {
-            networkExceptionStats.recordFailure("socket exception: " + e, e);
-            StatsbeatModule.get().getNetworkStatsbeat().incrementRequestFailureCount();
-        } catch (SocketTimeoutException e) {
-            networkExceptionStats.recordFailure("socket timeout exception: " + e, e);
-            StatsbeatModule.get().getNetworkStatsbeat().incrementRequestFailureCount();
-        } catch (UnknownHostException e) {
-            networkExceptionStats.recordFailure("wrong host address or cannot reach address due to network issues: " + e, e);
-            StatsbeatModule.get().getNetworkStatsbeat().incrementRequestFailureCount();
-        } catch (IOException e) {
-            networkExceptionStats.recordFailure("I/O exception: " + e, e);
-            StatsbeatModule.get().getNetworkStatsbeat().incrementRequestFailureCount();
-        } catch (FriendlyException e) {
-            ex = e;
-            // TODO should this be merged into networkExceptionStats?
-            if(!friendlyExceptionThrown.getAndSet(true)) {
-                logger.error(e.getMessage());
+        } finally {
+            onTransmissionSent(transmission, code, reason, respString, null, retryAfterHeader);
+        }
+    }
+
+    /**
+     * Records why sending failed.
+     *
+     * @return The exception to hand to the {@link com.microsoft.applicationinsights.internal.channel.TransmissionHandler}s, if any
+     */
+    private Throwable recordFailure(Throwable t) {
+        Throwable ex = null;
+        try {
+            if (t instanceof ConnectionPoolTimeoutException) {
+                networkExceptionStats.recordFailure("connection pool timeout exception: " + t, t);
+            } else if (t instanceof SocketException) {
+                networkExceptionStats.recordFailure("socket exception: " + t, t);
+            } else if (t instanceof SocketTimeoutException) {
+                networkExceptionStats.recordFailure("socket timeout exception: " + t, t);
+            } else if (t instanceof UnknownHostException) {
+                networkExceptionStats.recordFailure("wrong host address or cannot reach address due to network issues: " + t, t);
+            } else if (t instanceof IOException) {
+                networkExceptionStats.recordFailure("I/O exception: " + t, t);
+            } else if (t instanceof FriendlyException) {
+                ex = t;
+                // TODO should this be merged into networkExceptionStats?
+                if(!friendlyExceptionThrown.getAndSet(true)) {
+                    logger.error(t.getMessage());
+                }
+            } else if (t instanceof Exception) {
+                networkExceptionStats.recordFailure("unexpected exception: " + t, t);
+            } else {
+                ex = t;
+                networkExceptionStats.recordFailure("unexpected exception: " + t, t);
             }
             StatsbeatModule.get().getNetworkStatsbeat().incrementRequestFailureCount();
-        } catch (Exception e) {
-            networkExceptionStats.recordFailure("unexpected exception: " + e, e);
-            StatsbeatModule.get().getNetworkStatsbeat().incrementRequestFailureCount();
         } catch (ThreadDeath td) {
             throw td;
-        } catch (Throwable t) {
-            ex = t;
-            try {
-                networkExceptionStats.recordFailure("unexpected exception: " + t, t);
-                StatsbeatModule.get().getNetworkStatsbeat().incrementRequestFailureCount();
-            } catch (ThreadDeath td) {
-                throw td;
-            } catch (Throwable t2) {
-                // chomp
-            }
-        } finally {
-            if (request != null) {
-                request.releaseConnection();
-            }
-            LazyHttpClient.dispose(response);
+        } catch (Throwable t2) {
+            // chomp
+        }
+        return ex;
+    }
 
-            if (code == HttpStatus.SC_BAD_REQUEST) {
-                networkExceptionStats.recordFailure("ingestion service returned 400 (" + reason + ")");
-                StatsbeatModule.get().getNetworkStatsbeat().incrementRequestFailureCount();
-            } else if (code != HttpStatus.SC_OK) {
-                // Invoke the listeners for handling things like errors
-                // The listeners will handle the back off logic as well as the dispatch
-                // operation
-                TransmissionHandlerArgs args = new TransmissionHandlerArgs();
-                args.setTransmission(transmission);
-                args.setTransmissionDispatcher(transmissionDispatcher);
-                args.setResponseBody(respString);
-                args.setResponseCode(code);
-                args.setException(ex);
-                args.setRetryHeader(retryAfterHeader);
-                this.transmissionPolicyManager.onTransmissionSent(args);
-            }
+    private void onTransmissionSent(Transmission transmission, int code, String reason, String respString, Throwable ex, Header retryAfterHeader) {
+        if (code == HttpStatus.SC_BAD_REQUEST) {
+            networkExceptionStats.recordFailure("ingestion service returned 400 (" + reason + ")");
+            StatsbeatModule.get().getNetworkStatsbeat().incrementRequestFailureCount();
+        } else if (code != HttpStatus.SC_OK) {
+            // Invoke the listeners for handling things like errors
+            // The listeners will handle the back off logic as well as the dispatch
+            // operation
+            TransmissionHandlerArgs args = new TransmissionHandlerArgs();
+            args.setTransmission(transmission);
+            args.setTransmissionDispatcher(transmissionDispatcher);
+            args.setResponseBody(respString);
+            args.setResponseCode(code);
+            args.setException(ex);
+            args.setRetryHeader(retryAfterHeader);
+            this.transmissionPolicyManager.onTransmissionSent(args);
         }
-        // If we end up here we've hit an error code we do not expect (403, 401, 400,
-        // etc.)
-        // This also means that unless there is a TransmissionHandler for this code we
-        // will not retry.
-        return true;
     }
 
     /**
@@ -240,8 +323,12 @@ public final class TransmissionNetworkOutput implements TransmissionOutputSync {
         request.addHeader(CONTENT_TYPE_HEADER, transmission.getWebContentType());
         request.addHeader(CONTENT_ENCODING_HEADER, transmission.getWebContentEncodingType());
 
-        ByteArrayEntity bae = new ByteArrayEntity(transmission.getContent());
-        request.setEntity(bae);
+        Buffer contentBuffer = transmission.getContentBuffer();
+        if (contentBuffer != null) {
+            request.setEntity(new BufferEntity(contentBuffer));
+        } else {
+            request.setEntity(new ByteArrayEntity(transmission.getContent()));
+        }
 
         return request;
     }
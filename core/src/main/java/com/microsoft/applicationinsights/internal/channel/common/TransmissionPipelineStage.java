@@ -0,0 +1,359 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.base.Preconditions;
+import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One stage of the transmission pipeline: a bounded queue drained by a fixed number of threads.
+ *
+ * The queue is bounded by the number of items it holds, not by the number of entries: a weigher tells how
+ * many items an entry counts for, e.g. the telemetries of a batch, so that the memory held by a stage
+ * does not depend on how full the batches are. An entry heavier than the whole capacity is still taken
+ * when the queue is empty.
+ *
+ * What happens when the queue is full is decided by the {@link DropPolicy} of the stage. The depth of
+ * the queue, the drops and how long the items waited and were processed are exposed through JMX
+ * under {@code com.microsoft:type=AI-transmission-pipeline,name=<stage name>}.
+ *
+ * @param <T> The type of the items flowing through the stage
+ */
+public final class TransmissionPipelineStage<T> implements TransmissionPipelineStageMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransmissionPipelineStage.class);
+
+    private static final String JMX_KEY = "com.microsoft:type=AI-transmission-pipeline,name=";
+
+    private static final long POLL_INTERVAL_IN_MILLIS = 100;
+
+    public enum DropPolicy {
+        /// The new item is refused, {@link #offer(Object)} returns false
+        REJECT_NEW,
+        /// The oldest queued item is dropped to make room for the new one
+        DROP_OLDEST
+    }
+
+    /**
+     * The threads, the capacity in items and the drop policy of a stage.
+     */
+    public static final class Settings {
+        private final int parallelism;
+        private final int queueCapacity;
+        private final DropPolicy dropPolicy;
+
+        public Settings(int parallelism, int queueCapacity, DropPolicy dropPolicy) {
+            Preconditions.checkArgument(parallelism > 0, "parallelism must be a positive number");
+            Preconditions.checkArgument(queueCapacity > 0, "queueCapacity must be a positive number");
+            Preconditions.checkNotNull(dropPolicy, "dropPolicy must be non-null value");
+
+            this.parallelism = parallelism;
+            this.queueCapacity = queueCapacity;
+            this.dropPolicy = dropPolicy;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public DropPolicy getDropPolicy() {
+            return dropPolicy;
+        }
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final int weight;
+        private final long enqueuedAtNanos;
+
+        private Entry(T item, int weight) {
+            this.item = item;
+            this.weight = weight;
+            this.enqueuedAtNanos = System.nanoTime();
+        }
+    }
+
+    private final String name;
+    private final int parallelism;
+    private final int queueCapacity;
+    private final DropPolicy dropPolicy;
+    private final ToIntFunction<T> weigher;
+    private final Consumer<T> handler;
+    private final BlockingQueue<Entry<T>> queue;
+    private final ExecutorService workers;
+
+    /// The sum of the weights of the queued entries, never above the capacity unless a single entry is
+    private final AtomicLong queuedItems = new AtomicLong();
+
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong totalQueueTimeInNanos = new AtomicLong();
+    private final AtomicLong totalProcessingTimeInNanos = new AtomicLong();
+
+    private volatile boolean stopped;
+
+    /**
+     * Creates a stage where every entry counts for a single item.
+     */
+    public TransmissionPipelineStage(String name, int queueCapacity, int parallelism, DropPolicy dropPolicy, Consumer<T> handler) {
+        this(name, new Settings(parallelism, queueCapacity, dropPolicy), new ToIntFunction<T>() {
+            @Override
+            public int applyAsInt(T item) {
+                return 1;
+            }
+        }, handler);
+    }
+
+    /**
+     * @param weigher The number of items an entry counts for against the capacity of the stage
+     */
+    public TransmissionPipelineStage(String name, Settings settings, ToIntFunction<T> weigher, Consumer<T> handler) {
+        Preconditions.checkNotNull(name, "name must be non-null value");
+        Preconditions.checkNotNull(settings, "settings must be non-null value");
+        Preconditions.checkNotNull(weigher, "weigher must be non-null value");
+        Preconditions.checkNotNull(handler, "handler must be non-null value");
+
+        this.name = name;
+        this.parallelism = settings.getParallelism();
+        this.queueCapacity = settings.getQueueCapacity();
+        this.dropPolicy = settings.getDropPolicy();
+        this.weigher = weigher;
+        this.handler = handler;
+        // bounded by queuedItems
+        queue = new LinkedBlockingQueue<>();
+
+        workers = Executors.newFixedThreadPool(parallelism, ThreadPoolUtils.createDaemonThreadFactory(TransmissionPipelineStage.class, name));
+        for (int i = 0; i < parallelism; ++i) {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        }
+        registerMBean();
+    }
+
+    /**
+     * Queues the item for the threads of this stage, never blocks.
+     *
+     * @return false if the item was refused, because the stage is stopped or because its queue is full
+     *         and the policy is {@link DropPolicy#REJECT_NEW}
+     */
+    public boolean offer(T item) {
+        Preconditions.checkNotNull(item, "item must be non-null value");
+
+        if (stopped) {
+            return false;
+        }
+        Entry<T> entry = new Entry<>(item, Math.max(1, weigher.applyAsInt(item)));
+        while (!reserve(entry.weight)) {
+            if (dropPolicy == DropPolicy.REJECT_NEW) {
+                droppedCount.incrementAndGet();
+                return false;
+            }
+            Entry<T> oldest = queue.poll();
+            if (oldest != null) {
+                queuedItems.addAndGet(-oldest.weight);
+                droppedCount.incrementAndGet();
+            }
+        }
+        queue.add(entry);
+        // the stage may have been stopped while the item was queued, and its threads may be gone already
+        if (stopped && queue.remove(entry)) {
+            queuedItems.addAndGet(-entry.weight);
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean reserve(int weight) {
+        while (true) {
+            long current = queuedItems.get();
+            if (current > 0 && current + weight > queueCapacity) {
+                return false;
+            }
+            if (queuedItems.compareAndSet(current, current + weight)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Stops taking new items and waits for the queued ones to be processed. The items still queued
+     * after the timeout are counted as dropped.
+     */
+    public void shutdown(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        stopped = true;
+        workers.shutdown();
+        if (!workers.awaitTermination(timeout, timeUnit)) {
+            int remaining = queue.size();
+            if (remaining > 0) {
+                droppedCount.addAndGet(remaining);
+                logger.warn("Transmission pipeline stage {} stopped with {} items still queued", name, remaining);
+            }
+        }
+        unregisterMBean();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public long getQueuedItems() {
+        return queuedItems.get();
+    }
+
+    @Override
+    public String getDropPolicy() {
+        return dropPolicy.name();
+    }
+
+    @Override
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public double getAverageQueueTimeInMillis() {
+        return averageInMillis(totalQueueTimeInNanos.get());
+    }
+
+    @Override
+    public double getAverageProcessingTimeInMillis() {
+        return averageInMillis(totalProcessingTimeInNanos.get());
+    }
+
+    private double averageInMillis(long totalInNanos) {
+        long count = processedCount.get();
+        return count == 0 ? 0 : totalInNanos / (count * 1000000.0);
+    }
+
+    private void drain() {
+        while (true) {
+            Entry<T> entry;
+            try {
+                entry = queue.poll(POLL_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (entry == null) {
+                if (!stopped) {
+                    continue;
+                }
+                // an item may have been queued after the poll timed out, but before the stage was stopped
+                entry = queue.poll();
+                if (entry == null) {
+                    return;
+                }
+            }
+            queuedItems.addAndGet(-entry.weight);
+            long start = System.nanoTime();
+            try {
+                handler.accept(entry.item);
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                try {
+                    logger.error("Exception in transmission pipeline stage {}", name);
+                    logger.trace("Exception in transmission pipeline stage {}", name, t);
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t2) {
+                    // chomp
+                }
+            } finally {
+                long end = System.nanoTime();
+                totalQueueTimeInNanos.addAndGet(start - entry.enqueuedAtNanos);
+                totalProcessingTimeInNanos.addAndGet(end - start);
+                processedCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_KEY + name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        } catch (Exception e) {
+            logger.debug("Failed to register the MBean of transmission pipeline stage {}", name, e);
+        }
+    }
+
+    private void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_KEY + name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            logger.debug("Failed to unregister the MBean of transmission pipeline stage {}", name, e);
+        }
+    }
+}
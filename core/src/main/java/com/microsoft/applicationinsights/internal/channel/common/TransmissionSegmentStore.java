@@ -0,0 +1,510 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists {@link Transmission}s into fixed-size, memory-mapped segment files that are only ever appended to,
+ * as an alternative to the one file per transmission of {@link TransmissionFileSystemOutput}.
+ *
+ * Each record is framed by its length and the CRC32 of its payload. A small index file holds the commit offset,
+ * i.e. the segment and offset of the oldest record that was not processed yet, the write position is recovered by
+ * scanning the last segment on start-up.
+ *
+ * The read position is kept in memory only: {@link #poll()} hands a record out without committing it, the commit
+ * offset moves past it once the transmission was processed (see {@link Transmission#setOnProcessed(Runnable)}),
+ * i.e. sent, appended again after a failed send, or dropped. The records are committed in the order they were read,
+ * so one that is still in flight holds back the ones read after it. A segment file is deleted as a whole once the
+ * commit offset moved past its end. The records which were not committed when the process stopped are read again
+ * by the next run, so a transmission can be sent twice but is not lost.
+ *
+ * The folder is locked while the store is open, since only one store can append to it at a time.
+ */
+final class TransmissionSegmentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransmissionSegmentStore.class);
+
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_EXTENSION = ".seg";
+    private static final String INDEX_FILE_NAME = "segments.idx";
+
+    static final int DEFAULT_SEGMENT_SIZE_IN_BYTES = 1024 * 1024;
+
+    /// A record is the length of its payload, the CRC32 of its payload and the payload itself
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /// The index is the id of the segment of the commit offset, the offset in it and their CRC32
+    private static final int INDEX_SIZE = 16;
+
+    private static final class Segment {
+        private final long id;
+        private final File file;
+        private final int capacity;
+        /// The end of the written records, only known for certain for segments appended to since start-up
+        private int writeOffset;
+        private MappedByteBuffer buffer;
+
+        private Segment(long id, File file, int capacity) {
+            this.id = id;
+            this.file = file;
+            this.capacity = capacity;
+            this.writeOffset = capacity;
+        }
+
+        private MappedByteBuffer map() throws IOException {
+            if (buffer == null) {
+                try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+                    // the mapping stays valid after the channel is closed
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                }
+            }
+            return buffer;
+        }
+    }
+
+    /// A record handed out by poll(), until it is committed
+    private static final class PendingRecord {
+        private final Segment segment;
+        private final int offset;
+        private boolean processed;
+
+        private PendingRecord(Segment segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    private final File folder;
+    private final int segmentSize;
+
+    private final FileChannel indexChannel;
+    private final FileLock indexLock;
+    private final MappedByteBuffer index;
+
+    /// The segments that still hold uncommitted records, oldest first, the last one is the one being appended to
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+    /// The records handed out by poll() and not committed yet, in the order they were read
+    private final ArrayDeque<PendingRecord> pendingRecords = new ArrayDeque<>();
+
+    /// Committed segments whose file could not be deleted yet, e.g. because it is still mapped on Windows
+    private final List<File> filesToDelete = new ArrayList<>();
+
+    private long nextSegmentId;
+    /// The segment being read, null if there is none, and the offset of the next record to read in it
+    private Segment readSegment;
+    private int readOffset;
+    private long sizeInBytes;
+    private boolean closed;
+
+    private TransmissionSegmentStore(File folder, int segmentSize, FileChannel indexChannel, FileLock indexLock) throws IOException {
+        this.folder = folder;
+        this.segmentSize = segmentSize;
+        this.indexChannel = indexChannel;
+        this.indexLock = indexLock;
+        this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_SIZE);
+        recover();
+    }
+
+    static TransmissionSegmentStore open(File folder) throws IOException {
+        return open(folder, DEFAULT_SEGMENT_SIZE_IN_BYTES);
+    }
+
+    // visible for testing
+    static TransmissionSegmentStore open(File folder, int segmentSize) throws IOException {
+        Preconditions.checkNotNull(folder, "folder must be non-null value");
+        Preconditions.checkArgument(segmentSize > RECORD_HEADER_SIZE, "segmentSize must be larger than a record header");
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Unable to create folder " + folder);
+        }
+
+        FileChannel indexChannel = new RandomAccessFile(new File(folder, INDEX_FILE_NAME), "rw").getChannel();
+        try {
+            FileLock indexLock;
+            try {
+                indexLock = indexChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                indexLock = null;
+            }
+            if (indexLock == null) {
+                throw new IOException("Folder " + folder + " is in use by another segment store");
+            }
+            return new TransmissionSegmentStore(folder, segmentSize, indexChannel, indexLock);
+        } catch (IOException | RuntimeException e) {
+            indexChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends the transmission to the last segment, starting a new segment if it does not fit in there.
+     *
+     * @param capacityInBytes The total size that the segment files may not exceed
+     * @return false if a new segment was needed and would have exceeded the capacity
+     */
+    synchronized boolean append(Transmission transmission, long capacityInBytes) throws IOException {
+        if (closed) {
+            throw new IOException("Segment store in " + folder + " is closed");
+        }
+        byte[] metadata = encodeMetadata(transmission);
+        byte[] content = transmission.getContent();
+        int payloadLength = metadata.length + content.length;
+        int recordLength = RECORD_HEADER_SIZE + payloadLength;
+
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.writeOffset + recordLength > tail.capacity) {
+            // a transmission larger than a segment gets a segment of its own
+            int capacity = Math.max(segmentSize, recordLength);
+            if (sizeInBytes + capacity > capacityInBytes) {
+                return false;
+            }
+            tail = newSegment(capacity);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(metadata);
+        crc.update(content);
+
+        int offset = tail.writeOffset;
+        ByteBuffer buffer = tail.map().duplicate();
+        buffer.position(offset + RECORD_HEADER_SIZE);
+        buffer.put(metadata);
+        buffer.put(content);
+        buffer.putInt(offset + 4, (int) crc.getValue());
+        // the length goes in last, a record with a zero length marks the end of the written records
+        buffer.putInt(offset, payloadLength);
+        tail.writeOffset = offset + recordLength;
+        return true;
+    }
+
+    /**
+     * Reads the oldest transmission which was not handed out yet. Its record is committed once the transmission
+     * was processed, until then it is read again if the store is reopened.
+     *
+     * @return The oldest transmission which was not handed out yet, or null if there is none
+     */
+    synchronized Transmission poll() throws IOException {
+        if (closed) {
+            return null;
+        }
+        deletePendingFiles();
+        while (readSegment != null) {
+            int offset = readOffset;
+            Transmission transmission = read(readSegment);
+            if (transmission != null) {
+                final PendingRecord record = new PendingRecord(readSegment, offset);
+                pendingRecords.addLast(record);
+                transmission.setOnProcessed(() -> commit(record));
+                return transmission;
+            }
+            Segment next = nextSegment(readSegment);
+            if (next == null) {
+                return null;
+            }
+
+            // the segment was read to its end, the next one is read from its start
+            readSegment.buffer = null;
+            readSegment = next;
+            readOffset = 0;
+            commitProcessedRecords();
+        }
+        return null;
+    }
+
+    /**
+     * @return The total size of the segment files that still hold uncommitted records
+     */
+    synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Releases the folder, the records which are committed afterwards are read again by the next store.
+     */
+    synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segments.clear();
+        pendingRecords.clear();
+        readSegment = null;
+        try {
+            indexLock.release();
+        } finally {
+            indexChannel.close();
+        }
+    }
+
+    private synchronized void commit(PendingRecord record) {
+        if (closed) {
+            return;
+        }
+        record.processed = true;
+        commitProcessedRecords();
+    }
+
+    /**
+     * Moves the commit offset to the oldest record which is still pending, or to the read position if there is
+     * none, and deletes the segments before it.
+     */
+    private void commitProcessedRecords() {
+        while (!pendingRecords.isEmpty() && pendingRecords.peekFirst().processed) {
+            pendingRecords.removeFirst();
+        }
+        PendingRecord oldest = pendingRecords.peekFirst();
+        Segment commitSegment = oldest == null ? readSegment : oldest.segment;
+        int commitOffset = oldest == null ? readOffset : oldest.offset;
+        if (commitSegment == null) {
+            return;
+        }
+
+        // these were read to their end, and all of their records were processed
+        while (segments.peekFirst() != commitSegment) {
+            Segment segment = segments.removeFirst();
+            sizeInBytes -= segment.capacity;
+            segment.buffer = null;
+            if (!segment.file.delete()) {
+                filesToDelete.add(segment.file);
+            }
+        }
+        writeIndex(commitSegment.id, commitOffset);
+    }
+
+    private Segment nextSegment(Segment segment) {
+        Iterator<Segment> it = segments.iterator();
+        while (it.hasNext()) {
+            if (it.next() == segment) {
+                return it.hasNext() ? it.next() : null;
+            }
+        }
+        return null;
+    }
+
+    private Transmission read(Segment segment) throws IOException {
+        if (readOffset + RECORD_HEADER_SIZE > segment.writeOffset) {
+            return null;
+        }
+        ByteBuffer buffer = segment.map().duplicate();
+        int payloadLength = buffer.getInt(readOffset);
+        if (payloadLength <= 0 || readOffset + RECORD_HEADER_SIZE + payloadLength > segment.writeOffset) {
+            return null;
+        }
+
+        buffer.limit(readOffset + RECORD_HEADER_SIZE + payloadLength);
+        buffer.position(readOffset + RECORD_HEADER_SIZE);
+        ByteBuffer payload = buffer.slice();
+        if (crc(payload) != buffer.getInt(readOffset + 4)) {
+            logger.warn("Skipping the rest of {}, a record is corrupted", segment.file.getName());
+            return null;
+        }
+
+        readOffset += RECORD_HEADER_SIZE + payloadLength;
+        return decode(payload);
+    }
+
+    private Segment newSegment(int capacity) throws IOException {
+        long id = nextSegmentId++;
+        Segment segment = new Segment(id, new File(folder, segmentFileName(id)), capacity);
+        segment.writeOffset = 0;
+        segment.map();
+
+        // the previous segment is sealed, its mapping is only kept while it is being read
+        Segment previous = segments.peekLast();
+        if (previous != null && previous != readSegment) {
+            previous.buffer = null;
+        }
+        segments.addLast(segment);
+        if (readSegment == null) {
+            readSegment = segment;
+            readOffset = 0;
+        }
+        sizeInBytes += capacity;
+        return segment;
+    }
+
+    private void recover() throws IOException {
+        long commitSegmentId = index.getLong(0);
+        int offset = index.getInt(8);
+        if (crc(index, 0, 12) != index.getInt(12)) {
+            // a new (or torn) index, read everything that is there
+            commitSegmentId = 0;
+            offset = 0;
+        }
+
+        File[] files = folder.listFiles((dir, name) -> name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_EXTENSION));
+        long[] ids = new long[files == null ? 0 : files.length];
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            Long id = parseSegmentId(files[i].getName());
+            if (id != null) {
+                ids[count++] = id;
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+
+        for (long id : ids) {
+            File file = new File(folder, segmentFileName(id));
+            if (id < commitSegmentId || file.length() == 0 || file.length() > Integer.MAX_VALUE) {
+                if (!file.delete()) {
+                    filesToDelete.add(file);
+                }
+                continue;
+            }
+            Segment segment = new Segment(id, file, (int) file.length());
+            segments.addLast(segment);
+            sizeInBytes += segment.capacity;
+        }
+
+        // reading resumes at the commit offset
+        Segment head = segments.peekFirst();
+        if (head == null || head.id != commitSegmentId) {
+            offset = 0;
+        }
+        readSegment = head;
+        readOffset = offset;
+        nextSegmentId = segments.isEmpty() ? commitSegmentId : segments.peekLast().id + 1;
+
+        Segment tail = segments.peekLast();
+        if (tail != null) {
+            tail.writeOffset = findEndOfRecords(tail, tail == head ? readOffset : 0);
+        }
+        writeIndex(head == null ? nextSegmentId : head.id, readOffset);
+    }
+
+    /**
+     * Finds where the last complete record of the segment ends, so that appending resumes right after it.
+     */
+    private static int findEndOfRecords(Segment segment, int from) throws IOException {
+        ByteBuffer buffer = segment.map().duplicate();
+        int offset = from;
+        while (offset + RECORD_HEADER_SIZE <= segment.capacity) {
+            int payloadLength = buffer.getInt(offset);
+            if (payloadLength <= 0 || offset + RECORD_HEADER_SIZE + payloadLength > segment.capacity
+                    || crc(buffer, offset + RECORD_HEADER_SIZE, payloadLength) != buffer.getInt(offset + 4)) {
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + payloadLength;
+        }
+        return offset;
+    }
+
+    private void writeIndex(long commitSegmentId, int commitOffset) {
+        index.putLong(0, commitSegmentId);
+        index.putInt(8, commitOffset);
+        index.putInt(12, crc(index, 0, 12));
+    }
+
+    private void deletePendingFiles() {
+        if (!filesToDelete.isEmpty()) {
+            Iterator<File> it = filesToDelete.iterator();
+            while (it.hasNext()) {
+                File file = it.next();
+                if (file.delete() || !file.exists()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static byte[] encodeMetadata(Transmission transmission) {
+        byte[] webContentType = transmission.getWebContentType().getBytes(StandardCharsets.UTF_8);
+        byte[] webContentEncodingType = transmission.getWebContentEncodingType().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer metadata = ByteBuffer.allocate(20 + webContentType.length + webContentEncodingType.length);
+        metadata.putInt(transmission.getVersion());
+        metadata.putInt(transmission.getNumberOfSends());
+        metadata.putInt(transmission.getNumberOfPersistence());
+        metadata.putInt(webContentType.length);
+        metadata.put(webContentType);
+        metadata.putInt(webContentEncodingType.length);
+        metadata.put(webContentEncodingType);
+        return metadata.array();
+    }
+
+    private static Transmission decode(ByteBuffer payload) {
+        int version = payload.getInt();
+        int numberOfSends = payload.getInt();
+        int numberOfPersistence = payload.getInt();
+        String webContentType = getString(payload);
+        String webContentEncodingType = getString(payload);
+        byte[] content = new byte[payload.remaining()];
+        payload.get(content);
+
+        Transmission transmission = new Transmission(content, webContentType, webContentEncodingType, version);
+        transmission.setNumberOfSends(numberOfSends);
+        transmission.setNumberOfPersistence(numberOfPersistence);
+        return transmission;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer range = buffer.duplicate();
+        range.limit(offset + length);
+        range.position(offset);
+        return crc(range);
+    }
+
+    private static String segmentFileName(long id) {
+        // zero padded, so that the files also sort by name
+        return String.format("%s%019d%s", SEGMENT_FILE_PREFIX, id, SEGMENT_FILE_EXTENSION);
+    }
+
+    private static Long parseSegmentId(String fileName) {
+        try {
+            return Long.parseLong(fileName.substring(SEGMENT_FILE_PREFIX.length(), fileName.length() - SEGMENT_FILE_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -28,6 +28,8 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 import com.google.common.base.Stopwatch;
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
@@ -49,7 +51,13 @@ import org.slf4j.LoggerFactory;
  * Telemetry instances buffered in a collection are sent through this class.
  *
  * The class makes sure that the container of telemetries is sent using internal threads
- * and not the 'application' threads
+ * and not the 'application' threads: the batches are serialized and compressed by the threads of
+ * a {@link TransmissionPipelineStage}, and then handed to the {@link TransmissionDispatcher}
+ *
+ * Serialization is the only step running on a {@link TransmissionPipelineStage}, its queue is bounded by the
+ * number of telemetries waiting to be serialized. The batches are still filled by the {@link StripedTelemetryBuffer},
+ * and sent by the outputs of the dispatcher. Those are bounded too (by the buffer capacity and the requests in flight),
+ * but they have no drop policy or JMX metrics.
  *
  * Created by gupele on 12/18/2014.
  */
@@ -57,67 +65,17 @@ public final class TransmitterImpl implements TelemetriesTransmitter<Telemetry>
 
     private static final Logger logger = LoggerFactory.getLogger(TransmitterImpl.class);
 
-    private static abstract class SendHandler {
-        protected final TransmissionDispatcher transmissionDispatcher;
-
-        protected final TelemetrySerializer serializer;
-
-        protected SendHandler(TransmissionDispatcher transmissionDispatcher, TelemetrySerializer serializer) {
-            Preconditions.checkNotNull(transmissionDispatcher, "transmissionDispatcher should be a non-null value");
-            Preconditions.checkNotNull(serializer, "serializer should be a non-null value");
-
-            this.transmissionDispatcher = transmissionDispatcher;
-            this.serializer = serializer;
-        }
-
-        protected void dispatch(Collection<Telemetry> telemetries) {
-            if (telemetries.isEmpty()) {
-                return;
-            }
-
-            Optional<Transmission> transmission = serializer.serialize(telemetries);
-            if (!transmission.isPresent()) {
-                return;
-            }
-
-            transmissionDispatcher.dispatch(transmission.get());
-        }
-    }
-
-    private static final class ScheduledSendHandler extends SendHandler {
-        private final TelemetriesFetcher<Telemetry> telemetriesFetcher;
-
-        public ScheduledSendHandler(TransmissionDispatcher transmissionDispatcher, TelemetriesFetcher<Telemetry> telemetriesFetcher, TelemetrySerializer serializer) {
-            super(transmissionDispatcher,  serializer);
-
-            Preconditions.checkNotNull(telemetriesFetcher, "telemetriesFetcher should be a non-null value");
-
-            this.telemetriesFetcher = telemetriesFetcher;
-        }
-
-        public void run() {
-            Collection<Telemetry> telemetriesToSend = telemetriesFetcher.fetch();
-            dispatch(telemetriesToSend);
-        }
-    }
-
-    private static final class SendNowHandler extends SendHandler {
-        private final Collection<Telemetry> telemetries;
+    private static final int MAX_PENDING_SCHEDULE_REQUESTS = 16384;
 
-        public SendNowHandler(TransmissionDispatcher transmissionDispatcher, TelemetrySerializer serializer, Collection<Telemetry> telemetries) {
-            super(transmissionDispatcher,  serializer);
+    public static final int DEFAULT_SERIALIZATION_THREADS = 2;
 
-            Preconditions.checkNotNull(telemetries, "telemetries should be non-null value");
+    /// About 40 full batches of the default buffer capacity
+    public static final int DEFAULT_SERIALIZATION_QUEUE_CAPACITY = 20000;
 
-            this.telemetries = telemetries;
-        }
+    public static final TransmissionPipelineStage.DropPolicy DEFAULT_SERIALIZATION_DROP_POLICY = TransmissionPipelineStage.DropPolicy.REJECT_NEW;
 
-        public void run() {
-            dispatch(telemetries);
-        }
-    }
-
-    private static final int MAX_PENDING_SCHEDULE_REQUESTS = 16384;
+    public static final TransmissionPipelineStage.Settings DEFAULT_SERIALIZATION_SETTINGS = new TransmissionPipelineStage.Settings(
+            DEFAULT_SERIALIZATION_THREADS, DEFAULT_SERIALIZATION_QUEUE_CAPACITY, DEFAULT_SERIALIZATION_DROP_POLICY);
 
     private static final AtomicInteger INSTANCE_ID_POOL = new AtomicInteger(1);
 
@@ -125,8 +83,11 @@ public final class TransmitterImpl implements TelemetriesTransmitter<Telemetry>
 
     private final TelemetrySerializer serializer;
 
+    /// Only waits for the scheduled sends and fetches their telemetries, which are then serialized by the {@link #serializeStage}
     private final ScheduledExecutorService threadPool;
 
+    private final TransmissionPipelineStage<Collection<Telemetry>> serializeStage;
+
     private final TransmissionsLoader transmissionsLoader;
 
     private final Semaphore semaphore;
@@ -134,9 +95,20 @@ public final class TransmitterImpl implements TelemetriesTransmitter<Telemetry>
     private volatile boolean shutdown;
 
     public TransmitterImpl(TransmissionDispatcher transmissionDispatcher, TelemetrySerializer serializer, TransmissionsLoader transmissionsLoader) {
+        this(transmissionDispatcher, serializer, transmissionsLoader, null, DEFAULT_SERIALIZATION_SETTINGS);
+    }
+
+    /**
+     * @param name The name of the pipeline, used to tell apart the metrics of its stages
+     * @param serializationSettings The threads serializing and compressing the batches, and how many telemetries
+     *                              may wait for them
+     */
+    public TransmitterImpl(TransmissionDispatcher transmissionDispatcher, TelemetrySerializer serializer, TransmissionsLoader transmissionsLoader,
+                           String name, TransmissionPipelineStage.Settings serializationSettings) {
         Preconditions.checkNotNull(transmissionDispatcher, "transmissionDispatcher must be non-null value");
         Preconditions.checkNotNull(serializer, "serializer must be non-null value");
         Preconditions.checkNotNull(transmissionsLoader, "transmissionsLoader must be non-null value");
+        Preconditions.checkNotNull(serializationSettings, "serializationSettings must be non-null value");
 
         this.transmissionDispatcher = transmissionDispatcher;
         this.serializer = serializer;
@@ -144,14 +116,27 @@ public final class TransmitterImpl implements TelemetriesTransmitter<Telemetry>
         semaphore = new Semaphore(MAX_PENDING_SCHEDULE_REQUESTS);
 
         int instanceId = INSTANCE_ID_POOL.getAndIncrement();
-        threadPool = Executors.newScheduledThreadPool(2, ThreadPoolUtils.createDaemonThreadFactory(TransmitterImpl.class, instanceId));
+        threadPool = Executors.newScheduledThreadPool(1, ThreadPoolUtils.createDaemonThreadFactory(TransmitterImpl.class, instanceId));
+        serializeStage = new TransmissionPipelineStage<>("serialize-" + (name == null ? instanceId : name), serializationSettings,
+                new ToIntFunction<Collection<Telemetry>>() {
+                    @Override
+                    public int applyAsInt(Collection<Telemetry> telemetries) {
+                        return telemetries.size();
+                    }
+                },
+                new Consumer<Collection<Telemetry>>() {
+                    @Override
+                    public void accept(Collection<Telemetry> telemetries) {
+                        dispatch(telemetries);
+                    }
+                });
 
         this.transmissionsLoader = transmissionsLoader;
         this.transmissionsLoader.load(false);
     }
 
     @Override
-    public boolean scheduleSend(TelemetriesFetcher telemetriesFetcher, long value, TimeUnit timeUnit) {
+    public boolean scheduleSend(final TelemetriesFetcher telemetriesFetcher, long value, TimeUnit timeUnit) {
         Preconditions.checkNotNull(telemetriesFetcher, "telemetriesFetcher should be non-null value");
 
         if (!semaphore.tryAcquire()) {
@@ -163,12 +148,15 @@ public final class TransmitterImpl implements TelemetriesTransmitter<Telemetry>
         }
 
         try {
-            final ScheduledSendHandler command = new ScheduledSendHandler(transmissionDispatcher, telemetriesFetcher, serializer);
             threadPool.schedule(new Runnable() {
                 public void run() {
                     try {
                         semaphore.release();
-                        command.run();
+                        @SuppressWarnings("unchecked")
+                        Collection<Telemetry> telemetries = telemetriesFetcher.fetch();
+                        if (!telemetries.isEmpty() && !serializeStage.offer(telemetries)) {
+                            logger.error("Failed to send buffer data to network, {} items were not sent", telemetries.size());
+                        }
                     } catch (ThreadDeath td) {
                         throw td;
                     } catch (Throwable t) {
@@ -206,55 +194,19 @@ public final class TransmitterImpl implements TelemetriesTransmitter<Telemetry>
         return true;
     }
 
+    /**
+     * Hands the telemetries to the serialization stage, without waiting for them to be serialized.
+     *
+     * @return false if the serialization stage is full
+     */
     @Override
     public boolean sendNow(Collection<Telemetry> telemetries) {
         Preconditions.checkNotNull(telemetries, "telemetries should be non-null value");
 
-        if (!semaphore.tryAcquire()) {
-            return false;
-        }
-
-        final SendNowHandler command = new SendNowHandler(transmissionDispatcher, serializer, telemetries);
-        try {
-            threadPool.execute(new Runnable() {
-                public void run() {
-                    try {
-                        semaphore.release();
-                        command.run();
-                    } catch (ThreadDeath td) {
-                        throw td;
-                    } catch (Throwable t) {
-                        try {
-                            logger.error("exception in runnable sendNow()");
-                            logger.trace("exception in runnable sendNow()", t);
-                        } catch (ThreadDeath td) {
-                            throw td;
-                        } catch (Throwable t2) {
-                            // chomp
-                        }
-                    } finally {
-                    }
-                }
-            });
-
+        if (telemetries.isEmpty()) {
             return true;
-        } catch (ThreadDeath td) {
-            throw td;
-        } catch (Throwable t) {
-            try {
-                semaphore.release();
-                if (!shutdown) {
-                    logger.error("Error in scheduledSend of telemetry items failed. {} items were not sent", telemetries.size());
-                    logger.debug("Error in scheduledSend of telemetry items failed. {} items were not sent", telemetries.size(), t);
-                }
-            } catch (ThreadDeath td) {
-                throw td;
-            } catch (Throwable t2) {
-                // chomp
-            }
         }
-
-        return false;
+        return serializeStage.offer(telemetries);
     }
 
     @Override
@@ -265,8 +217,21 @@ public final class TransmitterImpl implements TelemetriesTransmitter<Telemetry>
         threadPool.shutdown();
         threadPool.awaitTermination(timeout, timeUnit);
         long remaining = timeout - stopwatch.elapsed(timeUnit);
+        if (remaining > 0) {
+            serializeStage.shutdown(remaining, timeUnit);
+        }
+        remaining = timeout - stopwatch.elapsed(timeUnit);
         if (remaining > 0) {
             transmissionDispatcher.shutdown(remaining, timeUnit);
         }
     }
+
+    private void dispatch(Collection<Telemetry> telemetries) {
+        Optional<Transmission> transmission = serializer.serialize(telemetries);
+        if (!transmission.isPresent()) {
+            return;
+        }
+
+        transmissionDispatcher.dispatch(transmission.get());
+    }
 }
@@ -41,8 +41,16 @@ public class ChannelXmlElement {
 
     private String maxTransmissionStorageFilesCapacityInMB;
 
+    private boolean segmentedTransmissionStorage;
+
     private String maxInstantRetry;
 
+    private String serializationThreads;
+
+    private String serializationQueueCapacity;
+
+    private String serializationDropPolicy;
+
     private String type = "com.microsoft.applicationinsights.channel.concrete.inprocess.InProcessTelemetryChannel";
 
     public String getType() {
@@ -73,10 +81,26 @@ public class ChannelXmlElement {
         this.maxTransmissionStorageFilesCapacityInMB = maxTransmissionStorageFilesCapacityInMB;
     }
 
+    public void setSegmentedTransmissionStorage(boolean segmentedTransmissionStorage) {
+        this.segmentedTransmissionStorage = segmentedTransmissionStorage;
+    }
+
     public void setMaxInstantRetry(String maxInstantRetry) {
         this.maxInstantRetry = maxInstantRetry;
     }
 
+    public void setSerializationThreads(String serializationThreads) {
+        this.serializationThreads = serializationThreads;
+    }
+
+    public void setSerializationQueueCapacity(String serializationQueueCapacity) {
+        this.serializationQueueCapacity = serializationQueueCapacity;
+    }
+
+    public void setSerializationDropPolicy(String serializationDropPolicy) {
+        this.serializationDropPolicy = serializationDropPolicy;
+    }
+
     public Map<String, String> getData() {
         HashMap<String, String> data = new HashMap<>();
         if (developerMode) {
@@ -95,10 +119,26 @@ public class ChannelXmlElement {
             data.put("MaxTransmissionStorageFilesCapacityInMB", maxTransmissionStorageFilesCapacityInMB);
         }
 
+        if (segmentedTransmissionStorage) {
+            data.put("SegmentedTransmissionStorage", "true");
+        }
+
         if (!Strings.isNullOrEmpty(maxInstantRetry)) {
             data.put("MaxInstantRetry", maxInstantRetry);
         }
 
+        if (!Strings.isNullOrEmpty(serializationThreads)) {
+            data.put("SerializationThreads", serializationThreads);
+        }
+
+        if (!Strings.isNullOrEmpty(serializationQueueCapacity)) {
+            data.put("SerializationQueueCapacity", serializationQueueCapacity);
+        }
+
+        if (!Strings.isNullOrEmpty(serializationDropPolicy)) {
+            data.put("SerializationDropPolicy", serializationDropPolicy);
+        }
+
         data.put("Throttling", throttling ? "true" : "false");
 
         return data;
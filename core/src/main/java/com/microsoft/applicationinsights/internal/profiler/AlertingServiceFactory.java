@@ -20,7 +20,7 @@
  */
 package com.microsoft.applicationinsights.internal.profiler;
 
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
 
 import com.microsoft.applicationinsights.TelemetryClient;
@@ -41,20 +41,22 @@ public class AlertingServiceFactory {
             Consumer<AlertBreach> alertAction,
             TelemetryObservers telemetryObservers,
             TelemetryClient telemetryClient,
-            ExecutorService executorService,
+            ScheduledExecutorService executorService,
             GcEventMonitor.GcEventMonitorConfiguration gcEventMonitorConfiguration) {
         AlertingSubsystem alertingSubsystem = AlertingSubsystem.create(alertAction, executorService);
 
         addObserver(alertingSubsystem, telemetryObservers);
 
         monitorGcActivity(alertingSubsystem, telemetryClient, executorService, gcEventMonitorConfiguration);
+
+        ApplicationMetricsMonitor.init(alertingSubsystem, telemetryObservers);
         return alertingSubsystem;
     }
 
     private static void monitorGcActivity(
             AlertingSubsystem alertingSubsystem,
             TelemetryClient telemetryClient,
-            ExecutorService executorService,
+            ScheduledExecutorService executorService,
             GcEventMonitor.GcEventMonitorConfiguration gcEventMonitorConfiguration) {
         GcEventMonitor.init(alertingSubsystem, telemetryClient, executorService, gcEventMonitorConfiguration);
     }
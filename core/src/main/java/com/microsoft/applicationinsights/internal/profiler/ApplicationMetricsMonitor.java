@@ -0,0 +1,132 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.microsoft.applicationinsights.internal.profiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.microsoft.applicationinsights.alerting.AlertingSubsystem;
+import com.microsoft.applicationinsights.alerting.alert.AlertMetricType;
+import com.microsoft.applicationinsights.extensibility.initializer.TelemetryObservers;
+import com.microsoft.applicationinsights.internal.quickpulse.LatencySketch;
+import com.microsoft.applicationinsights.internal.schemav2.RequestData;
+import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
+import com.microsoft.applicationinsights.telemetry.DirectTelemetry;
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+import com.microsoft.applicationinsights.telemetry.TelemetryObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Monitors the requests and the threads of the application. Forwards to the alerting subsystem, once per sampling
+ * period, the 99th percentile of the request durations, the percentage of failed requests and the thread count.
+ * <p>
+ * Requests only update counters, the values are calculated when sampling.
+ */
+public class ApplicationMetricsMonitor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationMetricsMonitor.class);
+
+    // read on init rather than when the class is loaded, so that a test can shorten it
+    static final String SAMPLING_PERIOD_PROPERTY = "applicationinsights.preview.profiler.metrics-sampling-period-in-sec";
+    private static final long DEFAULT_SAMPLING_PERIOD_IN_SEC = 10;
+
+    private final AlertingSubsystem alertingSubsystem;
+    private final ThreadMXBean threadMXBean;
+
+    private final AtomicReference<LatencySketch> requestDurations = new AtomicReference<>(new LatencySketch());
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+
+    ApplicationMetricsMonitor(AlertingSubsystem alertingSubsystem, ThreadMXBean threadMXBean) {
+        this.alertingSubsystem = alertingSubsystem;
+        this.threadMXBean = threadMXBean;
+    }
+
+    /**
+     * Initialise request and thread monitoring.
+     * <p>
+     * The sampling has a thread of its own, the threads of the alerting executor are held for good by the work loop
+     * of the alerting subsystem and by the GC notification loop.
+     */
+    public static void init(AlertingSubsystem alertingSubsystem, TelemetryObservers telemetryObservers) {
+        ApplicationMetricsMonitor monitor = new ApplicationMetricsMonitor(alertingSubsystem, ManagementFactory.getThreadMXBean());
+
+        telemetryObservers.addObserver(new TelemetryObserver<RequestTelemetry>(RequestTelemetry.class) {
+            @Override
+            protected void process(RequestTelemetry telemetry) {
+                monitor.addRequest(telemetry.getDuration().getTotalMilliseconds(), telemetry.isSuccess());
+            }
+        });
+        // requests captured by the agent are tracked as DirectTelemetry
+        telemetryObservers.addObserver(new TelemetryObserver<DirectTelemetry>(DirectTelemetry.class) {
+            @Override
+            protected void process(DirectTelemetry telemetry) {
+                if (telemetry.getData() instanceof RequestData) {
+                    RequestData data = (RequestData) telemetry.getData();
+                    monitor.addRequest(data.getDuration().getTotalMilliseconds(), data.getSuccess());
+                }
+            }
+        });
+
+        long samplingPeriodInSec = Long.getLong(SAMPLING_PERIOD_PROPERTY, DEFAULT_SAMPLING_PERIOD_IN_SEC);
+        ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(
+                ThreadPoolUtils.createDaemonThreadFactory(ApplicationMetricsMonitor.class));
+        executorService.scheduleAtFixedRate(monitor::sample, samplingPeriodInSec, samplingPeriodInSec, TimeUnit.SECONDS);
+    }
+
+    void addRequest(long durationMillis, boolean success) {
+        requestDurations.get().record(durationMillis);
+        requests.increment();
+        if (!success) {
+            failedRequests.increment();
+        }
+    }
+
+    /**
+     * Send the values of the sampling period which just ended to the alerting subsystem
+     */
+    void sample() {
+        try {
+            LatencySketch durations = requestDurations.getAndSet(new LatencySketch());
+            long requestCount = requests.sumThenReset();
+            long failedRequestCount = failedRequests.sumThenReset();
+
+            // nothing to say about the requests of a period without any
+            if (requestCount > 0) {
+                alertingSubsystem.track(AlertMetricType.REQUEST_LATENCY, durations.getQuantile(0.99));
+                alertingSubsystem.track(AlertMetricType.REQUEST_FAILURE_RATE, 100.0 * failedRequestCount / requestCount);
+            }
+            alertingSubsystem.track(AlertMetricType.THREAD_COUNT, threadMXBean.getThreadCount());
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            // an exception would cancel the following samples
+            LOGGER.error("Failed to sample application metrics", t);
+        }
+    }
+}
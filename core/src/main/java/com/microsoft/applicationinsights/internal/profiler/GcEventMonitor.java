@@ -13,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.management.MemoryUsage;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 
@@ -66,8 +67,10 @@ public class GcEventMonitor {
     private static GCEventConsumer process(AlertingSubsystem alertingSubsystem,
                                            TelemetryClient telemetryClient,
                                            GcEventMonitorConfiguration gcEventMonitorConfiguration) {
+        GcActivity gcActivity = new GcActivity();
         return event -> {
             sendTenuredFillPercentageToAlerting(alertingSubsystem, event);
+            gcActivity.sendToAlerting(alertingSubsystem, event);
             emitGcEvent(telemetryClient, gcEventMonitorConfiguration, event);
         };
     }
@@ -90,6 +93,41 @@ public class GcEventMonitor {
         }
     }
 
+    /**
+     * Calculates, from one GC event to the next, the percentage of the time spent in GC and the allocation rate,
+     * which is the growth of the young generation since it was last collected
+     */
+    static class GcActivity {
+        private static final double BYTES_PER_MB = 1024 * 1024;
+
+        // end time of the previous event, in milliseconds since the JVM started, -1 before the first event
+        private long lastEndTime = -1;
+        // young generation usage after the previous event, -1 if unknown
+        private long lastYoungUsedAfter = -1;
+
+        synchronized void sendToAlerting(AlertingSubsystem alertingSubsystem, GCCollectionEvent event) {
+            long endTime = event.getEndTime();
+            long elapsed = endTime - lastEndTime;
+            boolean hasPrevious = lastEndTime != -1 && elapsed > 0;
+
+            if (hasPrevious) {
+                alertingSubsystem.track(AlertMetricType.GC_PAUSE_RATIO, Math.min(100.0, 100.0 * event.getDuration() / elapsed));
+            }
+
+            List<MemoryPool> youngPools = event.getYoungPools();
+            MemoryUsage youngBefore = youngPools == null || youngPools.isEmpty() ? null : event.getMemoryUsageBeforeGc(youngPools);
+            MemoryUsage youngAfter = youngPools == null || youngPools.isEmpty() ? null : event.getMemoryUsageAfterGc(youngPools);
+
+            if (hasPrevious && youngBefore != null && lastYoungUsedAfter != -1) {
+                long allocated = Math.max(0, youngBefore.getUsed() - lastYoungUsedAfter);
+                alertingSubsystem.track(AlertMetricType.ALLOCATION_RATE, allocated / BYTES_PER_MB / (elapsed / 1000.0));
+            }
+
+            lastEndTime = endTime;
+            lastYoungUsedAfter = youngAfter == null ? -1 : youngAfter.getUsed();
+        }
+    }
+
     /**
      * If gc reporting is enabled, send gc event to Application Insights
      */
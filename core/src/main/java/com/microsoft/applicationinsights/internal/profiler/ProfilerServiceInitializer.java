@@ -23,6 +23,7 @@ package com.microsoft.applicationinsights.internal.profiler;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.alerting.AlertingSubsystem;
 import com.microsoft.applicationinsights.alerting.alert.AlertBreach;
+import com.microsoft.applicationinsights.alerting.config.AlertingConfiguration.AlertConfiguration;
 import com.microsoft.applicationinsights.extensibility.initializer.TelemetryObservers;
 import com.microsoft.applicationinsights.internal.channel.common.LazyHttpClient;
 import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
@@ -37,7 +38,9 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ServiceLoader;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -108,16 +111,14 @@ public class ProfilerServiceInitializer {
                     ThreadPoolUtils.createDaemonThreadFactory(ProfilerServiceFactory.class, "ServiceProfilerService")
             );
 
-            ScheduledExecutorService alertServiceExecutorService = Executors.newScheduledThreadPool(2,
-                    ThreadPoolUtils.createDaemonThreadFactory(ProfilerServiceFactory.class, "ServiceProfilerAlertingService")
-            );
+            ScheduledExecutorService alertServiceExecutorService = createAlertServiceExecutorService();
 
             AlertingSubsystem alerting = createAlertMonitor(alertServiceExecutorService, client, gcEventMonitorConfiguration);
 
             Future<ProfilerService> future = factory.initialize(
                     appIdSupplier,
                     sendServiceProfilerIndex(client),
-                    updateAlertingConfig(alerting),
+                    updateAlertingConfig(alerting, config.metricAlerts()),
                     processId,
                     config,
                     machineName,
@@ -153,7 +154,14 @@ public class ProfilerServiceInitializer {
     }
 
     static ProfilerConfigurationHandler updateAlertingConfig(AlertingSubsystem alertingSubsystem) {
-        return config -> alertingSubsystem.updateConfiguration(AlertConfigParser.toAlertingConfig(config));
+        return updateAlertingConfig(alertingSubsystem, Collections.emptyList());
+    }
+
+    /**
+     * @param metricAlerts the locally configured alerts, which are added to the ones of the service profiler endpoint
+     */
+    static ProfilerConfigurationHandler updateAlertingConfig(AlertingSubsystem alertingSubsystem, List<AlertConfiguration> metricAlerts) {
+        return config -> alertingSubsystem.updateConfiguration(AlertConfigParser.toAlertingConfig(config, metricAlerts));
     }
 
     static UploadCompleteHandler sendServiceProfilerIndex(TelemetryClient telemetryClient) {
@@ -165,11 +173,29 @@ public class ProfilerServiceInitializer {
         };
     }
 
+    /**
+     * One thread for the work loop of the alerting subsystem, and one for the GC notification loop
+     */
+    static ScheduledExecutorService createAlertServiceExecutorService() {
+        return Executors.newScheduledThreadPool(2,
+                ThreadPoolUtils.createDaemonThreadFactory(ProfilerServiceFactory.class, "ServiceProfilerAlertingService")
+        );
+    }
+
+    static AlertingSubsystem createAlertMonitor(
+            ScheduledExecutorService alertServiceExecutorService,
+            TelemetryClient telemetryClient,
+            GcEventMonitor.GcEventMonitorConfiguration gcEventMonitorConfiguration) {
+        return createAlertMonitor(alertAction(), alertServiceExecutorService, telemetryClient, gcEventMonitorConfiguration);
+    }
+
+    // visible for testing
     static AlertingSubsystem createAlertMonitor(
+            Consumer<AlertBreach> alertAction,
             ScheduledExecutorService alertServiceExecutorService,
             TelemetryClient telemetryClient,
             GcEventMonitor.GcEventMonitorConfiguration gcEventMonitorConfiguration) {
-        return AlertingServiceFactory.create(alertAction(), TelemetryObservers.INSTANCE, telemetryClient, alertServiceExecutorService, gcEventMonitorConfiguration);
+        return AlertingServiceFactory.create(alertAction, TelemetryObservers.INSTANCE, telemetryClient, alertServiceExecutorService, gcEventMonitorConfiguration);
     }
 
     private static Consumer<AlertBreach> alertAction() {
@@ -26,10 +26,10 @@ import java.util.concurrent.ArrayBlockingQueue;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.internal.quickpulse.QuickPulsePayloadEncoder.Payload;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
 import com.microsoft.applicationinsights.internal.util.PropertyHelper;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ByteArrayEntity;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,11 +42,34 @@ final class DefaultQuickPulseDataFetcher implements QuickPulseDataFetcher {
     private static final Logger logger = LoggerFactory.getLogger(DefaultQuickPulseDataFetcher.class);
 
     private static final String QP_BASE_URI = "https://rt.services.visualstudio.com/QuickPulseService.svc";
+
+    // the payloads waiting in the send queue are not pooled, this is enough when the posts keep up
+    private static final int PAYLOAD_POOL_SIZE = 4;
+
+    private static final byte[] METRICS_START = QuickPulsePayloadEncoder.encode("\"Metrics\":[");
+    private static final byte[] REQUESTS = metricPrefix("\\\\ApplicationInsights\\\\Requests\\/Sec");
+    private static final byte[] REQUEST_DURATION = metricPrefix("\\\\ApplicationInsights\\\\Request Duration");
+    private static final byte[] REQUESTS_FAILED = metricPrefix("\\\\ApplicationInsights\\\\Requests Failed\\/Sec");
+    private static final byte[] REQUESTS_SUCCEEDED = metricPrefix("\\\\ApplicationInsights\\\\Requests Succeeded\\/Sec");
+    private static final byte[] DEPENDENCY_CALLS = metricPrefix("\\\\ApplicationInsights\\\\Dependency Calls\\/Sec");
+    private static final byte[] DEPENDENCY_CALL_DURATION = metricPrefix("\\\\ApplicationInsights\\\\Dependency Call Duration");
+    private static final byte[] DEPENDENCY_CALLS_FAILED = metricPrefix("\\\\ApplicationInsights\\\\Dependency Calls Failed\\/Sec");
+    private static final byte[] DEPENDENCY_CALLS_SUCCEEDED = metricPrefix("\\\\ApplicationInsights\\\\Dependency Calls Succeeded\\/Sec");
+    private static final byte[] EXCEPTIONS = metricPrefix("\\\\ApplicationInsights\\\\Exceptions\\/Sec");
+    private static final byte[] COMMITTED_BYTES = metricPrefix("\\\\Memory\\\\Committed Bytes");
+    private static final byte[] PROCESSOR_TIME = metricPrefix("\\\\Processor(_Total)\\\\% Processor Time");
+    private static final byte[] WEIGHT = QuickPulsePayloadEncoder.encode(",\"Weight\": ");
+    private static final byte[] METRIC_END = QuickPulsePayloadEncoder.encode("},");
+    private static final byte[] LAST_METRIC_END = QuickPulsePayloadEncoder.encode("}");
+    private static final byte[] METRICS_END_TIMESTAMP_START = QuickPulsePayloadEncoder.encode("],\"Timestamp\": \"\\/Date(");
+
     private final ArrayBlockingQueue<HttpPost> sendQueue;
     private final TelemetryConfiguration config;
     private final String ikey;
     private final QuickPulseNetworkHelper networkHelper = new QuickPulseNetworkHelper();
-    private final String postPrefix;
+    private final QuickPulsePayloadEncoder encoder = new QuickPulsePayloadEncoder(PAYLOAD_POOL_SIZE);
+    private final byte[] postPrefix;
+    private final byte[] postSuffix;
     private final String sdkVersion;
 
     public DefaultQuickPulseDataFetcher(ArrayBlockingQueue<HttpPost> sendQueue, TelemetryConfiguration config, String machineName,
@@ -79,7 +102,8 @@ final class DefaultQuickPulseDataFetcher implements QuickPulseDataFetcher {
         sb.append("\"MachineName\": \"").append(machineName).append("\",");
         sb.append("\"RoleName\": ").append(roleName).append(",");
         sb.append("\"StreamId\": \"").append(quickPulseId).append("\",");
-        postPrefix = sb.toString();
+        postPrefix = QuickPulsePayloadEncoder.encode(sb.toString());
+        postSuffix = QuickPulsePayloadEncoder.encode(")\\/\",\"Version\": \"" + sdkVersion + "\"}]");
         if (logger.isTraceEnabled()) {
             logger.trace("{} using endpoint {}", DefaultQuickPulseDataFetcher.class.getSimpleName(), getQuickPulseEndpoint());
         }
@@ -102,11 +126,12 @@ final class DefaultQuickPulseDataFetcher implements QuickPulseDataFetcher {
             final String endpointPrefix = LocalStringsUtils.isNullOrEmpty(redirectedEndpoint) ? getQuickPulseEndpoint() : redirectedEndpoint;
             final HttpPost request = networkHelper.buildRequest(currentDate, this.getEndpointUrl(endpointPrefix));
 
-            final ByteArrayEntity postEntity = buildPostEntity(counters);
+            final Payload postEntity = buildPostEntity(counters);
 
             request.setEntity(postEntity);
 
             if (!sendQueue.offer(request)) {
+                postEntity.release();
                 logger.trace("Quick Pulse send queue is full");
             }
         } catch (ThreadDeath td) {
@@ -140,46 +165,47 @@ final class DefaultQuickPulseDataFetcher implements QuickPulseDataFetcher {
         }
     }
 
-    private ByteArrayEntity buildPostEntity(QuickPulseDataCollector.FinalCounters counters) {
-        StringBuilder sb = new StringBuilder(postPrefix);
-        formatMetrics(counters, sb);
-        sb.append("\"Timestamp\": \"\\/Date(");
-        long ms = System.currentTimeMillis();
-        sb.append(ms);
-        sb.append(")\\/\",");
-        sb.append("\"Version\": \"");
-        sb.append(sdkVersion);
-        sb.append("\"}]");
-        return new ByteArrayEntity(sb.toString().getBytes());
+    @VisibleForTesting
+    Payload buildPostEntity(QuickPulseDataCollector.FinalCounters counters) {
+        Payload payload = encoder.acquire();
+        payload.append(postPrefix);
+        formatMetrics(counters, payload);
+        payload.append(METRICS_END_TIMESTAMP_START);
+        payload.append(System.currentTimeMillis());
+        payload.append(postSuffix);
+        return payload;
     }
 
     private void formatDocuments(StringBuilder sb) {
         sb.append("\"Documents\": [] ,");
     }
 
-    private void formatSingleMetric(StringBuilder sb, String metricName, double metricValue, int metricWeight, Boolean includeComma) {
-        String comma = includeComma ? "," : "";
-        sb.append(String.format("{\"Name\": \"%s\",\"Value\": %s,\"Weight\": %s}%s", metricName, metricValue, metricWeight, comma));
+    private static byte[] metricPrefix(String metricName) {
+        return QuickPulsePayloadEncoder.encode("{\"Name\": \"" + metricName + "\",\"Value\": ");
+    }
+
+    private static void formatSingleMetric(Payload payload, byte[] metricPrefix, double metricValue, int metricWeight, boolean includeComma) {
+        payload.append(metricPrefix).append(metricValue).append(WEIGHT).append(metricWeight);
+        payload.append(includeComma ? METRIC_END : LAST_METRIC_END);
     }
 
-    private void formatSingleMetric(StringBuilder sb, String metricName, long metricValue, int metricWeight, Boolean includeComma) {
-        String comma = includeComma ? "," : "";
-        sb.append(String.format("{\"Name\": \"%s\",\"Value\": %s,\"Weight\": %s}%s", metricName, metricValue, metricWeight, comma));
+    private static void formatSingleMetric(Payload payload, byte[] metricPrefix, long metricValue, int metricWeight, boolean includeComma) {
+        payload.append(metricPrefix).append(metricValue).append(WEIGHT).append(metricWeight);
+        payload.append(includeComma ? METRIC_END : LAST_METRIC_END);
     }
 
-    private void formatMetrics(QuickPulseDataCollector.FinalCounters counters, StringBuilder sb) {
-        sb.append("\"Metrics\":[");
-        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Requests\\/Sec", counters.requests, 1, true);
-        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Request Duration", counters.requestsDuration, (int)counters.requests, true);
-        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Requests Failed\\/Sec", counters.unsuccessfulRequests, 1, true);
-        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Requests Succeeded\\/Sec", (counters.requests - counters.unsuccessfulRequests), 1, true);
-        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Dependency Calls\\/Sec", counters.rdds, 1, true);
-        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Dependency Call Duration", counters.rddsDuration, (int)counters.rdds, true);
-        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Dependency Calls Failed\\/Sec", counters.unsuccessfulRdds, 1, true);
-        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Dependency Calls Succeeded\\/Sec", counters.rdds - counters.unsuccessfulRdds, 1, true);
-        formatSingleMetric(sb, "\\\\ApplicationInsights\\\\Exceptions\\/Sec", counters.exceptions, 1, true);
-        formatSingleMetric(sb, "\\\\Memory\\\\Committed Bytes", counters.memoryCommitted, 1, true);
-        formatSingleMetric(sb, "\\\\Processor(_Total)\\\\% Processor Time", counters.cpuUsage, 1, false);
-        sb.append("],");
+    private static void formatMetrics(QuickPulseDataCollector.FinalCounters counters, Payload payload) {
+        payload.append(METRICS_START);
+        formatSingleMetric(payload, REQUESTS, counters.requests, 1, true);
+        formatSingleMetric(payload, REQUEST_DURATION, counters.requestsDuration, (int)counters.requests, true);
+        formatSingleMetric(payload, REQUESTS_FAILED, counters.unsuccessfulRequests, 1, true);
+        formatSingleMetric(payload, REQUESTS_SUCCEEDED, (counters.requests - counters.unsuccessfulRequests), 1, true);
+        formatSingleMetric(payload, DEPENDENCY_CALLS, counters.rdds, 1, true);
+        formatSingleMetric(payload, DEPENDENCY_CALL_DURATION, counters.rddsDuration, (int)counters.rdds, true);
+        formatSingleMetric(payload, DEPENDENCY_CALLS_FAILED, counters.unsuccessfulRdds, 1, true);
+        formatSingleMetric(payload, DEPENDENCY_CALLS_SUCCEEDED, counters.rdds - counters.unsuccessfulRdds, 1, true);
+        formatSingleMetric(payload, EXCEPTIONS, counters.exceptions, 1, true);
+        formatSingleMetric(payload, COMMITTED_BYTES, counters.memoryCommitted, 1, true);
+        formatSingleMetric(payload, PROCESSOR_TIME, counters.cpuUsage, 1, false);
     }
 }
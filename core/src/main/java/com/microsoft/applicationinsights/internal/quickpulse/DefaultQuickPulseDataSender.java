@@ -53,6 +53,7 @@ final class DefaultQuickPulseDataSender implements QuickPulseDataSender {
             while (!stopped) {
                 HttpPost post = sendQueue.take();
                 if (quickPulseHeaderInfo.getQuickPulseStatus() != QuickPulseStatus.QP_IS_ON) {
+                    QuickPulsePayloadEncoder.release(post);
                     continue;
                 }
 
@@ -83,6 +84,8 @@ final class DefaultQuickPulseDataSender implements QuickPulseDataSender {
                     if (response != null) {
                         LazyHttpClient.dispose(response);
                     }
+                    // the request has been written once execute returns
+                    QuickPulsePayloadEncoder.release(post);
                 }
             }
         } catch (ThreadDeath td) {
@@ -28,11 +28,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import com.google.common.annotations.VisibleForTesting;
 import com.microsoft.applicationinsights.customExceptions.FriendlyException;
 import com.microsoft.applicationinsights.internal.channel.common.LazyHttpClient;
+import com.microsoft.applicationinsights.internal.quickpulse.QuickPulsePayloadEncoder.Payload;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ByteArrayEntity;
 
 import com.microsoft.applicationinsights.TelemetryConfiguration;
 import org.slf4j.Logger;
@@ -47,10 +47,14 @@ final class DefaultQuickPulsePingSender implements QuickPulsePingSender {
 
     private static final String QP_BASE_URI = "https://rt.services.visualstudio.com/QuickPulseService.svc";
 
+    private static final byte[] PING_SUFFIX = QuickPulsePayloadEncoder.encode(")\\/\",\"Version\":\"2.2.0-738\"}");
+
     private final TelemetryConfiguration configuration;
     private final HttpClient httpClient;
     private final QuickPulseNetworkHelper networkHelper = new QuickPulseNetworkHelper();
-    private final String pingPrefix;
+    // the pings are sent one at a time
+    private final QuickPulsePayloadEncoder encoder = new QuickPulsePayloadEncoder(1);
+    private final byte[] pingPrefix;
     private final String roleName;
     private final String instanceName;
     private final String machineName;
@@ -70,7 +74,7 @@ final class DefaultQuickPulsePingSender implements QuickPulsePingSender {
             roleName = "\"" + roleName + "\"";
         }
 
-        pingPrefix = "{" +
+        pingPrefix = QuickPulsePayloadEncoder.encode("{" +
                 "\"Documents\": null," +
                 "\"Instance\":\"" + instanceName + "\"," +
                 "\"InstrumentationKey\": null," +
@@ -79,7 +83,7 @@ final class DefaultQuickPulsePingSender implements QuickPulsePingSender {
                 "\"RoleName\":" + roleName + "," +
                 "\"Metrics\": null," +
                 "\"StreamId\": \"" + quickPulseId + "\"," +
-                "\"Timestamp\": \"\\/Date(";
+                "\"Timestamp\": \"\\/Date(");
 
         if (logger.isTraceEnabled()) {
             logger.trace("{} using endpoint {}", DefaultQuickPulsePingSender.class.getSimpleName(), getQuickPulseEndpoint());
@@ -100,7 +104,7 @@ final class DefaultQuickPulsePingSender implements QuickPulsePingSender {
         final String endpointPrefix = LocalStringsUtils.isNullOrEmpty(redirectedEndpoint) ? getQuickPulseEndpoint() : redirectedEndpoint;
         final HttpPost request = networkHelper.buildPingRequest(currentDate, getQuickPulsePingUri(endpointPrefix), quickPulseId, machineName, roleName, instanceName);
 
-        final ByteArrayEntity pingEntity = buildPingEntity(currentDate.getTime());
+        final Payload pingEntity = buildPingEntity(currentDate.getTime());
         request.setEntity(pingEntity);
 
         final long sendTime = System.nanoTime();
@@ -129,6 +133,7 @@ final class DefaultQuickPulsePingSender implements QuickPulsePingSender {
             if (response != null) {
                 LazyHttpClient.dispose(response);
             }
+            pingEntity.release();
         }
         return onPingError(sendTime);
     }
@@ -151,12 +156,9 @@ final class DefaultQuickPulsePingSender implements QuickPulsePingSender {
         }
     }
 
-    private ByteArrayEntity buildPingEntity(long timeInMillis) {
-        String sb = pingPrefix + timeInMillis +
-                ")\\/\"," +
-                "\"Version\":\"2.2.0-738\"" +
-                "}";
-        return new ByteArrayEntity(sb.getBytes());
+    @VisibleForTesting
+    Payload buildPingEntity(long timeInMillis) {
+        return encoder.acquire().append(pingPrefix).append(timeInMillis).append(PING_SUFFIX);
     }
 
     private QuickPulseHeaderInfo onPingError(long sendTime) {
@@ -0,0 +1,116 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.quickpulse;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations (in milliseconds) with logarithmic buckets, so that the quantiles it returns are within
+ * {@link #RELATIVE_ACCURACY} of the actual durations, whatever their distribution (the same idea as DDSketch).
+ *
+ * Recording a duration is a single increment, without allocation, and the buckets are spread over a few stripes
+ * to limit the contention between the threads which track telemetry.
+ */
+public final class LatencySketch {
+
+    static final double RELATIVE_ACCURACY = 0.02;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // longer durations are all counted in the last bucket
+    private static final long MAX_TRACKED_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // bucket 0 is for durations below 1 ms, bucket i > 0 for the durations in (GAMMA^(i-2), GAMMA^(i-1)]
+    private static final int BUCKET_COUNT = 2 + (int) Math.ceil(Math.log(MAX_TRACKED_MILLIS) / LOG_GAMMA);
+
+    // must be a power of 2
+    private static final int STRIPES = 4;
+
+    /// The stripes one after the other, each one has all the buckets
+    private final AtomicLongArray buckets = new AtomicLongArray(STRIPES * BUCKET_COUNT);
+
+    public void record(long millis) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        buckets.incrementAndGet(stripe * BUCKET_COUNT + bucketIndex(millis));
+    }
+
+    void merge(LatencySketch other) {
+        for (int i = 0; i < buckets.length(); i++) {
+            long count = other.buckets.get(i);
+            if (count != 0) {
+                buckets.addAndGet(i, count);
+            }
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.95 for the 95th percentile
+     * @return the duration at the quantile, or 0 when nothing was recorded
+     */
+    public double getQuantile(double quantile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            long count = buckets.get(i);
+            counts[i % BUCKET_COUNT] += count;
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) (quantile * (total - 1));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return bucketValue(i);
+            }
+        }
+        return bucketValue(BUCKET_COUNT - 1);
+    }
+
+    // visible for testing
+    static int bucketIndex(long millis) {
+        if (millis < 1) {
+            return 0;
+        }
+        int index = 1 + (int) Math.ceil(Math.log(millis) / LOG_GAMMA);
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    // the value with the same relative distance to both ends of the bucket
+    private static double bucketValue(int index) {
+        if (index == 0) {
+            return 0;
+        }
+        return 2 * Math.pow(GAMMA, index - 1) / (GAMMA + 1);
+    }
+}
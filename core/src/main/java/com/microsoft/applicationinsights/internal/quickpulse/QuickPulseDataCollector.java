@@ -24,12 +24,22 @@ package com.microsoft.applicationinsights.internal.quickpulse;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.microsoft.applicationinsights.TelemetryConfiguration;
 import com.microsoft.applicationinsights.internal.perfcounter.CpuPerformanceCounterCalculator;
+import com.microsoft.applicationinsights.internal.schemav2.Domain;
+import com.microsoft.applicationinsights.internal.schemav2.RemoteDependencyData;
+import com.microsoft.applicationinsights.internal.schemav2.RequestData;
+import com.microsoft.applicationinsights.telemetry.BaseTelemetry;
+import com.microsoft.applicationinsights.telemetry.DirectTelemetry;
+import com.microsoft.applicationinsights.telemetry.Duration;
 import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
 import com.microsoft.applicationinsights.telemetry.RemoteDependencyTelemetry;
 import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
@@ -42,8 +52,11 @@ import org.slf4j.LoggerFactory;
 public enum QuickPulseDataCollector {
     INSTANCE;
 
-    private String ikey;
-    private TelemetryConfiguration config;
+    // the requests whose name is not tracked because there are already maxOperations names are counted under this one
+    static final String OTHER_OPERATIONS = "<other>";
+
+    private volatile String ikey;
+    private volatile TelemetryConfiguration config;
 
     static class FinalCounters {
         public final double exceptions;
@@ -56,6 +69,13 @@ public enum QuickPulseDataCollector {
         public final long memoryCommitted;
         public final double cpuUsage;
 
+        // the durations of the requests and dependencies, to get the percentiles of the interval
+        public final LatencySketch requestsDurationSketch;
+        public final LatencySketch rddsDurationSketch;
+
+        // the requests by name, empty unless the operation breakdown is enabled
+        public final Map<String, OperationCounters> operations;
+
         public FinalCounters(Counters currentCounters, MemoryMXBean memory, CpuPerformanceCounterCalculator cpuPerformanceCounterCalculator) {
             if (memory != null && memory.getHeapMemoryUsage() != null) {
                 memoryCommitted = memory.getHeapMemoryUsage().getCommitted();
@@ -71,52 +91,69 @@ public enum QuickPulseDataCollector {
             } else {
                 cpuUsage = -1;
             }
-            exceptions = currentCounters.exceptions.get();
+            exceptions = currentCounters.exceptions.sum();
+
+            requests = currentCounters.requests.sum();
+            this.requestsDuration = currentCounters.requestsDuration.sum();
+            this.unsuccessfulRequests = currentCounters.unsuccessfulRequests.sum();
+            this.requestsDurationSketch = currentCounters.requestsDurationSketch;
 
-            CountAndDuration countAndDuration = Counters.decodeCountAndDuration(currentCounters.requestsAndDurations.get());
-            requests = countAndDuration.count;
-            this.requestsDuration = countAndDuration.duration;
-            this.unsuccessfulRequests = currentCounters.unsuccessfulRequests.get();
+            this.rdds = currentCounters.rdds.sum();
+            this.rddsDuration = currentCounters.rddsDuration.sum();
+            this.unsuccessfulRdds = currentCounters.unsuccessfulRdds.sum();
+            this.rddsDurationSketch = currentCounters.rddsDurationSketch;
 
-            countAndDuration = Counters.decodeCountAndDuration(currentCounters.rddsAndDuations.get());
-            this.rdds = countAndDuration.count;
-            this.rddsDuration = countAndDuration.duration;
-            this.unsuccessfulRdds = currentCounters.unsuccessfulRdds.get();
+            if (currentCounters.operations == null) {
+                operations = Collections.emptyMap();
+            } else {
+                operations = Collections.unmodifiableMap(new HashMap<>(currentCounters.operations));
+            }
         }
     }
 
-    static class CountAndDuration {
-        public final long count;
-        public final long duration;
-
-        private CountAndDuration(long count, long duration) {
-            this.count = count;
-            this.duration = duration;
-        }
+    static class OperationCounters {
+        final LongAdder count = new LongAdder();
+        final LongAdder unsuccessful = new LongAdder();
+        final LongAdder duration = new LongAdder();
     }
 
+    // the counts and the sums of the durations are striped so that they don't contend, and are kept apart
+    // so that neither can overflow into the other
     static class Counters {
-        private static final long MAX_COUNT = 524287L;
-        private static final long MAX_DURATION = 17592186044415L;
-
-        public final AtomicInteger exceptions = new AtomicInteger(0);
+        final LongAdder exceptions = new LongAdder();
 
-        final AtomicLong requestsAndDurations = new AtomicLong(0);
-        final AtomicInteger unsuccessfulRequests = new AtomicInteger(0);
+        final LongAdder requests = new LongAdder();
+        final LongAdder requestsDuration = new LongAdder();
+        final LongAdder unsuccessfulRequests = new LongAdder();
+        final LatencySketch requestsDurationSketch = new LatencySketch();
 
-        final AtomicLong rddsAndDuations = new AtomicLong(0);
-        final AtomicInteger unsuccessfulRdds = new AtomicInteger(0);
+        final LongAdder rdds = new LongAdder();
+        final LongAdder rddsDuration = new LongAdder();
+        final LongAdder unsuccessfulRdds = new LongAdder();
+        final LatencySketch rddsDurationSketch = new LatencySketch();
 
-        static long encodeCountAndDuration(long  count, long duration) {
-            if (count > MAX_COUNT || duration > MAX_DURATION) {
-                return 0;
-            }
+        // null when the operation breakdown is disabled
+        final ConcurrentMap<String, OperationCounters> operations;
+        final int maxOperations;
 
-            return (count << 44) + duration;
+        Counters(int maxOperations) {
+            this.maxOperations = maxOperations;
+            operations = maxOperations > 0 ? new ConcurrentHashMap<>() : null;
         }
 
-        static CountAndDuration decodeCountAndDuration(long countAndDuration) {
-            return new CountAndDuration(countAndDuration >> 44, countAndDuration & MAX_DURATION);
+        OperationCounters getOperationCounters(String name) {
+            // the map takes no null key, a request without a name is one of the other operations
+            if (name == null) {
+                name = OTHER_OPERATIONS;
+            }
+            OperationCounters operationCounters = operations.get(name);
+            if (operationCounters != null) {
+                return operationCounters;
+            }
+            if (operations.size() >= maxOperations) {
+                name = OTHER_OPERATIONS;
+            }
+            return operations.computeIfAbsent(name, k -> new OperationCounters());
         }
     }
 
@@ -124,6 +161,9 @@ public enum QuickPulseDataCollector {
     private final MemoryMXBean memory;
     private final CpuPerformanceCounterCalculator cpuPerformanceCounterCalculator;
 
+    // 0 disables the breakdown of the requests by name
+    private volatile int maxOperations;
+
     QuickPulseDataCollector() {
         CpuPerformanceCounterCalculator temp;
         try {
@@ -153,17 +193,25 @@ public enum QuickPulseDataCollector {
     public synchronized void enable(final String ikey) {
         this.ikey = ikey;
         this.config = null;
-        counters.set(new Counters());
+        counters.set(new Counters(maxOperations));
     }
 
     public synchronized void enable(TelemetryConfiguration config) {
         this.config = config;
         this.ikey = null;
-        counters.set(new Counters());
+        counters.set(new Counters(maxOperations));
+    }
+
+    /**
+     * Breaks the requests down by name, up to {@code maxOperations} names per interval, starting with the next interval.
+     * @param maxOperations 0 to disable the breakdown
+     */
+    public void setMaxOperations(int maxOperations) {
+        this.maxOperations = Math.max(0, maxOperations);
     }
 
     public synchronized FinalCounters getAndRestart() {
-        final Counters currentCounters = counters.getAndSet(new Counters());
+        final Counters currentCounters = counters.getAndSet(new Counters(maxOperations));
         if (currentCounters != null) {
             return new FinalCounters(currentCounters, memory, cpuPerformanceCounterCalculator);
         }
@@ -181,21 +229,49 @@ public enum QuickPulseDataCollector {
     }
 
     public void add(Telemetry telemetry) {
-        if (!telemetry.getContext().getInstrumentationKey().equals(getInstrumentationKey())) {
+        if (telemetry instanceof DirectTelemetry) {
+            // checked first so that its full context is not built just for the instrumentation key
+            addDirect((DirectTelemetry<?>) telemetry);
+            return;
+        }
+
+        // a tracked BaseTelemetry would merge the base context into its context just for the instrumentation key
+        String instrumentationKey = telemetry instanceof BaseTelemetry
+                ? ((BaseTelemetry<?>) telemetry).getInstrumentationKey()
+                : telemetry.getContext().getInstrumentationKey();
+        if (!getInstrumentationKey().equals(instrumentationKey)) {
             return;
         }
 
         if (telemetry instanceof RequestTelemetry) {
             RequestTelemetry requestTelemetry = (RequestTelemetry)telemetry;
-            addRequest(requestTelemetry);
+            addRequest(requestTelemetry.getName(), requestTelemetry.getDuration(), requestTelemetry.isSuccess());
         } else if (telemetry instanceof RemoteDependencyTelemetry) {
-            addDependency((RemoteDependencyTelemetry) telemetry);
+            RemoteDependencyTelemetry dependencyTelemetry = (RemoteDependencyTelemetry) telemetry;
+            addDependency(dependencyTelemetry.getDuration(), dependencyTelemetry.getSuccess());
         } else if (telemetry instanceof ExceptionTelemetry) {
             addException();
         }
     }
 
-    private synchronized String getInstrumentationKey() {
+    private void addDirect(DirectTelemetry<?> telemetry) {
+        if (!getInstrumentationKey().equals(telemetry.getInstrumentationKey())) {
+            return;
+        }
+
+        Domain data = telemetry.getData();
+        if (data instanceof RequestData) {
+            RequestData requestData = (RequestData) data;
+            addRequest(requestData.getName(), requestData.getDuration(), requestData.getSuccess());
+        } else if (data instanceof RemoteDependencyData) {
+            RemoteDependencyData dependencyData = (RemoteDependencyData) data;
+            addDependency(dependencyData.getDuration(), dependencyData.getSuccess());
+        }
+    }
+
+    // not synchronized, this is called for every telemetry item
+    private String getInstrumentationKey() {
+        TelemetryConfiguration config = this.config;
         if (config != null) {
             return config.getInstrumentationKey();
         } else {
@@ -203,15 +279,17 @@ public enum QuickPulseDataCollector {
         }
     }
 
-    private void addDependency(RemoteDependencyTelemetry telemetry) {
+    private void addDependency(Duration duration, boolean success) {
         Counters counters = this.counters.get();
         if (counters == null) {
             return;
         }
-        counters.rddsAndDuations.addAndGet(
-                Counters.encodeCountAndDuration(1, telemetry.getDuration().getTotalMilliseconds()));
-        if (!telemetry.getSuccess()) {
-            counters.unsuccessfulRdds.incrementAndGet();
+        long millis = duration.getTotalMilliseconds();
+        counters.rdds.increment();
+        counters.rddsDuration.add(millis);
+        counters.rddsDurationSketch.record(millis);
+        if (!success) {
+            counters.unsuccessfulRdds.increment();
         }
     }
 
@@ -221,18 +299,29 @@ public enum QuickPulseDataCollector {
             return;
         }
 
-        counters.exceptions.incrementAndGet();
+        counters.exceptions.increment();
     }
 
-    private void addRequest(RequestTelemetry requestTelemetry) {
+    private void addRequest(String name, Duration duration, boolean success) {
         Counters counters = this.counters.get();
         if (counters == null) {
             return;
         }
 
-        counters.requestsAndDurations.addAndGet(Counters.encodeCountAndDuration(1, requestTelemetry.getDuration().getTotalMilliseconds()));
-        if (!requestTelemetry.isSuccess()) {
-            counters.unsuccessfulRequests.incrementAndGet();
+        long millis = duration.getTotalMilliseconds();
+        counters.requests.increment();
+        counters.requestsDuration.add(millis);
+        counters.requestsDurationSketch.record(millis);
+        if (!success) {
+            counters.unsuccessfulRequests.increment();
+        }
+        if (counters.operations != null) {
+            OperationCounters operationCounters = counters.getOperationCounters(name);
+            operationCounters.count.increment();
+            operationCounters.duration.add(millis);
+            if (!success) {
+                operationCounters.unsuccessful.increment();
+            }
         }
     }
 }
@@ -0,0 +1,205 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.quickpulse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import com.google.common.base.Preconditions;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * Encodes the Live Metrics documents into pooled byte buffers, from the constant parts of the document which are
+ * encoded once by the caller, and the numbers which are written straight into the buffer.
+ *
+ * Once a payload has been posted (or dropped), it must be given back with {@link #release(HttpPost)} so that its
+ * buffer is reused by the next payload.
+ */
+final class QuickPulsePayloadEncoder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // the fraction digits written for the numbers which are not integers
+    private static final int FRACTION_DIGITS = 6;
+    private static final long FRACTION_SCALE = 1000000L;
+    // beyond this, the scaled value no longer fits in a long
+    private static final double MAX_FIXED_POINT = 9.0E12;
+
+    private static final byte[] DIGITS = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    /// The idle payloads, beyond its capacity the released payloads are left to the garbage collector
+    private final ArrayBlockingQueue<Payload> pool;
+
+    QuickPulsePayloadEncoder(int poolSize) {
+        pool = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    static byte[] encode(String constant) {
+        return constant.getBytes(StandardCharsets.UTF_8);
+    }
+
+    Payload acquire() {
+        Payload payload = pool.poll();
+        if (payload == null) {
+            return new Payload(this);
+        }
+        payload.length = 0;
+        return payload;
+    }
+
+    static void release(HttpPost post) {
+        HttpEntity entity = post.getEntity();
+        if (entity instanceof Payload) {
+            ((Payload) entity).release();
+        }
+    }
+
+    static final class Payload extends AbstractHttpEntity {
+
+        private final QuickPulsePayloadEncoder encoder;
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int length;
+
+        private Payload(QuickPulsePayloadEncoder encoder) {
+            this.encoder = encoder;
+        }
+
+        Payload append(byte[] constant) {
+            ensureCapacity(constant.length);
+            System.arraycopy(constant, 0, bytes, length, constant.length);
+            length += constant.length;
+            return this;
+        }
+
+        Payload append(long value) {
+            if (value == Long.MIN_VALUE) {
+                // cannot be negated
+                return append(encode(Long.toString(value)));
+            }
+            // 19 digits and the sign
+            ensureCapacity(20);
+            if (value < 0) {
+                bytes[length++] = '-';
+                value = -value;
+            }
+            int end = length + digitCount(value);
+            int i = end;
+            do {
+                bytes[--i] = DIGITS[(int) (value % 10)];
+                value /= 10;
+            } while (value != 0);
+            length = end;
+            return this;
+        }
+
+        // writes the integers as "12.0" like Double.toString, and the other numbers with up to 6 fraction digits
+        Payload append(double value) {
+            if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= MAX_FIXED_POINT) {
+                // rare, not worth avoiding the allocation
+                return append(encode(Double.toString(value)));
+            }
+            long scaled = Math.round(Math.abs(value) * FRACTION_SCALE);
+            if (value < 0 && scaled != 0) {
+                ensureCapacity(1);
+                bytes[length++] = '-';
+            }
+            append(scaled / FRACTION_SCALE);
+            long fraction = scaled % FRACTION_SCALE;
+            ensureCapacity(1 + FRACTION_DIGITS);
+            bytes[length++] = '.';
+            if (fraction == 0) {
+                bytes[length++] = '0';
+                return this;
+            }
+            int digits = FRACTION_DIGITS;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            int end = length + digits;
+            for (int i = end; i > length; ) {
+                bytes[--i] = DIGITS[(int) (fraction % 10)];
+                fraction /= 10;
+            }
+            length = end;
+            return this;
+        }
+
+        void release() {
+            encoder.pool.offer(this);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public InputStream getContent() {
+            return new ByteArrayInputStream(bytes, 0, length);
+        }
+
+        @Override
+        public void writeTo(OutputStream outStream) throws IOException {
+            Preconditions.checkNotNull(outStream, "outStream must be non-null value");
+            outStream.write(bytes, 0, length);
+            outStream.flush();
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        private static int digitCount(long value) {
+            int count = 1;
+            while (value >= 10) {
+                value /= 10;
+                count++;
+            }
+            return count;
+        }
+    }
+}
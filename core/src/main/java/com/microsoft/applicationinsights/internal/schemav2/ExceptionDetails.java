@@ -24,6 +24,7 @@
 package com.microsoft.applicationinsights.internal.schemav2;
 
 import com.google.common.base.Preconditions;
+import com.microsoft.applicationinsights.telemetry.CachedStackFrames;
 import com.microsoft.applicationinsights.telemetry.JsonSerializable;
 import com.microsoft.applicationinsights.telemetry.JsonTelemetryDataSerializer;
 
@@ -149,6 +150,9 @@ public class ExceptionDetails
     public List<StackFrame> getParsedStack() {
         if (this.parsedStack == null) {
             this.parsedStack = new ArrayList<>();
+        } else if (this.parsedStack instanceof CachedStackFrames) {
+            // the cached frames are shared with other exceptions
+            this.parsedStack = ((CachedStackFrames) this.parsedStack).toMutableList();
         }
         return this.parsedStack;
     }
@@ -24,11 +24,17 @@ package com.microsoft.applicationinsights.internal.statsbeat;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
 
-import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * The counters are updated without taking any lock, from the threads sending the transmissions and exporting the spans.
+ *
+ * Each interval has its own generation of counters, which {@link #send()} swaps for a new one before reading it.
+ * The increments which still land on a generation after it has been read
+ * (the threads which read {@link #current} right before the swap) are reported with the next interval.
+ */
 public class NetworkStatsbeat extends BaseStatsbeat {
 
     private static final String REQUEST_SUCCESS_COUNT_METRIC_NAME = "Request Success Count";
@@ -42,7 +48,9 @@ public class NetworkStatsbeat extends BaseStatsbeat {
 
     private volatile IntervalMetrics current;
 
-    private final Object lock = new Object();
+    // only accessed by send(), which is only called from the single statsbeat thread
+    private IntervalMetrics previous;
+    private Snapshot previousSnapshot;
 
     NetworkStatsbeat(TelemetryClient telemetryClient, long interval) {
         super(telemetryClient, interval);
@@ -51,89 +59,88 @@ public class NetworkStatsbeat extends BaseStatsbeat {
 
     @Override
     protected void send() {
-        IntervalMetrics local;
-        synchronized (lock) {
-            local = current;
-            current = new IntervalMetrics();
+        IntervalMetrics local = current;
+        current = new IntervalMetrics();
+
+        Snapshot snapshot = local.snapshot();
+        Snapshot reported = snapshot;
+        if (previous != null) {
+            reported = reported.plus(previous.snapshot().minus(previousSnapshot));
         }
+        previous = local;
+        previousSnapshot = snapshot;
 
         // send instrumentation as a base64 encoded string instead of the UTF-8 string
         String instrumentation = Instrumentations.encode(local.instrumentationList);
 
-        if (local.requestSuccessCount.get() != 0) {
-            MetricTelemetry requestSuccessCountSt = createStatsbeatTelemetry(REQUEST_SUCCESS_COUNT_METRIC_NAME, local.requestSuccessCount.get());
+        if (reported.requestSuccessCount != 0) {
+            MetricTelemetry requestSuccessCountSt = createStatsbeatTelemetry(REQUEST_SUCCESS_COUNT_METRIC_NAME, reported.requestSuccessCount);
             requestSuccessCountSt.getProperties().put(INSTRUMENTATION_CUSTOM_DIMENSION, instrumentation);
             telemetryClient.track(requestSuccessCountSt);
         }
 
-        if (local.requestFailureCount.get() != 0) {
-            MetricTelemetry requestFailureCountSt = createStatsbeatTelemetry(REQUEST_FAILURE_COUNT_METRIC_NAME, local.requestFailureCount.get());
+        if (reported.requestFailureCount != 0) {
+            MetricTelemetry requestFailureCountSt = createStatsbeatTelemetry(REQUEST_FAILURE_COUNT_METRIC_NAME, reported.requestFailureCount);
             requestFailureCountSt.getProperties().put(INSTRUMENTATION_CUSTOM_DIMENSION, instrumentation);
             telemetryClient.track(requestFailureCountSt);
         }
 
-        double durationAvg = local.getRequestDurationAvg();
+        double durationAvg = reported.getRequestDurationAvg();
         if (durationAvg != 0) {
             MetricTelemetry requestDurationSt = createStatsbeatTelemetry(REQUEST_DURATION_METRIC_NAME, durationAvg);
             requestDurationSt.getProperties().put(INSTRUMENTATION_CUSTOM_DIMENSION, instrumentation);
             telemetryClient.track(requestDurationSt);
         }
 
-        if (local.retryCount.get() != 0) {
-            MetricTelemetry retryCountSt = createStatsbeatTelemetry(RETRY_COUNT_METRIC_NAME, local.retryCount.get());
+        if (reported.retryCount != 0) {
+            MetricTelemetry retryCountSt = createStatsbeatTelemetry(RETRY_COUNT_METRIC_NAME, reported.retryCount);
             retryCountSt.getProperties().put(INSTRUMENTATION_CUSTOM_DIMENSION, instrumentation);
             telemetryClient.track(retryCountSt);
         }
 
-        if (local.throttlingCount.get() != 0) {
-            MetricTelemetry throttleCountSt = createStatsbeatTelemetry(THROTTLE_COUNT_METRIC_NAME, local.throttlingCount.get());
+        if (reported.throttlingCount != 0) {
+            MetricTelemetry throttleCountSt = createStatsbeatTelemetry(THROTTLE_COUNT_METRIC_NAME, reported.throttlingCount);
             throttleCountSt.getProperties().put(INSTRUMENTATION_CUSTOM_DIMENSION, instrumentation);
             telemetryClient.track(throttleCountSt);
         }
 
-        if (local.exceptionCount.get() != 0) {
-            MetricTelemetry exceptionCountSt = createStatsbeatTelemetry(EXCEPTION_COUNT_METRIC_NAME, local.exceptionCount.get());
+        if (reported.exceptionCount != 0) {
+            MetricTelemetry exceptionCountSt = createStatsbeatTelemetry(EXCEPTION_COUNT_METRIC_NAME, reported.exceptionCount);
             exceptionCountSt.getProperties().put(INSTRUMENTATION_CUSTOM_DIMENSION, instrumentation);
             telemetryClient.track(exceptionCountSt);
         }
     }
 
-    // this is used by Exporter
+    // this is used by Exporter, for every span
     public void addInstrumentation(String instrumentation) {
-        synchronized (lock) {
-            current.instrumentationList.add(instrumentation);
+        Set<String> instrumentationList = current.instrumentationList;
+        // the same few instrumentations are added over and over again during an interval,
+        // checking first avoids locking the hash bin when the instrumentation is already there
+        if (!instrumentationList.contains(instrumentation)) {
+            instrumentationList.add(instrumentation);
         }
     }
 
     public void incrementRequestSuccessCount(long duration) {
-        synchronized (lock) {
-            current.requestSuccessCount.incrementAndGet();
-            current.totalRequestDuration.getAndAdd(duration);
-        }
+        IntervalMetrics local = current;
+        local.requestSuccessCount.increment();
+        local.totalRequestDuration.add(duration);
     }
 
     public void incrementRequestFailureCount() {
-        synchronized (lock) {
-            current.requestFailureCount.incrementAndGet();
-        }
+        current.requestFailureCount.increment();
     }
 
     public void incrementRetryCount() {
-        synchronized (lock) {
-            current.retryCount.incrementAndGet();
-        }
+        current.retryCount.increment();
     }
 
     public void incrementThrottlingCount() {
-        synchronized (lock) {
-            current.throttlingCount.incrementAndGet();
-        }
+        current.throttlingCount.increment();
     }
 
     void incrementExceptionCount() {
-        synchronized (lock) {
-            current.exceptionCount.incrementAndGet();
-        }
+        current.exceptionCount.increment();
     }
 
     // only used by tests
@@ -143,30 +150,30 @@ public class NetworkStatsbeat extends BaseStatsbeat {
 
     // only used by tests
     long getRequestSuccessCount() {
-        return current.requestSuccessCount.get();
+        return current.requestSuccessCount.sum();
     }
 
     // only used by tests
     long getRequestFailureCount() {
-        return current.requestFailureCount.get();
+        return current.requestFailureCount.sum();
     }
 
     // only used by tests
-    double getRequestDurationAvg() { return current.getRequestDurationAvg(); }
+    double getRequestDurationAvg() { return current.snapshot().getRequestDurationAvg(); }
 
     // only used by tests
     long getRetryCount() {
-        return current.retryCount.get();
+        return current.retryCount.sum();
     }
 
     // only used by tests
     long getThrottlingCount() {
-        return current.throttlingCount.get();
+        return current.throttlingCount.sum();
     }
 
     // only used by tests
     long getExceptionCount() {
-        return current.exceptionCount.get();
+        return current.exceptionCount.sum();
     }
 
     // only used by tests
@@ -175,19 +182,61 @@ public class NetworkStatsbeat extends BaseStatsbeat {
     }
 
     private static class IntervalMetrics {
-        private final Set<String> instrumentationList = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        private final AtomicLong requestSuccessCount = new AtomicLong();
-        private final AtomicLong requestFailureCount = new AtomicLong();
+        private final Set<String> instrumentationList = ConcurrentHashMap.newKeySet();
+        private final LongAdder requestSuccessCount = new LongAdder();
+        private final LongAdder requestFailureCount = new LongAdder();
         // request duration count only counts request success.
-        private final AtomicLong totalRequestDuration = new AtomicLong(); // duration in milliseconds
-        private final AtomicLong retryCount = new AtomicLong();
-        private final AtomicLong throttlingCount = new AtomicLong();
-        private final AtomicLong exceptionCount = new AtomicLong();
+        private final LongAdder totalRequestDuration = new LongAdder(); // duration in milliseconds
+        private final LongAdder retryCount = new LongAdder();
+        private final LongAdder throttlingCount = new LongAdder();
+        private final LongAdder exceptionCount = new LongAdder();
+
+        private Snapshot snapshot() {
+            return new Snapshot(requestSuccessCount.sum(), requestFailureCount.sum(), totalRequestDuration.sum(),
+                    retryCount.sum(), throttlingCount.sum(), exceptionCount.sum());
+        }
+    }
+
+    private static class Snapshot {
+        private final long requestSuccessCount;
+        private final long requestFailureCount;
+        private final long totalRequestDuration;
+        private final long retryCount;
+        private final long throttlingCount;
+        private final long exceptionCount;
+
+        private Snapshot(long requestSuccessCount, long requestFailureCount, long totalRequestDuration,
+                         long retryCount, long throttlingCount, long exceptionCount) {
+            this.requestSuccessCount = requestSuccessCount;
+            this.requestFailureCount = requestFailureCount;
+            this.totalRequestDuration = totalRequestDuration;
+            this.retryCount = retryCount;
+            this.throttlingCount = throttlingCount;
+            this.exceptionCount = exceptionCount;
+        }
+
+        private Snapshot plus(Snapshot other) {
+            return new Snapshot(requestSuccessCount + other.requestSuccessCount,
+                    requestFailureCount + other.requestFailureCount,
+                    totalRequestDuration + other.totalRequestDuration,
+                    retryCount + other.retryCount,
+                    throttlingCount + other.throttlingCount,
+                    exceptionCount + other.exceptionCount);
+        }
+
+        private Snapshot minus(Snapshot other) {
+            return new Snapshot(requestSuccessCount - other.requestSuccessCount,
+                    requestFailureCount - other.requestFailureCount,
+                    totalRequestDuration - other.totalRequestDuration,
+                    retryCount - other.retryCount,
+                    throttlingCount - other.throttlingCount,
+                    exceptionCount - other.exceptionCount);
+        }
 
         private double getRequestDurationAvg() {
-            double sum = totalRequestDuration.get();
-            if (requestSuccessCount.get() != 0) {
-                return sum / requestSuccessCount.get();
+            double sum = totalRequestDuration;
+            if (requestSuccessCount != 0) {
+                return sum / requestSuccessCount;
             }
 
             return  sum;
@@ -23,6 +23,10 @@ package com.microsoft.applicationinsights.internal.util;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.Date;
 
 /**
@@ -32,9 +36,84 @@ public class DateTimeUtils {
 
     private static final String ROUND_TRIP_DATE_FORMAT = "yyyy-MM-dd'T'HH";
 
+    // index of the milliseconds in "yyyy-MM-ddTHH:mm:ss.SSS+HHMM"
+    private static final int MILLIS_INDEX = 20;
+
+    /**
+     * The formatted form of one whole second, telemetry timestamps are mostly increasing
+     * so consecutive items tend to fall in the same second and only need their millis patched in.
+     */
+    private static final class FormattedSecond {
+        private final long epochSecond;
+        private final char[] template;
+
+        private FormattedSecond(long epochSecond) {
+            this.epochSecond = epochSecond;
+            ZoneOffset offset = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochSecond(epochSecond));
+            LocalDateTime local = LocalDateTime.ofEpochSecond(epochSecond, 0, offset);
+
+            StringBuilder sb = new StringBuilder(28);
+            appendPadded(sb, local.getYear(), 4);
+            sb.append('-');
+            appendPadded(sb, local.getMonthValue(), 2);
+            sb.append('-');
+            appendPadded(sb, local.getDayOfMonth(), 2);
+            sb.append('T');
+            appendPadded(sb, local.getHour(), 2);
+            sb.append(':');
+            appendPadded(sb, local.getMinute(), 2);
+            sb.append(':');
+            appendPadded(sb, local.getSecond(), 2);
+            sb.append(".000");
+            int offsetMinutes = offset.getTotalSeconds() / 60;
+            sb.append(offsetMinutes < 0 ? '-' : '+');
+            offsetMinutes = Math.abs(offsetMinutes);
+            appendPadded(sb, offsetMinutes / 60, 2);
+            appendPadded(sb, offsetMinutes % 60, 2);
+
+            template = new char[sb.length()];
+            sb.getChars(0, sb.length(), template, 0);
+        }
+
+        private static void appendPadded(StringBuilder sb, int value, int width) {
+            String digits = Integer.toString(value);
+            for (int i = digits.length(); i < width; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        }
+    }
+
+    // racy by design: losing an update only means the next caller formats the second again
+    private static volatile FormattedSecond lastFormattedSecond = new FormattedSecond(0);
+
     private DateTimeUtils() {
     }
 
+    /**
+     * Formats the given date the same way as {@link LocalStringsUtils#getDateFormatter()}
+     * (e.g. '2015-05-26T07:00:14.123-0700'), without taking a lock or allocating a formatter.
+     * @param date The date to format.
+     * @return The ISO-8601 string in the default time zone.
+     */
+    public static String formatAsIso8601(Date date) {
+        long millis = date.getTime();
+        long epochSecond = Math.floorDiv(millis, 1000);
+        int millisOfSecond = (int) Math.floorMod(millis, 1000);
+
+        FormattedSecond formattedSecond = lastFormattedSecond;
+        if (formattedSecond.epochSecond != epochSecond) {
+            formattedSecond = new FormattedSecond(epochSecond);
+            lastFormattedSecond = formattedSecond;
+        }
+
+        char[] chars = formattedSecond.template.clone();
+        chars[MILLIS_INDEX] = (char) ('0' + millisOfSecond / 100);
+        chars[MILLIS_INDEX + 1] = (char) ('0' + millisOfSecond / 10 % 10);
+        chars[MILLIS_INDEX + 2] = (char) ('0' + millisOfSecond % 10);
+        return new String(chars);
+    }
+
     /**
      * Parses the given round-trip date string (e.g. '2015-05-26T07') into Date object.
      * @param roundTripString The string to parse.
@@ -1,7 +1,6 @@
 package com.microsoft.applicationinsights.telemetry;
 
 import com.microsoft.applicationinsights.internal.schemav2.Domain;
-import com.microsoft.applicationinsights.internal.schemav2.Envelope;
 
 /**
  * Created by gupele on 12/4/2016.
@@ -9,10 +8,11 @@ import com.microsoft.applicationinsights.internal.schemav2.Envelope;
 public abstract class BaseSampleSourceTelemetry<T extends Domain> extends BaseTelemetry<T> implements SupportSampling {
 
     @Override
-    protected void setSampleRate(Envelope envelope) {
+    protected double getSampleRate() {
         Double currentSP = getSamplingPercentage();
         if (currentSP != null) {
-            envelope.setSampleRate(currentSP);
+            return currentSP;
         }
+        return super.getSampleRate();
     }
 }
@@ -22,16 +22,13 @@
 package com.microsoft.applicationinsights.telemetry;
 
 import java.io.IOException;
-import java.text.DateFormat;
 import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.base.Charsets;
-import com.microsoft.applicationinsights.internal.schemav2.Data;
 import com.microsoft.applicationinsights.internal.schemav2.Domain;
-import com.microsoft.applicationinsights.internal.schemav2.Envelope;
-import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
+import com.microsoft.applicationinsights.internal.util.DateTimeUtils;
 import com.squareup.moshi.JsonWriter;
 import okio.Buffer;
 import org.apache.commons.lang3.StringUtils;
@@ -41,6 +38,8 @@ import org.apache.commons.lang3.StringUtils;
  */
 public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
     private TelemetryContext context;
+    // volatile, as getContext() may merge it into the context and clear it while the item is being sent
+    private volatile ContextSnapshot baseContext;
     private Date timestamp;
     private String telemetryName;
 
@@ -49,11 +48,7 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
 
     public static final String TELEMETRY_NAME_PREFIX = "Microsoft.ApplicationInsights.";
 
-    private static final ThreadLocal<DateFormat> dateFormat = new ThreadLocal<DateFormat>() {
-        protected DateFormat initialValue() {
-            return LocalStringsUtils.getDateFormatter();
-        }
-    };
+    private static final int ENVELOPE_VERSION = 1;
 
     protected BaseTelemetry() {
     }
@@ -98,13 +93,34 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
     /**
      * Gets the context associated with the current telemetry item.
      *
+     * Once the item was tracked, the shared tags of the client's base context are merged in on the first call,
+     * so the context looks the same as if they had been copied in by {@code track()}.
+     *
      * @return The context
      */
     @Override
     public TelemetryContext getContext() {
+        ContextSnapshot base = baseContext;
+        if (base != null) {
+            Map<String, String> tags = context.getTags();
+            for (Map.Entry<String, String> entry : base.getTags().entrySet()) {
+                if (ContextSnapshot.isSharedTagApplied(entry.getKey(), tags)) {
+                    tags.put(entry.getKey(), entry.getValue());
+                }
+            }
+            // the tags are now part of this item's context, serialize() no longer needs the base context
+            baseContext = null;
+        }
         return context;
     }
 
+    /**
+     * @return The instrumentation key, without merging the base context into the context like {@link #getContext()}
+     */
+    public String getInstrumentationKey() {
+        return context.getInstrumentationKey();
+    }
+
     /**
      * Gets a dictionary of application-defined property names and values providing additional information about this event.
      *
@@ -115,9 +131,36 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
         return this.context.getProperties();
     }
 
+    /**
+     * This method is part of the Application Insights infrastructure. Do not call it directly.
+     *
+     * Attaches the base context of the client that tracks this item. Its tags are merged into the envelope's
+     * tags when this item is serialized, instead of being copied into this item's context,
+     * unless {@link #getContext()} is called.
+     *
+     * @param baseContext The client's base context
+     */
+    public void setBaseContext(ContextSnapshot baseContext) {
+        this.baseContext = baseContext;
+        // do not overwrite if the user has explicitly set the instrumentation key
+        // (either via 2.x SDK or ai.preview.instrumentation_key span attribute)
+        if (StringUtils.isEmpty(context.getInstrumentationKey())) {
+            context.setInstrumentationKey(baseContext.getInstrumentationKey(), baseContext.getNormalizedInstrumentationKey());
+        }
+        // the base context contains properties:
+        // * "customDimensions" provided by json configuration
+        if (!baseContext.getProperties().isEmpty()) {
+            context.getProperties().putAll(baseContext.getProperties());
+        }
+    }
+
     /**
      * Serializes this object in JSON format.
      *
+     * The envelope and its data wrapper are written field by field straight from this telemetry's state,
+     * producing the same JSON as {@link com.microsoft.applicationinsights.internal.schemav2.Envelope}
+     * without allocating the intermediate object graph.
+     *
      * @param writer The writer that helps with serializing into Json format
      * @throws IOException The exception that might be thrown during the serialization
      */
@@ -128,19 +171,25 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
             telemetryName = this.getEnvelopName();
         }
 
-        Envelope envelope = new Envelope();
-        envelope.setName(telemetryName);
-
-        setSampleRate(envelope);
-        envelope.setIKey(context.getInstrumentationKey());
-        Data<T> tmp = new Data<>();
-        tmp.setBaseData(getData());
-        tmp.setBaseType(this.getBaseTypeName());
-        envelope.setData(tmp);
-        if (getTimestamp() != null) envelope.setTime(dateFormat.get().format(getTimestamp()));
-        envelope.setTags(context.getTags());
+        writer.write("ver", ENVELOPE_VERSION);
+        writer.writeRequired("name", telemetryName, 1024);
+        writer.writeRequired("time", timestamp == null ? null : DateTimeUtils.formatAsIso8601(timestamp), 64);
+        double sampleRate = getSampleRate();
+        if (sampleRate > 0.0d) {
+            writer.write("sampleRate", sampleRate);
+        }
+        writer.write("iKey", context.getInstrumentationKey(), 40);
+        ContextSnapshot base = baseContext;
+        if (base == null) {
+            writer.write("tags", context.getTags());
+        } else {
+            base.writeTags(writer, context.getTags(), false);
+        }
 
-        envelope.serialize(writer);
+        writer.beginObject("data");
+        writer.writeRequired("baseType", getBaseTypeName(), 1000);
+        writer.write("baseData", getData());
+        writer.endObject();
     }
 
     /**
@@ -184,7 +233,11 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
      */
     protected abstract T getData();
 
-    protected void setSampleRate(Envelope envelope) {
+    /**
+     * @return The sample rate to put on the envelope, 100 unless the telemetry was sampled
+     */
+    protected double getSampleRate() {
+        return 100.0;
     }
 
     public String getEnvelopName() {
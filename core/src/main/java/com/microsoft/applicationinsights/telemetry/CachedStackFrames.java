@@ -0,0 +1,157 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Strings;
+import com.microsoft.applicationinsights.internal.schemav2.StackFrame;
+import okio.ByteString;
+
+/**
+ * The parsed stack of a stack trace, shared by all the exceptions which have the same stack trace.
+ *
+ * The frames are created once per distinct stack trace, and serialized once as well: {@link JsonTelemetryDataSerializer}
+ * writes the cached JSON instead of the frames. This list is immutable, see {@link #toMutableList()}.
+ */
+public final class CachedStackFrames extends AbstractList<StackFrame> implements RandomAccess {
+
+    // the cache is cleared when full, so that the stack traces which are still thrown are cached again
+    private static final int MAX_CACHED_STACK_TRACES = 1000;
+
+    private static final ConcurrentMap<Key, CachedStackFrames> cache = new ConcurrentHashMap<>();
+
+    private final StackTraceElement[] trace;
+    private final StackFrame[] frames;
+
+    /// Lazily serialized, racing threads may serialize it more than once which is harmless
+    private volatile ByteString json;
+
+    private CachedStackFrames(StackTraceElement[] trace) {
+        this.trace = trace;
+        this.frames = toFrames(trace);
+    }
+
+    static CachedStackFrames get(StackTraceElement[] trace) {
+        Key key = new Key(trace);
+        CachedStackFrames stackFrames = cache.get(key);
+        if (stackFrames == null) {
+            if (cache.size() >= MAX_CACHED_STACK_TRACES) {
+                cache.clear();
+            }
+            stackFrames = new CachedStackFrames(trace);
+            CachedStackFrames existing = cache.putIfAbsent(key, stackFrames);
+            if (existing != null) {
+                stackFrames = existing;
+            }
+        }
+        return stackFrames;
+    }
+
+    // visible for testing
+    static void clearCache() {
+        cache.clear();
+    }
+
+    @Override
+    public StackFrame get(int index) {
+        return frames[index];
+    }
+
+    @Override
+    public int size() {
+        return frames.length;
+    }
+
+    /**
+     * @return new frames, which are not shared with other exceptions and can be modified
+     */
+    public List<StackFrame> toMutableList() {
+        return new ArrayList<>(Arrays.asList(toFrames(trace)));
+    }
+
+    ByteString getJson() throws IOException {
+        ByteString json = this.json;
+        if (json == null) {
+            json = JsonTelemetryDataSerializer.serializeArray(frames);
+            this.json = json;
+        }
+        return json;
+    }
+
+    private static StackFrame[] toFrames(StackTraceElement[] trace) {
+        List<StackFrame> frames = new ArrayList<>(trace.length);
+        for (int idx = 0; idx < trace.length; idx++) {
+            StackTraceElement elem = trace[idx];
+
+            if (elem.isNativeMethod()) {
+                continue;
+            }
+
+            String className = elem.getClassName();
+
+            StackFrame frame = new StackFrame();
+            frame.setLevel(idx);
+            frame.setFileName(elem.getFileName());
+            frame.setLine(elem.getLineNumber());
+
+            if (!Strings.isNullOrEmpty(className)) {
+                frame.setMethod(className + "." + elem.getMethodName());
+            } else {
+                frame.setMethod(elem.getMethodName());
+            }
+
+            frames.add(frame);
+        }
+        return frames.toArray(new StackFrame[0]);
+    }
+
+    // the hash code of each StackTraceElement only combines the (cached) hash codes of its strings and its line number
+    private static final class Key {
+
+        private final StackTraceElement[] trace;
+        private final int hashCode;
+
+        private Key(StackTraceElement[] trace) {
+            this.trace = trace;
+            this.hashCode = Arrays.hashCode(trace);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && hashCode == ((Key) obj).hashCode && Arrays.equals(trace, ((Key) obj).trace);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
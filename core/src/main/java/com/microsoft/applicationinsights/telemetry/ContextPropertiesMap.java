@@ -0,0 +1,152 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The properties of a {@link TelemetryContext}, which count their modifications so that a
+ * {@link ContextSnapshot} can tell whether it is still current without comparing the entries.
+ *
+ * Only the modifications made through the methods of this map are counted, not the ones made
+ * through its key, value or entry views.
+ */
+final class ContextPropertiesMap implements ConcurrentMap<String, String> {
+
+    private final ConcurrentMap<String, String> properties = new ConcurrentHashMap<>();
+
+    /// Changes after every modification of the properties through this map, see ContextSnapshot
+    private final AtomicInteger version = new AtomicInteger();
+
+    int getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public String putIfAbsent(String key, String value) {
+        String previous = properties.putIfAbsent(key, value);
+        version.incrementAndGet();
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        boolean removed = properties.remove(key, value);
+        version.incrementAndGet();
+        return removed;
+    }
+
+    @Override
+    public boolean replace(String key, String oldValue, String newValue) {
+        boolean replaced = properties.replace(key, oldValue, newValue);
+        version.incrementAndGet();
+        return replaced;
+    }
+
+    @Override
+    public String replace(String key, String value) {
+        String previous = properties.replace(key, value);
+        version.incrementAndGet();
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return properties.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return properties.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return properties.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return properties.containsValue(value);
+    }
+
+    @Override
+    public String get(Object key) {
+        return properties.get(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        String previous = properties.put(key, value);
+        version.incrementAndGet();
+        return previous;
+    }
+
+    @Override
+    public String remove(Object key) {
+        String previous = properties.remove(key);
+        version.incrementAndGet();
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> m) {
+        properties.putAll(m);
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void clear() {
+        properties.clear();
+        version.incrementAndGet();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return properties.keySet();
+    }
+
+    @Override
+    public Collection<String> values() {
+        return properties.values();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return properties.entrySet();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return properties.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return properties.hashCode();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An immutable copy of a {@link com.microsoft.applicationinsights.TelemetryClient}'s base context,
+ * that telemetry items reference instead of having the base context copied into them.
+ *
+ * The shared tags are kept both as a map and as the key/value arrays written into each envelope, which are
+ * sanitized once here instead of per item. A snapshot remembers the version of the context it was taken from,
+ * so checking whether it is still current costs a few field reads.
+ */
+public final class ContextSnapshot {
+
+    private static final String INTERNAL_TAG_PREFIX = "ai.internal.";
+
+    private final TelemetryContext source;
+    private final String instrumentationKey;
+    private final String normalizedInstrumentationKey;
+    private final int tagsVersion;
+    private final int propertiesVersion;
+
+    private final Map<String, String> tags;
+    private final Map<String, String> properties;
+
+    // the shared tags in the order they are written, ai.internal.* ones first, with their keys and values
+    // already sanitized the way JsonTelemetryDataSerializer writes map entries
+    private final String[] tagKeys;
+    private final String[] sanitizedTagKeys;
+    private final String[] sanitizedTagValues;
+    private final int internalTagCount;
+
+    private ContextSnapshot(TelemetryContext source) {
+        this.source = source;
+        this.instrumentationKey = source.getInstrumentationKey();
+        this.normalizedInstrumentationKey = source.getNormalizedInstrumentationKey();
+        // read the versions before the maps, so that a concurrent change makes this snapshot stale rather than lost
+        this.tagsVersion = source.getTagsVersion();
+        this.propertiesVersion = source.getPropertiesVersion();
+        this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(source.getTags()));
+        this.properties = Collections.unmodifiableMap(new LinkedHashMap<>(source.getProperties()));
+
+        tagKeys = new String[tags.size()];
+        sanitizedTagKeys = new String[tags.size()];
+        sanitizedTagValues = new String[tags.size()];
+        int internal = 0;
+        int other = tags.size();
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            int index = entry.getKey().startsWith(INTERNAL_TAG_PREFIX) ? internal++ : --other;
+            tagKeys[index] = entry.getKey();
+            sanitizedTagKeys[index] = JsonTelemetryDataSerializer.sanitizeKey(entry.getKey());
+            sanitizedTagValues[index] = JsonTelemetryDataSerializer.sanitizeValue(entry.getValue());
+        }
+        internalTagCount = internal;
+    }
+
+    public static ContextSnapshot of(TelemetryContext context) {
+        Preconditions.checkNotNull(context, "context must be non-null value");
+        return new ContextSnapshot(context);
+    }
+
+    /**
+     * A context whose properties do not count their modifications is never considered unmodified.
+     *
+     * @return true if this snapshot was taken from the given context and the context was not modified since
+     */
+    public boolean isSnapshotOf(TelemetryContext context) {
+        return context == source
+                && context.getInstrumentationKey() == instrumentationKey
+                && context.getTagsVersion() == tagsVersion
+                && propertiesVersion != -1
+                && context.getPropertiesVersion() == propertiesVersion;
+    }
+
+    public String getInstrumentationKey() {
+        return instrumentationKey;
+    }
+
+    public String getNormalizedInstrumentationKey() {
+        return normalizedInstrumentationKey;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * The rule {@link com.microsoft.applicationinsights.TelemetryClient#track(Telemetry)} applies when merging
+     * the base context into an item: shared ai.internal.* tags (e.g. sdk version) always win, any other shared tag
+     * only fills in what the item does not set itself.
+     *
+     * @return true if the shared tag {@code key} should be sent for an item that has {@code itemTags}
+     */
+    public static boolean isSharedTagApplied(String key, Map<String, String> itemTags) {
+        return key.startsWith(INTERNAL_TAG_PREFIX) || !itemTags.containsKey(key);
+    }
+
+    /**
+     * Writes the envelope's tags, the shared tags of this snapshot merged with the item's own tags.
+     *
+     * @param sanitizeItemTags whether the item's tags still need the trimming and truncation of a {@link ContextTagsMap}
+     */
+    void writeTags(JsonTelemetryDataSerializer writer, Map<String, String> itemTags, boolean sanitizeItemTags) throws IOException {
+        if (tagKeys.length == 0 && itemTags.isEmpty()) {
+            return;
+        }
+        writer.beginObject("tags");
+        for (int i = 0; i < tagKeys.length; i++) {
+            if (i < internalTagCount || !itemTags.containsKey(tagKeys[i])) {
+                writer.writeSanitizedEntry(sanitizedTagKeys[i], sanitizedTagValues[i]);
+            }
+        }
+        for (Map.Entry<String, String> entry : itemTags.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith(INTERNAL_TAG_PREFIX) && tags.containsKey(key)) {
+                continue;
+            }
+            String value = sanitizeItemTags ? ContextTagsMap.sanitize(key, entry.getValue()) : entry.getValue();
+            writer.writeEntry(key, value);
+        }
+        writer.endObject();
+    }
+}
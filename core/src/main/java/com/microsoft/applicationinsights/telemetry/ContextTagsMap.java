@@ -6,6 +6,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.microsoft.applicationinsights.extensibility.context.ContextTagKeys;
 import org.apache.commons.lang3.StringUtils;
@@ -44,6 +45,9 @@ class ContextTagsMap implements ConcurrentMap<String, String> {
 
     private final ConcurrentMap<String, String> tags = new ConcurrentHashMap<>();
 
+    /// Changes after every modification of the tags through this map, see ContextSnapshot
+    private final AtomicInteger version = new AtomicInteger();
+
     private static String truncate(String value, int maxLength) {
         if (value != null && value.length() > maxLength) {
             value = StringUtils.truncate(value, maxLength);
@@ -51,7 +55,19 @@ class ContextTagsMap implements ConcurrentMap<String, String> {
         return value;
     }
 
+    int getVersion() {
+        return version.get();
+    }
+
     private String sanitizeValue(String key, String value) {
+        return sanitize(key, value);
+    }
+
+    /**
+     * Applies the same trimming and size limits as {@link #put(String, String)}, for tags that are
+     * kept outside of a {@code ContextTagsMap}.
+     */
+    static String sanitize(String key, String value) {
         value = StringUtils.trim(value);
         if (tagSizeLimits.containsKey(key)) {
             value = truncate(value, tagSizeLimits.get(key));
@@ -61,22 +77,30 @@ class ContextTagsMap implements ConcurrentMap<String, String> {
 
     @Override
     public String putIfAbsent(String key, String value) {
-        return tags.putIfAbsent(key, sanitizeValue(key, value));
+        String previous = tags.putIfAbsent(key, sanitizeValue(key, value));
+        version.incrementAndGet();
+        return previous;
     }
 
     @Override
     public boolean remove(Object key, Object value) {
-        return tags.remove(key, value);
+        boolean removed = tags.remove(key, value);
+        version.incrementAndGet();
+        return removed;
     }
 
     @Override
     public boolean replace(String key, String oldValue, String newValue) {
-        return tags.replace(key, oldValue, sanitizeValue(key, newValue));
+        boolean replaced = tags.replace(key, oldValue, sanitizeValue(key, newValue));
+        version.incrementAndGet();
+        return replaced;
     }
 
     @Override
     public String replace(String key, String value) {
-        return tags.replace(key, sanitizeValue(key, value));
+        String previous = tags.replace(key, sanitizeValue(key, value));
+        version.incrementAndGet();
+        return previous;
     }
 
     @Override
@@ -106,12 +130,16 @@ class ContextTagsMap implements ConcurrentMap<String, String> {
 
     @Override
     public String put(String key, String value) {
-        return tags.put(key, sanitizeValue(key, value));
+        String previous = tags.put(key, sanitizeValue(key, value));
+        version.incrementAndGet();
+        return previous;
     }
 
     @Override
     public String remove(Object key) {
-        return tags.remove(key);
+        String previous = tags.remove(key);
+        version.incrementAndGet();
+        return previous;
     }
 
     @Override
@@ -121,11 +149,13 @@ class ContextTagsMap implements ConcurrentMap<String, String> {
             sanitized.put(entry.getKey(), sanitizeValue(entry.getKey(), entry.getValue()));
         }
         tags.putAll(sanitized);
+        version.incrementAndGet();
     }
 
     @Override
     public void clear() {
         tags.clear();
+        version.incrementAndGet();
     }
 
     @Override
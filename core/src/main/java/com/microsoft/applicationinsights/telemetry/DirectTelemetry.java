@@ -0,0 +1,264 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.microsoft.applicationinsights.internal.schemav2.Domain;
+import com.microsoft.applicationinsights.internal.schemav2.RemoteDependencyData;
+import com.microsoft.applicationinsights.internal.schemav2.RequestData;
+import com.microsoft.applicationinsights.internal.util.DateTimeUtils;
+import com.squareup.moshi.JsonWriter;
+import okio.Buffer;
+
+/**
+ * A request or dependency that is serialized straight from its data and its own few tags, without
+ * the {@link TelemetryContext} (and its concurrent maps) that every {@link BaseTelemetry} carries.
+ *
+ * The instrumentation key and the shared tags (cloud role, sdk version, ...) are taken from the
+ * {@link ContextSnapshot} that {@link com.microsoft.applicationinsights.TelemetryClient#track(Telemetry)}
+ * attaches, and are merged into the envelope only while it is written.
+ *
+ * A full {@link TelemetryContext} is built only if someone asks for it through {@link #getContext()},
+ * from then on it is the source of the envelope's instrumentation key and tags.
+ */
+public final class DirectTelemetry<T extends Domain> implements Telemetry, SupportSampling {
+
+    private static final int ENVELOPE_VERSION = 1;
+
+    private static final ContextSnapshot NO_BASE_CONTEXT = ContextSnapshot.of(new TelemetryContext());
+
+    private final T data;
+    private final Supplier<ConcurrentMap<String, String>> dataProperties;
+    private final String envelopeName;
+    private final String baseTypeName;
+
+    private final Map<String, String> tags = new HashMap<>();
+    private String instrumentationKey;
+    private Date timestamp;
+    private Double samplingPercentage;
+
+    // volatile, as they are read while the item is being sent, and getContext() may still be called
+    private volatile ContextSnapshot baseContext;
+    private volatile TelemetryContext context;
+
+    // this is temporary until we are convinced that telemetry are never re-used by codeless agent
+    private volatile boolean used;
+
+    private DirectTelemetry(T data, Supplier<ConcurrentMap<String, String>> dataProperties, String envelopeName, String baseTypeName) {
+        this.data = data;
+        this.dataProperties = dataProperties;
+        this.envelopeName = envelopeName;
+        this.baseTypeName = baseTypeName;
+    }
+
+    public static DirectTelemetry<RequestData> request(RequestData data) {
+        Preconditions.checkNotNull(data, "data must be non-null value");
+        return new DirectTelemetry<>(data, data::getProperties, RequestTelemetry.ENVELOPE_NAME, RequestTelemetry.BASE_TYPE);
+    }
+
+    public static DirectTelemetry<RemoteDependencyData> remoteDependency(RemoteDependencyData data) {
+        Preconditions.checkNotNull(data, "data must be non-null value");
+        return new DirectTelemetry<>(data, data::getProperties, RemoteDependencyTelemetry.ENVELOPE_NAME, RemoteDependencyTelemetry.BASE_TYPE);
+    }
+
+    public T getData() {
+        return data;
+    }
+
+    /**
+     * Gets this item's own tags, keyed by {@link com.microsoft.applicationinsights.extensibility.context.ContextTagKeys}.
+     * They are trimmed and truncated when written, like the tags of a {@link TelemetryContext}.
+     *
+     * @return The tags, not including the shared tags of the base context unless {@link #getContext()} was called
+     */
+    public Map<String, String> getTags() {
+        return context == null ? tags : context.getTags();
+    }
+
+    /**
+     * @return The instrumentation key set on this item, or else the one of its base context
+     */
+    public String getInstrumentationKey() {
+        if (context != null) {
+            return context.getInstrumentationKey();
+        }
+        if (!Strings.isNullOrEmpty(instrumentationKey)) {
+            return instrumentationKey;
+        }
+        return baseContext == null ? null : baseContext.getInstrumentationKey();
+    }
+
+    public void setInstrumentationKey(String instrumentationKey) {
+        if (context != null) {
+            context.setInstrumentationKey(instrumentationKey);
+        } else {
+            this.instrumentationKey = instrumentationKey;
+        }
+    }
+
+    /**
+     * This method is part of the Application Insights infrastructure. Do not call it directly.
+     */
+    public void setBaseContext(ContextSnapshot baseContext) {
+        this.baseContext = baseContext;
+        if (!baseContext.getProperties().isEmpty()) {
+            dataProperties.get().putAll(baseContext.getProperties());
+        }
+    }
+
+    @Override
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void setTimestamp(Date date) {
+        timestamp = date;
+    }
+
+    @Override
+    public Double getSamplingPercentage() {
+        return samplingPercentage;
+    }
+
+    @Override
+    public void setSamplingPercentage(Double samplingPercentage) {
+        this.samplingPercentage = samplingPercentage;
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        return dataProperties.get();
+    }
+
+    /**
+     * Builds the full context of this item on first use, with the base context already merged in.
+     */
+    @Override
+    public TelemetryContext getContext() {
+        if (context == null) {
+            TelemetryContext ctx = new TelemetryContext(dataProperties.get(), new ContextTagsMap());
+            ctx.setInstrumentationKey(getInstrumentationKey());
+            ctx.getTags().putAll(tags);
+            if (baseContext != null) {
+                for (Map.Entry<String, String> entry : baseContext.getTags().entrySet()) {
+                    if (ContextSnapshot.isSharedTagApplied(entry.getKey(), tags)) {
+                        ctx.getTags().put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            context = ctx;
+        }
+        return context;
+    }
+
+    /**
+     * Converts this item into the equivalent {@link RequestTelemetry} or {@link RemoteDependencyTelemetry},
+     * which shares this item's data.
+     */
+    public Telemetry toBaseTelemetry() {
+        BaseSampleSourceTelemetry<?> telemetry;
+        if (data instanceof RequestData) {
+            telemetry = new RequestTelemetry((RequestData) data);
+        } else {
+            telemetry = new RemoteDependencyTelemetry((RemoteDependencyData) data);
+        }
+        telemetry.setTimestamp(timestamp);
+        telemetry.setSamplingPercentage(samplingPercentage);
+        TelemetryContext ctx = telemetry.getContext();
+        if (context != null) {
+            ctx.setInstrumentationKey(context.getInstrumentationKey());
+            ctx.getTags().putAll(context.getTags());
+        } else {
+            if (!Strings.isNullOrEmpty(instrumentationKey)) {
+                ctx.setInstrumentationKey(instrumentationKey);
+            }
+            ctx.getTags().putAll(tags);
+        }
+        return telemetry;
+    }
+
+    @Override
+    public void serialize(JsonTelemetryDataSerializer writer) throws IOException {
+        writer.write("ver", ENVELOPE_VERSION);
+        writer.writeRequired("name", envelopeName, 1024);
+        writer.writeRequired("time", timestamp == null ? null : DateTimeUtils.formatAsIso8601(timestamp), 64);
+        double sampleRate = samplingPercentage == null ? 100.0 : samplingPercentage;
+        if (sampleRate > 0.0d) {
+            writer.write("sampleRate", sampleRate);
+        }
+        writer.write("iKey", getInstrumentationKey(), 40);
+        TelemetryContext ctx = context;
+        if (ctx != null) {
+            writer.write("tags", ctx.getTags());
+        } else {
+            ContextSnapshot base = baseContext;
+            (base == null ? NO_BASE_CONTEXT : base).writeTags(writer, tags, true);
+        }
+
+        writer.beginObject("data");
+        writer.writeRequired("baseType", baseTypeName, 1000);
+        writer.write("baseData", data);
+        writer.endObject();
+    }
+
+    @Override
+    public boolean previouslyUsed() {
+        return used;
+    }
+
+    @Override
+    public void markUsed() {
+        used = true;
+    }
+
+    /**
+     * THIS IS FOR DEBUGGING AND TESTING ONLY!
+     * DON'T USE THIS IN HAPPY-PATH, PRODUCTION CODE.
+     *
+     * @return Json representation of this telemetry item.
+     */
+    @Override
+    public String toString() {
+        Buffer buffer = new Buffer();
+        try {
+            JsonWriter jw = JsonWriter.of(buffer);
+            JsonTelemetryDataSerializer jtds = new JsonTelemetryDataSerializer(jw);
+            this.serialize(jtds);
+            jtds.close();
+            jw.close();
+            return new String(buffer.readByteArray(), Charsets.UTF_8);
+        } catch (IOException e) {
+            // shouldn't happen with a string writer
+            throw new RuntimeException("Error serializing " + this.getClass().getSimpleName() + " toString", e);
+        }
+    }
+}
@@ -24,7 +24,6 @@ package com.microsoft.applicationinsights.telemetry;
 import com.google.common.base.Strings;
 import com.microsoft.applicationinsights.internal.schemav2.ExceptionData;
 import com.microsoft.applicationinsights.internal.schemav2.ExceptionDetails;
-import com.microsoft.applicationinsights.internal.schemav2.StackFrame;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -173,33 +172,8 @@ public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<Exceptio
         StackTraceElement[] trace = exception.getStackTrace();
 
         if (trace != null && trace.length > 0) {
-            List<StackFrame> stack = exceptionDetails.getParsedStack();
-
-            // We need to present the stack trace in reverse order.
-
-            for (int idx = 0; idx < trace.length; idx++) {
-                StackTraceElement elem = trace[idx];
-
-                if (elem.isNativeMethod()) {
-                    continue;
-                }
-
-                String className = elem.getClassName();
-
-                StackFrame frame = new StackFrame();
-                frame.setLevel(idx);
-                frame.setFileName(elem.getFileName());
-                frame.setLine(elem.getLineNumber());
-
-                if (!Strings.isNullOrEmpty(className)) {
-                    frame.setMethod(elem.getClassName() + "." + elem.getMethodName());
-                }
-                else {
-                    frame.setMethod(elem.getMethodName());
-                }
-
-                stack.add(frame);
-            }
+            // the same stack traces are usually thrown over and over, so their frames are shared
+            exceptionDetails.setParsedStack(CachedStackFrames.get(trace));
 
             exceptionDetails.setHasFullStack(true); // TODO: sanitize and trim exception stack trace.
         }
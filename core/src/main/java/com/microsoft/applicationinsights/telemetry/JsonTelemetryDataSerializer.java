@@ -28,6 +28,8 @@ import java.util.Map;
 import com.google.common.base.Strings;
 import com.microsoft.applicationinsights.internal.schemav2.DataPointType;
 import com.squareup.moshi.JsonWriter;
+import okio.Buffer;
+import okio.ByteString;
 
 /**
  * This class knows how to transform data that is relevant to {@link Telemetry} instances into JSON.
@@ -40,6 +42,9 @@ public final class JsonTelemetryDataSerializer {
         reset(out);
     }
 
+    private JsonTelemetryDataSerializer() {
+    }
+
     public void reset(JsonWriter out) throws IOException {
         this.out = out;
         this.out.beginObject();
@@ -195,6 +200,8 @@ public final class JsonTelemetryDataSerializer {
         writeName(name);
         if (list.size() < 1) {
             out.nullValue();
+        } else if (list instanceof CachedStackFrames) {
+            out.value(new Buffer().write(((CachedStackFrames) list).getJson()));
         } else {
             out.beginArray();
             for (T item : list) {
@@ -219,6 +226,66 @@ public final class JsonTelemetryDataSerializer {
         }
     }
 
+    /**
+     * Serializes the items into a JSON array, which can be written again and again without serializing the items.
+     */
+    static ByteString serializeArray(JsonSerializable[] items) throws IOException {
+        Buffer buffer = new Buffer();
+        JsonWriter jw = JsonWriter.of(buffer);
+        JsonTelemetryDataSerializer jtds = new JsonTelemetryDataSerializer();
+        jtds.out = jw;
+        jw.beginArray();
+        for (JsonSerializable item : items) {
+            jtds.writeObject(item);
+        }
+        jw.endArray();
+        jw.close();
+        return buffer.readByteString();
+    }
+
+    /**
+     * Opens a nested object, for writers that emit an object's fields directly instead of
+     * going through a {@link JsonSerializable}. Must be paired with {@link #endObject()}.
+     */
+    void beginObject(String name) throws IOException {
+        writeName(name);
+        out.beginObject();
+    }
+
+    void endObject() throws IOException {
+        out.endObject();
+    }
+
+    /**
+     * Writes one entry of an object opened with {@link #beginObject(String)}, with the same key and value
+     * handling as the entries written by {@link #write(String, Map)}.
+     */
+    void writeEntry(String key, String value) throws IOException {
+        sanitizeKey(out, key);
+        write(value);
+    }
+
+    /**
+     * Like {@link #writeEntry(String, String)}, for a key and value that already went through
+     * {@link #sanitizeKey(String)} and {@link #sanitizeValue(String)}.
+     */
+    void writeSanitizedEntry(String key, String value) throws IOException {
+        out.name(key);
+        out.value(value);
+    }
+
+    static String sanitizeKey(String key) {
+        String trimmed = trimAndTruncate(key, 150);
+        if (Strings.isNullOrEmpty(trimmed)) {
+            trimmed = "(required property name is empty)";
+        }
+        return trimmed;
+    }
+
+    static String sanitizeValue(String value) {
+        return truncate(String.valueOf(value), 8192);
+    }
+
     private void writeObject(JsonSerializable value) throws IOException {
         out.beginObject();
         value.serialize(this);
@@ -238,11 +305,7 @@ public final class JsonTelemetryDataSerializer {
     }
 
     private void sanitizeKey(JsonWriter out, String key) throws IOException {
-        String trimmed = trimAndTruncate(key, 150);
-        if (Strings.isNullOrEmpty(trimmed)) {
-            trimmed = "(required property name is empty)";
-        }
-        sanitizeName(out, trimmed, 150);
+        sanitizeName(out, sanitizeKey(key), 150);
     }
 
     private void sanitizeName(JsonWriter out, String text, int maxLength) throws IOException {
@@ -266,7 +329,7 @@ public final class JsonTelemetryDataSerializer {
         return sanitized;
     }
 
-    private String truncate(String value, int len) {
+    private static String truncate(String value, int len) {
         if (value.length() > len) {
             return value.substring(0, len);
         }
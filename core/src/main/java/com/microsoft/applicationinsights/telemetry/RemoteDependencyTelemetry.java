@@ -55,6 +55,14 @@ public final class RemoteDependencyTelemetry extends BaseSampleSourceTelemetry<R
         initialize(this.data.getProperties());
     }
 
+    /**
+     * Wraps dependency data that was already populated.
+     */
+    public RemoteDependencyTelemetry(RemoteDependencyData data) {
+        this.data = data;
+        initialize(this.data.getProperties());
+    }
+
     /**
      * Initializes an instance with a 'name'
      * @param name The dependency name.
@@ -102,6 +102,14 @@ public final class RequestTelemetry extends BaseSampleSourceTelemetry<RequestDat
         setSuccess(success);
     }
 
+    /**
+     * Wraps request data that was already populated, no defaults are applied.
+     */
+    public RequestTelemetry(RequestData data) {
+        this.data = data;
+        initialize(this.data.getProperties());
+    }
+
     /**
      * Gets a map of application-defined request metrics.
      * @return The map of metrics
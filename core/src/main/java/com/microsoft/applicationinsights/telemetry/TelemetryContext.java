@@ -30,7 +30,6 @@ import com.microsoft.applicationinsights.extensibility.context.OperationContext;
 import com.microsoft.applicationinsights.extensibility.context.SessionContext;
 import com.microsoft.applicationinsights.extensibility.context.UserContext;
 
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -60,7 +59,7 @@ public final class TelemetryContext {
      * Default Ctor
      */
     public TelemetryContext() {
-        this(new ConcurrentHashMap<>(), new ContextTagsMap());
+        this(new ContextPropertiesMap(), new ContextTagsMap());
     }
 
     /**
@@ -205,6 +204,17 @@ public final class TelemetryContext {
         return tags;
     }
 
+    int getTagsVersion() {
+        return tags.getVersion();
+    }
+
+    /**
+     * @return The version of the properties, or -1 if their modifications are not counted
+     */
+    int getPropertiesVersion() {
+        return properties instanceof ContextPropertiesMap ? ((ContextPropertiesMap) properties).getVersion() : -1;
+    }
+
     public InternalContext getInternal() {
         if (internal == null) {
             internal = new InternalContext(tags);
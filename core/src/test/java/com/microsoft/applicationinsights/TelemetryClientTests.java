@@ -178,6 +178,40 @@ public final class TelemetryClientTests {
         client.track(telemetry);
     }
 
+    @Test
+    public void testBaseContextIsMergedWhenSerialized() {
+        configuration.setRoleName("base-role");
+        client.getContext().getProperties().put("base-property", "value");
+
+        TraceTelemetry telemetry = new TraceTelemetry("test");
+        telemetry.getContext().getCloud().setRoleInstance("item-instance");
+        client.track(telemetry);
+
+        // the item only references the base context, its own tags are left as they were
+        Assert.assertFalse(telemetry.getContext().getTags().containsKey("ai.cloud.role"));
+        assertEquals("00000000-0000-0000-0000-000000000000", telemetry.getContext().getInstrumentationKey());
+        assertEquals("value", telemetry.getProperties().get("base-property"));
+
+        String json = telemetry.toString();
+        Assert.assertTrue(json.contains("\"ai.cloud.role\":\"base-role\""));
+        Assert.assertTrue(json.contains("\"ai.cloud.roleInstance\":\"item-instance\""));
+    }
+
+    @Test
+    public void testContextSnapshotIsReusedUntilContextChanges() {
+        ContextSnapshot snapshot = client.getContextSnapshot();
+        Assert.assertSame(snapshot, client.getContextSnapshot());
+
+        client.getContext().getCloud().setRole("changed-role");
+        ContextSnapshot changed = client.getContextSnapshot();
+        Assert.assertNotSame(snapshot, changed);
+        assertEquals("changed-role", changed.getTags().get("ai.cloud.role"));
+
+        // e.g. WEBSITE_SITE_NAME set lazily for the Azure Function Consumption Plan
+        configuration.setRoleName("lazy-role");
+        assertEquals("lazy-role", client.getContextSnapshot().getTags().get("ai.cloud.role"));
+    }
+
     @Test
     public void testFlush() {
         client.flush();
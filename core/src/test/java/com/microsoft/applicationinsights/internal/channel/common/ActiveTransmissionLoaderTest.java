@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.IOException;
 
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
+import com.microsoft.applicationinsights.internal.channel.TransmissionOutputSync;
 import org.junit.*;
 import org.mockito.Mockito;
 
@@ -82,7 +83,18 @@ public class ActiveTransmissionLoaderTest {
         testFilesOnDiskAreLoaded(2, false);
     }
 
+    @Test
+    public void testFilesOnDiskAreLoadedAtTheNetworkOutputPace() throws Exception {
+        TransmissionOutputSync mockOutput = Mockito.mock(TransmissionOutputSync.class);
+        Mockito.doReturn(true).when(mockOutput).sendSync(anyObject());
+        testFilesOnDiskAreLoaded(20, true, new ActiveTransmissionNetworkOutput(mockOutput, mockStateFetcher()));
+    }
+
     private void testFilesOnDiskAreLoaded(int amount, boolean putFilesFirst) throws IOException, InterruptedException {
+        testFilesOnDiskAreLoaded(amount, putFilesFirst, null);
+    }
+
+    private void testFilesOnDiskAreLoaded(int amount, boolean putFilesFirst, ActiveTransmissionNetworkOutput networkOutput) throws IOException, InterruptedException {
         File folder = null;
         ActiveTransmissionLoader tested = null;
         try {
@@ -97,7 +109,7 @@ public class ActiveTransmissionLoaderTest {
 
             TransmissionFileSystemOutput fileSystem = new TransmissionFileSystemOutput(filesPath);
             TransmissionDispatcher mockDispatcher = Mockito.mock(TransmissionDispatcher.class);
-            tested = new ActiveTransmissionLoader(fileSystem, mockDispatcher, mockStateFetcher(), 2);
+            tested = new ActiveTransmissionLoader(fileSystem, mockDispatcher, mockStateFetcher(), networkOutput, 2);
             if (!putFilesFirst) {
                 boolean ok = tested.load(true);
                 assertTrue("Failed to load", ok);
@@ -21,6 +21,7 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -32,6 +33,7 @@ import org.junit.Test;
 
 import org.mockito.Mockito;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyObject;
@@ -106,6 +108,44 @@ public class ActiveTransmissionNetworkOutputTest {
         assertTrue("Too many calls to send", isError[0]);
     }
 
+    @Test
+    public void testCapacityAndLatencyFollowTheSends() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch sent = new CountDownLatch(2);
+        TransmissionOutputSync slowOutput = new TransmissionOutputSync() {
+            @Override
+            public boolean sendSync(Transmission transmission) {
+                try {
+                    release.await();
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sent.countDown();
+                return true;
+            }
+        };
+        TransmissionPolicyStateFetcher mockStateFetcher = Mockito.mock(TransmissionPolicyStateFetcher.class);
+        Mockito.doReturn(TransmissionPolicy.UNBLOCKED).when(mockStateFetcher).getCurrentState();
+
+        ActiveTransmissionNetworkOutput tested = new ActiveTransmissionNetworkOutput(slowOutput, mockStateFetcher);
+        assertEquals(tested.getNumberOfMaxThreads(), tested.getAvailableCapacity());
+        assertEquals(0, tested.getAverageSuccessLatencyInMillis());
+
+        tested.sendAsync(new Transmission(new byte[2], MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE));
+        tested.sendAsync(new Transmission(new byte[2], MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE));
+        // the sends are either queued or running until they are released
+        for (int i = 0; i < 100 && tested.getAvailableCapacity() != tested.getNumberOfMaxThreads() - 2; ++i) {
+            Thread.sleep(10);
+        }
+        assertEquals(tested.getNumberOfMaxThreads() - 2, tested.getAvailableCapacity());
+
+        release.countDown();
+        assertTrue(sent.await(10, TimeUnit.SECONDS));
+        tested.shutdown(10, TimeUnit.SECONDS);
+        assertTrue(tested.getAverageSuccessLatencyInMillis() >= 20);
+    }
+
     private void testSend(int amount) throws InterruptedException {
         testSend(amount, amount, null);
     }
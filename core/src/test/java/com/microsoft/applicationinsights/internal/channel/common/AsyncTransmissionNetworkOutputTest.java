@@ -0,0 +1,129 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class AsyncTransmissionNetworkOutputTest {
+
+    private static final long INGESTION_LATENCY_IN_MILLIS = 500;
+    // as many as there are pooled connections to the endpoint
+    private static final int NUMBER_OF_TRANSMISSIONS = AsyncTransmissionNetworkOutput.DEFAULT_MAX_IN_FLIGHT;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger received = new AtomicInteger();
+
+    private ExecutorService serverThreads;
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        serverThreads = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(serverThreads);
+        // a slow ingestion endpoint
+        server.createContext("/v2/track", exchange -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) != -1) {
+                    // drain the request
+                }
+                Thread.sleep(INGESTION_LATENCY_IN_MILLIS);
+                received.incrementAndGet();
+                byte[] response = "{}".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    public void testRequestsAreNotLimitedBySenderThreads() throws Exception {
+        TransmissionPolicyManager policyManager = new TransmissionPolicyManager(true);
+        TransmissionNetworkOutput actualOutput = TransmissionNetworkOutput.create(
+                "http://localhost:" + server.getAddress().getPort() + "/v2/track", policyManager);
+        AsyncTransmissionNetworkOutput output = new AsyncTransmissionNetworkOutput(actualOutput, policyManager.getTransmissionPolicyState());
+
+        for (int i = 0; i < NUMBER_OF_TRANSMISSIONS; ++i) {
+            assertTrue(output.sendAsync(new Transmission(new byte[] {1, 2, 3}, "application/x-json-stream", "gzip")));
+        }
+        assertTrue(output.getAvailableCapacity() < AsyncTransmissionNetworkOutput.DEFAULT_MAX_IN_FLIGHT);
+        assertEquals(AsyncTransmissionNetworkOutput.DEFAULT_MAX_IN_FLIGHT, output.getMaxConcurrency());
+
+        output.shutdown(30, TimeUnit.SECONDS);
+
+        assertEquals(NUMBER_OF_TRANSMISSIONS, received.get());
+        // more than the 7 sender threads of ActiveTransmissionNetworkOutput
+        assertTrue("max in flight was " + maxInFlight.get(), maxInFlight.get() > 7);
+        // every permit got a connection of the pool
+        assertEquals(AsyncTransmissionNetworkOutput.DEFAULT_MAX_IN_FLIGHT, maxInFlight.get());
+        assertTrue(output.getAverageSuccessLatencyInMillis() >= INGESTION_LATENCY_IN_MILLIS);
+    }
+
+    @Test
+    public void testSendIsRejectedWhenAllRequestsAreInFlight() throws Exception {
+        TransmissionPolicyManager policyManager = new TransmissionPolicyManager(true);
+        TransmissionNetworkOutput actualOutput = TransmissionNetworkOutput.create(
+                "http://localhost:" + server.getAddress().getPort() + "/v2/track", policyManager);
+        AsyncTransmissionNetworkOutput output = new AsyncTransmissionNetworkOutput(actualOutput, policyManager.getTransmissionPolicyState(), 2);
+
+        assertTrue(output.sendAsync(new Transmission(new byte[] {1}, "application/x-json-stream", "gzip")));
+        assertTrue(output.sendAsync(new Transmission(new byte[] {2}, "application/x-json-stream", "gzip")));
+        assertFalse(output.sendAsync(new Transmission(new byte[] {3}, "application/x-json-stream", "gzip")));
+        assertEquals(0, output.getAvailableCapacity());
+
+        output.shutdown(30, TimeUnit.SECONDS);
+        assertEquals(2, received.get());
+    }
+}
@@ -139,6 +139,41 @@ public final class GzipTelemetrySerializerTest {
         testSerialization(10);
     }
 
+    @Test
+    public void testSerializeTelemetriesThroughSharedWriter() throws Exception {
+        GzipTelemetrySerializer tested = new GzipTelemetrySerializer();
+
+        List<Telemetry> telemetries = new ArrayList<>();
+        HashMap<String, StubTelemetry> expected = new HashMap<>();
+        for (int i = 0; i < 10; ++i) {
+            StubTelemetry stubTelemetry = createStubTelemetry(String.valueOf(i));
+            telemetries.add(stubTelemetry);
+            expected.put(stubTelemetry.getTelemetryName(), stubTelemetry);
+        }
+
+        Transmission serializationData = tested.serialize(telemetries).get();
+
+        String value;
+        try (GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(serializationData.getContent()))) {
+            ByteArrayOutputStream contents = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = gis.read(buf)) > 0) {
+                contents.write(buf, 0, len);
+            }
+            value = new String(contents.toByteArray(), Charsets.UTF_8);
+        }
+
+        String[] stubStrings = value.split(System.getProperty("line.separator"));
+        assertEquals(10, stubStrings.length);
+
+        Gson gson = new Gson();
+        for (String stubString : stubStrings) {
+            StubTelemetry stubTelemetry = gson.fromJson(stubString, StubTelemetry.class);
+            assertEquals(expected.get(stubTelemetry.getTelemetryName()), stubTelemetry);
+        }
+    }
+
     private void testSerialization(int amount) throws Exception {
         GzipTelemetrySerializer tested = new GzipTelemetrySerializer();
 
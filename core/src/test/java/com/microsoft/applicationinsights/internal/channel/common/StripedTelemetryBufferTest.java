@@ -0,0 +1,238 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
+import com.microsoft.applicationinsights.internal.util.LimitsEnforcer;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyObject;
+
+public final class StripedTelemetryBufferTest {
+    private final static String MOCK_PROPERTY_NAME = "MockProperty";
+
+    @Test(expected = NullPointerException.class)
+    public void testNoSenderIsSet() {
+        new StripedTelemetryBuffer<String>(null, createEnforcerWithCurrentValue(20), createEnforcerWithCurrentValue(10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroBufferSizeSenderIsSet() {
+        TelemetriesTransmitter mockSender = Mockito.mock(TelemetriesTransmitter.class);
+
+        new StripedTelemetryBuffer<String>(mockSender, createEnforcerWithCurrentValue(0), createEnforcerWithCurrentValue(10));
+    }
+
+    @Test
+    public void testAddOneTelemetry() {
+        TelemetriesTransmitter mockSender = Mockito.mock(TelemetriesTransmitter.class);
+        Mockito.doReturn(true).when(mockSender).scheduleSend(any(TelemetriesTransmitter.TelemetriesFetcher.class), anyLong(), any(TimeUnit.class));
+
+        StripedTelemetryBuffer<String> testedBuffer = new StripedTelemetryBuffer<>(mockSender, createEnforcerWithCurrentValue(128), createEnforcerWithCurrentValue(2));
+
+        testedBuffer.add("mockTelemetry");
+
+        Mockito.verify(mockSender, Mockito.times(1)).scheduleSend(any(), anyLong(), anyObject());
+        Mockito.verify(mockSender, Mockito.never()).sendNow(anyCollectionOf(String.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSendWhenBufferIsFull() {
+        TelemetriesTransmitter mockSender = Mockito.mock(TelemetriesTransmitter.class);
+        Mockito.doReturn(true).when(mockSender).sendNow(anyCollectionOf(String.class));
+        Mockito.doReturn(true).when(mockSender).scheduleSend(any(TelemetriesTransmitter.TelemetriesFetcher.class), anyLong(), any(TimeUnit.class));
+
+        StripedTelemetryBuffer<String> testedBuffer = new StripedTelemetryBuffer<>(mockSender, createEnforcerWithCurrentValue(2), createEnforcerWithCurrentValue(10));
+
+        for (int i = 0; i < 2; ++i) {
+            testedBuffer.add("mockTelemetry");
+        }
+
+        Mockito.verify(mockSender, Mockito.times(1)).scheduleSend(any(), anyLong(), anyObject());
+        Mockito.verify(mockSender, Mockito.times(1)).sendNow(anyCollectionOf(String.class));
+    }
+
+    @Test
+    public void testScheduledFetchIsEmptyAfterBufferWasAlreadySent() {
+        RecordingSender sender = new RecordingSender();
+
+        StripedTelemetryBuffer<String> testedBuffer = new StripedTelemetryBuffer<>(sender, createEnforcerWithCurrentValue(10), createEnforcerWithCurrentValue(10));
+        for (int i = 0; i < 10; ++i) {
+            testedBuffer.add("mockTelemetry");
+        }
+
+        assertEquals(1, sender.sendNowCalls.get());
+        assertEquals(10, sender.itemsSent.get());
+        assertEquals(0, sender.firstFetcher.fetch().size());
+    }
+
+    @Test
+    public void testScheduledFetchPicksUpPartialBuffer() {
+        RecordingSender sender = new RecordingSender();
+
+        StripedTelemetryBuffer<String> testedBuffer = new StripedTelemetryBuffer<>(sender, createEnforcerWithCurrentValue(10), createEnforcerWithCurrentValue(10));
+        for (int i = 0; i < 3; ++i) {
+            testedBuffer.add("mockTelemetry");
+        }
+
+        assertEquals(0, sender.sendNowCalls.get());
+        assertEquals(3, sender.firstFetcher.fetch().size());
+    }
+
+    @Test
+    public void testFlushWithSevenInTheBuffer() {
+        RecordingSender sender = new RecordingSender();
+
+        StripedTelemetryBuffer<String> testedBuffer = new StripedTelemetryBuffer<>(sender, createEnforcerWithCurrentValue(10), createEnforcerWithCurrentValue(10));
+        for (int i = 0; i < 7; ++i) {
+            testedBuffer.add("mockTelemetry");
+        }
+        testedBuffer.flush();
+        testedBuffer.flush();
+
+        assertEquals(1, sender.sendNowCalls.get());
+        assertEquals(7, sender.itemsSent.get());
+    }
+
+    @Test
+    public void testSetMaxTelemetriesInBatchWithSmallerSize() {
+        RecordingSender sender = new RecordingSender();
+
+        StripedTelemetryBuffer<String> testedBuffer = new StripedTelemetryBuffer<>(sender, createEnforcerWithCurrentValue(10), createEnforcerWithCurrentValue(30));
+        for (int i = 0; i < 5; ++i) {
+            testedBuffer.add("mockTelemetry");
+        }
+        testedBuffer.setMaxTelemetriesInBatch(2);
+
+        assertEquals(3, sender.sendNowCalls.get());
+        assertEquals(5, sender.itemsSent.get());
+    }
+
+    @Test
+    public void testConcurrentProducersDeliverEveryTelemetryExactlyOnce() throws Exception {
+        final int producers = 16;
+        final int perProducer = 10007;
+        final int batchSize = 100;
+
+        final Set<String> received = ConcurrentHashMap.newKeySet();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final AtomicInteger oversizedBatches = new AtomicInteger();
+        TelemetriesTransmitter<String> sender = new TelemetriesTransmitter<String>() {
+            @Override
+            public boolean scheduleSend(TelemetriesFetcher<String> telemetriesFetcher, long value, TimeUnit timeUnit) {
+                // timed pick-ups are covered by the final flush below
+                return true;
+            }
+
+            @Override
+            public boolean sendNow(Collection<String> telemetries) {
+                if (telemetries.size() > batchSize) {
+                    oversizedBatches.incrementAndGet();
+                }
+                for (String telemetry : telemetries) {
+                    if (!received.add(telemetry)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void shutdown(long timeout, TimeUnit timeUnit) {
+            }
+        };
+
+        final StripedTelemetryBuffer<String> testedBuffer = new StripedTelemetryBuffer<>(sender, createEnforcerWithCurrentValue(batchSize), createEnforcerWithCurrentValue(30), producers);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; ++p) {
+            final int producer = p;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; ++i) {
+                        testedBuffer.add(producer + "-" + i);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        testedBuffer.flush();
+
+        assertEquals(0, duplicates.get());
+        assertEquals(0, oversizedBatches.get());
+        assertEquals(producers * perProducer, received.size());
+    }
+
+    private static class RecordingSender implements TelemetriesTransmitter<String> {
+        private final AtomicInteger sendNowCalls = new AtomicInteger();
+        private final AtomicInteger itemsSent = new AtomicInteger();
+        private volatile TelemetriesFetcher<String> firstFetcher;
+
+        @Override
+        public boolean scheduleSend(TelemetriesFetcher<String> telemetriesFetcher, long value, TimeUnit timeUnit) {
+            if (firstFetcher == null) {
+                firstFetcher = telemetriesFetcher;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean sendNow(Collection<String> telemetries) {
+            sendNowCalls.incrementAndGet();
+            itemsSent.addAndGet(telemetries.size());
+            return true;
+        }
+
+        @Override
+        public void shutdown(long timeout, TimeUnit timeUnit) {
+        }
+    }
+
+    private static LimitsEnforcer createEnforcerWithCurrentValue(int currentValue) {
+        return LimitsEnforcer.createWithClosestLimitOnError(MOCK_PROPERTY_NAME, 0, 1000, 20, currentValue);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public final class TransmissionPipelineStageTest {
+
+    @Test
+    public void testItemsAreProcessedByTheStageThreads() throws Exception {
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(10);
+        TransmissionPipelineStage<Integer> stage = new TransmissionPipelineStage<>("test-process", 16, 2,
+                TransmissionPipelineStage.DropPolicy.REJECT_NEW, item -> {
+                    threads.add(Thread.currentThread().getName());
+                    latch.countDown();
+                });
+
+        for (int i = 0; i < 10; ++i) {
+            assertTrue(stage.offer(i));
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        stage.shutdown(5, TimeUnit.SECONDS);
+
+        assertEquals(10, stage.getProcessedCount());
+        assertEquals(0, stage.getDroppedCount());
+        assertEquals(0, stage.getQueueDepth());
+        assertFalse(threads.contains(Thread.currentThread().getName()));
+        assertFalse(stage.offer(11));
+    }
+
+    @Test
+    public void testNewItemIsRejectedWhenFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        TransmissionPipelineStage<Integer> stage = new TransmissionPipelineStage<>("test-reject", 2, 1,
+                TransmissionPipelineStage.DropPolicy.REJECT_NEW, item -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                });
+
+        assertTrue(stage.offer(1));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(stage.offer(2));
+        assertTrue(stage.offer(3));
+        assertFalse(stage.offer(4));
+        assertEquals(2, stage.getQueueDepth());
+        assertEquals(1, stage.getDroppedCount());
+
+        release.countDown();
+        stage.shutdown(5, TimeUnit.SECONDS);
+        assertEquals(3, stage.getProcessedCount());
+    }
+
+    @Test
+    public void testOldestItemIsDroppedWhenFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final List<Integer> processed = new CopyOnWriteArrayList<>();
+        TransmissionPipelineStage<Integer> stage = new TransmissionPipelineStage<>("test-drop-oldest", 2, 1,
+                TransmissionPipelineStage.DropPolicy.DROP_OLDEST, item -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    processed.add(item);
+                });
+
+        assertTrue(stage.offer(1));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(stage.offer(2));
+        assertTrue(stage.offer(3));
+        assertTrue(stage.offer(4));
+        assertEquals(1, stage.getDroppedCount());
+
+        release.countDown();
+        stage.shutdown(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(1, 3, 4), processed);
+    }
+
+    @Test
+    public void testCapacityIsCountedInItemsOfTheEntries() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        TransmissionPipelineStage<List<Integer>> stage = new TransmissionPipelineStage<>("test-weight",
+                new TransmissionPipelineStage.Settings(1, 10, TransmissionPipelineStage.DropPolicy.REJECT_NEW), List::size, item -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                });
+
+        // taken when the queue is empty, even though it is heavier than the capacity
+        assertTrue(stage.offer(Collections.nCopies(12, 0)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(0, stage.getQueuedItems());
+        assertTrue(stage.offer(Collections.nCopies(6, 0)));
+        assertFalse(stage.offer(Collections.nCopies(5, 0)));
+        assertTrue(stage.offer(Collections.nCopies(4, 0)));
+        assertEquals(10, stage.getQueuedItems());
+        assertEquals(2, stage.getQueueDepth());
+        assertEquals(1, stage.getDroppedCount());
+
+        release.countDown();
+        stage.shutdown(5, TimeUnit.SECONDS);
+        assertEquals(3, stage.getProcessedCount());
+        assertEquals(0, stage.getQueuedItems());
+    }
+
+    @Test
+    public void testOldestEntriesAreDroppedUntilTheNewItemsFit() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final List<Integer> processed = new CopyOnWriteArrayList<>();
+        TransmissionPipelineStage<List<Integer>> stage = new TransmissionPipelineStage<>("test-weight-drop-oldest",
+                new TransmissionPipelineStage.Settings(1, 10, TransmissionPipelineStage.DropPolicy.DROP_OLDEST), List::size, item -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    processed.add(item.size());
+                });
+
+        assertTrue(stage.offer(Collections.nCopies(1, 0)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(stage.offer(Collections.nCopies(4, 0)));
+        assertTrue(stage.offer(Collections.nCopies(5, 0)));
+        assertTrue(stage.offer(Collections.nCopies(6, 0)));
+        assertEquals(2, stage.getDroppedCount());
+        assertEquals(6, stage.getQueuedItems());
+
+        release.countDown();
+        stage.shutdown(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(1, 6), processed);
+    }
+
+    @Test
+    public void testAcceptedItemsAreProcessedWhenStoppedConcurrently() throws Exception {
+        final AtomicInteger processed = new AtomicInteger();
+        final TransmissionPipelineStage<Integer> stage = new TransmissionPipelineStage<>("test-shutdown", 1000, 2,
+                TransmissionPipelineStage.DropPolicy.REJECT_NEW, item -> processed.incrementAndGet());
+        final AtomicInteger accepted = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100000; ++i) {
+                if (stage.offer(i)) {
+                    accepted.incrementAndGet();
+                }
+            }
+        });
+
+        producer.start();
+        Thread.sleep(10);
+        stage.shutdown(5, TimeUnit.SECONDS);
+        producer.join();
+
+        assertEquals(accepted.get(), processed.get());
+        assertEquals(accepted.get(), stage.getProcessedCount());
+    }
+
+    @Test
+    public void testMetricsAreExposedThroughJmx() throws Exception {
+        TransmissionPipelineStage<Integer> stage = new TransmissionPipelineStage<>("test-jmx", 4, 1,
+                TransmissionPipelineStage.DropPolicy.REJECT_NEW, item -> { });
+        ObjectName objectName = new ObjectName("com.microsoft:type=AI-transmission-pipeline,name=test-jmx");
+        try {
+            assertEquals(4, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "QueueCapacity"));
+            assertEquals("REJECT_NEW", ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "DropPolicy"));
+        } finally {
+            stage.shutdown(5, TimeUnit.SECONDS);
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public final class TransmissionSegmentStoreTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final long CAPACITY = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testTransmissionsAreReadInOrderAcrossSegments() throws Exception {
+        File folder = tmpFolder.newFolder();
+        TransmissionSegmentStore store = TransmissionSegmentStore.open(folder, SEGMENT_SIZE);
+
+        for (int i = 0; i < 20; ++i) {
+            assertTrue(store.append(newTransmission(i, 100), CAPACITY));
+        }
+        assertTrue(segmentFiles(folder).length > 1);
+
+        for (int i = 0; i < 20; ++i) {
+            Transmission transmission = store.poll();
+            assertTransmission(i, 100, transmission);
+            process(transmission);
+        }
+        assertNull(store.poll());
+        // only the segment that is appended to is left
+        assertEquals(1, segmentFiles(folder).length);
+        assertEquals(SEGMENT_SIZE, store.getSizeInBytes());
+        store.close();
+    }
+
+    @Test
+    public void testTransmissionLargerThanSegment() throws Exception {
+        TransmissionSegmentStore store = TransmissionSegmentStore.open(tmpFolder.newFolder(), SEGMENT_SIZE);
+
+        assertTrue(store.append(newTransmission(1, 100), CAPACITY));
+        assertTrue(store.append(newTransmission(2, 5 * SEGMENT_SIZE), CAPACITY));
+        assertTrue(store.append(newTransmission(3, 100), CAPACITY));
+
+        assertTransmission(1, 100, store.poll());
+        assertTransmission(2, 5 * SEGMENT_SIZE, store.poll());
+        assertTransmission(3, 100, store.poll());
+        assertNull(store.poll());
+        store.close();
+    }
+
+    @Test
+    public void testCapacityIsEnforced() throws Exception {
+        TransmissionSegmentStore store = TransmissionSegmentStore.open(tmpFolder.newFolder(), SEGMENT_SIZE);
+
+        int appended = 0;
+        while (store.append(newTransmission(appended, 400), 2 * SEGMENT_SIZE)) {
+            ++appended;
+        }
+        assertEquals(4, appended);
+
+        // committing a segment to its end makes room again
+        Transmission first = store.poll();
+        Transmission second = store.poll();
+        Transmission third = store.poll();
+        assertFalse(store.append(newTransmission(appended, 400), 2 * SEGMENT_SIZE));
+        process(first);
+        process(second);
+        process(third);
+        assertTrue(store.append(newTransmission(appended, 400), 2 * SEGMENT_SIZE));
+        store.close();
+    }
+
+    @Test
+    public void testCommitOffsetAndWritePositionSurviveReopen() throws Exception {
+        File folder = tmpFolder.newFolder();
+        TransmissionSegmentStore store = TransmissionSegmentStore.open(folder, SEGMENT_SIZE);
+        for (int i = 0; i < 10; ++i) {
+            store.append(newTransmission(i, 100), CAPACITY);
+        }
+        for (int i = 0; i < 4; ++i) {
+            Transmission transmission = store.poll();
+            assertTransmission(i, 100, transmission);
+            process(transmission);
+        }
+        store.close();
+
+        store = TransmissionSegmentStore.open(folder, SEGMENT_SIZE);
+        store.append(newTransmission(10, 100), CAPACITY);
+        for (int i = 4; i <= 10; ++i) {
+            assertTransmission(i, 100, store.poll());
+        }
+        assertNull(store.poll());
+        store.close();
+    }
+
+    @Test
+    public void testUncommittedTransmissionsAreReadAgainAfterReopen() throws Exception {
+        File folder = tmpFolder.newFolder();
+        TransmissionSegmentStore store = TransmissionSegmentStore.open(folder, SEGMENT_SIZE);
+        for (int i = 0; i < 5; ++i) {
+            store.append(newTransmission(i, 100), CAPACITY);
+        }
+        Transmission first = store.poll();
+        Transmission second = store.poll();
+        Transmission third = store.poll();
+        process(first);
+        // the commit offset does not move past the second one, which is still in flight
+        process(third);
+        store.close();
+        // too late, it is read again
+        process(second);
+
+        store = TransmissionSegmentStore.open(folder, SEGMENT_SIZE);
+        for (int i = 1; i < 5; ++i) {
+            assertTransmission(i, 100, store.poll());
+        }
+        assertNull(store.poll());
+        store.close();
+    }
+
+    @Test
+    public void testSegmentIsKeptUntilItsTransmissionsAreProcessed() throws Exception {
+        File folder = tmpFolder.newFolder();
+        TransmissionSegmentStore store = TransmissionSegmentStore.open(folder, SEGMENT_SIZE);
+        for (int i = 0; i < 20; ++i) {
+            store.append(newTransmission(i, 100), CAPACITY);
+        }
+        int segmentCount = segmentFiles(folder).length;
+
+        Transmission[] transmissions = new Transmission[20];
+        for (int i = 0; i < 20; ++i) {
+            transmissions[i] = store.poll();
+        }
+        assertNull(store.poll());
+        for (int i = 1; i < 20; ++i) {
+            process(transmissions[i]);
+        }
+        assertEquals(segmentCount, segmentFiles(folder).length);
+
+        process(transmissions[0]);
+        assertEquals(1, segmentFiles(folder).length);
+        assertEquals(SEGMENT_SIZE, store.getSizeInBytes());
+        store.close();
+    }
+
+    @Test
+    public void testCorruptedRecordIsNotRead() throws Exception {
+        File folder = tmpFolder.newFolder();
+        TransmissionSegmentStore store = TransmissionSegmentStore.open(folder, SEGMENT_SIZE);
+        store.append(newTransmission(1, 100), CAPACITY);
+        store.append(newTransmission(2, 100), CAPACITY);
+        store.close();
+
+        // flip a byte in the content of the second record
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles(folder)[0], "rw")) {
+            long offset = file.length() - SEGMENT_SIZE + 100 + 150;
+            file.seek(offset);
+            int b = file.read();
+            file.seek(offset);
+            file.write(b ^ 0xff);
+        }
+
+        store = TransmissionSegmentStore.open(folder, SEGMENT_SIZE);
+        assertTransmission(1, 100, store.poll());
+        assertNull(store.poll());
+
+        // appending resumes where the corrupted record was
+        store.append(newTransmission(3, 100), CAPACITY);
+        assertTransmission(3, 100, store.poll());
+        store.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testFolderCanOnlyBeOpenedOnce() throws Exception {
+        File folder = tmpFolder.newFolder();
+        TransmissionSegmentStore.open(folder, SEGMENT_SIZE);
+        TransmissionSegmentStore.open(folder, SEGMENT_SIZE);
+    }
+
+    @Test
+    public void testFileSystemOutputMovesTransmissionFilesToSegmentStore() throws Exception {
+        File folder = tmpFolder.newFolder();
+        TransmissionFileSystemOutput files = new TransmissionFileSystemOutput(folder.getAbsolutePath());
+        assertTrue(files.sendSync(newTransmission(1, 100)));
+
+        TransmissionFileSystemOutput segments = new TransmissionFileSystemOutput(folder.getAbsolutePath(), null, "test");
+        assertTrue(segments.sendSync(newTransmission(2, 100)));
+
+        assertTransmission(1, 100, segments.fetchOldestFile());
+        assertTransmission(2, 100, segments.fetchOldestFile());
+        assertNull(segments.fetchOldestFile());
+        assertNull(files.fetchOldestFile());
+    }
+
+    @Test
+    public void testFileSystemOutputLoadsUnprocessedTransmissionsAgainAfterClose() throws Exception {
+        File folder = tmpFolder.newFolder();
+        TransmissionFileSystemOutput output = new TransmissionFileSystemOutput(folder.getAbsolutePath(), null, "test");
+        assertTrue(output.sendSync(newTransmission(1, 100)));
+        assertTrue(output.sendSync(newTransmission(2, 100)));
+
+        process(output.fetchOldestFile());
+        assertTransmission(2, 100, output.fetchOldestFile());
+        output.close();
+
+        output = new TransmissionFileSystemOutput(folder.getAbsolutePath(), null, "test");
+        assertTransmission(2, 100, output.fetchOldestFile());
+        assertNull(output.fetchOldestFile());
+        output.close();
+    }
+
+    private static Transmission newTransmission(int id, int contentLength) {
+        byte[] content = new byte[contentLength];
+        for (int i = 0; i < contentLength; ++i) {
+            content[i] = (byte) (id + i);
+        }
+        Transmission transmission = new Transmission(content, "MockContentType" + id, "MockEncodingType" + id);
+        transmission.setNumberOfSends(id);
+        return transmission;
+    }
+
+    // what the loader and the outputs do, once sent or persisted again
+    private static void process(Transmission transmission) {
+        transmission.startProcessing();
+        transmission.finishProcessing();
+    }
+
+    private static void assertTransmission(int id, int contentLength, Transmission transmission) {
+        assertNotNull(transmission);
+        assertEquals("MockContentType" + id, transmission.getWebContentType());
+        assertEquals("MockEncodingType" + id, transmission.getWebContentEncodingType());
+        assertEquals(id, transmission.getNumberOfSends());
+        assertEquals(contentLength, transmission.getContent().length);
+        for (int i = 0; i < contentLength; ++i) {
+            assertEquals((byte) (id + i), transmission.getContent()[i]);
+        }
+    }
+
+    private static File[] segmentFiles(File folder) {
+        return folder.listFiles((dir, name) -> name.endsWith(".seg"));
+    }
+}
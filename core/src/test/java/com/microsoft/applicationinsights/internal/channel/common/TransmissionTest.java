@@ -21,6 +21,12 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import okio.Buffer;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -103,6 +109,34 @@ public final class TransmissionTest {
         assertSame(mockContent, tested.getContent());
     }
 
+    @Test
+    public void testGetContentFromBuffer() {
+        Buffer buffer = new Buffer().writeUtf8("mock content");
+        Transmission tested = Transmission.fromBuffer(buffer, MOCK_WEB_CONTENT_TYPE, MOCK_WEB_ENCODING_TYPE);
+
+        assertSame(buffer, tested.getContentBuffer());
+        assertArrayEquals("mock content".getBytes(), tested.getContent());
+        assertNull(tested.getContentBuffer());
+    }
+
+    @Test
+    public void testBufferContentIsPersistedWhenSerialized() throws Exception {
+        Transmission tested = Transmission.fromBuffer(new Buffer().writeUtf8("mock content"), MOCK_WEB_CONTENT_TYPE, MOCK_WEB_ENCODING_TYPE);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(tested);
+        }
+        Transmission read;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            read = (Transmission) ois.readObject();
+        }
+
+        assertArrayEquals("mock content".getBytes(), read.getContent());
+        assertEquals(MOCK_WEB_CONTENT_TYPE, read.getWebContentType());
+        assertEquals(MOCK_WEB_ENCODING_TYPE, read.getWebContentEncodingType());
+    }
+
     @Test
     public void testGetWebContentType() {
         Transmission tested = createMockTransmission();
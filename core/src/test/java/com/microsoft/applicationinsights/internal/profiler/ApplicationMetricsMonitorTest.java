@@ -0,0 +1,48 @@
+package com.microsoft.applicationinsights.internal.profiler;
+
+import java.lang.management.ThreadMXBean;
+
+import com.microsoft.applicationinsights.alerting.AlertingSubsystem;
+import com.microsoft.applicationinsights.alerting.alert.AlertMetricType;
+import org.junit.Test;
+import org.mockito.AdditionalMatchers;
+import org.mockito.Mockito;
+
+public class ApplicationMetricsMonitorTest {
+
+    @Test
+    public void requestMetricsAndThreadCountAreSampled() {
+        AlertingSubsystem alertingSubsystem = Mockito.mock(AlertingSubsystem.class);
+        ThreadMXBean threadMXBean = Mockito.mock(ThreadMXBean.class);
+        Mockito.when(threadMXBean.getThreadCount()).thenReturn(42);
+        ApplicationMetricsMonitor monitor = new ApplicationMetricsMonitor(alertingSubsystem, threadMXBean);
+
+        for (int i = 0; i < 96; i++) {
+            monitor.addRequest(10, true);
+        }
+        for (int i = 0; i < 4; i++) {
+            monitor.addRequest(1000, false);
+        }
+        monitor.sample();
+
+        Mockito.verify(alertingSubsystem).track(Mockito.eq(AlertMetricType.REQUEST_LATENCY), AdditionalMatchers.eq(1000.0, 20.0));
+        Mockito.verify(alertingSubsystem).track(AlertMetricType.REQUEST_FAILURE_RATE, 4.0);
+        Mockito.verify(alertingSubsystem).track(AlertMetricType.THREAD_COUNT, 42.0);
+    }
+
+    @Test
+    public void requestMetricsAreNotSampledWithoutRequests() {
+        AlertingSubsystem alertingSubsystem = Mockito.mock(AlertingSubsystem.class);
+        ApplicationMetricsMonitor monitor = new ApplicationMetricsMonitor(alertingSubsystem, Mockito.mock(ThreadMXBean.class));
+
+        monitor.addRequest(10, false);
+        monitor.sample();
+        Mockito.reset(alertingSubsystem);
+
+        // the requests of the previous sampling period are not counted again
+        monitor.sample();
+
+        Mockito.verify(alertingSubsystem).track(AlertMetricType.THREAD_COUNT, 0.0);
+        Mockito.verifyNoMoreInteractions(alertingSubsystem);
+    }
+}
@@ -3,6 +3,7 @@ package com.microsoft.applicationinsights.internal.profiler;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.alerting.AlertingSubsystem;
 import com.microsoft.applicationinsights.alerting.alert.AlertBreach;
+import com.microsoft.applicationinsights.alerting.alert.AlertMetricType;
 import com.microsoft.applicationinsights.alerting.config.AlertingConfiguration;
 import com.microsoft.applicationinsights.profiler.config.AlertConfigParser;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
@@ -18,6 +19,8 @@ import org.mockito.Mockito;
 
 import javax.management.MBeanServerConnection;
 import java.lang.management.MemoryUsage;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -65,6 +68,38 @@ public class GcEventMonitorTest {
         Assert.assertEquals(90.0, alert.getAlertValue(), 0.01);
     }
 
+    @Test
+    public void gcPauseRatioAndAllocationRateAreTracked() {
+        AlertingSubsystem alertingSubsystem = Mockito.mock(AlertingSubsystem.class);
+        List<MemoryPool> youngPools = Collections.singletonList(Mockito.mock(MemoryPool.class));
+        GcEventMonitor.GcActivity gcActivity = new GcEventMonitor.GcActivity();
+
+        // nothing to compare the first event to
+        gcActivity.sendToAlerting(alertingSubsystem, mockYoungGcEvent(youngPools, 1000, 10, 50, 0));
+        Mockito.verifyZeroInteractions(alertingSubsystem);
+
+        gcActivity.sendToAlerting(alertingSubsystem, mockYoungGcEvent(youngPools, 3000, 100, 200, 10));
+
+        // 100ms out of 2s
+        Mockito.verify(alertingSubsystem).track(AlertMetricType.GC_PAUSE_RATIO, 5.0);
+        // 200MB allocated since the young generation was emptied, 2s ago
+        Mockito.verify(alertingSubsystem).track(AlertMetricType.ALLOCATION_RATE, 100.0);
+    }
+
+    private GCCollectionEvent mockYoungGcEvent(List<MemoryPool> youngPools, long endTime, long duration, long usedMbBefore, long usedMbAfter) {
+        GCCollectionEvent event = Mockito.mock(GCCollectionEvent.class);
+        GarbageCollector collector = Mockito.mock(GarbageCollector.class);
+        Mockito.when(collector.isTenuredCollector()).thenReturn(false);
+        Mockito.when(event.getCollector()).thenReturn(collector);
+        Mockito.when(event.getEndTime()).thenReturn(endTime);
+        Mockito.when(event.getDuration()).thenReturn(duration);
+        Mockito.when(event.getYoungPools()).thenReturn(youngPools);
+        long mb = 1024 * 1024;
+        Mockito.when(event.getMemoryUsageBeforeGc(youngPools)).thenReturn(new MemoryUsage(0, usedMbBefore * mb, 256 * mb, 256 * mb));
+        Mockito.when(event.getMemoryUsageAfterGc(youngPools)).thenReturn(new MemoryUsage(0, usedMbAfter * mb, 256 * mb, 256 * mb));
+        return event;
+    }
+
     private AlertingSubsystem getAlertingSubsystem(CompletableFuture<AlertBreach> alertFuture) {
         AlertingSubsystem alertingSubsystem = AlertingSubsystem.create(alertFuture::complete, Executors.newSingleThreadExecutor());
 
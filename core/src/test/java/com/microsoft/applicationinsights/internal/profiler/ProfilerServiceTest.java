@@ -23,6 +23,12 @@ package com.microsoft.applicationinsights.internal.profiler;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.alerting.AlertingSubsystem;
 import com.microsoft.applicationinsights.alerting.alert.AlertBreach;
+import com.microsoft.applicationinsights.alerting.alert.AlertMetricType;
+import com.microsoft.applicationinsights.alerting.config.AlertingConfiguration;
+import com.microsoft.applicationinsights.alerting.config.AlertingConfiguration.AlertConfigurationBuilder;
+import com.microsoft.applicationinsights.alerting.config.CollectionPlanConfiguration;
+import com.microsoft.applicationinsights.alerting.config.CollectionPlanConfiguration.EngineMode;
+import com.microsoft.applicationinsights.alerting.config.DefaultConfiguration;
 import com.microsoft.applicationinsights.extensibility.initializer.TelemetryObservers;
 import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 import com.microsoft.applicationinsights.profiler.ProfilerService;
@@ -52,10 +58,16 @@ import java.net.URISyntaxException;
 import java.nio.charset.UnsupportedCharsetException;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Collections;
 import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -96,6 +108,48 @@ public class ProfilerServiceTest {
                 });
     }
 
+    @Test
+    public void applicationMetricsAreSampledWhileTheAlertingThreadsAreBusy() throws Exception {
+        System.setProperty(ApplicationMetricsMonitor.SAMPLING_PERIOD_PROPERTY, "1");
+        ScheduledExecutorService alertServiceExecutorService = ProfilerServiceInitializer.createAlertServiceExecutorService();
+        CountDownLatch gcNotificationLoop = new CountDownLatch(1);
+        try {
+            // stands for the GC notification loop, which holds one of the threads for good
+            alertServiceExecutorService.submit(() -> {
+                gcNotificationLoop.await();
+                return null;
+            });
+
+            BlockingQueue<AlertBreach> alerts = new LinkedBlockingQueue<>();
+            // the work loop of the alerting subsystem holds the other thread
+            AlertingSubsystem alerting = ProfilerServiceInitializer.createAlertMonitor(
+                    alerts::add,
+                    alertServiceExecutorService,
+                    new TelemetryClient() {
+                        @Override
+                        public void track(Telemetry telemetry) {
+                        }
+                    },
+                    new GcEventMonitor.GcEventMonitorConfiguration(GcReportingLevel.NONE));
+
+            // any thread count breaches
+            alerting.updateConfiguration(new AlertingConfiguration(
+                    new AlertConfigurationBuilder().setType(AlertMetricType.CPU).setEnabled(false).setThreshold(0).setProfileDuration(0).setCooldown(0).createAlertConfiguration(),
+                    new AlertConfigurationBuilder().setType(AlertMetricType.MEMORY).setEnabled(false).setThreshold(0).setProfileDuration(0).setCooldown(0).createAlertConfiguration(),
+                    new DefaultConfiguration(false, 0, 0),
+                    new CollectionPlanConfiguration(false, EngineMode.immediate, ZonedDateTime.now(), 0, ""),
+                    Collections.singletonList(new AlertConfigurationBuilder().setType(AlertMetricType.THREAD_COUNT).setEnabled(true).setThreshold(0).setProfileDuration(0).setCooldown(0).createAlertConfiguration())));
+
+            AlertBreach alert = alerts.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull("the thread count was not sampled", alert);
+            Assert.assertEquals(AlertMetricType.THREAD_COUNT, alert.getType());
+        } finally {
+            gcNotificationLoop.countDown();
+            alertServiceExecutorService.shutdownNow();
+            System.clearProperty(ApplicationMetricsMonitor.SAMPLING_PERIOD_PROPERTY);
+        }
+    }
+
     public void endToEndAlertTriggerCycle(boolean triggerNow, MetricTelemetry metricTelemetry, Consumer<EventTelemetry> assertTelemetry) throws Exception {
         AtomicBoolean profileInvoked = new AtomicBoolean(false);
         AtomicReference<EventTelemetry> serviceProfilerIndex = new AtomicReference<>();
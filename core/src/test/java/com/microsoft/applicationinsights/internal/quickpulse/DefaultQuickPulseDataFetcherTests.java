@@ -1,6 +1,10 @@
 package com.microsoft.applicationinsights.internal.quickpulse;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
 import org.apache.http.ProtocolVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -15,6 +19,7 @@ import org.mockito.Mockito;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Date;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.notNull;
 import static org.mockito.Mockito.*;
@@ -62,6 +67,39 @@ public class DefaultQuickPulseDataFetcherTests {
         }
     }
 
+    @Test
+    public void postPayloadHasAllMetrics() {
+        DefaultQuickPulseDataFetcher dataFetcher = new DefaultQuickPulseDataFetcher(null, (TelemetryConfiguration) null,
+                "machine1", "instance1", "role1", "qpid123");
+        QuickPulseDataCollector.INSTANCE.enable("ikey1");
+        try {
+            RequestTelemetry rt = new RequestTelemetry("request-test", new Date(), 1500L, "500", false);
+            rt.getContext().setInstrumentationKey("ikey1");
+            QuickPulseDataCollector.INSTANCE.add(rt);
+            QuickPulseDataCollector.FinalCounters counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+
+            String payload = dataFetcher.buildPostEntity(counters).toString();
+
+            JsonObject document = new JsonParser().parse(payload).getAsJsonArray().get(0).getAsJsonObject();
+            assertEquals("instance1", document.get("Instance").getAsString());
+            assertEquals("role1", document.get("RoleName").getAsString());
+            assertEquals("qpid123", document.get("StreamId").getAsString());
+            assertTrue(document.get("Timestamp").getAsString().startsWith("/Date("));
+            JsonArray metrics = document.getAsJsonArray("Metrics");
+            assertEquals(11, metrics.size());
+            JsonObject requests = metrics.get(0).getAsJsonObject();
+            assertEquals("\\ApplicationInsights\\Requests/Sec", requests.get("Name").getAsString());
+            assertEquals(1, requests.get("Value").getAsLong());
+            JsonObject requestDuration = metrics.get(1).getAsJsonObject();
+            assertEquals(1500.0, requestDuration.get("Value").getAsDouble(), 0);
+            assertEquals(1, requestDuration.get("Weight").getAsInt());
+            assertEquals(1, metrics.get(2).getAsJsonObject().get("Value").getAsLong());
+            assertEquals(0, metrics.get(3).getAsJsonObject().get("Value").getAsLong());
+        } finally {
+            QuickPulseDataCollector.INSTANCE.disable();
+        }
+    }
+
     @Test
     public void endpointChangesWithRedirectHeaderAndGetNewPingInterval() throws IOException {
         final CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
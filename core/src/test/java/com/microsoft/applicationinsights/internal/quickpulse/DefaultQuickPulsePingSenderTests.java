@@ -85,6 +85,16 @@ public class DefaultQuickPulsePingSenderTests {
         Assert.assertEquals(quickPulseHeaderInfo.getQpsServiceEndpointRedirect(), "https://new.endpoint.com");
     }
 
+    @Test
+    public void pingPayloadHasTimestamp() {
+        DefaultQuickPulsePingSender pingSender = new DefaultQuickPulsePingSender(null, null, "machine1",
+                "instance1", "role1", "qpid123");
+
+        String payload = pingSender.buildPingEntity(1234567L).toString();
+
+        assertThat(payload, endsWith("\"Timestamp\": \"\\/Date(1234567)\\/\",\"Version\":\"2.2.0-738\"}"));
+        assertTrue(payload.contains("\"RoleName\":\"role1\","));
+    }
 
     public static class BasicCloseableHttpResponse extends BasicHttpResponse implements CloseableHttpResponse {
 
@@ -0,0 +1,65 @@
+package com.microsoft.applicationinsights.internal.quickpulse;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class LatencySketchTest {
+
+    @Test
+    public void emptySketch() {
+        LatencySketch sketch = new LatencySketch();
+        assertEquals(0, sketch.getCount());
+        assertEquals(0, sketch.getQuantile(0.99), 0);
+    }
+
+    @Test
+    public void quantilesAreWithinRelativeAccuracy() {
+        LatencySketch sketch = new LatencySketch();
+        Random random = new Random(42);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            // spread over several orders of magnitude
+            values[i] = 1 + (long) Math.exp(random.nextDouble() * 12);
+            sketch.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, sketch.getCount());
+        for (double quantile : new double[] {0.5, 0.95, 0.99}) {
+            long expected = values[(int) (quantile * (values.length - 1))];
+            assertEquals(expected, sketch.getQuantile(quantile), expected * LatencySketch.RELATIVE_ACCURACY);
+        }
+    }
+
+    @Test
+    public void mergedSketchHasBothCounts() {
+        LatencySketch first = new LatencySketch();
+        LatencySketch second = new LatencySketch();
+        for (int i = 0; i < 10; i++) {
+            first.record(10);
+            second.record(1000);
+        }
+        first.merge(second);
+
+        assertEquals(20, first.getCount());
+        assertEquals(10, first.getQuantile(0.25), 10 * LatencySketch.RELATIVE_ACCURACY);
+        assertEquals(1000, first.getQuantile(0.75), 1000 * LatencySketch.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    public void bucketIndexIsMonotonic() {
+        assertEquals(0, LatencySketch.bucketIndex(0));
+        assertEquals(0, LatencySketch.bucketIndex(-5));
+        int previous = 0;
+        for (long millis = 1; millis < 100000; millis++) {
+            int index = LatencySketch.bucketIndex(millis);
+            assertTrue(index >= previous);
+            previous = index;
+        }
+        assertEquals(LatencySketch.bucketIndex(Long.MAX_VALUE), LatencySketch.bucketIndex(Long.MAX_VALUE / 2));
+    }
+}
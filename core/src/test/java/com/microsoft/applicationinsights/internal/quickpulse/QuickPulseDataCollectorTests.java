@@ -1,8 +1,7 @@
 package com.microsoft.applicationinsights.internal.quickpulse;
 
-import com.microsoft.applicationinsights.internal.quickpulse.QuickPulseDataCollector.CountAndDuration;
-import com.microsoft.applicationinsights.internal.quickpulse.QuickPulseDataCollector.Counters;
 import com.microsoft.applicationinsights.internal.quickpulse.QuickPulseDataCollector.FinalCounters;
+import com.microsoft.applicationinsights.internal.quickpulse.QuickPulseDataCollector.OperationCounters;
 import com.microsoft.applicationinsights.telemetry.Duration;
 import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
 import com.microsoft.applicationinsights.telemetry.RemoteDependencyTelemetry;
@@ -25,6 +24,7 @@ public class QuickPulseDataCollectorTests {
     @After
     public void tearDown() {
         QuickPulseDataCollector.INSTANCE.disable();
+        QuickPulseDataCollector.INSTANCE.setMaxOperations(0);
     }
 
     @Test
@@ -144,13 +144,87 @@ public class QuickPulseDataCollectorTests {
     }
 
     @Test
-    public void encodeDecodeIsIdentity() {
-        final long count = 456L;
-        final long duration = 112233L;
-        final long encoded = Counters.encodeCountAndDuration(count, duration);
-        final CountAndDuration inputs = Counters.decodeCountAndDuration(encoded);
-        assertEquals(count, inputs.count);
-        assertEquals(duration, inputs.duration);
+    public void requestCountIsNotLimited() {
+        QuickPulseDataCollector.INSTANCE.enable(FAKE_INSTRUMENTATION_KEY);
+
+        // more than what used to fit next to the duration in a single long
+        final int count = 600000;
+        RequestTelemetry rt = new RequestTelemetry("request-test", new Date(), 2L, "200", true);
+        rt.getContext().setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+        for (int i = 0; i < count; i++) {
+            QuickPulseDataCollector.INSTANCE.add(rt);
+        }
+        FinalCounters counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+        assertEquals(count, counters.requests);
+        assertEquals(2.0 * count, counters.requestsDuration, Math.ulp(2.0 * count));
+    }
+
+    @Test
+    public void requestDurationPercentiles() {
+        QuickPulseDataCollector.INSTANCE.enable(FAKE_INSTRUMENTATION_KEY);
+
+        for (long duration = 1; duration <= 100; duration++) {
+            RequestTelemetry rt = new RequestTelemetry("request-test", new Date(), duration, "200", true);
+            rt.getContext().setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+            QuickPulseDataCollector.INSTANCE.add(rt);
+        }
+        FinalCounters counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+        assertEquals(100, counters.requestsDurationSketch.getCount());
+        assertEquals(50, counters.requestsDurationSketch.getQuantile(0.5), 50 * LatencySketch.RELATIVE_ACCURACY);
+        assertEquals(95, counters.requestsDurationSketch.getQuantile(0.95), 95 * LatencySketch.RELATIVE_ACCURACY);
+        assertEquals(0, counters.rddsDurationSketch.getCount());
+    }
+
+    @Test
+    public void requestsAreBrokenDownByName() {
+        QuickPulseDataCollector.INSTANCE.setMaxOperations(2);
+        QuickPulseDataCollector.INSTANCE.enable(FAKE_INSTRUMENTATION_KEY);
+
+        String[] names = {"a", "b", "a", "c", "d"};
+        for (String name : names) {
+            RequestTelemetry rt = new RequestTelemetry(name, new Date(), 10L, "500", false);
+            rt.getContext().setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+            QuickPulseDataCollector.INSTANCE.add(rt);
+        }
+        FinalCounters counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+        assertEquals(3, counters.operations.size());
+        OperationCounters a = counters.operations.get("a");
+        assertEquals(2, a.count.sum());
+        assertEquals(2, a.unsuccessful.sum());
+        assertEquals(20, a.duration.sum());
+        assertEquals(1, counters.operations.get("b").count.sum());
+        // c and d came after maxOperations names
+        assertEquals(2, counters.operations.get(QuickPulseDataCollector.OTHER_OPERATIONS).count.sum());
+    }
+
+    @Test
+    public void requestsAreNotBrokenDownByDefault() {
+        QuickPulseDataCollector.INSTANCE.enable(FAKE_INSTRUMENTATION_KEY);
+
+        RequestTelemetry rt = new RequestTelemetry("request-test", new Date(), 10L, "200", true);
+        rt.getContext().setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+        QuickPulseDataCollector.INSTANCE.add(rt);
+        assertTrue(QuickPulseDataCollector.INSTANCE.getAndRestart().operations.isEmpty());
+    }
+
+    @Test
+    public void requestWithoutNameIsCountedWithTheOtherOperations() {
+        QuickPulseDataCollector.INSTANCE.setMaxOperations(2);
+        QuickPulseDataCollector.INSTANCE.enable(FAKE_INSTRUMENTATION_KEY);
+
+        RequestTelemetry rt = new RequestTelemetry(null, new Date(), 10L, "500", false);
+        rt.getContext().setInstrumentationKey(FAKE_INSTRUMENTATION_KEY);
+        QuickPulseDataCollector.INSTANCE.add(rt);
+        FinalCounters counters = QuickPulseDataCollector.INSTANCE.getAndRestart();
+        assertEquals(1, counters.requests);
+        assertEquals(1, counters.unsuccessfulRequests);
+        assertEquals(10.0, counters.requestsDuration, Math.ulp(10.0));
+        assertEquals(1, counters.requestsDurationSketch.getCount());
+        assertEquals(1, counters.operations.size());
+        OperationCounters other = counters.operations.get(QuickPulseDataCollector.OTHER_OPERATIONS);
+        assertEquals(1, other.count.sum());
+        assertEquals(1, other.unsuccessful.sum());
+        assertEquals(10, other.duration.sum());
     }
 
     private void assertCountersReset(FinalCounters counters) {
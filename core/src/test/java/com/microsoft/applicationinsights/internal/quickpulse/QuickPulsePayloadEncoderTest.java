@@ -0,0 +1,64 @@
+package com.microsoft.applicationinsights.internal.quickpulse;
+
+import com.microsoft.applicationinsights.internal.quickpulse.QuickPulsePayloadEncoder.Payload;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class QuickPulsePayloadEncoderTest {
+
+    private final QuickPulsePayloadEncoder encoder = new QuickPulsePayloadEncoder(1);
+
+    @Test
+    public void longsAreWrittenLikeToString() {
+        long[] values = {0, 7, -7, 10, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            assertEquals(Long.toString(value), encoder.acquire().append(value).toString());
+        }
+    }
+
+    @Test
+    public void integralDoublesAreWrittenLikeToString() {
+        assertEquals("0.0", encoder.acquire().append(0.0).toString());
+        assertEquals("112233.0", encoder.acquire().append(112233.0).toString());
+        assertEquals("-1.0", encoder.acquire().append(-1.0).toString());
+    }
+
+    @Test
+    public void fractionalDoublesAreWrittenWithSixDigits() {
+        assertEquals("0.5", encoder.acquire().append(0.5).toString());
+        assertEquals("-0.25", encoder.acquire().append(-0.25).toString());
+        assertEquals("12.000001", encoder.acquire().append(12.000001).toString());
+        assertEquals("3.333333", encoder.acquire().append(10.0 / 3).toString());
+        assertEquals("0.0", encoder.acquire().append(0.0000001).toString());
+    }
+
+    @Test
+    public void otherDoublesFallBackToToString() {
+        assertEquals("NaN", encoder.acquire().append(Double.NaN).toString());
+        assertEquals("1.0E15", encoder.acquire().append(1.0E15).toString());
+    }
+
+    @Test
+    public void bufferGrows() {
+        byte[] constant = QuickPulsePayloadEncoder.encode("0123456789");
+        Payload payload = encoder.acquire();
+        for (int i = 0; i < 500; i++) {
+            payload.append(constant);
+        }
+        assertEquals(5000, payload.getContentLength());
+        assertTrue(payload.toString().endsWith("01234567890123456789"));
+    }
+
+    @Test
+    public void releasedPayloadIsReused() {
+        Payload payload = encoder.acquire().append(42);
+        payload.release();
+
+        Payload reused = encoder.acquire();
+        assertSame(payload, reused);
+        assertEquals(0, reused.getContentLength());
+        // the pool is full, the next one is not kept
+        assertNotSame(reused, encoder.acquire());
+    }
+}
@@ -1,6 +1,8 @@
 package com.microsoft.applicationinsights.internal.statsbeat;
 
 import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -8,8 +10,12 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 
 public class NetworkStatsbeatTest {
 
@@ -100,4 +106,36 @@ public class NetworkStatsbeatTest {
         assertEquals(7.5, networkStatsbeat.getRequestDurationAvg(), 0);
         assertEquals(100000, networkStatsbeat.getInstrumentationList().size());
     }
+
+    @Test
+    public void testNoIncrementIsLostAcrossIntervals() throws InterruptedException {
+        final AtomicLong reportedSuccessCount = new AtomicLong();
+        TelemetryClient telemetryClient = mock(TelemetryClient.class);
+        doAnswer(invocation -> {
+            MetricTelemetry telemetry = (MetricTelemetry) invocation.getArguments()[0];
+            if (telemetry.getName().equals("Request Success Count")) {
+                reportedSuccessCount.addAndGet((long) telemetry.getValue());
+            }
+            return null;
+        }).when(telemetryClient).track(any(Telemetry.class));
+        final NetworkStatsbeat statsbeat = new NetworkStatsbeat(telemetryClient, Long.MAX_VALUE);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(10);
+        for (int i = 0; i < 10; i++) {
+            executorService.execute(() -> {
+                for (int j = 0; j < 100000; j++) {
+                    statsbeat.incrementRequestSuccessCount(1);
+                }
+            });
+        }
+        executorService.shutdown();
+        while (!executorService.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+            statsbeat.send();
+        }
+        statsbeat.send();
+        // reports the increments which landed on the last interval after it was swapped out
+        statsbeat.send();
+
+        assertEquals(1000000, reportedSuccessCount.get());
+    }
 }
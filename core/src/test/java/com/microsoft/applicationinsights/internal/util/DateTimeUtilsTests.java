@@ -3,6 +3,7 @@ package com.microsoft.applicationinsights.internal.util;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.Date;
 
@@ -52,6 +53,19 @@ public class DateTimeUtilsTests {
         Assert.assertEquals(dateStr, reversedDateStr);
     }
 
+    @Test
+    public void testFormatAsIso8601MatchesDateFormatter() {
+        DateFormat dateFormatter = LocalStringsUtils.getDateFormatter();
+        long start = 1621234567890L;
+        for (long millis = start; millis < start + 5000; millis += 7) {
+            Date date = new Date(millis);
+            Assert.assertEquals(dateFormatter.format(date), DateTimeUtils.formatAsIso8601(date));
+        }
+        // going back to an earlier second must not reuse the cached one
+        Date date = new Date(start);
+        Assert.assertEquals(dateFormatter.format(date), DateTimeUtils.formatAsIso8601(date));
+    }
+
     private String parseRoundTripDateString(String str) throws ParseException {
         Date date = DateTimeUtils.parseRoundTripDateString(str);
 
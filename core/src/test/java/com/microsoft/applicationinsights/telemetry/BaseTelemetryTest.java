@@ -27,6 +27,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.base.Charsets;
 import com.microsoft.applicationinsights.internal.schemav2.Domain;
+import com.microsoft.applicationinsights.internal.util.DateTimeUtils;
 import com.squareup.moshi.JsonWriter;
 import okio.Buffer;
 import org.junit.*;
@@ -153,5 +154,49 @@ public final class BaseTelemetryTest {
         assertTrue(index != -1);
     }
 
+    @Test
+    public void testSerializedEnvelope() throws IOException {
+        StubTelemetry telemetry = new StubTelemetry("Test Base Telemetry");
+        telemetry.getContext().setInstrumentationKey("00000000-1111-2222-3333-000000000000");
+        telemetry.getContext().getTags().put("ai.cloud.role", "role");
+        Date timestamp = new Date(1621234567890L);
+        telemetry.setTimestamp(timestamp);
+
+        String asJson = telemetry.toString();
 
-}
\ No newline at end of file
+        String expected = "{\"ver\":1,\"name\":\"Stub\",\"time\":\"" + DateTimeUtils.formatAsIso8601(timestamp) + "\","
+                + "\"sampleRate\":100.0,\"iKey\":\"00000000-1111-2222-3333-000000000000\","
+                + "\"tags\":{\"ai.cloud.role\":\"role\"},\"data\":{\"baseType\":\"StubData\"}}";
+        assertEquals(expected, asJson);
+    }
+
+    @Test
+    public void testBaseContextIsMergedIntoContextAfterTrack() {
+        TelemetryContext baseContext = new TelemetryContext();
+        baseContext.setInstrumentationKey("00000000-1111-2222-3333-000000000000");
+        baseContext.getCloud().setRole("base-role");
+        baseContext.getCloud().setRoleInstance("base-instance");
+        baseContext.getInternal().setSdkVersion("java:3.1.0");
+
+        StubTelemetry telemetry = new StubTelemetry("Test Base Telemetry");
+        telemetry.getContext().getCloud().setRole("item-role");
+        telemetry.setTimestamp(new Date());
+        // as done by TelemetryClient.track()
+        telemetry.setBaseContext(ContextSnapshot.of(baseContext));
+        String serializedBeforeMerge = telemetry.toString();
+
+        TelemetryContext context = telemetry.getContext();
+        assertEquals("00000000-1111-2222-3333-000000000000", context.getInstrumentationKey());
+        assertEquals("item-role", context.getCloud().getRole());
+        assertEquals("base-instance", context.getCloud().getRoleInstance());
+        assertEquals("java:3.1.0", context.getInternal().getSdkVersion());
+
+        String serializedAfterMerge = telemetry.toString();
+        for (String tag : new String[] {"\"ai.cloud.role\":\"item-role\"", "\"ai.cloud.roleInstance\":\"base-instance\"",
+                "\"ai.internal.sdkVersion\":\"java:3.1.0\""}) {
+            assertTrue(serializedBeforeMerge.contains(tag));
+            assertTrue(serializedAfterMerge.contains(tag));
+        }
+        assertEquals(serializedBeforeMerge.length(), serializedAfterMerge.length());
+    }
+}
@@ -55,4 +55,22 @@ public class ContextTagsMapTests {
         assertEquals(customValue, map.get(customKey));
     }
 
+    @Test
+    public void versionCountsEveryConcurrentModification() throws Exception {
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final String key = "key" + i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    map.put(key, Integer.toString(j));
+                    map.remove(key);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threads.length * 2000, map.getVersion());
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.microsoft.applicationinsights.internal.schemav2.RequestData;
+import com.squareup.moshi.Moshi;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public final class DirectTelemetryTest {
+
+    private static final String IKEY = "00000000-1111-2222-3333-000000000000";
+
+    private TelemetryContext baseContext;
+
+    @Before
+    public void setUp() {
+        baseContext = new TelemetryContext();
+        baseContext.setInstrumentationKey(IKEY);
+        baseContext.getCloud().setRole("base-role");
+        baseContext.getCloud().setRoleInstance("base-instance");
+        baseContext.getInternal().setSdkVersion("java:3.1.0");
+    }
+
+    @Test
+    public void testSharedTagsAreMergedLikeTelemetryClient() throws IOException {
+        DirectTelemetry<RequestData> telemetry = newRequest();
+        telemetry.getTags().put("ai.cloud.role", "span-role");
+        telemetry.getTags().put("ai.internal.sdkVersion", "span-sdk");
+        telemetry.setBaseContext(ContextSnapshot.of(baseContext));
+
+        Map<String, Object> envelope = parse(telemetry);
+
+        assertEquals(IKEY, envelope.get("iKey"));
+        Map<?, ?> tags = (Map<?, ?>) envelope.get("tags");
+        assertEquals("span-role", tags.get("ai.cloud.role"));
+        assertEquals("base-instance", tags.get("ai.cloud.roleInstance"));
+        assertEquals("java:3.1.0", tags.get("ai.internal.sdkVersion"));
+        assertEquals("trace-id", tags.get("ai.operation.id"));
+    }
+
+    @Test
+    public void testSerializesSameEnvelopeAsRequestTelemetry() throws IOException {
+        DirectTelemetry<RequestData> telemetry = newRequest();
+        telemetry.getProperties().put("key", "value");
+        telemetry.setSamplingPercentage(25.0);
+        telemetry.setBaseContext(ContextSnapshot.of(baseContext));
+
+        Telemetry converted = telemetry.toBaseTelemetry();
+        converted.getContext().setInstrumentationKey(IKEY);
+        converted.getContext().getTags().putAll(baseContext.getTags());
+
+        assertEquals(parse(converted), parse(telemetry));
+    }
+
+    @Test
+    public void testInstrumentationKeyOnItemWins() throws IOException {
+        DirectTelemetry<RequestData> telemetry = newRequest();
+        telemetry.setInstrumentationKey("99999999-1111-2222-3333-000000000000");
+        telemetry.setBaseContext(ContextSnapshot.of(baseContext));
+
+        assertEquals("99999999-1111-2222-3333-000000000000", parse(telemetry).get("iKey"));
+    }
+
+    @Test
+    public void testContextIsUsedOnceBuilt() throws IOException {
+        DirectTelemetry<RequestData> telemetry = newRequest();
+        telemetry.setBaseContext(ContextSnapshot.of(baseContext));
+
+        TelemetryContext context = telemetry.getContext();
+        assertEquals(IKEY, context.getInstrumentationKey());
+        assertEquals("base-role", context.getCloud().getRole());
+        context.getProperties().put("DeveloperMode", "true");
+        context.getTags().put("ai.cloud.role", "changed");
+
+        Map<String, Object> envelope = parse(telemetry);
+        assertEquals("changed", ((Map<?, ?>) envelope.get("tags")).get("ai.cloud.role"));
+        Map<?, ?> baseData = (Map<?, ?>) ((Map<?, ?>) envelope.get("data")).get("baseData");
+        assertEquals("true", ((Map<?, ?>) baseData.get("properties")).get("DeveloperMode"));
+    }
+
+    @Test
+    public void testSnapshotIsReplacedWhenContextChanges() {
+        ContextSnapshot snapshot = ContextSnapshot.of(baseContext);
+        assertTrue(snapshot.isSnapshotOf(baseContext));
+
+        baseContext.getCloud().setRole("other-role");
+        assertFalse(snapshot.isSnapshotOf(baseContext));
+        assertFalse(snapshot.isSnapshotOf(new TelemetryContext()));
+    }
+
+    @Test
+    public void testSnapshotIsReplacedWhenAPropertyIsReplaced() {
+        baseContext.getProperties().put("customDimension", "first");
+        ContextSnapshot snapshot = ContextSnapshot.of(baseContext);
+        assertTrue(snapshot.isSnapshotOf(baseContext));
+
+        // same number of properties, only the value differs
+        baseContext.getProperties().put("customDimension", "second");
+        assertFalse(snapshot.isSnapshotOf(baseContext));
+        assertEquals("second", ContextSnapshot.of(baseContext).getProperties().get("customDimension"));
+    }
+
+    @Test
+    public void testSnapshotOfContextWithUncountedPropertiesIsNeverCurrent() {
+        TelemetryContext context = new TelemetryContext(new ConcurrentHashMap<>(), new ContextTagsMap());
+        assertFalse(ContextSnapshot.of(context).isSnapshotOf(context));
+    }
+
+    private static DirectTelemetry<RequestData> newRequest() {
+        RequestData data = new RequestData();
+        data.setId("span-id");
+        data.setName("GET /");
+        data.setResponseCode("200");
+        data.setDuration(new Duration(42));
+        data.setSuccess(true);
+        DirectTelemetry<RequestData> telemetry = DirectTelemetry.request(data);
+        telemetry.getTags().put("ai.operation.id", "trace-id");
+        telemetry.setTimestamp(new Date(1621234567890L));
+        return telemetry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parse(Telemetry telemetry) throws IOException {
+        return new Moshi.Builder().build().adapter(Map.class).fromJson(telemetry.toString());
+    }
+}
@@ -98,6 +98,46 @@ public final class ExceptionTelemetryTest {
         assertSame(error, telemetry.getThrowable());
     }
 
+    @Test
+    public void testSameStackTracesShareFrames() {
+        Exception[] exceptions = new Exception[2];
+        for (int i = 0; i < exceptions.length; i++) {
+            exceptions[i] = newException();
+        }
+
+        assertSame(CachedStackFrames.get(exceptions[0].getStackTrace()), CachedStackFrames.get(exceptions[1].getStackTrace()));
+    }
+
+    @Test
+    public void testSharedFramesAreSerialized() {
+        ExceptionTelemetry telemetry = new ExceptionTelemetry(newException());
+        String json = telemetry.toString();
+
+        assertTrue(json.contains("\"parsedStack\":[{\"level\":0,\"method\":\"" + ExceptionTelemetryTest.class.getName()
+                + ".newException\",\"fileName\":\"ExceptionTelemetryTest.java\""));
+
+        // the frames are no longer shared once accessed
+        telemetry.getExceptions().get(0).getParsedStack();
+        assertEquals(json, telemetry.toString());
+    }
+
+    @Test
+    public void testSharedFramesAreCopiedOnAccess() {
+        ExceptionTelemetry telemetry1 = new ExceptionTelemetry(newException());
+        ExceptionTelemetry telemetry2 = new ExceptionTelemetry(newException());
+        int size = telemetry2.getExceptions().get(0).getParsedStack().size();
+
+        telemetry1.getExceptions().get(0).getParsedStack().clear();
+
+        assertTrue(telemetry1.getExceptions().get(0).getParsedStack().isEmpty());
+        assertThat(telemetry2.getExceptions().get(0).getParsedStack(), hasSize(size));
+        assertThat(new ExceptionTelemetry(newException()).getExceptions().get(0).getParsedStack(), hasSize(size));
+    }
+
+    private static Exception newException() {
+        return new IllegalStateException("mock");
+    }
+
     private static void testSeverityLevel(SeverityLevel severityLevel) {
         ExceptionTelemetry telemetry = new ExceptionTelemetry(new IllegalArgumentException("mockb"));
 